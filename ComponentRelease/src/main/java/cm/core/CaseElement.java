@@ -28,15 +28,22 @@ import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.Transient;
+import javax.persistence.Version;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
+import cm.core.data.CaseFileItem;
+import cm.core.interfaces.ICaseElementListener;
 import cm.core.interfaces.IElementObservable;
 import cm.core.interfaces.IElementObserver;
 import cm.core.sentries.ElementOnPart;
 import cm.core.sentries.EntrySentry;
 import cm.core.sentries.ExitSentry;
 import cm.core.sentries.OnPart;
+import cm.core.sentries.OnPartIndex;
 import cm.core.sentries.Sentry;
 import cm.core.states.StageTaskTransitions;
 import cm.core.tasks.Task;
@@ -63,17 +70,22 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private long id;
+	@Version
+	private long version;
 	protected String cmId;
 	protected String name;
 	// private List<IElementObserver> elementObservers; JPA issue with interfaces
 	@JohnzonIgnore
 	@OneToMany(cascade = CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<ElementOnPart> elementObservers;
 	@JohnzonIgnore
 	@OneToMany(cascade = CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<Sentry> sentryRef;
 	@JohnzonIgnore
 	@ManyToOne
+	@BatchFetch(BatchFetchType.IN)
 	private Stage parentStage;
 	protected String state;
 	@JohnzonIgnore
@@ -84,6 +96,36 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 	@ManyToOne
 	protected CaseModel caseRef;
 	protected CaseModel rootCase;
+	@JohnzonIgnore
+	@Transient
+	private OnPartIndex<ElementOnPart> elementObserverIndex;
+	@JohnzonIgnore
+	@Transient
+	private String resolvedState;
+	@JohnzonIgnore
+	@Transient
+	private Enum<?> resolvedStateValue;
+	@JohnzonIgnore
+	@Transient
+	private ChildStateCounters childStateCounters;
+	@JohnzonIgnore
+	@Transient
+	ChildStateCounters countedBy;
+	@JohnzonIgnore
+	@Transient
+	boolean countedActive;
+	@JohnzonIgnore
+	@Transient
+	boolean countedOpen;
+	@JohnzonIgnore
+	@Transient
+	boolean countedIncompleteRequired;
+	@JohnzonIgnore
+	@Transient
+	CaseFileItem countedRequiredContext;
+	@JohnzonIgnore
+	@Transient
+	long countedRequiredVersion;
 
 	public CaseElement() {
 
@@ -120,6 +162,18 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 		this.id = id;
 	}
 
+	/**
+	 * @return the version used for optimistic locking, incremented by each
+	 *         committed change
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	public String getCmId() {
 		return cmId;
 	}
@@ -191,8 +245,10 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 
 	/**
 	 * <p>
-	 * Sets the state of an element using a transition. Notifies any {@link OnPart}s
-	 * observing the element. Automatically tries for auto-completion of parent
+	 * Sets the state of an element using a transition. Reports the transition to
+	 * the {@link TransitionListeners} of the thread, notifies the
+	 * {@link OnPart}s listening for the transition and resets those satisfied by
+	 * the previous transition. Automatically tries for auto-completion of parent
 	 * stage or case.
 	 * </p>
 	 * <p>
@@ -206,24 +262,108 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 	 *            {@link StageTaskTransitions}
 	 */
 	public void setState(String newState, String transition) {
+		String oldState = this.state;
 		this.state = newState;
+		TransitionListeners.elementTransitioned(this, oldState, newState, transition);
+		updateParentCounters();
+		fireElementChanged();
+		PropagationEngine.run(() -> propagateTransition(transition));
+	}
+
+	/**
+	 * <p>
+	 * Sets the state of a recovered element without a transition. No OnParts are
+	 * notified, no listeners are called, children are not suspended or resumed
+	 * and nothing is journaled, only the counters of the parent are kept up to
+	 * date.
+	 * </p>
+	 * 
+	 * @param state
+	 *            the recovered state
+	 * @param stateBeforeSuspend
+	 *            the recovered state before suspension
+	 * @param suspended
+	 *            the recovered suspended flag
+	 */
+	public void restoreState(String state, String stateBeforeSuspend, boolean suspended) {
+		this.state = state;
+		this.stateBeforeSuspend = stateBeforeSuspend;
+		this.suspended = suspended;
+		updateParentCounters();
+	}
+
+	/**
+	 * <p>
+	 * Updates the {@link ChildStateCounters} of the parent {@link Stage} or
+	 * {@link CaseModel} after a change of state.
+	 * </p>
+	 */
+	private void updateParentCounters() {
+		if (this.parentStage != null) {
+			this.parentStage.getChildStateCounters().update(this.parentStage.getChildElements(), this);
+		} else if (this.caseRef != null) {
+			this.caseRef.getChildStateCounters().update(this.caseRef.getChildElements(), this);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Notifies the {@link ICaseElementListener}s of the case this element belongs
+	 * to of a change, e.g. of its state.
+	 * </p>
+	 */
+	protected void fireElementChanged() {
+		CaseModel owner = this.rootCase != null ? this.rootCase : this.caseRef;
+		if (owner == null && this.parentStage != null) {
+			owner = this.parentStage.getRootCase();
+		}
+		if (owner != null && owner != this) {
+			owner.fireElementChanged(this);
+		}
+	}
+
+	/**
+	 * @return counters of the children's states, only used by {@link Stage} and
+	 *         {@link CaseModel}
+	 */
+	ChildStateCounters getChildStateCounters() {
+		if (this.childStateCounters == null) {
+			this.childStateCounters = new ChildStateCounters();
+		}
+		return this.childStateCounters;
+	}
+
+	/**
+	 * <p>
+	 * Notifies observing {@link ElementOnPart}s of a transition and schedules
+	 * auto-completion of the parent {@link Stage} or {@link CaseModel} if the
+	 * element reached a terminal state. The resulting Sentry evaluations and
+	 * transitions are processed by the {@link PropagationEngine}.
+	 * </p>
+	 * 
+	 * @param transition
+	 *            the transition that led to the current state
+	 */
+	private void propagateTransition(String transition) {
 		if (this.elementObservers != null) {
-			for (IElementObserver o : this.elementObservers) {
+			OnPartIndex<ElementOnPart> index = getElementObserverIndex();
+			for (IElementObserver o : index.getOnPartsToReset(this.elementObservers, transition)) {
+				o.updateElementObserver(transition);
+			}
+			for (IElementObserver o : index.getOnParts(this.elementObservers, transition)) {
 				o.updateElementObserver(transition);
 			}
 		}
-		if (this.state.equals(StageStates.DISABLED.toString()) || this.state.equals(StageStates.COMPLETED.toString())
-				|| this.state.equals(StageStates.TERMINATED.toString())
-				|| this.state.equals(StageStates.FAILED.toString())) {
+		if (isInTerminalState()) {
 			if (this.parentStage != null) {
 				if (this.parentStage.isAutoComplete()) {
-					this.parentStage.doAutoComplete();
+					PropagationEngine.scheduleAutoComplete(this.parentStage);
 				} else if (!this.parentStage.isAutoComplete()) {
 					// TODO notify users of possible completion
 				}
 			} else if (this.parentStage == null && this.caseRef != null) {
 				if (this.caseRef.isAutoComplete()) {
-					this.caseRef.doAutoComplete();
+					PropagationEngine.scheduleAutoComplete(this.caseRef);
 				}
 			}
 		}
@@ -269,7 +409,9 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 			}
 		} else if (this instanceof Stage) {
 			Stage s = (Stage) this;
-			s.getContextState().complete();
+			if (!s.hasActiveChildren() && !s.hasIncompleteRequiredChildren()) {
+				s.getContextState().complete();
+			}
 		}
 	}
 
@@ -349,6 +491,67 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 
 	public void setStateWithoutTransition(String state) {
 		this.state = state;
+		updateParentCounters();
+		fireElementChanged();
+	}
+
+	/**
+	 * <p>
+	 * Returns the current state as constant of the given enumeration, e.g.
+	 * {@link TaskStates}. The persisted state remains a readable string, the
+	 * constant is resolved once per change of state and cached.
+	 * </p>
+	 * 
+	 * @param stateType
+	 *            enumeration of states matching the element's type
+	 * @return current state as constant, or <code>null</code> if no state is set
+	 */
+	@SuppressWarnings("unchecked")
+	public <S extends Enum<S>> S getStateAs(Class<S> stateType) {
+		String current = this.state;
+		if (current == null) {
+			return null;
+		}
+		if (current != this.resolvedState || this.resolvedStateValue == null
+				|| this.resolvedStateValue.getDeclaringClass() != stateType) {
+			this.resolvedStateValue = Enum.valueOf(stateType, current);
+			this.resolvedState = current;
+		}
+		return (S) this.resolvedStateValue;
+	}
+
+	/**
+	 * <p>
+	 * Returns the current state of a {@link Stage}, {@link Task},
+	 * {@link Milestone} or {@link cm.core.listeners.EventListener} as
+	 * {@link TaskStates} constant. Their states share the constants' names.
+	 * </p>
+	 * 
+	 * @return current state as constant
+	 */
+	@JohnzonIgnore
+	public TaskStates getTaskState() {
+		return getStateAs(TaskStates.class);
+	}
+
+	/**
+	 * <p>
+	 * Returns <code>true</code> if the element is in state DISABLED, COMPLETED,
+	 * TERMINATED or FAILED.
+	 * </p>
+	 * 
+	 * @return
+	 */
+	protected boolean isInTerminalState() {
+		switch (getTaskState()) {
+		case DISABLED:
+		case COMPLETED:
+		case TERMINATED:
+		case FAILED:
+			return true;
+		default:
+			return false;
+		}
 	}
 
 	public abstract void loadContextState();
@@ -420,21 +623,30 @@ public abstract class CaseElement implements IElementObservable, Cloneable {
 		if (this.elementObservers == null) {
 			this.elementObservers = new ArrayList<ElementOnPart>();
 		}
-		if (!this.elementObservers.contains(o)) {
-			this.elementObservers.add(o);
-		}
+		getElementObserverIndex().register(this.elementObservers, o);
 	}
 
 	public void unregisterElementObserver(ElementOnPart o) {
-		int idx = this.elementObservers.indexOf(o);
-		if (idx > -1) {
-			this.elementObservers.remove(idx);
+		if (this.elementObservers != null) {
+			getElementObserverIndex().unregister(this.elementObservers, o);
+		}
+	}
+
+	private OnPartIndex<ElementOnPart> getElementObserverIndex() {
+		if (this.elementObserverIndex == null) {
+			this.elementObserverIndex = new OnPartIndex<ElementOnPart>();
 		}
+		return this.elementObserverIndex;
 	}
 
 	@Override
 	public CaseElement clone() throws CloneNotSupportedException {
-		return (CaseElement) super.clone();
+		CaseElement clone = (CaseElement) super.clone();
+		clone.elementObserverIndex = null;
+		clone.childStateCounters = null;
+		clone.countedBy = null;
+		clone.countedRequiredContext = null;
+		return clone;
 	}
 
 }
\ No newline at end of file
@@ -17,6 +17,7 @@
 package cm.core;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -26,32 +27,38 @@ import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 import javax.persistence.LockModeType;
 import javax.persistence.ManyToMany;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import cm.core.data.CaseFile;
+import cm.core.data.CaseFileItem;
+import cm.core.interfaces.ICaseElementListener;
 import cm.core.listeners.EventListener;
-import cm.core.listeners.EventMilestoneStates;
 import cm.core.rules.RequiredRule;
-import cm.core.states.CaseInstanceActive;
-import cm.core.states.CaseInstanceClosed;
-import cm.core.states.CaseInstanceCompleted;
-import cm.core.states.CaseInstanceFailed;
-import cm.core.states.CaseInstanceInitial;
-import cm.core.states.CaseInstanceSuspended;
 import cm.core.states.ICaseInstanceState;
+import cm.core.states.CaseInstanceContext;
 import cm.core.tasks.CaseTask;
 import cm.core.tasks.Task;
 import cm.core.tasks.TaskStates;
 
 @NamedQueries({
 		@NamedQuery(name = "CaseModel.findAll", query = "SELECT c FROM CaseModel c", lockMode = LockModeType.NONE),
-		@NamedQuery(name = "CaseModel.findAllShort", query = "SELECT c.id, c.cmId, c.name, c.state FROM CaseModel c") })
+		@NamedQuery(name = "CaseModel.findAllShort", query = "SELECT c.id, c.cmId, c.name, c.state, c.createdOn FROM CaseModel c ORDER BY c.id"),
+		@NamedQuery(name = "CaseModel.findSecondaryShort", query = "SELECT c.id, c.cmId, c.name, c.state, c.createdOn FROM CaseModel c WHERE c.caseTaskRef.rootCase.id = :caseId ORDER BY c.id"),
+		@NamedQuery(name = "CaseModel.countSubCases", query = "SELECT ct.rootCase.id, COUNT(ct) FROM CaseTask ct WHERE ct.subCaseRef IS NOT NULL GROUP BY ct.rootCase.id"),
+		@NamedQuery(name = "CaseModel.countSubCasesOf", query = "SELECT ct.rootCase.id, COUNT(ct) FROM CaseTask ct WHERE ct.subCaseRef IS NOT NULL AND ct.rootCase.id IN :caseIds GROUP BY ct.rootCase.id") })
 /**
  * <p>
  * Class representing a case in CMMN.
@@ -66,12 +73,23 @@ import cm.core.tasks.TaskStates;
  */
 @Entity
 @DiscriminatorValue("case")
+@NamedEntityGraph(name = "CaseModel.full", attributeNodes = { @NamedAttributeNode("childElements"),
+		@NamedAttributeNode(value = "sentryRef", subgraph = "sentry"), @NamedAttributeNode("elementObservers"),
+		@NamedAttributeNode("caseRoles"), @NamedAttributeNode(value = "caseFile", subgraph = "caseFile") }, subgraphs = {
+				@NamedSubgraph(name = "sentry", attributeNodes = { @NamedAttributeNode("onParts"),
+						@NamedAttributeNode("ifPart") }),
+				@NamedSubgraph(name = "caseFile", attributeNodes = @NamedAttributeNode(value = "caseFileItems", subgraph = "item")),
+				@NamedSubgraph(name = "item", attributeNodes = { @NamedAttributeNode("properties"),
+						@NamedAttributeNode("children"), @NamedAttributeNode("observers") }) })
 public class CaseModel extends CaseElement {
 
 	@JohnzonIgnore
 	private boolean autoComplete;
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date createdOn;
 	@JohnzonIgnore
 	@OneToMany(cascade = CascadeType.ALL, mappedBy = "caseRef")
+	@BatchFetch(BatchFetchType.IN)
 	private List<CaseElement> childElements;
 	@JohnzonIgnore
 	@ManyToMany(cascade = CascadeType.ALL)
@@ -90,7 +108,10 @@ public class CaseModel extends CaseElement {
 	private CaseTask caseTaskRef;
 	@JohnzonIgnore
 	@Transient
-	private ICaseInstanceState contextState;
+	private CaseInstanceContext contextState;
+	@JohnzonIgnore
+	@Transient
+	private List<ICaseElementListener> elementListeners;
 
 	public CaseTask getCaseTaskRef() {
 		return caseTaskRef;
@@ -139,6 +160,7 @@ public class CaseModel extends CaseElement {
 			if (elementIds.add(element.getCmId())) {
 				this.childElements.add(element);
 				element.setCaseRef(this);
+				fireElementAdded(element);
 			} else {
 				// TODO throw duplicate error
 			}
@@ -153,12 +175,12 @@ public class CaseModel extends CaseElement {
 			for(int i = 0; i < this.childElements.size(); i++) {
 				if(this.childElements.get(i).getCmId().equals(childcmId)) {
 					foundIdx = i;
-					return;
+					break;
 				}
 			}
 		}
 		if(foundIdx > -1) {
-			this.childElements.remove(foundIdx);
+			fireElementRemoved(this.childElements.remove(foundIdx));
 		}
 	}
 	
@@ -226,20 +248,8 @@ public class CaseModel extends CaseElement {
 	@JohnzonIgnore
 	// if this instanceof CaseModel || Stage
 	public boolean hasActiveChildren() {
-		boolean hasActiveElements = false;
-
-		String stageState = this.getState();
-		if (stageState.equals(StageStates.ACTIVE.toString())) {
-			for (CaseElement e : this.getChildElements()) {
-				if (e.getState().equals(TaskStates.ACTIVE.toString())) {
-					hasActiveElements = true;
-					if (hasActiveElements)
-						break;
-				}
-			}
-		}
-
-		return hasActiveElements;
+		return getCaseState() == CaseStates.ACTIVE
+				&& getChildStateCounters().getActive(this.getChildElements()) > 0;
 	}
 
 	/**
@@ -259,35 +269,7 @@ public class CaseModel extends CaseElement {
 	@JohnzonIgnore
 	// if this instanceof CaseModel || Stage
 	public boolean hasIncompleteRequiredChildren() {
-		boolean hasIncompleteRequiredChildren = false;
-
-		for (CaseElement e : this.getChildElements()) {
-			String eState = e.getState();
-			boolean permissibleState = false;
-			permissibleState = eState.equals(TaskStates.DISABLED.toString())
-					|| eState.equals(TaskStates.COMPLETED.toString()) || eState.equals(TaskStates.TERMINATED.toString())
-					|| eState.equals(TaskStates.FAILED.toString());
-			if (elementRequired(e)) {
-				if (!permissibleState) {
-					hasIncompleteRequiredChildren = true;
-					break;
-				}
-
-			}
-		}
-
-		return hasIncompleteRequiredChildren;
-	}
-
-	private boolean elementRequired(CaseElement e) {
-		if (e instanceof Stage) {
-			return ((Stage) e).isRequired();
-		} else if (e instanceof Task) {
-			return ((Task) e).isRequired();
-		} else if (e instanceof Milestone) {
-			return ((Milestone) e).isRequired();
-		}
-		return false;
+		return getChildStateCounters().getIncompleteRequired(this.getChildElements()) > 0;
 	}
 
 	public CaseModel() {
@@ -299,6 +281,18 @@ public class CaseModel extends CaseElement {
 		super.name = name;
 		this.caseFile = new CaseFile(this);
 		this.state = CaseStates.INITIAL.toString();
+		this.createdOn = new Date();
+	}
+
+	/**
+	 * @return the time the case was instantiated
+	 */
+	public Date getCreatedOn() {
+		return createdOn;
+	}
+
+	public void setCreatedOn(Date createdOn) {
+		this.createdOn = createdOn;
 	}
 
 	public List<CaseRole> getCaseRoles() {
@@ -352,23 +346,118 @@ public class CaseModel extends CaseElement {
 		return contextState;
 	}
 
-	public void setContextState(ICaseInstanceState contextState) {
-		this.contextState = contextState;
+	public void loadContextState() {
+		if (this.contextState == null || this.contextState.getElement() != this) {
+			this.contextState = new CaseInstanceContext(this);
+		}
 	}
 
-	public void loadContextState() {
-		if (state.equals(CaseStates.INITIAL.toString())) {
-			setContextState(new CaseInstanceInitial(this));
-		} else if (state.equals(CaseStates.ACTIVE.toString())) {
-			setContextState(new CaseInstanceActive(this));
-		} else if (state.equals(CaseStates.COMPLETED.toString())) {
-			setContextState(new CaseInstanceCompleted(this));
-		} else if (state.equals(CaseStates.FAILED.toString())) {
-			setContextState(new CaseInstanceFailed(this));
-		} else if (state.equals(CaseStates.SUSPENDED.toString())) {
-			setContextState(new CaseInstanceSuspended(this));
-		} else if (state.equals(CaseStates.CLOSED.toString())) {
-			setContextState(new CaseInstanceClosed(this));
+	/**
+	 * <p>
+	 * Returns the current state as {@link CaseStates} constant.
+	 * </p>
+	 * 
+	 * @return current state as constant
+	 * @see {@link CaseElement#getStateAs(Class)}
+	 */
+	@JohnzonIgnore
+	public CaseStates getCaseState() {
+		return getStateAs(CaseStates.class);
+	}
+
+	@Override
+	protected boolean isInTerminalState() {
+		switch (getCaseState()) {
+		case COMPLETED:
+		case TERMINATED:
+		case FAILED:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Registers a listener notified of added, removed and changed elements of
+	 * this case.
+	 * Listeners are not persisted.
+	 * </p>
+	 * 
+	 * @param listener the listener to add, added only once
+	 */
+	public void addElementListener(ICaseElementListener listener) {
+		if (this.elementListeners == null) {
+			this.elementListeners = new ArrayList<ICaseElementListener>();
+		}
+		if (!this.elementListeners.contains(listener)) {
+			this.elementListeners.add(listener);
+		}
+	}
+
+	public void removeElementListener(ICaseElementListener listener) {
+		if (this.elementListeners != null) {
+			this.elementListeners.remove(listener);
+		}
+	}
+
+	public void fireElementAdded(CaseElement element) {
+		if (this.elementListeners != null) {
+			for (ICaseElementListener listener : this.elementListeners) {
+				listener.elementAdded(element);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners of an element removed from this case or one of its
+	 * Stages, including the children of a removed Stage.
+	 * 
+	 * @param element the removed element
+	 */
+	public void fireElementRemoved(CaseElement element) {
+		if (this.elementListeners != null) {
+			for (ICaseElementListener listener : this.elementListeners) {
+				listener.elementRemoved(element);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners of a CaseFileItem added to the CaseFile or to
+	 * another item.
+	 * 
+	 * @param parent the item the added item is a child of, null for items of the CaseFile
+	 * @param item   the added item
+	 */
+	public void fireCaseFileItemAdded(CaseFileItem parent, CaseFileItem item) {
+		if (this.elementListeners != null) {
+			for (ICaseElementListener listener : this.elementListeners) {
+				listener.caseFileItemAdded(parent, item);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners of a CaseFileItem removed from the CaseFile or from
+	 * another item.
+	 * 
+	 * @param parent the item the removed item was a child of, null for items of the CaseFile
+	 * @param item   the removed item
+	 */
+	public void fireCaseFileItemRemoved(CaseFileItem parent, CaseFileItem item) {
+		if (this.elementListeners != null) {
+			for (ICaseElementListener listener : this.elementListeners) {
+				listener.caseFileItemRemoved(parent, item);
+			}
+		}
+	}
+
+	public void fireElementChanged(CaseElement element) {
+		if (this.elementListeners != null) {
+			for (ICaseElementListener listener : this.elementListeners) {
+				listener.elementChanged(element);
+			}
 		}
 	}
 
@@ -415,24 +504,24 @@ public class CaseModel extends CaseElement {
 	 * @see {@link CaseModel#getContextState()}
 	 */
 	public void propagateActivate() {
-		String childState = "";
+		TaskStates childState = null;
 		if (getChildElements() != null) {
 			for (CaseElement child : getChildElements()) {
-				childState = child.getState();
+				childState = child.getTaskState();
 				if (child instanceof Task) {
-					if (childState.equals(TaskStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((Task) child).getContextState().create();
 					}
 				} else if (child instanceof Stage) {
-					if (childState.equals(StageStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((Stage) child).getContextState().create();
 					}
 				} else if (child instanceof Milestone) {
-					if (childState.equals(EventMilestoneStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((Milestone) child).getContextState().create();
 					}
 				} else if (child instanceof EventListener) {
-					if (childState.equals(EventMilestoneStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((EventListener) child).getContextState().create();
 					}
 				}
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import cm.core.data.CaseFileItem;
+import cm.core.rules.RequiredRule;
+import cm.core.tasks.TaskStates;
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Counts the child elements of a {@link Stage} or {@link CaseModel} which are
+ * ACTIVE, not yet in a terminal state, or required and not yet in a terminal
+ * state. Terminal states are DISABLED, COMPLETED, TERMINATED and FAILED.
+ * </p>
+ * <p>
+ * The counters are built with one pass over the children and then updated by
+ * {@link #update(List, CaseElement)} on every transition of a child, so the
+ * auto-complete check does not scan the children. The {@link RequiredRule} of
+ * a child is evaluated when it transitions into a non-terminal state, and again
+ * before the required children are counted if the
+ * {@link CaseFileItem#getModificationVersion()} of the item it evaluates has
+ * changed since, so changed case file data is not missed. The counters are
+ * rebuilt if the list of children is replaced or its size
+ * changes, e.g. after loading or when repeated instances are added.
+ * </p>
+ * <p>
+ * See CMMN 1.1 specification sections 8.6.1 and 8.6.3 for more information.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+final class ChildStateCounters {
+
+	private List<CaseElement> countedChildren;
+	private int countedSize = -1;
+	private int active;
+	private int open;
+	private int incompleteRequired;
+	private final Set<CaseElement> ruled = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	/**
+	 * @param children
+	 *            current children of the Stage or CaseModel
+	 * @return number of children in state ACTIVE
+	 */
+	int getActive(List<CaseElement> children) {
+		ensureCounted(children);
+		return this.active;
+	}
+
+	/**
+	 * @param children
+	 *            current children of the Stage or CaseModel
+	 * @return number of children not in a terminal state
+	 */
+	int getOpen(List<CaseElement> children) {
+		ensureCounted(children);
+		return this.open;
+	}
+
+	/**
+	 * @param children
+	 *            current children of the Stage or CaseModel
+	 * @return number of required children not in a terminal state
+	 */
+	int getIncompleteRequired(List<CaseElement> children) {
+		if (ensureCounted(children) && !this.ruled.isEmpty()) {
+			recountChangedRules();
+		}
+		return this.incompleteRequired;
+	}
+
+	/**
+	 * <p>
+	 * Updates the counters after the state of a child changed.
+	 * </p>
+	 * 
+	 * @param children
+	 *            current children of the Stage or CaseModel
+	 * @param child
+	 *            the child whose state changed
+	 */
+	void update(List<CaseElement> children, CaseElement child) {
+		if (this.countedChildren == null || !ensureCounted(children) || child.countedBy != this) {
+			// not counted yet, just rebuilt with the current state of the child or not
+			// one of the counted children
+			return;
+		}
+		remove(child);
+		add(child);
+	}
+
+	/**
+	 * Marks the counters for rebuilding on the next access.
+	 */
+	void invalidate() {
+		this.countedChildren = null;
+		this.countedSize = -1;
+	}
+
+	private boolean ensureCounted(List<CaseElement> children) {
+		int size = children == null ? 0 : children.size();
+		if (children == this.countedChildren && size == this.countedSize) {
+			return true;
+		}
+		this.active = 0;
+		this.open = 0;
+		this.incompleteRequired = 0;
+		this.ruled.clear();
+		if (children != null) {
+			for (CaseElement child : children) {
+				add(child);
+			}
+		}
+		this.countedChildren = children;
+		this.countedSize = size;
+		return false;
+	}
+
+	private void add(CaseElement child) {
+		TaskStates state = child.getTaskState();
+		child.countedBy = this;
+		child.countedActive = state == TaskStates.ACTIVE;
+		child.countedOpen = !isTerminal(state);
+		child.countedIncompleteRequired = child.countedOpen && isRequired(child);
+		CaseFileItem context = child.countedOpen ? contextOf(child) : null;
+		child.countedRequiredContext = context;
+		if (context != null) {
+			child.countedRequiredVersion = context.getModificationVersion();
+			this.ruled.add(child);
+		}
+		if (child.countedActive) {
+			this.active++;
+		}
+		if (child.countedOpen) {
+			this.open++;
+		}
+		if (child.countedIncompleteRequired) {
+			this.incompleteRequired++;
+		}
+	}
+
+	private void remove(CaseElement child) {
+		if (child.countedRequiredContext != null) {
+			this.ruled.remove(child);
+		}
+		if (child.countedActive) {
+			this.active--;
+		}
+		if (child.countedOpen) {
+			this.open--;
+		}
+		if (child.countedIncompleteRequired) {
+			this.incompleteRequired--;
+		}
+	}
+
+	/**
+	 * Counts the open children again whose required rule evaluates an item that
+	 * was modified since they were counted.
+	 */
+	private void recountChangedRules() {
+		List<CaseElement> changed = null;
+		for (CaseElement child : this.ruled) {
+			if (child.countedRequiredContext.getModificationVersion() != child.countedRequiredVersion) {
+				if (changed == null) {
+					changed = new ArrayList<>();
+				}
+				changed.add(child);
+			}
+		}
+		if (changed != null) {
+			for (CaseElement child : changed) {
+				remove(child);
+				add(child);
+			}
+		}
+	}
+
+	private static CaseFileItem contextOf(CaseElement e) {
+		RequiredRule rule = null;
+		if (e instanceof Stage) {
+			rule = ((Stage) e).getRequiredRule();
+		} else if (e instanceof Task) {
+			rule = ((Task) e).getRequiredRule();
+		} else if (e instanceof Milestone) {
+			rule = ((Milestone) e).getRequiredRule();
+		}
+		return rule != null ? rule.getContextRef() : null;
+	}
+
+	private static boolean isTerminal(TaskStates state) {
+		return state == TaskStates.DISABLED || state == TaskStates.COMPLETED || state == TaskStates.TERMINATED
+				|| state == TaskStates.FAILED;
+	}
+
+	private static boolean isRequired(CaseElement e) {
+		if (e instanceof Stage) {
+			return ((Stage) e).isRequired();
+		} else if (e instanceof Task) {
+			return ((Task) e).isRequired();
+		} else if (e instanceof Milestone) {
+			return ((Milestone) e).isRequired();
+		}
+		return false;
+	}
+
+}
@@ -28,12 +28,8 @@ import cm.core.listeners.EventMilestoneStates;
 import cm.core.rules.RepetitionRule;
 import cm.core.rules.RequiredRule;
 import cm.core.rules.Rule;
-import cm.core.states.EventMilestoneAvailable;
-import cm.core.states.EventMilestoneCompleted;
-import cm.core.states.EventMilestoneInitial;
-import cm.core.states.EventMilestoneSuspended;
-import cm.core.states.EventMilestoneTerminated;
 import cm.core.states.IEventMilestoneState;
+import cm.core.states.EventMilestoneContext;
 import cm.core.utils.RuleExpressionFactory;
 
 /**
@@ -58,7 +54,7 @@ public class Milestone extends CaseElement {
 	private RequiredRule requiredRule;
 	@JohnzonIgnore
 	@Transient
-	private IEventMilestoneState contextState;
+	private EventMilestoneContext contextState;
 
 	private boolean evaluateRepetition() {
 		if (this.repetitionRule != null) {
@@ -197,26 +193,10 @@ public class Milestone extends CaseElement {
 		return contextState;
 	}
 
-	public void setContextState(IEventMilestoneState contextState) {
-		this.contextState = contextState;
-	}
-
 	@Override
 	public void loadContextState() {
-		if (state.equals(EventMilestoneStates.INITIAL.toString())) {
-			setContextState(new EventMilestoneInitial(this));
-		}
-		else if (state.equals(EventMilestoneStates.AVAILABLE.toString())) {
-			setContextState(new EventMilestoneAvailable(this));
-		}
-		else if (state.equals(EventMilestoneStates.SUSPENDED.toString())) {
-			setContextState(new EventMilestoneSuspended(this));
-		}
-		else if (state.equals(EventMilestoneStates.COMPLETED.toString())) {
-			setContextState(new EventMilestoneCompleted(this));
-		}
-		else if (state.equals(EventMilestoneStates.TERMINATED.toString())) {
-			setContextState(new EventMilestoneTerminated(this));
+		if (this.contextState == null || this.contextState.getElement() != this) {
+			this.contextState = new EventMilestoneContext(this);
 		}
 	}
 }//end Milestone
\ No newline at end of file
@@ -0,0 +1,274 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cm.core.data.CaseFileItem;
+import cm.core.sentries.OnPart;
+import cm.core.sentries.Sentry;
+
+/**
+ * <p>
+ * Processes the consequences of a transition iteratively instead of on the call
+ * stack. A state change of a {@link CaseElement} or {@link CaseFileItem} opens
+ * a cascade. {@link Sentry} evaluations triggered by its {@link OnPart}s and
+ * auto-completion checks of parent {@link Stage}s or {@link CaseModel}s are put
+ * on an agenda and processed breadth-first once the opening transition is done.
+ * Transitions taken while processing the agenda only add to it.
+ * </p>
+ * <p>
+ * A Sentry or auto-completion check already waiting on the agenda is not added
+ * a second time, as it evaluates the current states when processed. A cascade
+ * is bounded by {@link #MAX_STEPS} processed entries. Depth and fan-out of each
+ * cascade are recorded, see {@link #getLastStatistics()} and
+ * {@link #getTotalStatistics()}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class PropagationEngine {
+
+	/**
+	 * Maximum number of agenda entries processed in one cascade, can be set via
+	 * system property <code>cm.core.propagation.maxSteps</code>.
+	 */
+	public static final int MAX_STEPS = Integer.getInteger("cm.core.propagation.maxSteps", 100000);
+
+	private static final ThreadLocal<PropagationEngine> ACTIVE = new ThreadLocal<PropagationEngine>();
+	private static final ThreadLocal<Statistics> LAST = new ThreadLocal<Statistics>();
+
+	private static final AtomicLong cascades = new AtomicLong();
+	private static final AtomicLong steps = new AtomicLong();
+	private static final AtomicLong duplicatesSkipped = new AtomicLong();
+	private static final AtomicLong maxDepth = new AtomicLong();
+	private static final AtomicLong maxFanOut = new AtomicLong();
+
+	private final ArrayDeque<Entry> agenda = new ArrayDeque<Entry>();
+	private final Set<Object> pending = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	private int currentDepth;
+	private int currentFanOut;
+	private final Statistics statistics = new Statistics();
+
+	private PropagationEngine() {
+
+	}
+
+	/**
+	 * <p>
+	 * Runs a transition. If no cascade is running on the current thread, a new
+	 * one is opened and its agenda processed after the transition. Otherwise the
+	 * transition runs directly and its consequences are added to the running
+	 * cascade.
+	 * </p>
+	 * 
+	 * @param transition
+	 *            the state change and notification of observers
+	 */
+	public static void run(Runnable transition) {
+		if (ACTIVE.get() != null) {
+			transition.run();
+			return;
+		}
+		PropagationEngine engine = new PropagationEngine();
+		ACTIVE.set(engine);
+		try {
+			transition.run();
+			engine.process();
+		} finally {
+			ACTIVE.remove();
+			engine.record();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Adds the evaluation of a Sentry to the agenda of the running cascade.
+	 * </p>
+	 * 
+	 * @param sentry
+	 *            the Sentry to check
+	 */
+	public static void scheduleCriteriaCheck(final Sentry sentry) {
+		schedule(sentry, new Runnable() {
+			@Override
+			public void run() {
+				sentry.checkCriteria();
+			}
+		});
+	}
+
+	/**
+	 * <p>
+	 * Adds an auto-completion check of a {@link Stage} or {@link CaseModel} to the
+	 * agenda of the running cascade.
+	 * </p>
+	 * 
+	 * @param element
+	 *            the Stage or CaseModel to check
+	 */
+	public static void scheduleAutoComplete(final CaseElement element) {
+		schedule(element, new Runnable() {
+			@Override
+			public void run() {
+				element.doAutoComplete();
+			}
+		});
+	}
+
+	private static void schedule(Object key, Runnable action) {
+		PropagationEngine engine = ACTIVE.get();
+		if (engine == null) {
+			run(action);
+			return;
+		}
+		engine.add(key, action);
+	}
+
+	private void add(Object key, Runnable action) {
+		if (!this.pending.add(key)) {
+			this.statistics.duplicatesSkipped++;
+			return;
+		}
+		this.agenda.addLast(new Entry(key, action, this.currentDepth + 1));
+		this.currentFanOut++;
+	}
+
+	private void process() {
+		closeFanOut();
+		Entry entry;
+		while ((entry = this.agenda.pollFirst()) != null) {
+			if (this.statistics.steps >= MAX_STEPS) {
+				this.agenda.clear();
+				this.pending.clear();
+				throw new IllegalStateException("Cascade exceeded " + MAX_STEPS + " steps.");
+			}
+			this.pending.remove(entry.key);
+			this.currentDepth = entry.depth;
+			this.statistics.steps++;
+			if (entry.depth > this.statistics.depth) {
+				this.statistics.depth = entry.depth;
+			}
+			entry.action.run();
+			closeFanOut();
+		}
+	}
+
+	private void closeFanOut() {
+		if (this.currentFanOut > this.statistics.fanOut) {
+			this.statistics.fanOut = this.currentFanOut;
+		}
+		this.currentFanOut = 0;
+	}
+
+	private void record() {
+		LAST.set(this.statistics);
+		cascades.incrementAndGet();
+		steps.addAndGet(this.statistics.steps);
+		duplicatesSkipped.addAndGet(this.statistics.duplicatesSkipped);
+		updateMax(maxDepth, this.statistics.depth);
+		updateMax(maxFanOut, this.statistics.fanOut);
+	}
+
+	private static void updateMax(AtomicLong max, long value) {
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	/**
+	 * @return statistics of the last cascade completed on the current thread, or
+	 *         <code>null</code> if there was none
+	 */
+	public static Statistics getLastStatistics() {
+		return LAST.get();
+	}
+
+	/**
+	 * @return statistics summed up over all cascades, depth and fan-out are
+	 *         maxima
+	 */
+	public static Statistics getTotalStatistics() {
+		Statistics total = new Statistics();
+		total.cascades = cascades.get();
+		total.steps = steps.get();
+		total.duplicatesSkipped = duplicatesSkipped.get();
+		total.depth = (int) maxDepth.get();
+		total.fanOut = (int) maxFanOut.get();
+		return total;
+	}
+
+	private static final class Entry {
+		private final Object key;
+		private final Runnable action;
+		private final int depth;
+
+		private Entry(Object key, Runnable action, int depth) {
+			this.key = key;
+			this.action = action;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Cost of one or more cascades. Depth counts the levels of the breadth-first
+	 * processing, fan-out the largest number of entries added by a single
+	 * transition or agenda entry.
+	 * </p>
+	 */
+	public static final class Statistics {
+		private long cascades = 1;
+		private long steps;
+		private long duplicatesSkipped;
+		private int depth;
+		private int fanOut;
+
+		public long getCascades() {
+			return cascades;
+		}
+
+		public long getSteps() {
+			return steps;
+		}
+
+		public long getDuplicatesSkipped() {
+			return duplicatesSkipped;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+
+		public int getFanOut() {
+			return fanOut;
+		}
+
+		@Override
+		public String toString() {
+			return "cascades=" + cascades + ", steps=" + steps + ", duplicatesSkipped=" + duplicatesSkipped
+					+ ", depth=" + depth + ", fanOut=" + fanOut;
+		}
+	}
+
+}
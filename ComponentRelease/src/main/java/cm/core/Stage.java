@@ -31,23 +31,16 @@ import javax.persistence.OneToOne;
 import javax.persistence.Transient;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import cm.core.listeners.EventListener;
-import cm.core.listeners.EventMilestoneStates;
 import cm.core.rules.ManualActivationRule;
 import cm.core.rules.RequiredRule;
 import cm.core.rules.Rule;
 import cm.core.sentries.ElementOnPart;
 import cm.core.states.IStageTaskState;
-import cm.core.states.StageTaskActive;
-import cm.core.states.StageTaskAvailable;
-import cm.core.states.StageTaskCompleted;
-import cm.core.states.StageTaskDisabled;
-import cm.core.states.StageTaskEnabled;
-import cm.core.states.StageTaskFailed;
-import cm.core.states.StageTaskInitial;
-import cm.core.states.StageTaskSuspended;
-import cm.core.states.StageTaskTerminated;
+import cm.core.states.StageTaskContext;
 import cm.core.states.StageTaskTransitions;
 import cm.core.tasks.Task;
 import cm.core.tasks.TaskStates;
@@ -91,10 +84,11 @@ public class Stage extends CaseElement {
 	private boolean autoComplete;
 	// @JohnzonIgnore
 	@OneToMany(cascade = CascadeType.ALL, mappedBy = "parentStage", orphanRemoval = true)
+	@BatchFetch(BatchFetchType.IN)
 	private List<CaseElement> childElements;
 	@JohnzonIgnore
 	@Transient
-	private IStageTaskState contextState;
+	private StageTaskContext contextState;
 	@JohnzonIgnore
 	@OneToOne(cascade = CascadeType.ALL)
 	private ManualActivationRule manualActivationRule;
@@ -123,6 +117,14 @@ public class Stage extends CaseElement {
 		return evaluateRequired();
 	}
 
+	public RequiredRule getRequiredRule() {
+		return requiredRule;
+	}
+
+	public void setRequiredRule(RequiredRule requiredRule) {
+		this.requiredRule = requiredRule;
+	}
+
 	public ManualActivationRule getManualActivationRule() {
 		return manualActivationRule;
 	}
@@ -220,6 +222,9 @@ public class Stage extends CaseElement {
 			if (elementIds.add(element.getCmId())) {
 				this.childElements.add(element);
 				element.setParentStage(this);
+				if (getRootCase() != null) {
+					getRootCase().fireElementAdded(element);
+				}
 
 			} else {
 				// TODO throw duplicate error and error when CaseModel is added
@@ -235,12 +240,15 @@ public class Stage extends CaseElement {
 			for(int i = 0; i < this.childElements.size(); i++) {
 				if(this.childElements.get(i).getCmId().equals(childcmId)) {
 					foundIdx = i;
-					return;
+					break;
 				}
 			}
 		}
 		if(foundIdx > -1) {
-			this.childElements.remove(foundIdx);
+			CaseElement removed = this.childElements.remove(foundIdx);
+			if (getRootCase() != null) {
+				getRootCase().fireElementRemoved(removed);
+			}
 		}
 	}
 
@@ -301,22 +309,8 @@ public class Stage extends CaseElement {
 	 *         <code>false</code> if none is in state ACTIVE.
 	 */
 	public boolean hasActiveChildren() {
-		boolean hasActiveElements = false;
-
-		if (this instanceof Stage) {
-			String stageState = this.getState();
-			if (stageState.equals(StageStates.ACTIVE.toString())) {
-				for (CaseElement e : this.getChildElements()) {
-					if (e.getState().equals(TaskStates.ACTIVE.toString())) {
-						hasActiveElements = true;
-						if (hasActiveElements)
-							break;
-					}
-				}
-			}
-		}
-
-		return hasActiveElements;
+		return this.getTaskState() == TaskStates.ACTIVE
+				&& getChildStateCounters().getActive(this.getChildElements()) > 0;
 	}
 
 	/**
@@ -334,45 +328,7 @@ public class Stage extends CaseElement {
 	 *         found
 	 */
 	public boolean hasIncompleteRequiredChildren() {
-		boolean hasIncompleteRequiredChildren = false;
-
-		for (CaseElement e : this.getChildElements()) {
-			String eState = e.getState();
-			boolean permissibleState = false;
-			permissibleState = eState.equals(TaskStates.DISABLED.toString())
-					|| eState.equals(TaskStates.COMPLETED.toString()) || eState.equals(TaskStates.TERMINATED.toString())
-					|| eState.equals(TaskStates.FAILED.toString());
-			if (e instanceof Stage) {
-				Stage s = (Stage) e;
-				if (s.isRequired()) {
-					if (!permissibleState) {
-						hasIncompleteRequiredChildren = true;
-						break;
-					}
-
-				}
-			} else if (e instanceof Task) {
-				Task t = (Task) e;
-				if (t.isRequired()) {
-					if (!permissibleState) {
-						hasIncompleteRequiredChildren = true;
-						break;
-					}
-
-				}
-			} else if (e instanceof Milestone) {
-				Milestone m = (Milestone) e;
-				if (m.isRequired()) {
-					if (!permissibleState) {
-						hasIncompleteRequiredChildren = true;
-						break;
-					}
-
-				}
-			}
-		}
-
-		return hasIncompleteRequiredChildren;
+		return getChildStateCounters().getIncompleteRequired(this.getChildElements()) > 0;
 	}
 
 	/**
@@ -389,51 +345,7 @@ public class Stage extends CaseElement {
 	 */
 	@JohnzonIgnore
 	public boolean isReadyForComplete() {
-		boolean readyForComplete = true;
-
-		if (!(this.getChildElements() == null)) {
-			for (CaseElement e : this.getChildElements()) {
-				String eState = e.getState();
-				if (eState.equals(TaskStates.ACTIVE.toString())) {
-					readyForComplete = false;
-					break; // break if any one element is active and this negates ready for autocomplete
-				} else if (elementRequired(e)) {
-					if (eState.equals(TaskStates.DISABLED.toString()) || eState.equals(TaskStates.COMPLETED.toString())
-							|| eState.equals(TaskStates.TERMINATED.toString())
-							|| eState.equals(TaskStates.FAILED.toString())) {
-						readyForComplete = true;
-					} else {
-						readyForComplete = false;
-						break; // break if any one element does not fulfill the stated required states for
-								// required elements
-					}
-				} else {
-					if (eState.equals(TaskStates.DISABLED.toString()) || eState.equals(TaskStates.COMPLETED.toString())
-							|| eState.equals(TaskStates.TERMINATED.toString())
-							|| eState.equals(TaskStates.FAILED.toString())) {
-						readyForComplete = true;
-					} else {
-						readyForComplete = false;
-						break; // break if any one element does not fulfill the stated required states for
-								// required elements
-					}
-				}
-
-			}
-		}
-
-		return readyForComplete;
-	}
-
-	private boolean elementRequired(CaseElement e) {
-		if (e instanceof Stage) {
-			return ((Stage) e).isRequired();
-		} else if (e instanceof Task) {
-			return ((Task) e).isRequired();
-		} else if (e instanceof Milestone) {
-			return ((Milestone) e).isRequired();
-		}
-		return false;
+		return getChildStateCounters().getOpen(this.getChildElements()) == 0;
 	}
 
 	public Stage() {
@@ -528,29 +440,9 @@ public class Stage extends CaseElement {
 		return contextState;
 	}
 
-	public void setContextState(IStageTaskState contextState) {
-		this.contextState = contextState;
-	}
-
 	public void loadContextState() {
-		if (state.equals(StageStates.INITIAL.toString())) {
-			setContextState(new StageTaskInitial(this));
-		} else if (state.equals(StageStates.AVAILABLE.toString())) {
-			setContextState(new StageTaskAvailable(this));
-		} else if (state.equals(StageStates.ENABLED.toString())) {
-			setContextState(new StageTaskEnabled(this));
-		} else if (state.equals(StageStates.DISABLED.toString())) {
-			setContextState(new StageTaskDisabled(this));
-		} else if (state.equals(StageStates.ACTIVE.toString())) {
-			setContextState(new StageTaskActive(this));
-		} else if (state.equals(StageStates.FAILED.toString())) {
-			setContextState(new StageTaskFailed(this));
-		} else if (state.equals(StageStates.SUSPENDED.toString())) {
-			setContextState(new StageTaskSuspended(this));
-		} else if (state.equals(StageStates.COMPLETED.toString())) {
-			setContextState(new StageTaskCompleted(this));
-		} else if (state.equals(StageStates.TERMINATED.toString())) {
-			setContextState(new StageTaskTerminated(this));
+		if (this.contextState == null || this.contextState.getElement() != this) {
+			this.contextState = new StageTaskContext(this);
 		}
 	}
 
@@ -564,25 +456,25 @@ public class Stage extends CaseElement {
 	 * </p>
 	 */
 	public void propagateParentActivate() {
-		String childState = "";
+		TaskStates childState = null;
 		List<CaseElement> childElements = getChildElements();
 		if (childElements != null) {
 			for (CaseElement child : childElements) {
-				childState = child.getState();
+				childState = child.getTaskState();
 				if (child instanceof Task) {
-					if (childState.equals(TaskStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((Task) child).getContextState().create();
 					}
 				} else if (child instanceof Stage) {
-					if (childState.equals(StageStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((Stage) child).getContextState().create();
 					}
 				} else if (child instanceof Milestone) {
-					if (childState.equals(EventMilestoneStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((Milestone) child).getContextState().create();
 					}
 				} else if (child instanceof EventListener) {
-					if (childState.equals(EventMilestoneStates.INITIAL.toString())) {
+					if (childState == TaskStates.INITIAL) {
 						((EventListener) child).getContextState().create();
 					}
 				}
@@ -652,24 +544,24 @@ public class Stage extends CaseElement {
 	public void propagateActivation() {
 		Stage parentStage = (Stage) getParentStage();
 		if (parentStage != null) {
-			String parentState = this.getParentStage().getState();
-			if (!parentState.equals(StageStates.ACTIVE.toString())) {
-				if (parentState.equals(StageStates.INITIAL.toString())) {
+			TaskStates parentState = this.getParentStage().getTaskState();
+			if (parentState != TaskStates.ACTIVE) {
+				if (parentState == TaskStates.INITIAL) {
 					parentStage.getContextState().create();
-				} else if (parentState.equals(StageStates.AVAILABLE.toString())) {
+				} else if (parentState == TaskStates.AVAILABLE) {
 					// skip states until ACTIVE, but include sending transitions for listening
 					// sentries/onParts
 					parentStage.setState(StageStates.ACTIVE.toString(), StageTaskTransitions.start.toString());
 					parentStage.setState(StageStates.ACTIVE.toString(), StageTaskTransitions.enable.toString());
 					parentStage.setState(StageStates.ACTIVE.toString(), StageTaskTransitions.manualStart.toString());
-				} else if (parentState.equals(StageStates.ENABLED.toString())) {
+				} else if (parentState == TaskStates.ENABLED) {
 					parentStage.getContextState().manualStart();
-				} else if (parentState.equals(StageStates.DISABLED.toString())) {
+				} else if (parentState == TaskStates.DISABLED) {
 					parentStage.getContextState().reEnable();
 					parentStage.getContextState().manualStart();
-				} else if (parentState.equals(StageStates.FAILED.toString())) {
+				} else if (parentState == TaskStates.FAILED) {
 					parentStage.getContextState().reActivate();
-				} else if (parentState.equals(StageStates.SUSPENDED.toString())) {
+				} else if (parentState == TaskStates.SUSPENDED) {
 					parentStage.getContextState().resume();
 				}
 			}
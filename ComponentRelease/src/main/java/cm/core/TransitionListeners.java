@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core;
+
+import cm.core.data.CaseFileItem;
+import cm.core.interfaces.ITransitionListener;
+
+/**
+ * <p>
+ * Holds the {@link ITransitionListener} of the current thread, which
+ * {@link CaseElement} and {@link CaseFileItem} call after every state
+ * transition. The domain itself does no I/O, the services register a listener
+ * for the duration of a case command, e.g. to journal its transitions and to
+ * publish its changes. Transitions made without a listener, e.g. while
+ * decoding a case or in tests, are not reported.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class TransitionListeners {
+
+	private static final ThreadLocal<ITransitionListener> CURRENT = new ThreadLocal<>();
+
+	private TransitionListeners() {
+
+	}
+
+	/**
+	 * Registers a listener for the current thread.
+	 * 
+	 * @param listener
+	 *            the listener, null to report nothing
+	 * @return the listener registered before, to be passed to
+	 *         {@link #restore(ITransitionListener)}
+	 */
+	public static ITransitionListener register(ITransitionListener listener) {
+		ITransitionListener previous = CURRENT.get();
+		restore(listener);
+		return previous;
+	}
+
+	/**
+	 * @param previous
+	 *            the listener returned by
+	 *            {@link #register(ITransitionListener)}
+	 */
+	public static void restore(ITransitionListener previous) {
+		if (previous != null) {
+			CURRENT.set(previous);
+		} else {
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * @return the listener of the current thread, null if none is registered
+	 */
+	public static ITransitionListener current() {
+		return CURRENT.get();
+	}
+
+	static void elementTransitioned(CaseElement element, String fromState, String toState, String transition) {
+		ITransitionListener listener = CURRENT.get();
+		if (listener != null) {
+			listener.elementTransitioned(element, fromState, toState, transition);
+		}
+	}
+
+	public static void caseFileItemTransitioned(CaseModel cm, CaseFileItem item, String fromState, String toState,
+			String transition) {
+		ITransitionListener listener = CURRENT.get();
+		if (listener != null) {
+			listener.caseFileItemTransitioned(cm, item, fromState, toState, transition);
+		}
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+
+import cm.core.data.CaseFileItemAttachment;
+
+/**
+ * <p>
+ * Writes and reads the contents of {@link CaseFileItemAttachment}s. Contents
+ * are streamed into the {@link BlobStores#getDefault() blob store} and the
+ * attachment keeps the key, length and checksum of the blob. Without a store,
+ * and for attachments written before there was one, the contents are kept in
+ * the <code>data</code> column of the attachment.
+ * </p>
+ * <p>
+ * Blobs are shared by all attachments with the same contents, so contents are
+ * never deleted here. Blobs without attachments are deleted by the
+ * <code>AttachmentContentCollector</code>.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class AttachmentContents {
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private AttachmentContents() {
+
+	}
+
+	/**
+	 * @return a stream for new contents, to be passed to
+	 *         {@link #attach(CaseFileItemAttachment, BlobOutputStream)} once it
+	 *         is closed
+	 * @throws IOException
+	 *             if the blob cannot be created
+	 */
+	public static BlobOutputStream newOutput() throws IOException {
+		BlobStore store = BlobStores.getDefault();
+		return store != null ? store.create() : new DatabaseOutputStream();
+	}
+
+	/**
+	 * Sets the contents written to a closed stream of {@link #newOutput()} as
+	 * contents of the attachment.
+	 */
+	public static void attach(CaseFileItemAttachment attachment, BlobOutputStream out) {
+		BlobInfo info = out.getInfo();
+		attachment.setBlobKey(info.getKey());
+		attachment.setChecksum(info.getChecksum());
+		attachment.setContentLength(info.getLength());
+		attachment.setSize(info.getLength() / MEGABYTE);
+		attachment.setData(out instanceof DatabaseOutputStream ? ((DatabaseOutputStream) out).toByteArray() : null);
+	}
+
+	/**
+	 * Streams the input into the contents of the attachment. The input is not
+	 * closed.
+	 * 
+	 * @throws IOException
+	 *             if the input cannot be read or the contents cannot be written
+	 */
+	public static void store(CaseFileItemAttachment attachment, InputStream in) throws IOException {
+		BlobOutputStream out = newOutput();
+		try {
+			byte[] buffer = new byte[BlobStores.BUFFER_BYTES];
+			for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+		} catch (IOException | RuntimeException e) {
+			out.abort();
+			throw e;
+		}
+		out.close();
+		attach(attachment, out);
+	}
+
+	/**
+	 * Copies an attachment, e.g. to the case file item of another case. The copy
+	 * refers to the blob of the source, the contents are not copied. Contents of
+	 * a source without blob are moved into the blob store first, so both share
+	 * them; without a store they are copied. The blob is retained, so it is not
+	 * collected before the copy is saved.
+	 * 
+	 * @return a new attachment with the metadata and contents of the source
+	 * @throws IOException
+	 *             if the contents of the source cannot be moved into the store
+	 *             or its blob no longer exists
+	 */
+	public static CaseFileItemAttachment copy(CaseFileItemAttachment source) throws IOException {
+		if (source.getBlobKey() == null && source.getData() != null && BlobStores.getDefault() != null) {
+			store(source, new ByteArrayInputStream(source.getData()));
+		} else if (source.getBlobKey() != null && !requireStore().retain(source.getBlobKey())) {
+			throw new IOException(
+					"Blob " + source.getBlobKey() + " of attachment " + source.getName() + " does not exist");
+		}
+		CaseFileItemAttachment copy = new CaseFileItemAttachment(source.getName(), source.getType(), source.getSize(),
+				source.getPath(), source.getCreatedOn(), source.getCreatedBy());
+		copy.setBlobKey(source.getBlobKey());
+		copy.setChecksum(source.getChecksum());
+		copy.setContentLength(source.getContentLength());
+		copy.setData(source.getBlobKey() == null ? source.getData() : null);
+		return copy;
+	}
+
+	/**
+	 * @return a stream of the contents of the attachment, to be closed by the
+	 *         caller, null if it has none
+	 * @throws IOException
+	 *             if the blob of the attachment cannot be read
+	 */
+	public static InputStream open(CaseFileItemAttachment attachment) throws IOException {
+		if (attachment.getBlobKey() != null) {
+			return requireStore().open(attachment.getBlobKey());
+		}
+		byte[] data = attachment.getData();
+		return data != null ? new ByteArrayInputStream(data) : null;
+	}
+
+	/**
+	 * @return length of the contents of the attachment in bytes
+	 */
+	public static long length(CaseFileItemAttachment attachment) {
+		if (attachment.getBlobKey() != null) {
+			return attachment.getContentLength();
+		}
+		byte[] data = attachment.getData();
+		return data != null ? data.length : 0;
+	}
+
+	/**
+	 * Writes a part of the contents of the attachment without buffering them as
+	 * a whole, see {@link BlobStore#transferTo(String, long, long, java.nio.channels.WritableByteChannel)}.
+	 * 
+	 * @param offset
+	 *            offset of the first byte
+	 * @param count
+	 *            number of bytes, offset and count must lie within
+	 *            {@link #length(CaseFileItemAttachment)}
+	 * @param out
+	 *            receives the bytes, is not closed
+	 * @throws IOException
+	 *             if the contents cannot be read or the output cannot be written
+	 */
+	public static void transferTo(CaseFileItemAttachment attachment, long offset, long count, OutputStream out)
+			throws IOException {
+		if (attachment.getBlobKey() != null) {
+			requireStore().transferTo(attachment.getBlobKey(), offset, count, Channels.newChannel(out));
+		} else if (count > 0) {
+			out.write(attachment.getData(), (int) offset, (int) count);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Discards the contents of a stream of {@link #newOutput()} that was not
+	 * completed, e.g. of a failed upload. Completed contents may already be
+	 * shared and are left to the collection of unreferenced blobs.
+	 */
+	public static void discard(BlobOutputStream out) {
+		if (!out.isCompleted()) {
+			out.abort();
+		}
+	}
+
+	private static BlobStore requireStore() throws IOException {
+		BlobStore store = BlobStores.getDefault();
+		if (store == null) {
+			throw new IOException("Attachment contents are kept in a blob store, but none is configured");
+		}
+		return store;
+	}
+
+	/**
+	 * Keeps the contents in memory for the <code>data</code> column.
+	 */
+	private static final class DatabaseOutputStream extends BlobOutputStream {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream(BlobStores.BUFFER_BYTES);
+
+		@Override
+		protected void writeContent(byte[] b, int off, int len) {
+			out.write(b, off, len);
+		}
+
+		@Override
+		protected String commit(String checksum, long length) {
+			return null;
+		}
+
+		@Override
+		public void abort() {
+			out.reset();
+		}
+
+		private byte[] toByteArray() {
+			return out.toByteArray();
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+/**
+ * <p>
+ * Key, length and SHA-256 checksum of a written blob, see {@link BlobStore}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class BlobInfo {
+
+	private final String key;
+	private final long length;
+	private final String checksum;
+
+	public BlobInfo(String key, long length, String checksum) {
+		this.key = key;
+		this.length = length;
+		this.checksum = checksum;
+	}
+
+	/**
+	 * @return the key of the blob, null for contents kept in memory
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the length in bytes
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the SHA-256 checksum as lower case hex string
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	@Override
+	public String toString() {
+		return "BlobInfo [key=" + key + ", length=" + length + ", checksum=" + checksum + "]";
+	}
+
+}
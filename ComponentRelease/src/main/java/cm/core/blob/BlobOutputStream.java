@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <p>
+ * Stream writing a blob. The length and the SHA-256 checksum of the contents
+ * are computed while they stream through, so the contents never have to be
+ * held in memory. Closing the stream completes the blob, see
+ * {@link #getInfo()}, {@link #abort()} discards it instead.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public abstract class BlobOutputStream extends OutputStream {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest digest;
+	private long length;
+	private boolean closed;
+	private BlobInfo info;
+
+	protected BlobOutputStream() {
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (closed) {
+			throw new IOException("Blob already closed");
+		}
+		writeContent(b, off, len);
+		digest.update(b, off, len);
+		length += len;
+	}
+
+	/**
+	 * Writes a chunk of the contents to the store.
+	 */
+	protected abstract void writeContent(byte[] b, int off, int len) throws IOException;
+
+	/**
+	 * Completes the blob.
+	 * 
+	 * @param checksum
+	 *            SHA-256 checksum of the contents
+	 * @param length
+	 *            length of the contents in bytes
+	 * @return the key of the blob
+	 */
+	protected abstract String commit(String checksum, long length) throws IOException;
+
+	/**
+	 * Discards the written contents, does nothing once the stream is closed.
+	 */
+	public abstract void abort();
+
+	/**
+	 * Completes the blob, closing it again has no effect.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		String checksum = toHex(digest.digest());
+		info = new BlobInfo(commit(checksum, length), length, checksum);
+	}
+
+	protected boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * @return true if the stream was closed and the blob completed
+	 */
+	public boolean isCompleted() {
+		return info != null;
+	}
+
+	/**
+	 * @return the number of bytes written so far
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return key, length and checksum of the blob
+	 * @throws IllegalStateException
+	 *             if the stream was not closed successfully
+	 */
+	public BlobInfo getInfo() {
+		if (info == null) {
+			throw new IllegalStateException("Blob not completed");
+		}
+		return info;
+	}
+
+	static String toHex(byte[] bytes) {
+		char[] hex = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Store of binary contents, e.g. of attachments, outside the database. A blob
+ * is written as a stream through a {@link BlobOutputStream} and identified by
+ * the key it receives when the stream is closed. Blobs are never changed once
+ * written.
+ * </p>
+ * <p>
+ * A store may give blobs with the same contents the same key, so a blob can be
+ * shared by several owners, e.g. attachments copied between case file items.
+ * Owners therefore do not delete blobs they no longer need, blobs nobody
+ * refers to are collected with {@link #keys()} and
+ * {@link #deleteIfIdle(String, long)}.
+ * </p>
+ * <p>
+ * The store used by the services is configured in {@link BlobStores}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public interface BlobStore {
+
+	/**
+	 * @return a stream to write a new blob to, its key is assigned when it is
+	 *         closed
+	 * @throws IOException
+	 *             if the blob cannot be created
+	 */
+	public BlobOutputStream create() throws IOException;
+
+	/**
+	 * @param key
+	 *            the key of the blob
+	 * @return a stream of the contents, to be closed by the caller
+	 * @throws IOException
+	 *             if the blob does not exist or cannot be read
+	 */
+	public InputStream open(String key) throws IOException;
+
+	/**
+	 * Writes a part of a blob to the target, e.g. for a range request. This
+	 * implementation copies through a buffer of {@link BlobStores#BUFFER_BYTES},
+	 * stores backed by files transfer without copying into the heap.
+	 * 
+	 * @param key
+	 *            the key of the blob
+	 * @param offset
+	 *            offset of the first byte
+	 * @param count
+	 *            number of bytes
+	 * @param target
+	 *            receives the bytes, is not closed
+	 * @throws IOException
+	 *             if the blob cannot be read, is too short or the target cannot
+	 *             be written
+	 */
+	public default void transferTo(String key, long offset, long count, WritableByteChannel target)
+			throws IOException {
+		try (InputStream in = open(key)) {
+			for (long skipped = 0; skipped < offset;) {
+				long n = in.skip(offset - skipped);
+				if (n <= 0) {
+					if (in.read() < 0) {
+						throw new EOFException("Blob " + key + " is shorter than " + offset + " bytes");
+					}
+					n = 1;
+				}
+				skipped += n;
+			}
+			byte[] buffer = new byte[BlobStores.BUFFER_BYTES];
+			for (long remaining = count; remaining > 0;) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read < 0) {
+					throw new EOFException("Blob " + key + " is shorter than " + (offset + count) + " bytes");
+				}
+				ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+				while (chunk.hasRemaining()) {
+					target.write(chunk);
+				}
+				remaining -= read;
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 *            the key of the blob
+	 * @return the length of the blob in bytes
+	 * @throws IOException
+	 *             if the blob does not exist or cannot be read
+	 */
+	public long length(String key) throws IOException;
+
+	/**
+	 * @param key
+	 *            the key of the blob
+	 * @return true if the blob existed
+	 * @throws IOException
+	 *             if the blob cannot be deleted
+	 */
+	public boolean delete(String key) throws IOException;
+
+	/**
+	 * @return the keys of all completed blobs, the stream is to be closed by the
+	 *         caller
+	 * @throws IOException
+	 *             if the store cannot be listed
+	 */
+	public Stream<String> keys() throws IOException;
+
+	/**
+	 * Deletes the blob unless it was written within the given time. Writing
+	 * contents a blob already has, which completes with the key of that blob,
+	 * counts as writing it, so a blob that has just been handed out again
+	 * survives.
+	 * 
+	 * @param key
+	 *            the key of the blob
+	 * @param idleMillis
+	 *            minimum time since the blob was last written
+	 * @return true if the blob was deleted
+	 * @throws IOException
+	 *             if the blob cannot be deleted
+	 */
+	public boolean deleteIfIdle(String key, long idleMillis) throws IOException;
+
+	/**
+	 * Counts as writing the blob, so {@link #deleteIfIdle(String, long)} keeps
+	 * it for the idle time, e.g. before a new owner refers to it.
+	 * 
+	 * @param key
+	 *            the key of the blob
+	 * @return false if the blob does not exist
+	 * @throws IOException
+	 *             if the blob cannot be touched
+	 */
+	public boolean retain(String key) throws IOException;
+
+}
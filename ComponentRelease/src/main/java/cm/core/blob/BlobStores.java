@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+import java.nio.file.Paths;
+
+/**
+ * <p>
+ * Holds the {@link BlobStore} used for attachment contents. By default this is
+ * a {@link FileSystemBlobStore} in the directory given by the system property
+ * <code>cm.core.blobs.dir</code> or, inside the server,
+ * <code>${catalina.base}/data/cm-blobs</code>. If neither is available or
+ * <code>cm.core.blobs.enabled</code> is false, there is no store and contents
+ * are kept in the database column of the attachments as before.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class BlobStores {
+
+	/**
+	 * Size of the buffers contents are streamed through, can be set via system
+	 * property <code>cm.core.blobs.bufferBytes</code>.
+	 */
+	public static final int BUFFER_BYTES = Math.max(4096, Integer.getInteger("cm.core.blobs.bufferBytes", 64 * 1024));
+
+	private static volatile BlobStore store = createDefault();
+
+	private BlobStores() {
+
+	}
+
+	/**
+	 * @return the store, null if contents are kept in the database
+	 */
+	public static BlobStore getDefault() {
+		return store;
+	}
+
+	/**
+	 * Replaces the store, e.g. by another implementation. Blobs already written
+	 * are not moved.
+	 * 
+	 * @param blobStore
+	 *            the store, null to keep new contents in the database
+	 */
+	public static void setDefault(BlobStore blobStore) {
+		store = blobStore;
+	}
+
+	private static BlobStore createDefault() {
+		if (!Boolean.parseBoolean(System.getProperty("cm.core.blobs.enabled", "true"))) {
+			return null;
+		}
+		String directory = System.getProperty("cm.core.blobs.dir");
+		if (directory != null) {
+			return new FileSystemBlobStore(Paths.get(directory));
+		}
+		String base = System.getProperty("catalina.base");
+		return base != null ? new FileSystemBlobStore(Paths.get(base, "data", "cm-blobs")) : null;
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+/**
+ * <p>
+ * Single byte range of an HTTP <code>Range</code> header, e.g.
+ * <code>bytes=0-499</code>, <code>bytes=500-</code> or
+ * <code>bytes=-500</code>, resolved against the length of the contents.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class ByteRange {
+
+	private static final String UNIT = "bytes=";
+
+	private final long first;
+	private final long last;
+
+	private ByteRange(long first, long last) {
+		this.first = first;
+		this.last = last;
+	}
+
+	/**
+	 * @param header
+	 *            value of the <code>Range</code> header, may be null
+	 * @param length
+	 *            length of the contents in bytes
+	 * @return the range, the empty range if it cannot be satisfied, null if the
+	 *         whole contents are to be sent, i.e. without header, with a
+	 *         malformed header or with several ranges
+	 */
+	public static ByteRange parse(String header, long length) {
+		if (header == null || !header.startsWith(UNIT) || header.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = header.substring(UNIT.length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			String start = spec.substring(0, dash).trim();
+			String end = spec.substring(dash + 1).trim();
+			// only digits, so e.g. a negative suffix like bytes=--5 is malformed
+			if (!isDigits(start) || !isDigits(end)) {
+				return null;
+			}
+			if (start.isEmpty()) {
+				long suffix = Long.parseLong(end);
+				if (suffix <= 0 || length == 0) {
+					return unsatisfiable();
+				}
+				return new ByteRange(Math.max(0, length - suffix), length - 1);
+			}
+			long first = Long.parseLong(start);
+			long last = end.isEmpty() ? length - 1 : Math.min(Long.parseLong(end), length - 1);
+			if (first < 0 || (!end.isEmpty() && Long.parseLong(end) < first)) {
+				return null;
+			}
+			if (first >= length) {
+				return unsatisfiable();
+			}
+			return new ByteRange(first, last);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static boolean isDigits(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static ByteRange unsatisfiable() {
+		return new ByteRange(0, -1);
+	}
+
+	public boolean isSatisfiable() {
+		return last >= first;
+	}
+
+	/**
+	 * @return offset of the first byte
+	 */
+	public long getFirst() {
+		return first;
+	}
+
+	/**
+	 * @return offset of the last byte, inclusive
+	 */
+	public long getLast() {
+		return last;
+	}
+
+	/**
+	 * @return number of bytes in the range
+	 */
+	public long getLength() {
+		return last - first + 1;
+	}
+
+	/**
+	 * @return value of the <code>Content-Range</code> header of the response
+	 */
+	public String toContentRange(long length) {
+		return isSatisfiable() ? "bytes " + first + "-" + last + "/" + length : "bytes */" + length;
+	}
+
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.blob;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * {@link BlobStore} keeping every blob in a file of its own. A blob is written
+ * to a temporary file in <code>tmp</code> and moved to
+ * <code>&lt;first two characters of the key&gt;/&lt;key&gt;</code> when it is
+ * completed, so readers never see partial blobs.
+ * </p>
+ * <p>
+ * Blobs are content addressed, the key is the SHA-256 checksum of the
+ * contents. A completed blob whose contents are already stored is dropped and
+ * the existing file is touched instead, so equal contents are kept once.
+ * Completing and deleting blobs are serialized, a blob handed out again is
+ * never deleted under the new owner, see {@link #deleteIfIdle(String, long)}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public class FileSystemBlobStore implements BlobStore {
+
+	private static final Logger LOGGER = Logger.getLogger(FileSystemBlobStore.class.getName());
+
+	private static final Pattern KEY = Pattern.compile("[0-9a-f]{32,64}");
+
+	private final Path directory;
+
+	private final Object lock = new Object();
+
+	public FileSystemBlobStore(Path directory) {
+		this.directory = directory;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	@Override
+	public BlobOutputStream create() throws IOException {
+		Path temporary = directory.resolve("tmp");
+		Files.createDirectories(temporary);
+		Path file = Files.createTempFile(temporary, "blob", ".part");
+		return new FileBlobOutputStream(file, Files.newOutputStream(file));
+	}
+
+	@Override
+	public InputStream open(String key) throws IOException {
+		return Files.newInputStream(pathOf(key));
+	}
+
+	/**
+	 * Transfers with {@link FileChannel#transferTo(long, long, WritableByteChannel)},
+	 * which lets the operating system copy the bytes where the target allows it.
+	 */
+	@Override
+	public void transferTo(String key, long offset, long count, WritableByteChannel target) throws IOException {
+		try (FileChannel channel = FileChannel.open(pathOf(key), StandardOpenOption.READ)) {
+			long end = offset + count;
+			if (end > channel.size()) {
+				throw new EOFException("Blob " + key + " is shorter than " + end + " bytes");
+			}
+			for (long position = offset; position < end;) {
+				position += channel.transferTo(position, end - position, target);
+			}
+		}
+	}
+
+	@Override
+	public long length(String key) throws IOException {
+		return Files.size(pathOf(key));
+	}
+
+	@Override
+	public boolean delete(String key) throws IOException {
+		synchronized (lock) {
+			return Files.deleteIfExists(pathOf(key));
+		}
+	}
+
+	@Override
+	public Stream<String> keys() throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return Stream.empty();
+		}
+		return Files
+				.find(directory, 2,
+						(path, attributes) -> attributes.isRegularFile() && path.getNameCount() == directory.getNameCount() + 2)
+				.map(path -> path.getFileName().toString()).filter(name -> KEY.matcher(name).matches());
+	}
+
+	@Override
+	public boolean deleteIfIdle(String key, long idleMillis) throws IOException {
+		Path path = pathOf(key);
+		synchronized (lock) {
+			try {
+				if (System.currentTimeMillis() - Files.getLastModifiedTime(path).toMillis() < idleMillis) {
+					return false;
+				}
+				return Files.deleteIfExists(path);
+			} catch (NoSuchFileException e) {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	public boolean retain(String key) throws IOException {
+		Path path = pathOf(key);
+		synchronized (lock) {
+			try {
+				Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+				return true;
+			} catch (NoSuchFileException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @return path of the file of the blob
+	 * @throws IllegalArgumentException
+	 *             if the key is not a key of this store
+	 */
+	protected Path pathOf(String key) {
+		if (key == null || !KEY.matcher(key).matches()) {
+			throw new IllegalArgumentException("Invalid blob key: " + key);
+		}
+		return directory.resolve(key.substring(0, 2)).resolve(key);
+	}
+
+	private final class FileBlobOutputStream extends BlobOutputStream {
+		private final Path file;
+		private final OutputStream out;
+
+		private FileBlobOutputStream(Path file, OutputStream out) {
+			this.file = file;
+			this.out = out;
+		}
+
+		@Override
+		protected void writeContent(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		protected String commit(String checksum, long length) throws IOException {
+			try {
+				out.close();
+				Path target = pathOf(checksum);
+				synchronized (lock) {
+					if (Files.exists(target)) {
+						deleteTemporary();
+						Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+						return checksum;
+					}
+					Files.createDirectories(target.getParent());
+					try {
+						Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+					} catch (AtomicMoveNotSupportedException e) {
+						Files.move(file, target);
+					}
+				}
+				return checksum;
+			} catch (IOException | RuntimeException e) {
+				deleteTemporary();
+				throw e;
+			}
+		}
+
+		@Override
+		public void abort() {
+			if (isClosed()) {
+				return;
+			}
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOGGER.log(Level.FINE, "Could not close aborted blob " + file, e);
+			}
+			deleteTemporary();
+		}
+
+		private void deleteTemporary() {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not delete temporary blob " + file, e);
+			}
+		}
+	}
+
+}
@@ -27,9 +27,15 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
+import javax.persistence.Transient;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import cm.core.CaseModel;
 import cm.core.CaseElement;
@@ -41,6 +47,8 @@ import cm.core.CaseElement;
  *
  */
 @Entity
+@NamedEntityGraph(name = "CaseFile.view", attributeNodes = @NamedAttributeNode(value = "caseFileItems", subgraph = "item"), subgraphs = @NamedSubgraph(name = "item", attributeNodes = {
+		@NamedAttributeNode("properties"), @NamedAttributeNode("attachments"), @NamedAttributeNode("children") }))
 public class CaseFile {
 	
 	@Id
@@ -48,9 +56,16 @@ public class CaseFile {
 	private long id;
 	private String cmId;
 	@OneToMany(cascade=CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<CaseFileItem> caseFileItems;
 	@ManyToOne
 	protected CaseModel caseRef;
+	@JohnzonIgnore
+	@Transient
+	private List<CaseFileItem> attachedItems;
+	@JohnzonIgnore
+	@Transient
+	private int attachedItemsSize = -1;
 
 	public CaseFile() {
 
@@ -81,6 +96,7 @@ public class CaseFile {
 	}
 
 	public List<CaseFileItem> getCaseFileItems() {
+		attachItems();
 		return caseFileItems;
 	}
 
@@ -107,7 +123,10 @@ public class CaseFile {
 		for(CaseFileItem currentCaseFileItem : caseFileItems) {
 			if(caseFileItemIds.add(currentCaseFileItem.getCmId())) {
 				this.caseFileItems.add(currentCaseFileItem);
-
+				if (this.caseRef != null) {
+					currentCaseFileItem.attachCase(this.caseRef);
+					this.caseRef.fireCaseFileItemAdded(null, currentCaseFileItem);
+				}
 			} else {
 				// TODO throw duplicate error
 			}
@@ -120,6 +139,7 @@ public class CaseFile {
 	 * @return		the CaseFileItem specified by its cmId, or null if none could be found by that cmId
 	 */
 	public CaseFileItem getCaseFileItemById(String cmId) {
+		attachItems();
 		for(CaseFileItem caseFileItem : this.caseFileItems) {
 			if(caseFileItem.getCmId().equals(cmId)) {
 				return caseFileItem;
@@ -131,7 +151,10 @@ public class CaseFile {
 	public void deleteCaseFileItemById(String id) {
 		for(int i = 0; i < this.caseFileItems.size(); i++) {
 			if(this.caseFileItems.get(i).getCmId().equals(id)) {
-				this.caseFileItems.remove(i);
+				CaseFileItem removed = this.caseFileItems.remove(i);
+				if (this.caseRef != null) {
+					this.caseRef.fireCaseFileItemRemoved(null, removed);
+				}
 				break;
 			}
 		}
@@ -143,5 +166,27 @@ public class CaseFile {
 
 	public void setCaseRef(CaseModel caseRef) {
 		this.caseRef = caseRef;
+		this.attachedItems = null;
+	}
+
+	/**
+	 * <p>
+	 * Attaches the CaseModel of this CaseFile to its items, see
+	 * {@link CaseFileItem#attachCase(CaseModel)}. Done once per list of items and
+	 * whenever its size changes, e.g. after loading.
+	 * </p>
+	 */
+	private void attachItems() {
+		int size = this.caseFileItems == null ? 0 : this.caseFileItems.size();
+		if (this.caseRef == null || (this.caseFileItems == this.attachedItems && size == this.attachedItemsSize)) {
+			return;
+		}
+		if (this.caseFileItems != null) {
+			for (CaseFileItem item : this.caseFileItems) {
+				item.attachCase(this.caseRef);
+			}
+		}
+		this.attachedItems = this.caseFileItems;
+		this.attachedItemsSize = size;
 	}
 }// end CaseFile
\ No newline at end of file
@@ -17,9 +17,9 @@
 package cm.core.data;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
@@ -30,16 +30,21 @@ import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 import javax.persistence.OneToMany;
 import javax.persistence.Transient;
+import javax.persistence.Version;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.PropagationEngine;
+import cm.core.TransitionListeners;
 import cm.core.interfaces.ICaseFileItemObservable;
 import cm.core.interfaces.ICaseFileItemObserver;
 import cm.core.sentries.CaseFileItemOnPart;
-import cm.core.states.CaseFileItemAvailable;
-import cm.core.states.CaseFileItemDiscarded;
-import cm.core.states.CaseFileItemInitial;
+import cm.core.sentries.OnPartIndex;
+import cm.core.states.CaseFileItemContext;
 import cm.core.states.CaseFileItemTransition;
 import cm.core.states.ICaseFileItemState;
 
@@ -63,15 +68,20 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private long id;
+	@Version
+	private long version;
 	private String cmId;
 	private String multiplicity;
 	private String name;
 	private String state;
 	@OneToMany(cascade = CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<CaseFileItem> children;
 	@OneToMany(cascade = CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<CaseFileItemAttachment> attachments;
 	@OneToMany(cascade = CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<SimpleProperty> properties;
 	// private CaseFileItem parent;
 	// private CaseFileItem sourceRef;
@@ -79,11 +89,42 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	// TODO unnecessary?!
 	@JohnzonIgnore
 	@OneToMany
+	@BatchFetch(BatchFetchType.IN)
 	private List<CaseFileItemOnPart> observers;
 
 	@JohnzonIgnore
 	@Transient
-	private ICaseFileItemState contextState;
+	private CaseFileItemContext contextState;
+	@JohnzonIgnore
+	@Transient
+	private OnPartIndex<CaseFileItemOnPart> observerIndex;
+	@JohnzonIgnore
+	@Transient
+	private String resolvedState;
+	@JohnzonIgnore
+	@Transient
+	private CaseFileItemStates resolvedStateValue;
+	@JohnzonIgnore
+	@Transient
+	private long modificationVersion;
+	@JohnzonIgnore
+	@Transient
+	private List<SimpleProperty> attachedProperties;
+	@JohnzonIgnore
+	@Transient
+	private int attachedPropertiesSize = -1;
+	@JohnzonIgnore
+	@Transient
+	private Map<String, SimpleProperty> propertyIndex;
+	@JohnzonIgnore
+	@Transient
+	private CaseModel caseRef;
+	@JohnzonIgnore
+	@Transient
+	private List<CaseFileItem> attachedChildren;
+	@JohnzonIgnore
+	@Transient
+	private int attachedChildrenSize = -1;
 
 	public CaseFileItem() {
 
@@ -115,6 +156,18 @@ public class CaseFileItem implements ICaseFileItemObservable {
 		this.id = id;
 	}
 
+	/**
+	 * @return the version used for optimistic locking, incremented by each
+	 *         committed change
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
 	public String getCmId() {
 		return cmId;
 	}
@@ -142,6 +195,7 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	}
 
 	public List<CaseFileItem> getChildren() {
+		attachChildren();
 		return children;
 	}
 
@@ -152,20 +206,53 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	public void addChild(CaseFileItem child) {
 		if (this.children == null) {
 			this.children = new ArrayList<CaseFileItem>();
-			this.children.add(child);
-		} else if (this.children != null) {
-			if (!this.children.contains(child)) {
-				this.children.add(child);
-			}
+		} else if (this.children.contains(child)) {
+			return;
+		}
+		this.children.add(child);
+		if (this.caseRef != null) {
+			child.attachCase(this.caseRef);
+			this.caseRef.fireCaseFileItemAdded(this, child);
 		}
-
 	}
 
 	public void removeChild(CaseFileItem child) {
 		int idx = this.children.indexOf(child);
 		if (idx > -1) {
 			this.children.remove(idx);
+			if (this.caseRef != null) {
+				this.caseRef.fireCaseFileItemRemoved(this, child);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Sets the {@link CaseModel} whose {@link CaseFile} contains this
+	 * CaseFileItem. Its listeners are notified of children added to or removed
+	 * from this item and its transitions are journaled for it. Set by the CaseFile and passed on to the children when they
+	 * are accessed. Not persisted.
+	 * </p>
+	 * 
+	 * @param cm the CaseModel, may be null
+	 */
+	public void attachCase(CaseModel cm) {
+		this.caseRef = cm;
+		this.attachedChildren = null;
+	}
+
+	private void attachChildren() {
+		int size = this.children == null ? 0 : this.children.size();
+		if (this.caseRef == null || (this.children == this.attachedChildren && size == this.attachedChildrenSize)) {
+			return;
+		}
+		if (this.children != null) {
+			for (CaseFileItem child : this.children) {
+				child.attachCase(this.caseRef);
+			}
 		}
+		this.attachedChildren = this.children;
+		this.attachedChildrenSize = size;
 	}
 
 	public List<CaseFileItemOnPart> getObservers() {
@@ -178,9 +265,10 @@ public class CaseFileItem implements ICaseFileItemObservable {
 
 	/**
 	 * <p>
-	 * Sets the state of a CaseFileItem using a transition. Notifies any
-	 * {@link CaseFileItemOnPart}s observing the CaseFileItem of the specified
-	 * transition.
+	 * Sets the state of a CaseFileItem using a transition. Reports the
+	 * transition to the {@link TransitionListeners} of the thread, notifies the
+	 * {@link CaseFileItemOnPart}s listening for the specified transition and
+	 * resets those satisfied by the previous transition.
 	 * </p>
 	 * <p>
 	 * See CMMN 1.1 specification section 8.3 for more information.
@@ -192,11 +280,19 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	 *                   {@link CaseFileItemTransition}
 	 */
 	public void setState(String state, String transition) {
+		String oldState = this.state;
 		this.state = state;
+		TransitionListeners.caseFileItemTransitioned(this.caseRef, this, oldState, state, transition);
 		if (this.observers != null) {
-			for (ICaseFileItemObserver o : this.observers) {
-				o.updateCaseFileItemObserver(transition);
-			}
+			PropagationEngine.run(() -> {
+				OnPartIndex<CaseFileItemOnPart> index = getObserverIndex();
+				for (ICaseFileItemObserver o : index.getOnPartsToReset(this.observers, transition)) {
+					o.updateCaseFileItemObserver(transition);
+				}
+				for (ICaseFileItemObserver o : index.getOnParts(this.observers, transition)) {
+					o.updateCaseFileItemObserver(transition);
+				}
+			});
 		}
 	}
 
@@ -225,45 +321,97 @@ public class CaseFileItem implements ICaseFileItemObservable {
 				this.attachments.add(attachment);
 			}
 		}
-
+		markModified();
 	}
 
 	public void removeAttachment(CaseFileItemAttachment attachment) {
 		for (int i = 0; i < this.attachments.size() + 1; i++) {
 			if (this.attachments.get(i).getId() == attachment.getId()) {
 				this.attachments.remove(i);
+				markModified();
 				break;
 			}
 		}
 	}
 
 	public List<SimpleProperty> getProperties() {
+		attachProperties();
 		return properties;
 	}
 
 	public void setProperties(List<SimpleProperty> properties) {
 		this.properties = properties;
+		attachProperties();
 	}
 
 	/**
 	 * <p>
-	 * Returns a property based on its name. A {@link SimpleProperty} needs to be
-	 * cast from String to its original type.
+	 * Returns the modification version of this CaseFileItem. It is increased
+	 * whenever the value of a contained {@link SimpleProperty} changes or
+	 * properties or attachments are added or removed. Used to reuse evaluations
+	 * of {@link cm.core.sentries.IfPart}s and {@link cm.core.rules.Rule}s as long
+	 * as the CaseFileItem is unchanged. The version is not persisted.
 	 * </p>
 	 * 
-	 * @param name the name of the property to look for
-	 * @return the SimpleProperty
+	 * @return the current modification version
 	 */
-	public SimpleProperty getProperty(String name) {
-		SimpleProperty property = null;
-		if (this.properties != null) {
-			for (SimpleProperty prop : this.properties) {
-				if (prop.getName().equals(name)) {
-					property = prop;
+	@JohnzonIgnore
+	public long getModificationVersion() {
+		attachProperties();
+		return this.modificationVersion;
+	}
+
+	/**
+	 * Increases the modification version, see {@link #getModificationVersion()}.
+	 */
+	public void markModified() {
+		this.modificationVersion++;
+	}
+
+	/**
+	 * <p>
+	 * Sets this CaseFileItem as owner of its properties and indexes them by name.
+	 * Done once per list of properties and whenever its size changes, e.g. after
+	 * loading, adding or removing properties.
+	 * </p>
+	 */
+	private void attachProperties() {
+		int size = this.properties == null ? 0 : this.properties.size();
+		if (this.properties != this.attachedProperties || size != this.attachedPropertiesSize) {
+			Map<String, SimpleProperty> index = new HashMap<String, SimpleProperty>();
+			if (this.properties != null) {
+				for (SimpleProperty prop : this.properties) {
+					prop.setOwner(this);
+					index.put(prop.getName(), prop);
 				}
 			}
+			this.propertyIndex = index;
+			this.attachedProperties = this.properties;
+			this.attachedPropertiesSize = size;
+			markModified();
 		}
-		return property;
+	}
+
+	/**
+	 * Rebuilds the index of properties on next access, e.g. after a property was
+	 * renamed.
+	 */
+	void propertiesChanged() {
+		this.attachedProperties = null;
+	}
+
+	/**
+	 * <p>
+	 * Returns a property based on its name. A {@link SimpleProperty} offers its
+	 * value typed, e.g. {@link SimpleProperty#getBooleanValue()}.
+	 * </p>
+	 * 
+	 * @param name the name of the property to look for
+	 * @return the SimpleProperty, or <code>null</code> if not found
+	 */
+	public SimpleProperty getProperty(String name) {
+		attachProperties();
+		return this.propertyIndex.get(name);
 	}
 
 	/**
@@ -281,28 +429,40 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	 * @param properties one ore more SimplePropertys
 	 */
 	public void addProperty(SimpleProperty... properties) {
-		Set<String> propIds = new HashSet<String>();
 		if (this.properties == null) {
 			this.properties = new ArrayList<SimpleProperty>();
-		} else if (this.properties.size() > 0) {
-			for (SimpleProperty prop : this.properties) {
-				propIds.add(prop.getName());
-			}
 		}
+		attachProperties();
 		for (SimpleProperty property : properties) {
-			if (propIds.add(property.getName())) {
+			if (!this.propertyIndex.containsKey(property.getName())) {
 				this.properties.add(property);
+				this.propertyIndex.put(property.getName(), property);
+				property.setOwner(this);
 			} else {
 				// TODO throw duplicate error
 			}
 		}
-
+		this.attachedPropertiesSize = this.properties.size();
+		markModified();
 	}
 
+	/**
+	 * <p>
+	 * Removes the property with the name of the given {@link SimpleProperty}.
+	 * </p>
+	 * 
+	 * @param property the property to remove
+	 */
 	public void removeProperty(SimpleProperty property) {
 		if (this.properties != null) {
-			this.removeProperty(property);
-//			this.properties.remove(property.getName());
+			SimpleProperty found = getProperty(property.getName());
+			if (found != null) {
+				this.properties.remove(found);
+				this.propertyIndex.remove(found.getName());
+				this.attachedPropertiesSize = this.properties.size();
+				found.setOwner(null);
+				markModified();
+			}
 		}
 	}
 
@@ -336,20 +496,32 @@ public class CaseFileItem implements ICaseFileItemObservable {
 		return contextState;
 	}
 
-	public void setContextState(ICaseFileItemState contextState) {
-		this.contextState = contextState;
-	}
-
 	private void loadContextState() {
-		if (state.equals(CaseFileItemStates.INITIAL.toString())) {
-			setContextState(new CaseFileItemInitial(this));
+		if (this.contextState == null || this.contextState.getItem() != this) {
+			this.contextState = new CaseFileItemContext(this);
 		}
-		if (state.equals(CaseFileItemStates.AVAILABLE.toString())) {
-			setContextState(new CaseFileItemAvailable(this));
+	}
+
+	/**
+	 * <p>
+	 * Returns the current state as {@link CaseFileItemStates} constant. The
+	 * persisted state remains a readable string, the constant is resolved once
+	 * per change of state and cached.
+	 * </p>
+	 * 
+	 * @return current state as constant, or <code>null</code> if no state is set
+	 */
+	@JohnzonIgnore
+	public CaseFileItemStates getCaseFileItemState() {
+		String current = this.state;
+		if (current == null) {
+			return null;
 		}
-		if (state.equals(CaseFileItemStates.DISCARDED.toString())) {
-			setContextState(new CaseFileItemDiscarded(this));
+		if (current != this.resolvedState || this.resolvedStateValue == null) {
+			this.resolvedStateValue = CaseFileItemStates.valueOf(current);
+			this.resolvedState = current;
 		}
+		return this.resolvedStateValue;
 	}
 
 	/**
@@ -360,7 +532,7 @@ public class CaseFileItem implements ICaseFileItemObservable {
 		if (this.observers == null) {
 			this.observers = new ArrayList<CaseFileItemOnPart>();
 		}
-		this.observers.add(o);
+		getObserverIndex().register(this.observers, o);
 	}
 
 	/**
@@ -368,9 +540,15 @@ public class CaseFileItem implements ICaseFileItemObservable {
 	 * @param o
 	 */
 	public void unregisterCaseFileItemObserver(CaseFileItemOnPart o) {
-		int idx = this.observers.indexOf(o);
-		if (idx > -1) {
-			this.observers.remove(idx);
+		if (this.observers != null) {
+			getObserverIndex().unregister(this.observers, o);
+		}
+	}
+
+	private OnPartIndex<CaseFileItemOnPart> getObserverIndex() {
+		if (this.observerIndex == null) {
+			this.observerIndex = new OnPartIndex<CaseFileItemOnPart>();
 		}
+		return this.observerIndex;
 	}
 }
\ No newline at end of file
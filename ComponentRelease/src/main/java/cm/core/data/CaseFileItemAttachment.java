@@ -24,21 +24,30 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
 
 import cm.core.CaseWorker;
+import cm.core.blob.AttachmentContents;
+import cm.core.blob.BlobStore;
 /**
- * <p>Class representing attachments of {@link CaseFileItem}s in CMMN. Can store either a reference link to a file or the file as a byte array.</p>
+ * <p>Class representing attachments of {@link CaseFileItem}s in CMMN. Can store either a reference link to a file or the file contents.</p>
+ * <p>Contents are kept in a {@link BlobStore} under the blob key, with length and checksum kept here. Attachments without blob key keep their contents as a byte array (legacy). See {@link AttachmentContents}.</p>
+ * <p>Attachments with the same contents share one blob, a blob is referenced by all attachments with its key.</p>
  * <p>Not specified in the CMMN 1.1 specification.</p>
  * 
  * @author André Zensen
  *
  */
 @Entity
+@Table(indexes = @Index(name = "idx_attachment_blob", columnList = "blobKey"))
+@NamedQuery(name = "CaseFileItemAttachment.findReferencedBlobKeys", query = "SELECT DISTINCT a.blobKey FROM CaseFileItemAttachment a WHERE a.blobKey IN :keys")
 public class CaseFileItemAttachment {
 
 	@Id
@@ -55,6 +64,10 @@ public class CaseFileItemAttachment {
 	@Basic(fetch=FetchType.LAZY)
 	@Lob
     private byte[] data;
+	@JohnzonIgnore
+	private String blobKey;
+	private String checksum;
+	private long contentLength;
 		
 	public CaseFileItemAttachment() {
 		super();
@@ -127,5 +140,38 @@ public class CaseFileItemAttachment {
 
 	public void setData(byte[] data) {
 		this.data = data;
+	}
+
+	/**
+	 * @return key of the contents in the {@link BlobStore}, null if they are kept as byte array
+	 */
+	public String getBlobKey() {
+		return blobKey;
+	}
+
+	public void setBlobKey(String blobKey) {
+		this.blobKey = blobKey;
+	}
+
+	/**
+	 * @return SHA-256 checksum of the contents as hex string
+	 */
+	public String getChecksum() {
+		return checksum;
+	}
+
+	public void setChecksum(String checksum) {
+		this.checksum = checksum;
+	}
+
+	/**
+	 * @return length of the contents in bytes
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public void setContentLength(long contentLength) {
+		this.contentLength = contentLength;
 	}	
 }
@@ -16,15 +16,28 @@
  */
 package cm.core.data;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.function.Function;
+
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+
+import org.apache.johnzon.mapper.JohnzonIgnore;
+
 /**
  * <p>Class representing a single (primitive) property of a {@link CaseFileItem} in CMMN. Called Property in the specification. </p>
  * <p>Deviates from the specification. See CMMN 1.1 specification section 5.1.4.1 for more information.</p>
+ * <p>The value is persisted as String. Typed values, e.g. {@link #getBooleanValue()}, are parsed once per value and cached.
+ * The {@link CaseFileItemPropertyType} is set by the typed constructors and setters.</p>
  * 
  * @author André Zensen
  *
@@ -35,15 +48,42 @@ public class SimpleProperty {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private long id;
+	@Version
+	private long version;
 	private String name;
 	@Enumerated(EnumType.STRING)
 	private CaseFileItemPropertyType type;
 	private String value;
+	@JohnzonIgnore
+	@Transient
+	private CaseFileItem owner;
+	@JohnzonIgnore
+	@Transient
+	private Object typedValue;
+	@JohnzonIgnore
+	@Transient
+	private String typedValueOf;
 	
 	public SimpleProperty(String name, String value) {
 		this.name = name;
 		this.value = value;
 	}
+	public SimpleProperty(String name, boolean value) {
+		this.name = name;
+		setBooleanValue(value);
+	}
+	public SimpleProperty(String name, long value) {
+		this.name = name;
+		setLongValue(value);
+	}
+	public SimpleProperty(String name, BigDecimal value) {
+		this.name = name;
+		setDecimalValue(value);
+	}
+	public SimpleProperty(String name, LocalDate value) {
+		this.name = name;
+		setDateValue(value);
+	}
 	public SimpleProperty() {
 		
 	}
@@ -53,11 +93,20 @@ public class SimpleProperty {
 	public void setId(long id) {
 		this.id = id;
 	}
+	public long getVersion() {
+		return version;
+	}
+	public void setVersion(long version) {
+		this.version = version;
+	}
 	public String getName() {
 		return name;
 	}
 	public void setName(String name) {
 		this.name = name;
+		if (this.owner != null) {
+			this.owner.propertiesChanged();
+		}
 	}
 	public CaseFileItemPropertyType getType() {
 		return type;
@@ -69,8 +118,122 @@ public class SimpleProperty {
 		return this.value;
 	};
 	public void setValue(String value) {
+		if (this.owner != null && (this.value == null ? value != null : !this.value.equals(value))) {
+			this.owner.markModified();
+		}
 		this.value = value;
 	};
+	/**
+	 * Sets the {@link CaseFileItem} containing this property. Its modification
+	 * version is increased when the value changes.
+	 * 
+	 * @param owner the containing CaseFileItem
+	 */
+	void setOwner(CaseFileItem owner) {
+		this.owner = owner;
+	}
+	/**
+	 * Returns the value parsed to the given type. The result is cached until the value changes.
+	 * 
+	 * @param valueType the type to parse to
+	 * @param parser parses the String value
+	 * @return the parsed value, or <code>null</code> if no value is set
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T getTypedValue(Class<T> valueType, Function<String, T> parser) {
+		String current = this.value;
+		if (current == null) {
+			return null;
+		}
+		if (current != this.typedValueOf || !valueType.isInstance(this.typedValue)) {
+			this.typedValue = parser.apply(current);
+			this.typedValueOf = current;
+		}
+		return (T) this.typedValue;
+	}
+	private void setTypedValue(CaseFileItemPropertyType type, Object typed, String value) {
+		if (this.type == null) {
+			this.type = type;
+		}
+		setValue(value);
+		this.typedValue = typed;
+		this.typedValueOf = value;
+	}
+	/**
+	 * Returns the value as type according to {@link #getType()}. Values without type or of type string are returned as String.
+	 * 
+	 * @return the typed value, or <code>null</code> if no value is set
+	 */
+	@JohnzonIgnore
+	public Object getTypedValue() {
+		if (this.type == null) {
+			return this.value;
+		}
+		switch (this.type) {
+		case bool:
+			return this.value == null ? null : getBooleanValue();
+		case integer:
+			return getLongValue();
+		case decimal:
+			return getDecimalValue();
+		case date:
+			return getDateValue();
+		case dateTime:
+			return getTypedValue(LocalDateTime.class, LocalDateTime::parse);
+		case time:
+			return getTypedValue(LocalTime.class, LocalTime::parse);
+		default:
+			return this.value;
+		}
+	}
+	/**
+	 * @return <code>true</code> if the value is "true" ignoring case, otherwise <code>false</code>
+	 */
+	@JohnzonIgnore
+	public boolean getBooleanValue() {
+		Boolean typed = getTypedValue(Boolean.class, Boolean::valueOf);
+		return typed != null && typed.booleanValue();
+	}
+	@JohnzonIgnore
+	public void setBooleanValue(boolean value) {
+		setTypedValue(CaseFileItemPropertyType.bool, Boolean.valueOf(value), Boolean.toString(value));
+	}
+	/**
+	 * @return the value as Long, or <code>null</code> if no value is set
+	 * @throws NumberFormatException if the value is not an integer
+	 */
+	@JohnzonIgnore
+	public Long getLongValue() {
+		return getTypedValue(Long.class, Long::valueOf);
+	}
+	@JohnzonIgnore
+	public void setLongValue(long value) {
+		setTypedValue(CaseFileItemPropertyType.integer, Long.valueOf(value), Long.toString(value));
+	}
+	/**
+	 * @return the value as BigDecimal, or <code>null</code> if no value is set
+	 * @throws NumberFormatException if the value is not a decimal
+	 */
+	@JohnzonIgnore
+	public BigDecimal getDecimalValue() {
+		return getTypedValue(BigDecimal.class, BigDecimal::new);
+	}
+	@JohnzonIgnore
+	public void setDecimalValue(BigDecimal value) {
+		setTypedValue(CaseFileItemPropertyType.decimal, value, value == null ? null : value.toString());
+	}
+	/**
+	 * @return the value as ISO-8601 date, or <code>null</code> if no value is set
+	 * @throws java.time.format.DateTimeParseException if the value is not a date
+	 */
+	@JohnzonIgnore
+	public LocalDate getDateValue() {
+		return getTypedValue(LocalDate.class, LocalDate::parse);
+	}
+	@JohnzonIgnore
+	public void setDateValue(LocalDate value) {
+		setTypedValue(CaseFileItemPropertyType.date, value, value == null ? null : value.toString());
+	}
 	
 	
 }
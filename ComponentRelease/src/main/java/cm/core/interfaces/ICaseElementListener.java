@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.interfaces;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.data.CaseFileItem;
+import cm.core.repository.CaseInstance;
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Provides an interface to notify listeners registered with a
+ * {@link CaseModel} of elements added to or removed from the case and of
+ * changes to its elements, e.g. a state transition or a new claimant or role of a
+ * {@link Task}, and of {@link CaseFileItem}s added to or removed from its case
+ * file.
+ * </p>
+ * <p>
+ * Used to keep the indexes of a {@link CaseInstance} up to date.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public interface ICaseElementListener {
+	/**
+	 * Called after an element was added to the CaseModel or one of its Stages.
+	 * 
+	 * @param element
+	 *            the added element
+	 */
+	public void elementAdded(CaseElement element);
+
+	/**
+	 * Called after an element was removed from the CaseModel or one of its
+	 * Stages. The children of a removed Stage are removed with it and not
+	 * announced separately.
+	 * 
+	 * @param element
+	 *            the removed element
+	 */
+	public void elementRemoved(CaseElement element);
+
+	/**
+	 * Called after the state of an element or the claimant or role of a Task
+	 * changed.
+	 * 
+	 * @param element
+	 *            the changed element
+	 */
+	public void elementChanged(CaseElement element);
+
+	/**
+	 * Called after a CaseFileItem was added to the CaseFile or to another item.
+	 * 
+	 * @param parent
+	 *            the item the added item is a child of, null for items of the
+	 *            CaseFile
+	 * @param item
+	 *            the added item
+	 */
+	public void caseFileItemAdded(CaseFileItem parent, CaseFileItem item);
+
+	/**
+	 * Called after a CaseFileItem was removed from the CaseFile or from another
+	 * item.
+	 * 
+	 * @param parent
+	 *            the item the removed item was a child of, null for items of
+	 *            the CaseFile
+	 * @param item
+	 *            the removed item
+	 */
+	public void caseFileItemRemoved(CaseFileItem parent, CaseFileItem item);
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.interfaces;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.TransitionListeners;
+import cm.core.data.CaseFileItem;
+
+/**
+ * <p>
+ * Provides an interface to be notified of the state transitions of
+ * {@link CaseElement}s and {@link CaseFileItem}s made by a thread, e.g. to
+ * journal them. Registered per thread with {@link TransitionListeners}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public interface ITransitionListener {
+	/**
+	 * Called after the state of an element changed.
+	 * 
+	 * @param element
+	 *            the element
+	 * @param fromState
+	 *            state before the transition
+	 * @param toState
+	 *            state after the transition
+	 * @param transition
+	 *            name of the transition
+	 */
+	public void elementTransitioned(CaseElement element, String fromState, String toState, String transition);
+
+	/**
+	 * Called after the state of a CaseFileItem changed.
+	 * 
+	 * @param cm
+	 *            the CaseModel the item is attached to, null if it was loaded
+	 *            without its case
+	 * @param item
+	 *            the item
+	 * @param fromState
+	 *            state before the transition
+	 * @param toState
+	 *            state after the transition
+	 * @param transition
+	 *            name of the transition
+	 */
+	public void caseFileItemTransitioned(CaseModel cm, CaseFileItem item, String fromState, String toState,
+			String transition);
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.journal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * Compact binary snapshot of the runtime state of one case, e.g. states of its
+ * elements, bits of its Sentries, values of its case file items and claimants
+ * of its Tasks. The snapshot is taken at a sequence number of the
+ * {@link TransitionJournal}; a case is recovered by restoring the snapshot and
+ * replaying the records of the case after that sequence number.
+ * </p>
+ * <p>
+ * The header names the case definition the case was created from and the case
+ * workers and roles referenced by the state, so these can be resolved for many
+ * snapshots at once before the state is restored. The layout of the state
+ * itself is up to the code capturing and restoring it.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class CaseSnapshot {
+
+	private static final int MAGIC = 0x434D5331;
+	private static final int FORMAT_VERSION = 2;
+
+	private final long caseId;
+	private final long journalCaseId;
+	private final long sequence;
+	private final long timestamp;
+	private final String definitionCmId;
+	private final String caseCmId;
+	private final List<String> workers;
+	private final List<String> roles;
+	private final byte[] state;
+
+	/**
+	 * @param caseId
+	 *            persistence id of the CaseModel
+	 * @param journalCaseId
+	 *            case id the transitions of the case are journaled with
+	 * @param sequence
+	 *            last journal sequence number reflected by the state
+	 * @param timestamp
+	 *            time the snapshot was taken
+	 * @param definitionCmId
+	 *            cmId of the case definition
+	 * @param caseCmId
+	 *            cmId of the CaseModel
+	 * @param workers
+	 *            user names of the case workers referenced by the state
+	 * @param roles
+	 *            names of the case roles referenced by the state
+	 * @param state
+	 *            the encoded state
+	 */
+	public CaseSnapshot(long caseId, long journalCaseId, long sequence, long timestamp, String definitionCmId,
+			String caseCmId, List<String> workers, List<String> roles, byte[] state) {
+		this.caseId = caseId;
+		this.journalCaseId = journalCaseId;
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.definitionCmId = definitionCmId;
+		this.caseCmId = caseCmId;
+		this.workers = Collections.unmodifiableList(new ArrayList<>(workers));
+		this.roles = Collections.unmodifiableList(new ArrayList<>(roles));
+		this.state = state;
+	}
+
+	public long getCaseId() {
+		return caseId;
+	}
+
+	public long getJournalCaseId() {
+		return journalCaseId;
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public String getDefinitionCmId() {
+		return definitionCmId;
+	}
+
+	public String getCaseCmId() {
+		return caseCmId;
+	}
+
+	public List<String> getWorkers() {
+		return workers;
+	}
+
+	public List<String> getRoles() {
+		return roles;
+	}
+
+	public byte[] getState() {
+		return state;
+	}
+
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(caseId);
+		out.writeLong(journalCaseId);
+		out.writeLong(sequence);
+		out.writeLong(timestamp);
+		out.writeUTF(definitionCmId);
+		out.writeUTF(caseCmId);
+		writeNames(out, workers);
+		writeNames(out, roles);
+		out.writeInt(state.length);
+		out.write(state);
+	}
+
+	static CaseSnapshot readFrom(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+			throw new IOException("Not a case snapshot");
+		}
+		long caseId = in.readLong();
+		long journalCaseId = in.readLong();
+		long sequence = in.readLong();
+		long timestamp = in.readLong();
+		String definitionCmId = in.readUTF();
+		String caseCmId = in.readUTF();
+		List<String> workers = readNames(in);
+		List<String> roles = readNames(in);
+		byte[] state = new byte[in.readInt()];
+		in.readFully(state);
+		return new CaseSnapshot(caseId, journalCaseId, sequence, timestamp, definitionCmId, caseCmId, workers, roles,
+				state);
+	}
+
+	private static void writeNames(DataOutputStream out, List<String> names) throws IOException {
+		out.writeInt(names.size());
+		for (String name : names) {
+			out.writeUTF(name);
+		}
+	}
+
+	private static List<String> readNames(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<String> names = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			names.add(in.readUTF());
+		}
+		return names;
+	}
+
+}
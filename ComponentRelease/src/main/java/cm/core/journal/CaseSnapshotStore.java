@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.journal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Keeps the latest {@link CaseSnapshot} of each case as one file. A snapshot is
+ * written to a temporary file which then replaces the previous snapshot
+ * atomically, so a crash leaves either the old or the new snapshot.
+ * </p>
+ * <p>
+ * Snapshots are stored in the directory given by the system property
+ * <code>cm.core.journal.snapshotDir</code>, by default in the directory
+ * <code>snapshots</code> of the {@link TransitionJournal}. The store is
+ * disabled together with the journal.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class CaseSnapshotStore {
+
+	private static final Logger LOGGER = Logger.getLogger(CaseSnapshotStore.class.getName());
+
+	private static final String PREFIX = "case-";
+	private static final String SUFFIX = ".snapshot";
+
+	private static final CaseSnapshotStore INSTANCE = new CaseSnapshotStore(directory());
+
+	private final Path directory;
+
+	private CaseSnapshotStore(Path directory) {
+		this.directory = directory;
+	}
+
+	public static CaseSnapshotStore getInstance() {
+		return INSTANCE;
+	}
+
+	private static Path directory() {
+		TransitionJournal journal = TransitionJournal.getInstance();
+		if (!journal.isConfigured()) {
+			return null;
+		}
+		String directory = System.getProperty("cm.core.journal.snapshotDir");
+		return directory != null ? Paths.get(directory) : journal.getDirectory().resolve("snapshots");
+	}
+
+	public boolean isEnabled() {
+		return directory != null;
+	}
+
+	/**
+	 * Replaces the snapshot of the case.
+	 * 
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             if the snapshot cannot be written
+	 */
+	public void save(CaseSnapshot snapshot) throws IOException {
+		if (!isEnabled()) {
+			return;
+		}
+		Files.createDirectories(directory);
+		Path file = file(snapshot.getCaseId());
+		Path temp = Files.createTempFile(directory, PREFIX, ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				snapshot.writeTo(out);
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * @param caseId
+	 *            persistence id of the CaseModel
+	 * @return the latest snapshot of the case or <code>null</code> if there is
+	 *         none or it cannot be read
+	 */
+	public CaseSnapshot load(long caseId) {
+		if (!isEnabled()) {
+			return null;
+		}
+		return read(file(caseId));
+	}
+
+	/**
+	 * @return the latest snapshots of all cases, unreadable snapshots are
+	 *         skipped
+	 */
+	public List<CaseSnapshot> loadAll() {
+		List<CaseSnapshot> snapshots = new ArrayList<>();
+		if (!isEnabled() || !Files.isDirectory(directory)) {
+			return snapshots;
+		}
+		List<Path> files;
+		try (Stream<Path> list = Files.list(directory)) {
+			files = list.filter(CaseSnapshotStore::isSnapshot).collect(Collectors.toList());
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not list case snapshots in " + directory, e);
+			return snapshots;
+		}
+		for (Path file : files) {
+			CaseSnapshot snapshot = read(file);
+			if (snapshot != null) {
+				snapshots.add(snapshot);
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * @return the lowest journal sequence number covered by the snapshots,
+	 *         i.e. the last record still needed to recover from the journal,
+	 *         <code>Long.MAX_VALUE</code> if there are no snapshots
+	 */
+	public long getOldestSequence() {
+		long oldest = Long.MAX_VALUE;
+		for (CaseSnapshot snapshot : loadAll()) {
+			oldest = Math.min(oldest, snapshot.getSequence());
+		}
+		return oldest;
+	}
+
+	/**
+	 * Deletes the snapshot of a case, e.g. after the case was deleted.
+	 */
+	public void delete(long caseId) throws IOException {
+		if (isEnabled()) {
+			Files.deleteIfExists(file(caseId));
+		}
+	}
+
+	private Path file(long caseId) {
+		return directory.resolve(PREFIX + caseId + SUFFIX);
+	}
+
+	private static boolean isSnapshot(Path file) {
+		String name = file.getFileName().toString();
+		return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+	}
+
+	private static CaseSnapshot read(Path file) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return CaseSnapshot.readFrom(in);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not read case snapshot " + file, e);
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * One memory-mapped file of the {@link TransitionJournal}. A segment has a
+ * fixed size and starts with a header (magic, format version, sequence number
+ * of its first record). Records follow as length, CRC32 and payload. The
+ * unwritten remainder of the file is zero, so a zero length marks the end.
+ * </p>
+ * <p>
+ * Only the single writer thread of the journal appends to a segment. The
+ * length of a record is written after its payload and checksum, so readers
+ * mapping the same file never see a length for a partial record.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+final class JournalSegment implements AutoCloseable {
+
+	static final int MAGIC = 0x434D4A31;
+	static final int FORMAT_VERSION = 2;
+	static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+	static final int RECORD_OVERHEAD = 2 * Integer.BYTES;
+
+	private static final String PREFIX = "segment-";
+	private static final String SUFFIX = ".journal";
+
+	private final Path path;
+	private final long firstSequence;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private long lastSequence;
+
+	private JournalSegment(Path path, long firstSequence, FileChannel channel, MappedByteBuffer buffer) {
+		this.path = path;
+		this.firstSequence = firstSequence;
+		this.channel = channel;
+		this.buffer = buffer;
+		this.lastSequence = firstSequence - 1;
+	}
+
+	static String fileName(long firstSequence) {
+		return String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX);
+	}
+
+	static boolean isSegment(Path file) {
+		String name = file.getFileName().toString();
+		return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+	}
+
+	static long firstSequenceOf(Path file) {
+		String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+	}
+
+	/**
+	 * Creates a new, empty segment file for writing.
+	 */
+	static JournalSegment create(Path directory, long firstSequence, int size) throws IOException {
+		Path path = directory.resolve(fileName(firstSequence));
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(firstSequence);
+		buffer.force();
+		return new JournalSegment(path, firstSequence, channel, buffer);
+	}
+
+	/**
+	 * Opens an existing segment for appending. Scans to the end of the valid
+	 * records and clears a torn record left by a crash, if any.
+	 */
+	static JournalSegment openForAppend(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+		JournalSegment segment = new JournalSegment(path, readHeader(buffer, path), channel, buffer);
+		scan(buffer, record -> segment.lastSequence = record.getSequence());
+		int end = buffer.position();
+		if (end + RECORD_OVERHEAD <= buffer.limit() && buffer.getInt(end) != 0) {
+			int torn = Math.min(buffer.limit(), end + RECORD_OVERHEAD + Math.max(0, buffer.getInt(end)));
+			for (int i = end; i < torn; i++) {
+				buffer.put(i, (byte) 0);
+			}
+			buffer.force();
+		}
+		return segment;
+	}
+
+	/**
+	 * Reads all valid records of a segment file in order.
+	 */
+	static void read(Path path, Consumer<TransitionRecord> consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			readHeader(buffer, path);
+			scan(buffer, consumer);
+		}
+	}
+
+	private static long readHeader(ByteBuffer buffer, Path path) throws IOException {
+		if (buffer.limit() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+			throw new IOException("Not a transition journal segment: " + path);
+		}
+		return buffer.getLong();
+	}
+
+	/**
+	 * Reads records from the current position up to the first empty or invalid
+	 * entry and leaves the position there.
+	 */
+	private static void scan(ByteBuffer buffer, Consumer<TransitionRecord> consumer) {
+		CRC32 crc = new CRC32();
+		while (buffer.remaining() >= RECORD_OVERHEAD) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				buffer.position(start);
+				return;
+			}
+			ByteBuffer payload = buffer.slice();
+			payload.limit(length);
+			crc.reset();
+			crc.update(payload.duplicate());
+			if ((int) crc.getValue() != checksum) {
+				buffer.position(start);
+				return;
+			}
+			consumer.accept(TransitionRecord.decode(payload));
+			buffer.position(start + RECORD_OVERHEAD + length);
+		}
+	}
+
+	/**
+	 * @return true if a record with the given payload size still fits
+	 */
+	boolean fits(int payloadBytes) {
+		return buffer.remaining() >= RECORD_OVERHEAD + payloadBytes;
+	}
+
+	boolean isEmpty() {
+		return lastSequence < firstSequence;
+	}
+
+	void append(TransitionRecord record, byte[] payload) {
+		int start = buffer.position();
+		CRC32 crc = new CRC32();
+		crc.update(payload, 0, payload.length);
+		buffer.position(start + RECORD_OVERHEAD);
+		buffer.put(payload);
+		buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+		buffer.putInt(start, payload.length);
+		lastSequence = record.getSequence();
+	}
+
+	/**
+	 * Writes all appended records through to the storage device.
+	 */
+	void force() {
+		buffer.force();
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	long getFirstSequence() {
+		return firstSequence;
+	}
+
+	long getLastSequence() {
+		return lastSequence;
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer.force();
+		channel.close();
+	}
+
+}
@@ -0,0 +1,625 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.journal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * <p>
+ * Append-only journal of all state transitions of case elements and case file
+ * items. Records are written by a single writer thread into memory-mapped
+ * segment files of fixed size (see {@link JournalSegment}). The writer takes
+ * all records queued at once, appends them and forces the segment to disk once
+ * per batch (group commit), then completes the futures returned by
+ * {@link #append(TransitionRecord)}. A new segment is started when a record
+ * does not fit into the current one. The writer is started with
+ * {@link #start(ThreadFactory)}, inside the server by a startup bean with a
+ * managed thread factory, which also closes the journal on undeployment.
+ * </p>
+ * <p>
+ * Appending never blocks for longer than {@link #OFFER_TIMEOUT_MILLIS}: a
+ * record that does not fit into the queue in time is dropped and counted as a
+ * failure, as are records that cannot be written or forced to disk. If the
+ * writer stops because of an error, the journal disables itself. Segments
+ * whose records are all covered by the snapshots of the cases are deleted with
+ * {@link #prune(long)}.
+ * </p>
+ * <p>
+ * Transitions made inside a {@link Batch}, i.e. a case command, are kept until
+ * the transaction of the command commits and then appended together. Thus
+ * rolled back or retried commands leave no records. Transitions outside a batch
+ * are appended immediately.
+ * </p>
+ * <p>
+ * The journal is off by default and enabled with the system property
+ * <code>cm.core.journal.enabled</code>. It is written to the directory given
+ * by the system property <code>cm.core.journal.dir</code> or, inside the
+ * server, <code>${catalina.base}/data/cm-journal</code>, and stays disabled if
+ * neither is available.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class TransitionJournal {
+
+	/**
+	 * Size of a segment file in bytes.
+	 */
+	public static final int SEGMENT_BYTES = Math.max(64 * 1024,
+			Integer.getInteger("cm.core.journal.segmentBytes", 64 * 1024 * 1024));
+
+	/**
+	 * Number of records that may wait for the writer before appending waits.
+	 */
+	public static final int QUEUE_CAPACITY = Math.max(1, Integer.getInteger("cm.core.journal.queueCapacity", 8192));
+
+	/**
+	 * Maximum time in milliseconds appending waits for space in the queue
+	 * before the record is dropped.
+	 */
+	public static final long OFFER_TIMEOUT_MILLIS = Math.max(0L,
+			Long.getLong("cm.core.journal.offerTimeoutMillis", 100L));
+
+	/**
+	 * Maximum time in milliseconds closing waits for the writer to drain the
+	 * queue.
+	 */
+	public static final long CLOSE_TIMEOUT_MILLIS = Math.max(0L,
+			Long.getLong("cm.core.journal.closeTimeoutMillis", 10000L));
+
+	/**
+	 * Maximum number of records written per forced batch.
+	 */
+	public static final int MAX_BATCH = Math.max(1, Integer.getInteger("cm.core.journal.maxBatch", 1024));
+
+	/**
+	 * Transition name of records of a Task being claimed, the worker is the
+	 * claimant.
+	 */
+	public static final String CLAIM = "claim";
+
+	/**
+	 * Transition name of records of a Task being unclaimed.
+	 */
+	public static final String UNCLAIM = "unclaim";
+
+	/**
+	 * Transition name of records of a property value being updated. The cmId
+	 * is that of the case file item, the from state is the property name and
+	 * the to state its new value.
+	 */
+	public static final String PROPERTY = "property";
+
+	/**
+	 * Transition name of records of a property being added, deleted or
+	 * updated to a value too long to be journaled. The cmId is that of the case
+	 * file item, the from state is the property name.
+	 */
+	public static final String PROPERTY_CHANGED = "propertyChanged";
+
+	private static final Logger LOGGER = Logger.getLogger(TransitionJournal.class.getName());
+
+	private static final TransitionJournal INSTANCE = new TransitionJournal(directory());
+
+	private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<>();
+
+	private static final Pending CLOSE = new Pending(null);
+
+	private final Path directory;
+	private final BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+	private Thread writer;
+	private JournalSegment segment;
+	private long nextSequence;
+	private volatile long lastSequence;
+	private volatile boolean running;
+	private volatile boolean closed;
+
+	private final AtomicLong appended = new AtomicLong();
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong segmentsRolled = new AtomicLong();
+	private final AtomicLong segmentsPruned = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+
+	private TransitionJournal(Path directory) {
+		this.directory = directory;
+	}
+
+	public static TransitionJournal getInstance() {
+		return INSTANCE;
+	}
+
+	private static Path directory() {
+		if (!Boolean.getBoolean("cm.core.journal.enabled")) {
+			return null;
+		}
+		String directory = System.getProperty("cm.core.journal.dir");
+		if (directory != null) {
+			return Paths.get(directory);
+		}
+		String base = System.getProperty("catalina.base");
+		return base != null ? Paths.get(base, "data", "cm-journal") : null;
+	}
+
+	/**
+	 * @return true if the journal is enabled by the system properties, even if
+	 *         it is not started yet
+	 */
+	public boolean isConfigured() {
+		return directory != null;
+	}
+
+	/**
+	 * @return true if records are appended, i.e. the journal is configured and
+	 *         its writer is running
+	 */
+	public boolean isEnabled() {
+		return directory != null && running && !closed;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Records a transition. Inside a {@link Batch} the record is kept until the
+	 * batch is committed, otherwise it is appended right away.
+	 * 
+	 * @param caseId
+	 *            persistence id of the root case, records of cases not
+	 *            persisted (0) are dropped
+	 * @param cmId
+	 *            cmId of the element or case file item
+	 * @param fromState
+	 *            state before the transition
+	 * @param toState
+	 *            state after the transition
+	 * @param transition
+	 *            name of the transition
+	 * @param version
+	 *            reads the <code>@Version</code> of the changed entity, called
+	 *            when the batch is committed so that the record gets the
+	 *            version written by the command
+	 */
+	public void record(long caseId, String cmId, String fromState, String toState, String transition,
+			LongSupplier version) {
+		if (!isEnabled() || caseId == 0) {
+			return;
+		}
+		Batch batch = CURRENT.get();
+		TransitionRecord record = new TransitionRecord(0, System.currentTimeMillis(), caseId, -1, cmId, fromState,
+				toState, transition, batch != null ? batch.worker : null);
+		if (batch != null) {
+			batch.records.add(record);
+			batch.versions.add(version);
+		} else {
+			append(record.withVersion(version.getAsLong()));
+		}
+	}
+
+	/**
+	 * Starts collecting the transitions of the current thread for a command.
+	 * Must be closed by the thread that opened it.
+	 * 
+	 * @param worker
+	 *            user name of the case worker issuing the command, may be null
+	 * @return the batch
+	 */
+	public Batch openBatch(String worker) {
+		Batch batch = new Batch(worker, CURRENT.get());
+		CURRENT.set(batch);
+		return batch;
+	}
+
+	/**
+	 * Queues a record for the writer thread. Waits at most
+	 * {@link #OFFER_TIMEOUT_MILLIS} while the queue is full, then drops the
+	 * record.
+	 * 
+	 * @param record
+	 *            the record, its sequence number is assigned by the writer
+	 * @return completed with the sequence number once the record is on disk,
+	 *         with -1 if the journal is disabled, exceptionally if the record
+	 *         was dropped or could not be written
+	 */
+	public CompletableFuture<Long> append(TransitionRecord record) {
+		if (!isEnabled()) {
+			return CompletableFuture.completedFuture(-1L);
+		}
+		Pending pending = new Pending(record);
+		try {
+			if (!queue.offer(pending, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				failures.incrementAndGet();
+				LOGGER.warning("Transition journal queue is full, dropped " + record);
+				pending.future.completeExceptionally(new IllegalStateException("Transition journal queue is full"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			failures.incrementAndGet();
+			pending.future.completeExceptionally(e);
+		}
+		return pending.future;
+	}
+
+	/**
+	 * Opens the journal for appending and starts the writer thread. Does
+	 * nothing if the journal is not configured or already started.
+	 * 
+	 * @param threadFactory
+	 *            creates the writer thread, e.g. a managed thread factory of
+	 *            the server
+	 * @throws IOException
+	 *             if the journal cannot be opened
+	 */
+	public synchronized void start(ThreadFactory threadFactory) throws IOException {
+		if (directory == null || writer != null || closed) {
+			return;
+		}
+		Files.createDirectories(directory);
+		List<Path> segments = segments();
+		if (segments.isEmpty()) {
+			nextSequence = 1;
+			segment = JournalSegment.create(directory, nextSequence, SEGMENT_BYTES);
+		} else {
+			segment = JournalSegment.openForAppend(segments.get(segments.size() - 1));
+			nextSequence = segment.getLastSequence() + 1;
+		}
+		lastSequence = nextSequence - 1;
+		writer = threadFactory.newThread(this::write);
+		running = true;
+		writer.start();
+	}
+
+	private void write() {
+		List<Pending> batch = new ArrayList<>(MAX_BATCH);
+		boolean closing = false;
+		try {
+			while (!closing) {
+				batch.add(queue.take());
+				queue.drainTo(batch, MAX_BATCH - 1);
+				closing = writeBatch(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			LOGGER.warning("Transition journal writer was interrupted, journaling is disabled");
+		} catch (RuntimeException | Error e) {
+			LOGGER.log(Level.SEVERE, "Transition journal writer failed, journaling is disabled", e);
+			throw e;
+		} finally {
+			running = false;
+			Exception stopped = new IllegalStateException("Transition journal writer stopped");
+			for (Pending pending : batch) {
+				pending.future.completeExceptionally(stopped);
+			}
+			for (Pending pending = queue.poll(); pending != null; pending = queue.poll()) {
+				pending.future.completeExceptionally(stopped);
+			}
+			try {
+				segment.close();
+			} catch (IOException | RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Could not close transition journal segment " + segment.getPath(), e);
+			}
+		}
+	}
+
+	/**
+	 * Writes and forces one batch, failures are counted and reported through
+	 * the futures of the records.
+	 * 
+	 * @return true if the batch contained the request to close
+	 */
+	private boolean writeBatch(List<Pending> batch) {
+		boolean closing = false;
+		List<Pending> written = new ArrayList<>(batch.size());
+		for (Pending pending : batch) {
+			if (pending == CLOSE) {
+				closing = true;
+				continue;
+			}
+			try {
+				writeRecord(pending);
+				written.add(pending);
+			} catch (IOException | RuntimeException e) {
+				failures.incrementAndGet();
+				LOGGER.log(Level.WARNING, "Could not append to transition journal", e);
+				pending.future.completeExceptionally(e);
+			}
+		}
+		try {
+			segment.force();
+		} catch (RuntimeException e) {
+			failures.addAndGet(written.size());
+			LOGGER.log(Level.WARNING, "Could not force transition journal segment " + segment.getPath(), e);
+			for (Pending pending : written) {
+				pending.future.completeExceptionally(e);
+			}
+			return closing;
+		}
+		lastSequence = nextSequence - 1;
+		batches.incrementAndGet();
+		appended.addAndGet(written.size());
+		for (Pending pending : written) {
+			pending.future.complete(pending.record.getSequence());
+		}
+		return closing;
+	}
+
+	private void writeRecord(Pending pending) throws IOException {
+		pending.record = pending.record.withSequence(nextSequence);
+		byte[] payload = pending.record.encode();
+		if (JournalSegment.HEADER_BYTES + JournalSegment.RECORD_OVERHEAD + payload.length > SEGMENT_BYTES) {
+			throw new IllegalArgumentException("Record larger than a journal segment: " + payload.length + " bytes");
+		}
+		if (!segment.fits(payload.length)) {
+			segment.close();
+			segment = JournalSegment.create(directory, nextSequence, SEGMENT_BYTES);
+			segmentsRolled.incrementAndGet();
+		}
+		segment.append(pending.record, payload);
+		nextSequence++;
+	}
+
+	/**
+	 * @return sequence number of the last record forced to disk, 0 if the
+	 *         journal is empty or disabled
+	 */
+	public long getLastSequence() {
+		if (!isEnabled()) {
+			return 0;
+		}
+		return lastSequence;
+	}
+
+	/**
+	 * Reads the journal in order of the sequence numbers.
+	 * 
+	 * @param fromSequence
+	 *            first sequence number to read
+	 * @param consumer
+	 *            receives the records
+	 * @return sequence number of the last record read, fromSequence - 1 if none
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	public long read(long fromSequence, Consumer<TransitionRecord> consumer) throws IOException {
+		long[] last = { fromSequence - 1 };
+		if (directory == null || !Files.isDirectory(directory)) {
+			return last[0];
+		}
+		List<Path> segments = segments();
+		for (int i = 0; i < segments.size(); i++) {
+			if (i + 1 < segments.size() && JournalSegment.firstSequenceOf(segments.get(i + 1)) <= fromSequence) {
+				continue;
+			}
+			JournalSegment.read(segments.get(i), record -> {
+				if (record.getSequence() >= fromSequence) {
+					last[0] = record.getSequence();
+					consumer.accept(record);
+				}
+			});
+		}
+		return last[0];
+	}
+
+	/**
+	 * Reads the records of one case in order of the sequence numbers.
+	 * 
+	 * @param caseId
+	 *            persistence id of the root case
+	 * @param fromSequence
+	 *            first sequence number to read
+	 * @param consumer
+	 *            receives the records of the case
+	 * @return sequence number of the last record read of any case
+	 * @throws IOException
+	 *             if a segment cannot be read
+	 */
+	public long readCase(long caseId, long fromSequence, Consumer<TransitionRecord> consumer) throws IOException {
+		return read(fromSequence, record -> {
+			if (record.getCaseId() == caseId) {
+				consumer.accept(record);
+			}
+		});
+	}
+
+	/**
+	 * Deletes the segments holding only records up to the given sequence
+	 * number, e.g. the sequence number of the oldest snapshot of a case. The
+	 * segment written to is kept.
+	 * 
+	 * @param sequence
+	 *            sequence number of the last record no longer needed
+	 * @return the number of deleted segments
+	 * @throws IOException
+	 *             if the journal cannot be listed or a segment not deleted
+	 */
+	public int prune(long sequence) throws IOException {
+		if (directory == null || !Files.isDirectory(directory)) {
+			return 0;
+		}
+		List<Path> segments = segments();
+		int deleted = 0;
+		for (int i = 0; i + 1 < segments.size(); i++) {
+			// the records of a segment end before the first record of the next one
+			if (JournalSegment.firstSequenceOf(segments.get(i + 1)) - 1 > sequence) {
+				break;
+			}
+			Files.deleteIfExists(segments.get(i));
+			deleted++;
+		}
+		segmentsPruned.addAndGet(deleted);
+		return deleted;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			List<Path> segments = files.filter(JournalSegment::isSegment).collect(Collectors.toList());
+			Collections.sort(segments, (a, b) -> Long.compare(JournalSegment.firstSequenceOf(a),
+					JournalSegment.firstSequenceOf(b)));
+			return segments;
+		}
+	}
+
+	/**
+	 * Writes all queued records and stops the writer thread, waiting at most
+	 * {@link #CLOSE_TIMEOUT_MILLIS}. Records recorded afterwards are dropped.
+	 */
+	public void close() {
+		Thread stopping;
+		synchronized (this) {
+			closed = true;
+			stopping = writer;
+		}
+		if (stopping == null) {
+			return;
+		}
+		try {
+			if (!running || !queue.offer(CLOSE, CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+				stopping.interrupt();
+			}
+			stopping.join(CLOSE_TIMEOUT_MILLIS);
+			if (stopping.isAlive()) {
+				LOGGER.warning("Transition journal writer did not stop within " + CLOSE_TIMEOUT_MILLIS + " ms");
+				stopping.interrupt();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public Statistics getStatistics() {
+		Statistics statistics = new Statistics();
+		statistics.appended = appended.get();
+		statistics.batches = batches.get();
+		statistics.segmentsRolled = segmentsRolled.get();
+		statistics.segmentsPruned = segmentsPruned.get();
+		statistics.failures = failures.get();
+		statistics.queued = queue.size();
+		return statistics;
+	}
+
+	/**
+	 * Transitions of one command, appended when its transaction commits.
+	 */
+	public static final class Batch implements AutoCloseable {
+		private final String worker;
+		private final Batch previous;
+		private final List<TransitionRecord> records = new ArrayList<>();
+		private final List<LongSupplier> versions = new ArrayList<>();
+
+		private Batch(String worker, Batch previous) {
+			this.worker = worker;
+			this.previous = previous;
+		}
+
+		public List<TransitionRecord> getRecords() {
+			return Collections.unmodifiableList(records);
+		}
+
+		/**
+		 * Appends the collected records to the journal with the versions of
+		 * their entities. Called after the transaction committed.
+		 */
+		public void commit() {
+			for (int i = 0; i < records.size(); i++) {
+				INSTANCE.append(records.get(i).withVersion(versions.get(i).getAsLong()));
+			}
+			records.clear();
+			versions.clear();
+		}
+
+		/**
+		 * Stops collecting, later transitions of the thread go to the enclosing
+		 * batch or directly to the journal.
+		 */
+		@Override
+		public void close() {
+			if (previous != null) {
+				CURRENT.set(previous);
+			} else {
+				CURRENT.remove();
+			}
+		}
+	}
+
+	private static final class Pending {
+		private final CompletableFuture<Long> future = new CompletableFuture<>();
+		private TransitionRecord record;
+
+		private Pending(TransitionRecord record) {
+			this.record = record;
+		}
+	}
+
+	public static final class Statistics {
+		private long appended;
+		private long batches;
+		private long segmentsRolled;
+		private long segmentsPruned;
+		private long failures;
+		private int queued;
+
+		public long getAppended() {
+			return appended;
+		}
+
+		public long getBatches() {
+			return batches;
+		}
+
+		public long getSegmentsRolled() {
+			return segmentsRolled;
+		}
+
+		public long getSegmentsPruned() {
+			return segmentsPruned;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public int getQueued() {
+			return queued;
+		}
+
+		@Override
+		public String toString() {
+			return "appended=" + appended + ", batches=" + batches + ", segmentsRolled=" + segmentsRolled
+					+ ", segmentsPruned=" + segmentsPruned + ", failures=" + failures + ", queued=" + queued;
+		}
+	}
+
+}
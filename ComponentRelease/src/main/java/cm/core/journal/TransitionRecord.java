@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.journal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>
+ * Immutable entry of the {@link TransitionJournal}: one transition of a case
+ * element or case file item. Records are numbered by the journal in the order
+ * they were appended.
+ * </p>
+ * <p>
+ * The version is the <code>@Version</code> of the element, task or property
+ * after the command that recorded the transition committed, -1 if it is not
+ * known. Recovery sets it instead of counting updates, so replaying a record
+ * already contained in a snapshot does not change the version.
+ * </p>
+ * <p>
+ * Binary layout: sequence, timestamp, case id and version as longs followed by
+ * element cmId, from state, to state, transition and worker, each as a short
+ * length (-1 for null) and its UTF-8 bytes.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class TransitionRecord {
+
+	private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+
+	private final long sequence;
+	private final long timestamp;
+	private final long caseId;
+	private final long version;
+	private final String cmId;
+	private final String fromState;
+	private final String toState;
+	private final String transition;
+	private final String worker;
+
+	public TransitionRecord(long sequence, long timestamp, long caseId, long version, String cmId,
+			String fromState, String toState, String transition, String worker) {
+		this.sequence = sequence;
+		this.timestamp = timestamp;
+		this.caseId = caseId;
+		this.version = version;
+		this.cmId = cmId;
+		this.fromState = fromState;
+		this.toState = toState;
+		this.transition = transition;
+		this.worker = worker;
+	}
+
+	/**
+	 * @param sequence
+	 *            the sequence number assigned by the journal
+	 * @return a copy of this record with the given sequence number
+	 */
+	TransitionRecord withSequence(long sequence) {
+		return new TransitionRecord(sequence, timestamp, caseId, version, cmId, fromState, toState, transition,
+				worker);
+	}
+
+	/**
+	 * @param version
+	 *            the version after the recording command committed
+	 * @return a copy of this record with the given version
+	 */
+	TransitionRecord withVersion(long version) {
+		return new TransitionRecord(sequence, timestamp, caseId, version, cmId, fromState, toState, transition,
+				worker);
+	}
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public long getCaseId() {
+		return caseId;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public String getCmId() {
+		return cmId;
+	}
+
+	public String getFromState() {
+		return fromState;
+	}
+
+	public String getToState() {
+		return toState;
+	}
+
+	public String getTransition() {
+		return transition;
+	}
+
+	public String getWorker() {
+		return worker;
+	}
+
+	/**
+	 * @return the record in its binary layout
+	 */
+	byte[] encode() {
+		byte[][] strings = { bytes(cmId), bytes(fromState), bytes(toState), bytes(transition), bytes(worker) };
+		int size = 4 * Long.BYTES;
+		for (byte[] string : strings) {
+			size += Short.BYTES + (string != null ? string.length : 0);
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putLong(sequence).putLong(timestamp).putLong(caseId).putLong(version);
+		for (byte[] string : strings) {
+			if (string == null) {
+				buffer.putShort((short) -1);
+			} else {
+				buffer.putShort((short) string.length).put(string);
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * @param buffer
+	 *            positioned at the start of an encoded record
+	 * @return the decoded record
+	 */
+	static TransitionRecord decode(ByteBuffer buffer) {
+		long sequence = buffer.getLong();
+		long timestamp = buffer.getLong();
+		long caseId = buffer.getLong();
+		long version = buffer.getLong();
+		return new TransitionRecord(sequence, timestamp, caseId, version, string(buffer), string(buffer), string(buffer),
+				string(buffer), string(buffer));
+	}
+
+	/**
+	 * @param value
+	 *            a field value
+	 * @return <code>true</code> if the value can be stored in a record
+	 */
+	public static boolean fits(String value) {
+		return value == null || value.length() * 3 <= MAX_STRING_BYTES
+				|| value.getBytes(StandardCharsets.UTF_8).length <= MAX_STRING_BYTES;
+	}
+
+	private static byte[] bytes(String value) {
+		if (value == null) {
+			return null;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_STRING_BYTES) {
+			throw new IllegalArgumentException("Journal field too long: " + bytes.length + " bytes");
+		}
+		return bytes;
+	}
+
+	private static String string(ByteBuffer buffer) {
+		short length = buffer.getShort();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return "#" + sequence + " " + timestamp + " case " + caseId + " " + cmId + "@" + version + ": " + fromState + " -" + transition
+				+ "-> " + toState + (worker != null ? " by " + worker : "");
+	}
+
+}
@@ -25,12 +25,8 @@ import org.apache.johnzon.mapper.JohnzonIgnore;
 import cm.core.CaseModel;
 import cm.core.CaseElement;
 import cm.core.Stage;
-import cm.core.states.EventMilestoneAvailable;
-import cm.core.states.EventMilestoneCompleted;
-import cm.core.states.EventMilestoneInitial;
-import cm.core.states.EventMilestoneSuspended;
-import cm.core.states.EventMilestoneTerminated;
 import cm.core.states.IEventMilestoneState;
+import cm.core.states.EventMilestoneContext;
 /**
  * <p>
  * Class representing base EventListener elements in CMMN. Specializations TimerEventListener or UserEventListener not yet implemented.
@@ -48,7 +44,7 @@ import cm.core.states.IEventMilestoneState;
 public class EventListener extends CaseElement {
 	@JohnzonIgnore
 	@Transient
-	private IEventMilestoneState contextState;
+	private EventMilestoneContext contextState;
 
 	public EventListener(String id, String name, CaseModel caseRef) {
 		super(id, name, caseRef);
@@ -84,26 +80,10 @@ public class EventListener extends CaseElement {
 		return contextState;
 	}
 
-	public void setContextState(IEventMilestoneState contextState) {
-		this.contextState = contextState;
-	}
-
 	@Override
 	public void loadContextState() {
-		if (state.equals(EventMilestoneStates.INITIAL.toString())) {
-			setContextState(new EventMilestoneInitial(this));
-		}
-		else if (state.equals(EventMilestoneStates.AVAILABLE.toString())) {
-			setContextState(new EventMilestoneAvailable(this));
-		}
-		else if (state.equals(EventMilestoneStates.SUSPENDED.toString())) {
-			setContextState(new EventMilestoneSuspended(this));
-		}
-		else if (state.equals(EventMilestoneStates.COMPLETED.toString())) {
-			setContextState(new EventMilestoneCompleted(this));
-		}
-		else if (state.equals(EventMilestoneStates.TERMINATED.toString())) {
-			setContextState(new EventMilestoneTerminated(this));
+		if (this.contextState == null || this.contextState.getElement() != this) {
+			this.contextState = new EventMilestoneContext(this);
 		}
 	}
 }
\ No newline at end of file
@@ -16,13 +16,29 @@
  */
 package cm.core.listeners;
 
+import java.util.Date;
+
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import cm.core.CaseModel;
+import cm.core.Stage;
+import cm.core.services.CaseExecutor;
+import cm.core.services.TimerScheduler;
 
 /**
  * <p>
- * Class to represent specialization of EventListener elements in CMMN. Not yet
- * implemented. Use {@link EventListener} instead.
+ * Class to represent specialization of EventListener elements in CMMN. A
+ * TimerEventListener occurs once its due date has passed while it is
+ * AVAILABLE. Due dates are persisted; near-term ones are held by the
+ * {@link TimerScheduler}, which is updated whenever a TimerEventListener is
+ * persisted or updated.
  * </p>
  * <p>
  * See CMMN 1.1 specification section 8.4.3 for more information.
@@ -33,9 +49,58 @@ import javax.persistence.Entity;
  */
 @Entity
 @DiscriminatorValue("timer_event")
+@Table(indexes = @Index(name = "idx_timer_due", columnList = "state, dueDate"))
 public class TimerEventListener extends EventListener {
 
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date dueDate;
+
 	public TimerEventListener() {
 
 	}
+
+	public TimerEventListener(String id, String name, CaseModel caseRef, Date dueDate) {
+		super(id, name, caseRef);
+		this.dueDate = dueDate;
+	}
+
+	public TimerEventListener(String id, String name, Stage parentStage, Date dueDate) {
+		super(id, name, parentStage);
+		this.dueDate = dueDate;
+	}
+
+	public Date getDueDate() {
+		return dueDate;
+	}
+
+	public void setDueDate(Date dueDate) {
+		this.dueDate = dueDate;
+	}
+
+	/**
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @return true if the TimerEventListener is AVAILABLE and its due date has
+	 *         passed
+	 */
+	public boolean isDue(long nowMillis) {
+		return isPending() && dueDate.getTime() <= nowMillis;
+	}
+
+	/**
+	 * @return true if the TimerEventListener is AVAILABLE and has a due date
+	 */
+	public boolean isPending() {
+		return dueDate != null && EventMilestoneStates.AVAILABLE.toString().equals(getState());
+	}
+
+	@PostPersist
+	@PostUpdate
+	void updateSchedule() {
+		if (isPending()) {
+			TimerScheduler.getInstance().schedule(getId(), CaseExecutor.caseIdOf(this), dueDate.getTime());
+		} else {
+			TimerScheduler.getInstance().cancel(getId());
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,221 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Bounded cache of {@link CaseInstance}s keyed by case id. Entries are kept in
+ * access order, so lookups, insertions and evictions take constant time. The
+ * least recently used entry is evicted when the maximum size is exceeded and
+ * entries idle for longer than the maximum idle time are evicted on access and
+ * on insertion. All methods are thread-safe.
+ * </p>
+ * <p>
+ * Counts hits, misses and evictions for monitoring. Evicted, removed and
+ * replaced instances are closed, see {@link CaseInstance#close()}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public class CaseCache {
+
+	private final int maxSize;
+	private final long maxIdleNanos;
+	private final LinkedHashMap<Long, CachedCase> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxSize
+	 *            maximum number of cached cases
+	 * @param maxIdle
+	 *            maximum time a case stays cached without being accessed
+	 * @param unit
+	 *            unit of maxIdle
+	 */
+	public CaseCache(int maxSize, long maxIdle, TimeUnit unit) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize must be positive");
+		}
+		this.maxSize = maxSize;
+		this.maxIdleNanos = unit.toNanos(maxIdle);
+		this.entries = new LinkedHashMap<Long, CachedCase>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CachedCase> eldest) {
+				if (size() > CaseCache.this.maxSize) {
+					eldest.getValue().instance.close();
+					evictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param caseId
+	 *            the id of the case
+	 * @return the cached CaseInstance, or <code>null</code> if not cached or
+	 *         evicted because idle
+	 */
+	public synchronized CaseInstance get(long caseId) {
+		long now = System.nanoTime();
+		CachedCase entry = this.entries.get(caseId);
+		if (entry != null && isIdle(entry, now)) {
+			this.entries.remove(caseId);
+			entry.instance.close();
+			this.evictions.incrementAndGet();
+			entry = null;
+		}
+		if (entry == null) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+		entry.lastAccess = now;
+		this.hits.incrementAndGet();
+		return entry.instance;
+	}
+
+	/**
+	 * @param caseId
+	 *            the id of the case
+	 * @return <code>true</code> if cached, does not count as hit or miss
+	 */
+	public synchronized boolean contains(long caseId) {
+		return this.entries.containsKey(caseId);
+	}
+
+	/**
+	 * Caches a CaseInstance, replacing a cached instance of the same case. Evicts
+	 * idle entries and, if the maximum size is exceeded, the least recently used
+	 * one.
+	 * 
+	 * @param instance
+	 *            the CaseInstance to cache
+	 */
+	public synchronized void put(CaseInstance instance) {
+		long now = System.nanoTime();
+		evictIdle(now);
+		CachedCase previous = this.entries.put(instance.getCaseId(), new CachedCase(instance, now));
+		if (previous != null && previous.instance != instance) {
+			previous.instance.close();
+		}
+	}
+
+	/**
+	 * @param caseId
+	 *            the id of the case to remove
+	 * @return the removed CaseInstance, or <code>null</code> if not cached
+	 */
+	public synchronized CaseInstance remove(long caseId) {
+		CachedCase entry = this.entries.remove(caseId);
+		if (entry == null) {
+			return null;
+		}
+		entry.instance.close();
+		return entry.instance;
+	}
+
+	/**
+	 * Removes all entries idle for longer than the maximum idle time.
+	 */
+	public synchronized void evictIdle() {
+		evictIdle(System.nanoTime());
+	}
+
+	private void evictIdle(long now) {
+		// entries are in access order, the first entry not idle ends the sweep
+		Iterator<CachedCase> iterator = this.entries.values().iterator();
+		while (iterator.hasNext()) {
+			CachedCase entry = iterator.next();
+			if (!isIdle(entry, now)) {
+				break;
+			}
+			iterator.remove();
+			entry.instance.close();
+			this.evictions.incrementAndGet();
+		}
+	}
+
+	private boolean isIdle(CachedCase entry, long now) {
+		return now - entry.lastAccess > this.maxIdleNanos;
+	}
+
+	public synchronized void clear() {
+		for (CachedCase entry : this.entries.values()) {
+			entry.instance.close();
+		}
+		this.entries.clear();
+	}
+
+	/**
+	 * @return the ids of all cached cases, most recently used last
+	 */
+	public synchronized List<Long> getCaseIds() {
+		return new ArrayList<>(this.entries.keySet());
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return "CaseCache [size=" + size() + ", maxSize=" + maxSize + ", hits=" + getHits() + ", misses="
+				+ getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+
+	private static final class CachedCase {
+		private final CaseInstance instance;
+		private long lastAccess;
+
+		private CachedCase(CaseInstance instance, long lastAccess) {
+			this.instance = instance;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+}
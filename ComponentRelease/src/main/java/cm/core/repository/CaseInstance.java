@@ -19,8 +19,11 @@ package cm.core.repository;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import cm.core.CaseModel;
 import cm.core.CaseWorker;
@@ -28,30 +31,63 @@ import cm.core.CaseElement;
 import cm.core.Stage;
 import cm.core.data.CaseFile;
 import cm.core.data.CaseFileItem;
+import cm.core.interfaces.ICaseElementListener;
 import cm.core.tasks.Task;
 
-public class CaseInstance {
+/**
+ * <p>
+ * In-memory view of a {@link CaseModel} with indexes of its elements by cmId,
+ * of its Tasks by state, claimant and role, and of its CaseFileItems by cmId and
+ * path, e.g. <code>specifications/attachments</code>.
+ * </p>
+ * <p>
+ * The indexes are built once and then kept up to date as
+ * {@link ICaseElementListener} of the CaseModel, so queries cost in the size of
+ * their result. This includes elements removed from the case or its Stages,
+ * which are unindexed with their nested children, and CaseFileItems added to
+ * or removed from the CaseFile or other items, a lookup by path that misses
+ * means the item is absent. Not thread-safe, like the CaseModel it indexes.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public class CaseInstance implements ICaseElementListener {
 
 	private CaseModel cm;
+	private Map<String, CaseElement> elementRegistry;
 	private Map<String, Task> taskRegistry;
 	private Map<String, CaseFileItem> dataRegistry;
+	private Map<String, CaseFileItem> dataPathRegistry;
+	private Map<CaseFileItem, String> dataPaths;
+	private CaseFile indexedCaseFile;
+	private Map<String, Set<Task>> tasksByState;
+	private Map<Long, Set<Task>> tasksByClaimant;
+	private Map<String, Set<Task>> tasksByRole;
+	private Map<Task, IndexKeys> indexedTasks;
 	
 	
 	
 	public CaseInstance(CaseModel cm) {
 		this.cm = cm;
 		buildRegistries();
+		if (cm != null) {
+			cm.addElementListener(this);
+		}
 	}
 
 	private void buildRegistries() {
 		if (cm != null) {
+			this.elementRegistry = new HashMap<>();
 			this.taskRegistry = new HashMap<>();
 			this.dataRegistry = new HashMap<>();
+			this.tasksByState = new HashMap<>();
+			this.tasksByClaimant = new HashMap<>();
+			this.tasksByRole = new HashMap<>();
+			this.indexedTasks = new IdentityHashMap<>();
 			
 			buildTaskRegistry(taskRegistry, cm);
-			if (cm.getCaseFile() != null) {
-				buildDataRegistry(dataRegistry, cm.getCaseFile());
-			}
+			buildDataRegistry(dataRegistry, cm.getCaseFile());
 		}
 	}
 	
@@ -64,24 +100,166 @@ public class CaseInstance {
 			Stage s = (Stage) parent;
 			children = s.getChildElements();
 		}
+		if (children == null) {
+			return;
+		}
 		for(CaseElement e : children) {
-			if(e instanceof Task) {
-				taskRegistry.put(e.getCmId(), (Task) e);
-			} else if (e instanceof Stage) {
-				buildTaskRegistry(this.taskRegistry, e);
-			}
+			addElement(e);
+		}
+	}
+	
+	private void addElement(CaseElement e) {
+		this.elementRegistry.put(e.getCmId(), e);
+		if(e instanceof Task) {
+			this.taskRegistry.put(e.getCmId(), (Task) e);
+			indexTask((Task) e);
+		} else if (e instanceof Stage) {
+			buildTaskRegistry(this.taskRegistry, e);
 		}
 	}
 	
+	private void removeElement(CaseElement e) {
+		if (this.elementRegistry.get(e.getCmId()) == e) {
+			this.elementRegistry.remove(e.getCmId());
+		}
+		if (e instanceof Task) {
+			if (this.taskRegistry.get(e.getCmId()) == e) {
+				this.taskRegistry.remove(e.getCmId());
+			}
+			unindexTask((Task) e);
+		} else if (e instanceof Stage && ((Stage) e).getChildElements() != null) {
+			for (CaseElement child : ((Stage) e).getChildElements()) {
+				removeElement(child);
+			}
+		}
+	}
+
 	private void buildDataRegistry(Map<String, CaseFileItem> dataRegistry, CaseFile cf) {
+		this.dataPathRegistry = new HashMap<>();
+		this.dataPaths = new IdentityHashMap<>();
+		this.indexedCaseFile = cf;
+		if (cf == null || cf.getCaseFileItems() == null) {
+			return;
+		}
 		for(CaseFileItem cfi : cf.getCaseFileItems()) {
 			dataRegistry.put(cfi.getCmId(), cfi);
-//			if(cfi.getChildren() != null) {
-//				if(cfi.getChildren().size() > 0) {
-//					
-//				}
-//			}
-			// TODO cover children as well or keep as simple entry to children?
+			buildDataPathRegistry(cfi.getCmId(), cfi);
+		}
+	}
+
+	private void buildDataPathRegistry(String path, CaseFileItem cfi) {
+		this.dataPathRegistry.put(path, cfi);
+		this.dataPaths.put(cfi, path);
+		if (cfi.getChildren() != null) {
+			for (CaseFileItem child : cfi.getChildren()) {
+				buildDataPathRegistry(path + "/" + child.getCmId(), child);
+			}
+		}
+	}
+
+	private void removeDataPathRegistry(CaseFileItem cfi) {
+		String path = this.dataPaths.remove(cfi);
+		if (path != null && this.dataPathRegistry.get(path) == cfi) {
+			this.dataPathRegistry.remove(path);
+		}
+		if (cfi.getChildren() != null) {
+			for (CaseFileItem child : cfi.getChildren()) {
+				removeDataPathRegistry(child);
+			}
+		}
+	}
+
+	private void indexTask(Task t) {
+		IndexKeys keys = new IndexKeys(t);
+		IndexKeys previous = this.indexedTasks.put(t, keys);
+		if (previous != null) {
+			if (previous.equals(keys)) {
+				return;
+			}
+			remove(this.tasksByState, previous.state, t);
+			remove(this.tasksByClaimant, previous.claimantId, t);
+			remove(this.tasksByRole, previous.roleName, t);
+		}
+		add(this.tasksByState, keys.state, t);
+		add(this.tasksByClaimant, keys.claimantId, t);
+		add(this.tasksByRole, keys.roleName, t);
+	}
+
+	private void unindexTask(Task t) {
+		IndexKeys keys = this.indexedTasks.remove(t);
+		if (keys != null) {
+			remove(this.tasksByState, keys.state, t);
+			remove(this.tasksByClaimant, keys.claimantId, t);
+			remove(this.tasksByRole, keys.roleName, t);
+		}
+	}
+
+	private static <K> void add(Map<K, Set<Task>> index, K key, Task t) {
+		if (key != null) {
+			index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(t);
+		}
+	}
+
+	private static <K> void remove(Map<K, Set<Task>> index, K key, Task t) {
+		if (key != null) {
+			Set<Task> tasks = index.get(key);
+			if (tasks != null) {
+				tasks.remove(t);
+				if (tasks.isEmpty()) {
+					index.remove(key);
+				}
+			}
+		}
+	}
+
+	private static List<Task> copyOf(Set<Task> tasks) {
+		return tasks == null ? new ArrayList<Task>() : new ArrayList<Task>(tasks);
+	}
+
+	@Override
+	public void elementAdded(CaseElement element) {
+		addElement(element);
+	}
+
+	@Override
+	public void elementRemoved(CaseElement element) {
+		removeElement(element);
+	}
+
+	@Override
+	public void elementChanged(CaseElement element) {
+		if (element instanceof Task && this.indexedTasks.containsKey(element)) {
+			indexTask((Task) element);
+		}
+	}
+
+	@Override
+	public void caseFileItemAdded(CaseFileItem parent, CaseFileItem item) {
+		if (parent == null) {
+			this.dataRegistry.put(item.getCmId(), item);
+			buildDataPathRegistry(item.getCmId(), item);
+			return;
+		}
+		String parentPath = this.dataPaths.get(parent);
+		if (parentPath != null) {
+			buildDataPathRegistry(parentPath + "/" + item.getCmId(), item);
+		}
+	}
+
+	@Override
+	public void caseFileItemRemoved(CaseFileItem parent, CaseFileItem item) {
+		if (parent == null && this.dataRegistry.get(item.getCmId()) == item) {
+			this.dataRegistry.remove(item.getCmId());
+		}
+		removeDataPathRegistry(item);
+	}
+
+	/**
+	 * Stops listening to changes of the CaseModel, e.g. when removed from a cache.
+	 */
+	public void close() {
+		if (this.cm != null) {
+			this.cm.removeElementListener(this);
 		}
 	}
 	
@@ -100,22 +278,66 @@ public class CaseInstance {
 	public CaseModel getCaseModel() {
 		return this.cm;
 	}
+
+	/**
+	 * @param cmId the cmId of an element of the case, including elements of Stages
+	 * @return the element, or <code>null</code> if not found
+	 */
+	public CaseElement getElement(String cmId) {
+		return this.elementRegistry.get(cmId);
+	}
+
+	/**
+	 * @param path cmIds of a CaseFileItem and its parents separated by "/", e.g. <code>specifications</code>
+	 * @return the CaseFileItem, or <code>null</code> if not found
+	 */
+	public CaseFileItem getCaseFileItemByPath(String path) {
+		if (this.cm.getCaseFile() != this.indexedCaseFile) {
+			// the CaseFile was replaced, its items were never announced
+			this.dataRegistry.clear();
+			buildDataRegistry(this.dataRegistry, this.cm.getCaseFile());
+		}
+		return this.dataPathRegistry.get(path);
+	}
 	
 	public List<Task> getAllTasks() {
 		return new ArrayList<Task>(taskRegistry.values());
 		// TODO deep copy instead?
 	}
 	
+	/**
+	 * @param stateFilter a state, e.g. one of {@link cm.core.tasks.TaskStates}
+	 * @return unclaimed Tasks in the given state
+	 */
 	public List<Task> getAllTasks(String stateFilter) {
 		ArrayList<Task> availableTasks = new ArrayList<>();
-		for(Task t : taskRegistry.values()) {
-			if(t.getClaimant() == null && (t.getState().equals(stateFilter))) {
-				availableTasks.add(t);
+		Set<Task> inState = this.tasksByState.get(stateFilter);
+		if (inState != null) {
+			for(Task t : inState) {
+				if(t.getClaimant() == null) {
+					availableTasks.add(t);
+				}
 			}
 		}
 		return availableTasks;
 		// TODO deep copy instead?
 	}
+
+	/**
+	 * @param state a state, e.g. one of {@link cm.core.tasks.TaskStates}
+	 * @return claimed and unclaimed Tasks in the given state
+	 */
+	public List<Task> getAllTasksByState(String state) {
+		return copyOf(this.tasksByState.get(state));
+	}
+
+	/**
+	 * @param roleName name of a {@link cm.core.CaseRole}
+	 * @return Tasks restricted to the given role
+	 */
+	public List<Task> getAllTasksByRole(String roleName) {
+		return copyOf(this.tasksByRole.get(roleName));
+	}
 	
 	public List<CaseFileItem> getAllCaseFileItems() {
 		ArrayList<CaseFileItem> availableCaseFileItems = new ArrayList<>();
@@ -127,12 +349,42 @@ public class CaseInstance {
 	}
 	
 	public List<Task> getAllTasksByClaimaint(CaseWorker cw) {
-		ArrayList<Task> claimaintTasks = new ArrayList<>();
-		for(Task t : taskRegistry.values()) {
-			if(t.getClaimant().getId() == cw.getId()) {
-				claimaintTasks.add(t);
+		return copyOf(this.tasksByClaimant.get(cw.getId()));
+	}
+
+	/**
+	 * Keys a Task was indexed with, used to remove it from its previous buckets.
+	 */
+	private static final class IndexKeys {
+		private final String state;
+		private final Long claimantId;
+		private final String roleName;
+
+		private IndexKeys(Task t) {
+			this.state = t.getState();
+			this.claimantId = t.getClaimant() == null ? null : t.getClaimant().getId();
+			this.roleName = t.getCaseRole() == null ? null : t.getCaseRole().getRoleName();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IndexKeys)) {
+				return false;
 			}
+			IndexKeys other = (IndexKeys) obj;
+			return equal(this.state, other.state) && equal(this.claimantId, other.claimantId)
+					&& equal(this.roleName, other.roleName);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = this.state == null ? 0 : this.state.hashCode();
+			result = 31 * result + (this.claimantId == null ? 0 : this.claimantId.hashCode());
+			return 31 * result + (this.roleName == null ? 0 : this.roleName.hashCode());
+		}
+
+		private static boolean equal(Object a, Object b) {
+			return a == null ? b == null : a.equals(b);
 		}
-		return claimaintTasks;
 	}
 }
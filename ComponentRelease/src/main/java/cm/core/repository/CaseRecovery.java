@@ -0,0 +1,535 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.CaseRole;
+import cm.core.CaseWorker;
+import cm.core.Stage;
+import cm.core.data.CaseFileItem;
+import cm.core.data.CaseFileItemPropertyType;
+import cm.core.data.SimpleProperty;
+import cm.core.journal.CaseSnapshot;
+import cm.core.journal.TransitionJournal;
+import cm.core.journal.TransitionRecord;
+import cm.core.sentries.ElementOnPart;
+import cm.core.sentries.Sentry;
+import cm.core.services.CaseExecutor;
+import cm.core.states.StageTaskTransitions;
+import cm.core.tasks.CaseTask;
+import cm.core.tasks.Task;
+import cm.core.utils.CaseDefinition;
+import cm.core.utils.CaseFactory;
+
+/**
+ * <p>
+ * Captures the runtime state of a {@link CaseModel} as {@link CaseSnapshot} and
+ * recovers a CaseModel from a snapshot and the tail of the
+ * {@link TransitionJournal} without querying the database for the case.
+ * </p>
+ * <p>
+ * The structure of the case is assembled from its {@link CaseDefinition}, then
+ * persistence ids, versions, states, Sentry bits, property values, claimants
+ * and roles are restored by cmId. Journal records after the snapshot set the
+ * state of their element and the OnParts observing it, claims set the
+ * claimant of their Task and property updates set the value of their property.
+ * Each record also sets the version its command committed, so records that
+ * are already contained in the snapshot can be replayed again.
+ * Recovery gives up and returns <code>null</code> whenever the result could
+ * differ from the database, e.g. if the elements of the case no longer match
+ * its definition, a record transitions a case file item or adds or deletes a
+ * property, or suspends or resumes an element. The caller then loads the case
+ * from the database.
+ * </p>
+ * <p>
+ * Recovered cases are detached, versions are those of the snapshot updated by
+ * the replayed records. They are meant to be read and to be passed to the
+ * services, which find the managed entities by id.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+final class CaseRecovery {
+
+	private CaseRecovery() {
+
+	}
+
+	/**
+	 * @param cm
+	 *            the case, fully loaded
+	 * @param sequence
+	 *            last journal sequence number reflected by the case
+	 * @return the snapshot, or <code>null</code> if the case was not created
+	 *         from a known definition
+	 */
+	static CaseSnapshot capture(CaseModel cm, long sequence) {
+		CaseDefinition definition = CaseFactory.getDefinitionOf(cm.getCmId());
+		if (definition == null) {
+			return null;
+		}
+		Set<String> workers = new LinkedHashSet<>();
+		Set<String> roles = new LinkedHashSet<>();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeLong(cm.getCreatedOn() != null ? cm.getCreatedOn().getTime() : Long.MIN_VALUE);
+			writeWorkers(out, cm.getCaseWorkers(), workers);
+			writeWorkers(out, cm.getCaseAdmins(), workers);
+			List<String> caseRoles = new ArrayList<>();
+			if (cm.getCaseRoles() != null) {
+				for (CaseRole role : cm.getCaseRoles()) {
+					caseRoles.add(role.getRoleName());
+				}
+			}
+			writeNames(out, caseRoles, roles);
+
+			List<CaseElement> elements = elementsOf(cm);
+			out.writeInt(elements.size());
+			for (CaseElement e : elements) {
+				out.writeUTF(e.getCmId());
+				out.writeLong(e.getId());
+				out.writeLong(e.getVersion());
+				writeNullable(out, e.getState());
+				writeNullable(out, e.getStateBeforeSuspend());
+				out.writeBoolean(e.isSuspended());
+				Task task = e instanceof Task ? (Task) e : null;
+				String claimant = task != null && task.getClaimant() != null ? task.getClaimant().getUser() : null;
+				String role = task != null && task.getCaseRole() != null ? task.getCaseRole().getRoleName() : null;
+				writeNullable(out, add(workers, claimant));
+				writeNullable(out, add(roles, role));
+				CaseModel subCase = e instanceof CaseTask ? ((CaseTask) e).getSubCaseRef() : null;
+				out.writeLong(subCase != null ? subCase.getId() : 0);
+			}
+
+			List<Sentry> sentries = sentriesOf(elements);
+			out.writeInt(sentries.size());
+			for (Sentry s : sentries) {
+				out.writeUTF(s.getCmId());
+				out.writeBoolean(s.hasBeenSatisfied());
+				out.writeLong(s.getOnPartBits());
+				out.writeLong(s.getSatisfiedOnParts());
+			}
+
+			out.writeLong(cm.getCaseFile() != null ? cm.getCaseFile().getId() : 0);
+			List<CaseFileItem> items = itemsOf(cm);
+			out.writeInt(items.size());
+			for (CaseFileItem item : items) {
+				out.writeUTF(item.getCmId());
+				out.writeLong(item.getId());
+				out.writeLong(item.getVersion());
+				writeNullable(out, item.getState());
+				List<SimpleProperty> properties = item.getProperties() != null ? item.getProperties()
+						: new ArrayList<>();
+				out.writeInt(properties.size());
+				for (SimpleProperty property : properties) {
+					out.writeUTF(property.getName());
+					out.writeLong(property.getId());
+					out.writeLong(property.getVersion());
+					writeNullable(out, property.getType() != null ? property.getType().name() : null);
+					writeNullable(out, property.getValue());
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not encode snapshot of case " + cm.getId(), e);
+		}
+		return new CaseSnapshot(cm.getId(), CaseExecutor.caseIdOf(cm), sequence, System.currentTimeMillis(),
+				definition.getCmId(), cm.getCmId(), new ArrayList<>(workers), new ArrayList<>(roles),
+				bytes.toByteArray());
+	}
+
+	/**
+	 * Collects the persistence ids and versions of a recovered case, to be
+	 * compared with the database.
+	 * 
+	 * @param cm
+	 *            the recovered case
+	 * @param elements
+	 *            receives the versions of the case and its elements by id
+	 * @param items
+	 *            receives the versions of the case file items by id
+	 * @param properties
+	 *            receives the versions of the properties by id, grouped by the
+	 *            id of their item
+	 */
+	static void collectVersions(CaseModel cm, Map<Long, Long> elements, Map<Long, Long> items,
+			Map<Long, Map<Long, Long>> properties) {
+		for (CaseElement e : elementsOf(cm)) {
+			elements.put(e.getId(), e.getVersion());
+		}
+		for (CaseFileItem item : itemsOf(cm)) {
+			items.put(item.getId(), item.getVersion());
+			Map<Long, Long> versions = new HashMap<>();
+			if (item.getProperties() != null) {
+				for (SimpleProperty property : item.getProperties()) {
+					versions.put(property.getId(), property.getVersion());
+				}
+			}
+			properties.put(item.getId(), versions);
+		}
+	}
+
+	/**
+	 * @param record
+	 *            a journal record of a recovered case
+	 * @return the user name of the claimant if the record is a claim
+	 */
+	static String claimantOf(TransitionRecord record) {
+		return TransitionJournal.CLAIM.equals(record.getTransition()) ? record.getWorker() : null;
+	}
+
+	/**
+	 * @param snapshot
+	 *            the latest snapshot of the case
+	 * @param tail
+	 *            the journal records of the case after the snapshot, in order
+	 * @param workers
+	 *            case workers by user name, containing all workers of the
+	 *            snapshot and all claimants of the tail
+	 * @param roles
+	 *            case roles by name, containing all roles of the snapshot
+	 * @param subCases
+	 *            receives the CaseTasks of the case with the id of their
+	 *            sub-case, to be linked by the caller
+	 * @return the recovered case, or <code>null</code> if it has to be loaded from
+	 *         the database
+	 */
+	static CaseModel restore(CaseSnapshot snapshot, List<TransitionRecord> tail, Map<String, CaseWorker> workers,
+			Map<String, CaseRole> roles, Map<CaseTask, Long> subCases) {
+		CaseDefinition definition = CaseFactory.getDefinitionOf(snapshot.getCaseCmId());
+		if (definition == null || !definition.getCmId().equals(snapshot.getDefinitionCmId())) {
+			return null;
+		}
+		CaseModel cm = definition.assemble(snapshot.getCaseCmId().substring(definition.getCmId().length()));
+		Map<String, CaseElement> elements = byCmId(elementsOf(cm), CaseElement::getCmId);
+		Map<String, Sentry> sentries = byCmId(sentriesOf(elementsOf(cm)), Sentry::getCmId);
+		Map<String, CaseFileItem> items = byCmId(itemsOf(cm), CaseFileItem::getCmId);
+		if (elements == null || sentries == null || items == null) {
+			return null;
+		}
+		Map<CaseTask, Long> links = new HashMap<>();
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot.getState()))) {
+			long createdOn = in.readLong();
+			cm.setCreatedOn(createdOn != Long.MIN_VALUE ? new Date(createdOn) : null);
+			List<CaseWorker> caseWorkers = readWorkers(in, workers);
+			List<CaseWorker> caseAdmins = readWorkers(in, workers);
+			int roleCount = in.readInt();
+			List<CaseRole> caseRoles = new ArrayList<>(roleCount);
+			for (int i = 0; i < roleCount; i++) {
+				CaseRole role = roles.get(in.readUTF());
+				if (role == null) {
+					return null;
+				}
+				caseRoles.add(role);
+			}
+			if (caseWorkers == null || caseAdmins == null) {
+				return null;
+			}
+			cm.setCaseWorkers(caseWorkers);
+			cm.setCaseAdmins(caseAdmins);
+			cm.setCaseRoles(caseRoles);
+
+			if (in.readInt() != elements.size()) {
+				return null;
+			}
+			for (int i = 0; i < elements.size(); i++) {
+				CaseElement e = elements.get(in.readUTF());
+				if (e == null) {
+					return null;
+				}
+				e.setId(in.readLong());
+				e.setVersion(in.readLong());
+				e.restoreState(readNullable(in), readNullable(in), in.readBoolean());
+				String claimant = readNullable(in);
+				String role = readNullable(in);
+				long subCaseId = in.readLong();
+				if ((claimant != null || role != null) && !(e instanceof Task)) {
+					return null;
+				}
+				if (e instanceof Task) {
+					Task task = (Task) e;
+					task.setClaimant(claimant != null ? workers.get(claimant) : null);
+					task.setCaseRole(role != null ? roles.get(role) : null);
+					if (claimant != null && task.getClaimant() == null || role != null && task.getCaseRole() == null) {
+						return null;
+					}
+				}
+				if (subCaseId != 0 && e instanceof CaseTask) {
+					links.put((CaseTask) e, subCaseId);
+				}
+			}
+
+			if (in.readInt() != sentries.size()) {
+				return null;
+			}
+			for (int i = 0; i < sentries.size(); i++) {
+				Sentry s = sentries.get(in.readUTF());
+				if (s == null) {
+					return null;
+				}
+				s.setSatisfied(in.readBoolean());
+				if (in.readLong() != s.getOnPartBits()) {
+					return null;
+				}
+				s.setSatisfiedOnParts(in.readLong());
+			}
+
+			long caseFileId = in.readLong();
+			if (cm.getCaseFile() != null) {
+				cm.getCaseFile().setId(caseFileId);
+			}
+			if (in.readInt() != items.size()) {
+				return null;
+			}
+			for (int i = 0; i < items.size(); i++) {
+				CaseFileItem item = items.get(in.readUTF());
+				if (item == null) {
+					return null;
+				}
+				item.setId(in.readLong());
+				item.setVersion(in.readLong());
+				item.setState(readNullable(in));
+				restoreProperties(in, item);
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+
+		for (TransitionRecord record : tail) {
+			if (!replay(record, elements, items, workers)) {
+				return null;
+			}
+		}
+		subCases.putAll(links);
+		return cm;
+	}
+
+	private static void restoreProperties(DataInputStream in, CaseFileItem item) throws IOException {
+		int count = in.readInt();
+		Set<String> names = new HashSet<>();
+		for (int i = 0; i < count; i++) {
+			String name = in.readUTF();
+			long id = in.readLong();
+			long version = in.readLong();
+			String type = readNullable(in);
+			String value = readNullable(in);
+			SimpleProperty property = item.getProperty(name);
+			if (property == null) {
+				property = new SimpleProperty(name, value);
+				item.addProperty(property);
+			}
+			property.setId(id);
+			property.setVersion(version);
+			property.setType(type != null ? CaseFileItemPropertyType.valueOf(type) : null);
+			property.setValue(value);
+			names.add(name);
+		}
+		if (item.getProperties() != null) {
+			for (SimpleProperty property : new ArrayList<>(item.getProperties())) {
+				if (!names.contains(property.getName())) {
+					item.removeProperty(property);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies a journal record to the recovered elements.
+	 * 
+	 * @return <code>false</code> if the record cannot be replayed exactly
+	 */
+	private static boolean replay(TransitionRecord record, Map<String, CaseElement> elements,
+			Map<String, CaseFileItem> items, Map<String, CaseWorker> workers) {
+		String transition = record.getTransition();
+		// versions are those written by the recording command, records already
+		// contained in the snapshot leave them unchanged
+		if (record.getVersion() < 0) {
+			return false;
+		}
+		if (TransitionJournal.PROPERTY.equals(transition)) {
+			CaseFileItem item = items.get(record.getCmId());
+			SimpleProperty property = item != null ? item.getProperty(record.getFromState()) : null;
+			if (property == null) {
+				return false;
+			}
+			property.setValue(record.getToState());
+			property.setVersion(record.getVersion());
+			return true;
+		}
+		CaseElement e = elements.get(record.getCmId());
+		if (e == null || transition == null || TransitionJournal.PROPERTY_CHANGED.equals(transition)) {
+			return false;
+		}
+		e.setVersion(record.getVersion());
+		if (TransitionJournal.CLAIM.equals(transition) || TransitionJournal.UNCLAIM.equals(transition)) {
+			if (!(e instanceof Task)) {
+				return false;
+			}
+			CaseWorker claimant = TransitionJournal.CLAIM.equals(transition) ? workers.get(record.getWorker()) : null;
+			if (TransitionJournal.CLAIM.equals(transition) && claimant == null) {
+				return false;
+			}
+			((Task) e).setClaimant(claimant);
+			return true;
+		}
+		if (isSuspendOrResume(transition)) {
+			return false;
+		}
+		e.restoreState(record.getToState(), e.getStateBeforeSuspend(), e.isSuspended());
+		if (e.getElementObservers() != null) {
+			for (ElementOnPart onPart : e.getElementObservers()) {
+				onPart.setSatisfied(transition.equals(onPart.getRequiredTransition()));
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSuspendOrResume(String transition) {
+		return transition.equals(StageTaskTransitions.suspend.toString())
+				|| transition.equals(StageTaskTransitions.resume.toString())
+				|| transition.equals(StageTaskTransitions.parentSuspend.toString())
+				|| transition.equals(StageTaskTransitions.parentResume.toString());
+	}
+
+	private static List<CaseElement> elementsOf(CaseModel cm) {
+		List<CaseElement> elements = new ArrayList<>();
+		elements.add(cm);
+		addChildren(cm.getChildElements(), elements);
+		return elements;
+	}
+
+	private static void addChildren(List<CaseElement> children, List<CaseElement> elements) {
+		if (children == null) {
+			return;
+		}
+		for (CaseElement child : children) {
+			elements.add(child);
+			if (child instanceof Stage) {
+				addChildren(((Stage) child).getChildElements(), elements);
+			}
+		}
+	}
+
+	private static List<Sentry> sentriesOf(List<CaseElement> elements) {
+		List<Sentry> sentries = new ArrayList<>();
+		for (CaseElement e : elements) {
+			if (e.getSentryRef() != null) {
+				sentries.addAll(e.getSentryRef());
+			}
+		}
+		return sentries;
+	}
+
+	private static List<CaseFileItem> itemsOf(CaseModel cm) {
+		List<CaseFileItem> items = new ArrayList<>();
+		if (cm.getCaseFile() != null) {
+			addItems(cm.getCaseFile().getCaseFileItems(), items);
+		}
+		return items;
+	}
+
+	private static void addItems(List<CaseFileItem> children, List<CaseFileItem> items) {
+		if (children == null) {
+			return;
+		}
+		for (CaseFileItem item : children) {
+			items.add(item);
+			addItems(item.getChildren(), items);
+		}
+	}
+
+	/**
+	 * @return the objects by cmId or <code>null</code> if a cmId is not unique
+	 */
+	private static <T> Map<String, T> byCmId(List<T> objects, Function<T, String> cmId) {
+		Map<String, T> map = new HashMap<>();
+		for (T object : objects) {
+			if (map.put(cmId.apply(object), object) != null) {
+				return null;
+			}
+		}
+		return map;
+	}
+
+	private static String add(Set<String> names, String name) {
+		if (name != null) {
+			names.add(name);
+		}
+		return name;
+	}
+
+	private static void writeWorkers(DataOutputStream out, List<CaseWorker> caseWorkers, Set<String> workers)
+			throws IOException {
+		List<String> users = new ArrayList<>();
+		if (caseWorkers != null) {
+			for (CaseWorker cw : caseWorkers) {
+				users.add(cw.getUser());
+			}
+		}
+		writeNames(out, users, workers);
+	}
+
+	private static List<CaseWorker> readWorkers(DataInputStream in, Map<String, CaseWorker> workers)
+			throws IOException {
+		int count = in.readInt();
+		List<CaseWorker> caseWorkers = new ArrayList<>(count);
+		boolean complete = true;
+		for (int i = 0; i < count; i++) {
+			CaseWorker cw = workers.get(in.readUTF());
+			complete &= cw != null;
+			caseWorkers.add(cw);
+		}
+		return complete ? caseWorkers : null;
+	}
+
+	private static void writeNames(DataOutputStream out, List<String> names, Set<String> referenced)
+			throws IOException {
+		out.writeInt(names.size());
+		for (String name : names) {
+			out.writeUTF(name);
+			referenced.add(name);
+		}
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
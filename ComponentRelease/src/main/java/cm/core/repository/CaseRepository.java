@@ -30,6 +30,11 @@ public interface CaseRepository {
 	public void updateCase(CaseModel cm);
 	public void deleteCase(CaseModel cm);
 	public void detachCase(CaseModel cm);
+	public void evictCase(long id);
+	
+	public CaseModel recoverCaseById(long id);
+	public List<CaseModel> recoverCases();
+	public boolean snapshotCase(long id);
 	
 	public List<Task> getAllTasksByCase(long caseId);
 	public List<Task> getAllTasksByState(CaseModel cm);
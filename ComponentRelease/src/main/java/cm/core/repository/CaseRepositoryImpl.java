@@ -16,139 +16,526 @@
  */
 package cm.core.repository;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
 
 import cm.core.CaseModel;
+import cm.core.CaseRole;
 import cm.core.CaseWorker;
+import cm.core.journal.CaseSnapshot;
+import cm.core.journal.CaseSnapshotStore;
+import cm.core.journal.TransitionJournal;
+import cm.core.journal.TransitionRecord;
+import cm.core.tasks.CaseTask;
 import cm.core.tasks.Task;
+import cm.core.utils.PersistenceSettings;
 
+/**
+ * <p>
+ * {@link CaseRepository} keeping loaded cases in a bounded {@link CaseCache}.
+ * Each operation on the database runs as its own unit of work with a new
+ * {@link EntityManager} and transaction of the RESOURCE_LOCAL unit
+ * {@link PersistenceSettings#persistenceContextUnitLocalName}, which is
+ * committed or rolled back and closed before returning. Cached cases are
+ * therefore detached and loaded with their whole graph. Changes made through
+ * the services do not update the cache, the cases they change have to be
+ * evicted once the change is committed, see {@link #evictCase(long)}.
+ * </p>
+ * <p>
+ * Size and idle time of the cache can be set via system properties
+ * <code>cm.core.repository.cacheSize</code> (default 1000 cases) and
+ * <code>cm.core.repository.cacheIdleSeconds</code> (default 1800 seconds).
+ * </p>
+ * <p>
+ * As an alternative to loading from the database, cases can be recovered from
+ * their latest {@link CaseSnapshot} and the tail of the
+ * {@link TransitionJournal}, see {@link #recoverCases()}. Snapshots of the
+ * cached cases are taken every <code>cm.core.repository.snapshotIntervalSeconds</code>
+ * (default 0, no periodic snapshots).
+ * </p>
+ * <p>
+ * After a restart the ACTIVE cases can be loaded into the cache in parallel,
+ * see {@link #warmUp(int, long, TimeUnit)}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
 public class CaseRepositoryImpl implements CaseRepository {
 
-	private HashMap<Long, CaseInstance> caseInstances = new HashMap<>();
-	private EntityManagerFactory emf;
-	private EntityManager em; // TODO inject / refactor to hasve it in each instance instead
+	private static final Logger LOGGER = Logger.getLogger(CaseRepositoryImpl.class.getName());
+
+	/**
+	 * Number of recovered cases whose versions are compared with the database
+	 * in one query per kind of entity.
+	 */
+	private static final int VALIDATION_BATCH = 100;
+
+	private final EntityManagerFactory emf;
+	private final CaseCache cache;
+	private ScheduledExecutorService snapshotExecutor;
 
 	public CaseRepositoryImpl() {
-		emf = Persistence.createEntityManagerFactory("cmcore"); // TODO include unit name in properties in central place
-		em = emf.createEntityManager();
-		// TODO injection, annotations EXTENDED
-		// TODO IDEA: em per CaseInstance?
+		this(Persistence.createEntityManagerFactory(PersistenceSettings.persistenceContextUnitLocalName));
+		long interval = Long.getLong("cm.core.repository.snapshotIntervalSeconds", 0L);
+		if (interval > 0) {
+			scheduleSnapshots(interval, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * @param emf
+	 *            factory of a RESOURCE_LOCAL unit, e.g. provided by the
+	 *            container; the cache is configured by the system properties
+	 */
+	public CaseRepositoryImpl(EntityManagerFactory emf) {
+		this(emf, new CaseCache(Integer.getInteger("cm.core.repository.cacheSize", 1000),
+				Long.getLong("cm.core.repository.cacheIdleSeconds", 1800L), TimeUnit.SECONDS));
+	}
+
+	public CaseRepositoryImpl(EntityManagerFactory emf, CaseCache cache) {
+		this.emf = emf;
+		this.cache = cache;
+	}
+
+	/**
+	 * Runs the given work in a new EntityManager and transaction. Commits if the
+	 * work completes, rolls back otherwise.
+	 */
+	private <T> T inUnitOfWork(Function<EntityManager, T> work) {
+		EntityManager em = emf.createEntityManager();
+		EntityTransaction tx = em.getTransaction();
+		try {
+			tx.begin();
+			T result = work.apply(em);
+			tx.commit();
+			return result;
+		} finally {
+			if (tx.isActive()) {
+				tx.rollback();
+			}
+			em.close();
+		}
 	}
-	
+
 	@Override
 	public void addCaseModel(CaseModel cm) {
-		long caseId = cm.getId();
-		if(!this.caseInstances.containsKey(caseId)) {
-			CaseInstance instance = new CaseInstance(cm);
-			this.caseInstances.put(caseId, instance);
-			em.getTransaction().begin();
-			em.persist(cm);
+		if (cm.getId() != 0 && this.cache.contains(cm.getId())) {
+			return;
 		}
+		inUnitOfWork(em -> {
+			em.persist(cm);
+			return null;
+		});
+		this.cache.put(new CaseInstance(cm));
 	}
 
 	@Override
 	public CaseModel getCaseById(long id) {
-		if (!caseInstances.isEmpty() || caseInstances.containsKey(id)) {
-			for (CaseInstance ci : caseInstances.values()) {
-				if (ci.getCaseId() == id) {
-					return ci.getCaseModel();
-				}
-			}
-		} else if (caseInstances.isEmpty() || !caseInstances.containsKey(id)) {
-			return fetchCaseModelFromDatabase(id);
+		CaseInstance cached = this.cache.get(id);
+		if (cached != null) {
+			return cached.getCaseModel();
 		}
-		return null;
+		return fetchCaseModelFromDatabase(id);
 	}
 
 	private CaseModel fetchCaseModelFromDatabase(long id) {
-		CaseModel cm = em.find(CaseModel.class, id);
+		CaseModel cm = inUnitOfWork(em -> {
+			CaseModel found = em.find(CaseModel.class, id);
+			if (found != null) {
+				CaseWarmUp.initialize(found);
+			}
+			return found;
+		});
 		if (cm != null) {
-			CaseInstance ci = new CaseInstance(cm);
-			caseInstances.put(cm.getId(), ci);
+			this.cache.put(new CaseInstance(cm));
 		}
 		return cm;
 	}
 
+	/**
+	 * Recovers the case from its snapshot and the journal, falls back to the
+	 * database if there is no snapshot or it cannot be recovered exactly.
+	 */
 	@Override
-	public void detachCase(CaseModel cm) {
-		long caseId = cm.getId();
-		if (caseInstances.containsKey(caseId)) {
-			em.getTransaction().begin();
-			em.detach(cm);
-			em.getTransaction().commit();
-			caseInstances.remove(caseId);
+	public CaseModel recoverCaseById(long id) {
+		CaseInstance cached = this.cache.get(id);
+		if (cached != null) {
+			return cached.getCaseModel();
+		}
+		CaseSnapshot snapshot = CaseSnapshotStore.getInstance().load(id);
+		if (snapshot != null) {
+			Map<Long, CaseModel> recovered = recover(Collections.singletonList(snapshot));
+			if (recovered.containsKey(id)) {
+				return recovered.get(id);
+			}
+		}
+		return fetchCaseModelFromDatabase(id);
+	}
+
+	/**
+	 * <p>
+	 * Recovers all cases with a snapshot, e.g. after a restart. The journal is
+	 * read once for all cases and the case workers and roles referenced are
+	 * fetched with one query each. The versions of the recovered cases are
+	 * compared with the database in batches. Cases that cannot be recovered
+	 * exactly or differ from the database are loaded from the database. All
+	 * cases are put into the cache.
+	 * </p>
+	 * 
+	 * @return the recovered cases
+	 */
+	@Override
+	public List<CaseModel> recoverCases() {
+		List<CaseSnapshot> snapshots = CaseSnapshotStore.getInstance().loadAll();
+		Map<Long, CaseModel> recovered = recover(snapshots);
+		List<CaseModel> cases = new ArrayList<>(recovered.values());
+		for (CaseSnapshot snapshot : snapshots) {
+			if (!recovered.containsKey(snapshot.getCaseId())) {
+				CaseModel cm = fetchCaseModelFromDatabase(snapshot.getCaseId());
+				if (cm != null) {
+					cases.add(cm);
+				}
+			}
+		}
+		return cases;
+	}
+
+	private Map<Long, CaseModel> recover(List<CaseSnapshot> snapshots) {
+		Map<Long, CaseModel> recovered = new LinkedHashMap<>();
+		if (snapshots.isEmpty()) {
+			return recovered;
+		}
+		long from = Long.MAX_VALUE;
+		Map<Long, List<TransitionRecord>> tails = new HashMap<>();
+		for (CaseSnapshot snapshot : snapshots) {
+			from = Math.min(from, snapshot.getSequence() + 1);
+			tails.put(snapshot.getJournalCaseId(), new ArrayList<>());
+		}
+		try {
+			TransitionJournal.getInstance().read(from, record -> {
+				List<TransitionRecord> tail = tails.get(record.getCaseId());
+				if (tail != null) {
+					tail.add(record);
+				}
+			});
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not read transition journal, cases are loaded from the database", e);
+			return recovered;
+		}
+
+		Set<String> users = new HashSet<>();
+		Set<String> roleNames = new HashSet<>();
+		for (CaseSnapshot snapshot : snapshots) {
+			users.addAll(snapshot.getWorkers());
+			roleNames.addAll(snapshot.getRoles());
+		}
+		for (List<TransitionRecord> tail : tails.values()) {
+			for (TransitionRecord record : tail) {
+				String claimant = CaseRecovery.claimantOf(record);
+				if (claimant != null) {
+					users.add(claimant);
+				}
+			}
+		}
+		Map<String, CaseWorker> workers = new HashMap<>();
+		Map<String, CaseRole> roles = new HashMap<>();
+		inUnitOfWork(em -> {
+			if (!users.isEmpty()) {
+				for (CaseWorker cw : em
+						.createQuery("SELECT cw FROM CaseWorker cw WHERE cw.user IN :users", CaseWorker.class)
+						.setParameter("users", users).getResultList()) {
+					workers.put(cw.getUser(), cw);
+				}
+			}
+			if (!roleNames.isEmpty()) {
+				for (CaseRole role : em
+						.createQuery("SELECT r FROM CaseRole r WHERE r.roleName IN :names", CaseRole.class)
+						.setParameter("names", roleNames).getResultList()) {
+					roles.put(role.getRoleName(), role);
+				}
+			}
+			return null;
+		});
+
+		Map<CaseTask, Long> subCases = new HashMap<>();
+		for (CaseSnapshot snapshot : snapshots) {
+			List<TransitionRecord> tail = new ArrayList<>();
+			for (TransitionRecord record : tails.get(snapshot.getJournalCaseId())) {
+				if (record.getSequence() > snapshot.getSequence()) {
+					tail.add(record);
+				}
+			}
+			CaseModel cm = CaseRecovery.restore(snapshot, tail, workers, roles, subCases);
+			if (cm != null) {
+				recovered.put(snapshot.getCaseId(), cm);
+			}
+		}
+		validate(recovered);
+		for (CaseModel cm : recovered.values()) {
+			this.cache.put(new CaseInstance(cm));
+		}
+		for (Map.Entry<CaseTask, Long> link : subCases.entrySet()) {
+			CaseModel subCase = recovered.get(link.getValue());
+			if (subCase == null && this.cache.contains(link.getValue())) {
+				subCase = this.cache.get(link.getValue()).getCaseModel();
+			}
+			if (subCase != null) {
+				link.getKey().setSubCaseRef(subCase);
+				subCase.setCaseTaskRef(link.getKey());
+			}
+		}
+		return recovered;
+	}
+
+	/**
+	 * Removes the recovered cases whose elements, case file items or properties
+	 * differ from the database in id or version. The journal tail may be
+	 * incomplete, e.g. if records queued before a crash were not written, so
+	 * each batch of cases is compared with an id and version projection and the
+	 * cases that differ are loaded from the database instead.
+	 */
+	private void validate(Map<Long, CaseModel> recovered) {
+		List<Long> ids = new ArrayList<>(recovered.keySet());
+		for (int from = 0; from < ids.size(); from += VALIDATION_BATCH) {
+			Map<Long, Long> elements = new HashMap<>();
+			Map<Long, Long> items = new HashMap<>();
+			Map<Long, Map<Long, Long>> properties = new HashMap<>();
+			Map<Long, Long> elementCases = new HashMap<>();
+			Map<Long, Long> itemCases = new HashMap<>();
+			for (Long id : ids.subList(from, Math.min(from + VALIDATION_BATCH, ids.size()))) {
+				Map<Long, Long> caseElements = new HashMap<>();
+				Map<Long, Long> caseItems = new HashMap<>();
+				CaseRecovery.collectVersions(recovered.get(id), caseElements, caseItems, properties);
+				elements.putAll(caseElements);
+				items.putAll(caseItems);
+				caseElements.keySet().forEach(element -> elementCases.put(element, id));
+				caseItems.keySet().forEach(item -> itemCases.put(item, id));
+			}
+			Set<Long> stale = new HashSet<>();
+			inUnitOfWork(em -> {
+				compare(em.createQuery("SELECT e.id, e.version FROM CaseElement e WHERE e.id IN :ids", Object[].class)
+						.setParameter("ids", elements.keySet()).getResultList(), elements, elementCases, stale);
+				if (!items.isEmpty()) {
+					compare(em
+							.createQuery("SELECT i.id, i.version FROM CaseFileItem i WHERE i.id IN :ids",
+									Object[].class)
+							.setParameter("ids", items.keySet()).getResultList(), items, itemCases, stale);
+					// properties are compared per item to find added and deleted ones
+					Map<Long, Map<Long, Long>> stored = new HashMap<>();
+					for (Object[] row : em.createQuery(
+							"SELECT i.id, p.id, p.version FROM CaseFileItem i JOIN i.properties p WHERE i.id IN :ids",
+							Object[].class).setParameter("ids", items.keySet()).getResultList()) {
+						stored.computeIfAbsent((Long) row[0], item -> new HashMap<>()).put((Long) row[1],
+								(Long) row[2]);
+					}
+					for (Map.Entry<Long, Map<Long, Long>> item : properties.entrySet()) {
+						if (!item.getValue().equals(stored.getOrDefault(item.getKey(), Collections.emptyMap()))) {
+							stale.add(itemCases.get(item.getKey()));
+						}
+					}
+				}
+				return null;
+			});
+			for (Long id : stale) {
+				LOGGER.info("Case " + id + " differs from its snapshot and journal, it is loaded from the database");
+				recovered.remove(id);
+			}
 		}
+	}
 
+	/**
+	 * Adds the cases of the recovered entities whose version differs from the
+	 * rows found or that were not found.
+	 */
+	private static void compare(List<Object[]> rows, Map<Long, Long> versions, Map<Long, Long> cases,
+			Set<Long> stale) {
+		Set<Long> found = new HashSet<>();
+		for (Object[] row : rows) {
+			Long id = (Long) row[0];
+			found.add(id);
+			if (!row[1].equals(versions.get(id))) {
+				stale.add(cases.get(id));
+			}
+		}
+		for (Long id : versions.keySet()) {
+			if (!found.contains(id)) {
+				stale.add(cases.get(id));
+			}
+		}
 	}
 
+	/**
+	 * Takes a snapshot of the case as stored in the database.
+	 * 
+	 * @return <code>true</code> if the snapshot was saved
+	 */
 	@Override
-	public void updateCase(CaseModel cm) {
-		long caseId = cm.getId();
-		if (caseInstances.containsKey(caseId)) {
-			em.getTransaction().begin();
-			em.merge(cm);
-			em.getTransaction().commit();
-		} else {
-			fetchCaseModelFromDatabase(caseId);
-			if (caseInstances.containsKey(caseId)) {
-				em.getTransaction().begin();
-				em.merge(cm);
-				em.getTransaction().commit();
+	public boolean snapshotCase(long id) {
+		CaseSnapshotStore store = CaseSnapshotStore.getInstance();
+		if (!store.isEnabled() || !TransitionJournal.getInstance().isEnabled()) {
+			return false;
+		}
+		try {
+			// records committed while the case is loaded get later sequence numbers
+			// and are replayed again; they set the states and versions their
+			// commands wrote, so the snapshot ends up with the committed state
+			long sequence = TransitionJournal.getInstance().getLastSequence();
+			CaseSnapshot snapshot = inUnitOfWork(em -> {
+				CaseModel cm = em.find(CaseModel.class, id);
+				return cm != null ? CaseRecovery.capture(cm, sequence) : null;
+			});
+			if (snapshot == null) {
+				return false;
 			}
+			store.save(snapshot);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Could not take snapshot of case " + id, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Takes snapshots of all cached cases.
+	 * 
+	 * @return the number of snapshots saved
+	 */
+	public int snapshotCachedCases() {
+		int saved = 0;
+		for (long id : this.cache.getCaseIds()) {
+			if (snapshotCase(id)) {
+				saved++;
+			}
+		}
+		return saved;
+	}
+
+	/**
+	 * Takes snapshots of all cached cases periodically on a daemon thread.
+	 */
+	public synchronized void scheduleSnapshots(long interval, TimeUnit unit) {
+		if (this.snapshotExecutor != null) {
+			this.snapshotExecutor.shutdown();
+		}
+		this.snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "cm-case-snapshots");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.snapshotExecutor.scheduleWithFixedDelay(this::snapshotCachedCases, interval, interval, unit);
+	}
+
+	/**
+	 * Loads the ACTIVE cases, primary cases first, with their whole graphs into
+	 * the cache, see {@link CaseWarmUp}. At most as many cases as fit into the
+	 * cache are loaded, cases already cached are not loaded again.
+	 * 
+	 * @param parallelism
+	 *            maximum number of cases loaded at the same time, each with its
+	 *            own database connection
+	 * @param budget
+	 *            time after which no further cases are loaded, 0 for no limit
+	 * @param unit
+	 *            unit of budget
+	 * @return counts and timing of the warm-up
+	 */
+	public CaseWarmUp.Report warmUp(int parallelism, long budget, TimeUnit unit) {
+		List<Long> ids = inUnitOfWork(CaseWarmUp::findActiveCaseIds);
+		if (ids.size() > this.cache.getMaxSize()) {
+			ids = ids.subList(0, this.cache.getMaxSize());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread thread = new Thread(r, "cm-case-warm-up");
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			return new CaseWarmUp(executor, parallelism, budget, unit).run(ids, id -> {
+				if (this.cache.contains(id)) {
+					return this.cache.get(id);
+				}
+				CaseModel cm = inUnitOfWork(em -> {
+					CaseModel found = em.find(CaseModel.class, id);
+					if (found != null) {
+						CaseWarmUp.initialize(found);
+					}
+					return found;
+				});
+				if (cm != null) {
+					this.cache.put(new CaseInstance(cm));
+				}
+				return cm;
+			});
+		} finally {
+			executor.shutdown();
 		}
 	}
 
+	@Override
+	public void detachCase(CaseModel cm) {
+		this.cache.remove(cm.getId());
+	}
+
+	/**
+	 * Removes the case from the cache, e.g. after a command changing it
+	 * committed, so the next request loads it again.
+	 */
+	@Override
+	public void evictCase(long id) {
+		this.cache.remove(id);
+	}
+
+	@Override
+	public void updateCase(CaseModel cm) {
+		CaseModel merged = inUnitOfWork(em -> em.merge(cm));
+		this.cache.put(new CaseInstance(merged));
+	}
+
 	@Override
 	public void deleteCase(CaseModel cm) {
-		long caseId = cm.getId();
-		if (caseInstances.containsKey(caseId)) {
-			em.getTransaction().begin();
-			em.remove(cm);
-			em.getTransaction().commit();
-		} else {
-			fetchCaseModelFromDatabase(caseId);
-			if (caseInstances.containsKey(caseId)) {
-				em.getTransaction().begin();
-				em.merge(cm);
-				em.getTransaction().commit();
+		inUnitOfWork(em -> {
+			CaseModel managed = em.find(CaseModel.class, cm.getId());
+			if (managed != null) {
+				em.remove(managed);
 			}
+			return null;
+		});
+		this.cache.remove(cm.getId());
+		try {
+			CaseSnapshotStore.getInstance().delete(cm.getId());
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Could not delete snapshot of case " + cm.getId(), e);
 		}
-
 	}
 
 	@Override
 	public void updateTask(long caseId, Task t) {
-		if (caseInstances.containsKey(caseId)) {
-			em.getTransaction().begin();
-			em.merge(t);
-			em.getTransaction().commit();
-		} else {
-			fetchCaseModelFromDatabase(caseId);
-			em.getTransaction().begin();
-			em.merge(t);
-			em.getTransaction().commit();
-		}
+		inUnitOfWork(em -> em.merge(t));
 	}
 
 	@Override
 	public void updateTask(CaseModel cm, Task t) {
-		long caseId = cm.getId();
-		if (caseInstances.containsKey(caseId)) {
-			em.getTransaction().begin();
-			em.merge(t);
-			em.getTransaction().commit();
-		} else {
-			fetchCaseModelFromDatabase(caseId);
-			em.getTransaction().begin();
-			em.merge(t);
-			em.getTransaction().commit();
-		}
-
+		updateTask(cm.getId(), t);
 	}
 
 	@Override
@@ -168,4 +555,12 @@ public class CaseRepositoryImpl implements CaseRepository {
 		// TODO Auto-generated method stub
 		return null;
 	}
+
+	/**
+	 * @return the cache of this repository, e.g. to read its hit, miss and
+	 *         eviction counters
+	 */
+	public CaseCache getCache() {
+		return cache;
+	}
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManager;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.CaseStates;
+import cm.core.Stage;
+import cm.core.data.CaseFile;
+import cm.core.data.CaseFileItem;
+import cm.core.sentries.Sentry;
+import cm.core.tasks.CaseTask;
+
+/**
+ * <p>
+ * Loads a list of cases with a bounded number of parallel workers, e.g. to warm
+ * up caches after a restart. Each worker takes the next case id until all are
+ * loaded or the time budget is spent; a case already being loaded when the
+ * budget runs out is finished. Failures are logged and counted, they do not
+ * stop the warm-up. Progress is logged every tenth of the cases.
+ * </p>
+ * <p>
+ * {@link #findActiveCaseIds(EntityManager)} selects the ids of all ACTIVE
+ * cases, primary cases first, without loading the cases.
+ * {@link #initialize(CaseModel)} touches all lazily loaded relations of a
+ * loaded case, so its whole graph is read while the EntityManager is open.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public class CaseWarmUp {
+
+	private static final Logger LOGGER = Logger.getLogger(CaseWarmUp.class.getName());
+
+	private final Executor executor;
+	private final int parallelism;
+	private final long budgetNanos;
+
+	/**
+	 * @param executor
+	 *            runs the workers
+	 * @param parallelism
+	 *            maximum number of cases loaded at the same time
+	 * @param budget
+	 *            time after which no further cases are loaded, 0 for no limit
+	 * @param unit
+	 *            unit of budget
+	 */
+	public CaseWarmUp(Executor executor, int parallelism, long budget, TimeUnit unit) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.budgetNanos = budget > 0 ? unit.toNanos(budget) : Long.MAX_VALUE;
+	}
+
+	/**
+	 * @param em
+	 *            an open EntityManager
+	 * @return the ids of all ACTIVE cases, primary cases before secondary cases
+	 */
+	public static List<Long> findActiveCaseIds(EntityManager em) {
+		List<Long> ids = new ArrayList<>(em
+				.createQuery("SELECT c.id FROM CaseModel c WHERE c.caseTaskRef IS NULL AND c.state = :state", Long.class)
+				.setParameter("state", CaseStates.ACTIVE.toString()).getResultList());
+		ids.addAll(em
+				.createQuery("SELECT c.id FROM CaseModel c WHERE c.caseTaskRef IS NOT NULL AND c.state = :state",
+						Long.class)
+				.setParameter("state", CaseStates.ACTIVE.toString()).getResultList());
+		return ids;
+	}
+
+	/**
+	 * Touches the elements, Sentries, OnParts and observers, the case file and
+	 * the sub-cases of the case.
+	 * 
+	 * @param cm
+	 *            a case attached to an open EntityManager
+	 * @return the number of elements and case file items touched
+	 */
+	public static int initialize(CaseModel cm) {
+		initializeRelations(cm);
+		int touched = 1 + initializeElements(cm.getChildElements());
+		CaseFile caseFile = cm.getCaseFile();
+		if (caseFile != null) {
+			touched += initializeItems(caseFile.getCaseFileItems());
+		}
+		return touched;
+	}
+
+	private static int initializeElements(List<CaseElement> elements) {
+		if (elements == null) {
+			return 0;
+		}
+		int touched = elements.size();
+		for (CaseElement e : elements) {
+			initializeRelations(e);
+			if (e instanceof Stage) {
+				touched += initializeElements(((Stage) e).getChildElements());
+			} else if (e instanceof CaseTask && ((CaseTask) e).getSubCaseRef() != null) {
+				touched += initialize(((CaseTask) e).getSubCaseRef());
+			}
+		}
+		return touched;
+	}
+
+	private static void initializeRelations(CaseElement e) {
+		if (e.getElementObservers() != null) {
+			e.getElementObservers().size();
+		}
+		if (e.getSentryRef() != null) {
+			for (Sentry sentry : e.getSentryRef()) {
+				if (sentry.getOnParts() != null) {
+					sentry.getOnParts().size();
+				}
+			}
+		}
+	}
+
+	private static int initializeItems(List<CaseFileItem> items) {
+		if (items == null) {
+			return 0;
+		}
+		int touched = items.size();
+		for (CaseFileItem item : items) {
+			if (item.getProperties() != null) {
+				item.getProperties().size();
+			}
+			if (item.getObservers() != null) {
+				item.getObservers().size();
+			}
+			touched += initializeItems(item.getChildren());
+		}
+		return touched;
+	}
+
+	/**
+	 * Loads the cases and waits until all workers have finished.
+	 * 
+	 * @param caseIds
+	 *            the ids of the cases to load, in the order to load them
+	 * @param loader
+	 *            loads one case, returns <code>null</code> if it does not exist;
+	 *            called concurrently
+	 * @return counts and timing of the warm-up
+	 */
+	public Report run(List<Long> caseIds, LongFunction<?> loader) {
+		long start = System.nanoTime();
+		long deadline = this.budgetNanos == Long.MAX_VALUE ? Long.MAX_VALUE : start + this.budgetNanos;
+		int total = caseIds.size();
+		int step = Math.max(1, total / 10);
+		AtomicInteger next = new AtomicInteger();
+		AtomicInteger loaded = new AtomicInteger();
+		AtomicInteger missing = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		AtomicInteger completed = new AtomicInteger();
+
+		Runnable worker = () -> {
+			int index;
+			while ((index = next.getAndIncrement()) < total) {
+				if (System.nanoTime() - deadline > 0) {
+					return;
+				}
+				long id = caseIds.get(index);
+				try {
+					if (loader.apply(id) != null) {
+						loaded.incrementAndGet();
+					} else {
+						missing.incrementAndGet();
+					}
+				} catch (RuntimeException e) {
+					failed.incrementAndGet();
+					LOGGER.log(Level.WARNING, "Warm-up of case " + id + " failed", e);
+				}
+				int done = completed.incrementAndGet();
+				if (done % step == 0) {
+					LOGGER.info("Warm-up: " + done + " of " + total + " cases loaded after "
+							+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+				}
+			}
+		};
+
+		int workers = Math.min(this.parallelism, total);
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+		for (int i = 0; i < workers; i++) {
+			futures[i] = CompletableFuture.runAsync(worker, this.executor);
+		}
+		CompletableFuture.allOf(futures).join();
+
+		Report report = new Report(total, loaded.get(), missing.get(), failed.get(), total - completed.get(),
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		LOGGER.info(report.toString());
+		return report;
+	}
+
+	/**
+	 * Result of a warm-up.
+	 */
+	public static final class Report {
+		private final int requested;
+		private final int loaded;
+		private final int missing;
+		private final int failed;
+		private final int skipped;
+		private final long elapsedMillis;
+
+		Report(int requested, int loaded, int missing, int failed, int skipped, long elapsedMillis) {
+			this.requested = requested;
+			this.loaded = loaded;
+			this.missing = missing;
+			this.failed = failed;
+			this.skipped = skipped;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public int getRequested() {
+			return requested;
+		}
+
+		public int getLoaded() {
+			return loaded;
+		}
+
+		/**
+		 * @return the number of cases deleted since their ids were selected
+		 */
+		public int getMissing() {
+			return missing;
+		}
+
+		public int getFailed() {
+			return failed;
+		}
+
+		/**
+		 * @return the number of cases not loaded because the time budget was spent
+		 */
+		public int getSkipped() {
+			return skipped;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "Warm-up [requested=" + requested + ", loaded=" + loaded + ", missing=" + missing + ", failed="
+					+ failed + ", skipped=" + skipped + ", elapsedMillis=" + elapsedMillis + "]";
+		}
+	}
+
+}
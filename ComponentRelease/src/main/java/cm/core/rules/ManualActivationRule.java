@@ -56,9 +56,7 @@ public class ManualActivationRule extends Rule{
 
 	@Override
 	public boolean evaluate() {
-		RuleExpression expression = RuleExpressionFactory.getExpressionForRule(this);
-		boolean repeat = expression.evaluate();
-		return repeat;
+		return evaluateExpression();
 	}
 
 
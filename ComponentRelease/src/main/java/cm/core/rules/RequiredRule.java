@@ -58,9 +58,7 @@ public class RequiredRule extends Rule {
 
 	@Override
 	public boolean evaluate() {
-		RuleExpression expression = RuleExpressionFactory.getExpressionForRule(this);
-		boolean repeat = expression.evaluate();
-		return repeat;
+		return evaluateExpression();
 	}
 
 }
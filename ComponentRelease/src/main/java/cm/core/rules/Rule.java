@@ -21,6 +21,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Transient;
 
 import cm.core.data.CaseFileItem;
 import cm.core.utils.RuleExpressionFactory;
@@ -48,6 +49,14 @@ public abstract class Rule {
 	private String name;
 	@ManyToOne
 	protected CaseFileItem contextRef;
+	@Transient
+	private RuleExpression expression;
+	@Transient
+	private CaseFileItem evaluatedContext;
+	@Transient
+	private long evaluatedVersion;
+	@Transient
+	private boolean evaluatedResult;
 
 	public Rule() {
 
@@ -69,6 +78,14 @@ public abstract class Rule {
 		this.contextRef = contextRef;
 	}
 
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
 	public String getName() {
 		return this.name;
 	}
@@ -83,6 +100,37 @@ public abstract class Rule {
 
 	public void setName(String name) {
 		this.name = name;
+		this.expression = null;
+		this.evaluatedContext = null;
+	}
+
+	/**
+	 * <p>
+	 * Evaluates the {@link RuleExpression} provided by the
+	 * {@link RuleExpressionFactory} for the name of this Rule. The expression is
+	 * requested once and kept. Its result is reused as long as the
+	 * {@link CaseFileItem#getModificationVersion()} of the contextRef is
+	 * unchanged, so expressions must only depend on the contextRef.
+	 * </p>
+	 * 
+	 * @return result of the evaluated expression
+	 */
+	protected boolean evaluateExpression() {
+		CaseFileItem context = this.contextRef;
+		if (context != null && context == this.evaluatedContext
+				&& context.getModificationVersion() == this.evaluatedVersion) {
+			return this.evaluatedResult;
+		}
+		if (this.expression == null) {
+			this.expression = RuleExpressionFactory.getExpressionForRule(this);
+		}
+		boolean result = this.expression.evaluate();
+		if (context != null) {
+			this.evaluatedContext = context;
+			this.evaluatedVersion = context.getModificationVersion();
+			this.evaluatedResult = result;
+		}
+		return result;
 	}
 
 	/**
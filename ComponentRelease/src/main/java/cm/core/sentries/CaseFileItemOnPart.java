@@ -19,6 +19,7 @@ package cm.core.sentries;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 
+import cm.core.PropagationEngine;
 import cm.core.data.CaseFileItem;
 import cm.core.interfaces.ICaseFileItemObserver;
 import cm.core.states.CaseFileItemTransition;
@@ -67,10 +68,11 @@ public class CaseFileItemOnPart extends OnPart implements ICaseFileItemObserver
 	public CaseFileItemOnPart(Sentry sentryRef, CaseFileItem caseFileItem, String requiredTransition) {
 		this.sentryRef = sentryRef;
 		this.sentryRef.addOnPart(this);
-		caseFileItem.registerCaseFileItemObserver(this);
 		this.requiredTransition = requiredTransition;
+		caseFileItem.registerCaseFileItemObserver(this);
 	}
 
+	@Override
 	public String getRequiredTransition() {
 		return requiredTransition;
 	}
@@ -82,7 +84,7 @@ public class CaseFileItemOnPart extends OnPart implements ICaseFileItemObserver
 	public void updateCaseFileItemObserver(String transition) {
 		if (transition.equals(this.requiredTransition)) {
 			this.setSatisfied(true);
-			this.sentryRef.checkCriteria();
+			PropagationEngine.scheduleCriteriaCheck(this.sentryRef);
 		} else {
 			this.setSatisfied(false);
 		}
@@ -20,6 +20,7 @@ import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
 
 import cm.core.CaseElement;
+import cm.core.PropagationEngine;
 import cm.core.interfaces.IElementObserver;
 import cm.core.states.StageTaskTransitions;
 
@@ -60,18 +61,27 @@ public class ElementOnPart extends OnPart implements IElementObserver {
 	public ElementOnPart(Sentry sentryRef, CaseElement elementRef, String requiredTransition) {
 		this.sentryRef = sentryRef;
 		this.sentryRef.addOnPart(this);
-		elementRef.registerElementObserver(this);
 		this.requiredTransition = requiredTransition;
+		elementRef.registerElementObserver(this);
 	}
 
 	public ElementOnPart() {
 
 	}
 
+	@Override
+	public String getRequiredTransition() {
+		return requiredTransition;
+	}
+
+	public void setRequiredTransition(String requiredTransition) {
+		this.requiredTransition = requiredTransition;
+	}
+
 	public void updateElementObserver(String transition) {
 		if (transition.equals(this.requiredTransition)) {
 			this.setSatisfied(true);
-			this.sentryRef.checkCriteria();
+			PropagationEngine.scheduleCriteriaCheck(this.sentryRef);
 		} else
 			this.setSatisfied(false);
 	}
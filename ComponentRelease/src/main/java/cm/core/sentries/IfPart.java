@@ -26,6 +26,7 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToOne;
 import javax.persistence.Transient;
 
+import cm.core.PropagationEngine;
 import cm.core.data.CaseFileItem;
 import cm.core.rules.ManualActivationRule;
 import cm.core.rules.RepetitionRule;
@@ -65,6 +66,10 @@ public class IfPart {
 
 	@Transient
 	IfPartImplementation ifpImpl;
+	@Transient
+	private CaseFileItem evaluatedItem;
+	@Transient
+	private long evaluatedVersion;
 
 	public IfPart() {
 
@@ -113,6 +118,8 @@ public class IfPart {
 
 	public void setCmId(String cmId) {
 		this.cmId = cmId;
+		this.ifpImpl = null;
+		this.evaluatedItem = null;
 	}
 
 	public CaseFileItem getCaseFileItemRef() {
@@ -126,15 +133,26 @@ public class IfPart {
 	/**
 	 * Evaluates whether or not this IfPart is satisfied by first getting the actual
 	 * implementation based on its cmId. The {@link IfPartImplementation} is then
-	 * evaluated.
+	 * evaluated. The implementation is requested once and kept. Its result is
+	 * reused as long as the {@link CaseFileItem#getModificationVersion()} of the
+	 * referenced CaseFileItem is unchanged.
 	 * 
 	 * @return <code>true</code> if satisfied, or <code>false</code> if not
 	 */
 	public boolean isSatisfied() {
-		boolean ifPartResponse = false;
-		this.ifpImpl = IfPartImplementationFactory.getIfPartImplementation(this);
-		ifPartResponse = ifpImpl.isSatisfied();
+		CaseFileItem item = this.caseFileItemRef;
+		if (item != null && item == this.evaluatedItem && item.getModificationVersion() == this.evaluatedVersion) {
+			return this.satisfied;
+		}
+		if (this.ifpImpl == null) {
+			this.ifpImpl = IfPartImplementationFactory.getIfPartImplementation(this);
+		}
+		boolean ifPartResponse = ifpImpl.isSatisfied();
 		this.satisfied = ifPartResponse;
+		if (item != null) {
+			this.evaluatedItem = item;
+			this.evaluatedVersion = item.getModificationVersion();
+		}
 		return ifPartResponse;
 	};
 
@@ -145,8 +163,9 @@ public class IfPart {
 	 */
 	public void setSatisfied(boolean satisfied) {// TODO check if can be removed
 		this.satisfied = satisfied;
+		this.evaluatedItem = null;
 		if (this.satisfied) {
-			this.sentryRef.checkCriteria();
+			PropagationEngine.scheduleCriteriaCheck(this.sentryRef);
 		}
 	}
 
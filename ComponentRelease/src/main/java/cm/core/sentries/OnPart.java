@@ -36,6 +36,10 @@ import cm.core.data.CaseFileItem;
  * when the required transition has taken place.
  * </p>
  * <p>
+ * Whether an OnPart is satisfied is kept in a bitset of its Sentry, the OnPart
+ * only stores the index of its bit.
+ * </p>
+ * <p>
  * See CMMN 1.1 specification sections 5.4.6 and 8.5 for more information.
  * </p>
  * 
@@ -48,16 +52,43 @@ public abstract class OnPart {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private long id;
-	private boolean isSatisfied;
+	private int satisfiedBit = -1;
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
 
 	public boolean isSatisfied() {
-		return isSatisfied;
+		return this.sentryRef != null && this.sentryRef.isOnPartSatisfied(this);
 	}
 
 	public void setSatisfied(boolean isSatisfied) {
-		this.isSatisfied = isSatisfied;
+		if (this.sentryRef != null) {
+			this.sentryRef.setOnPartSatisfied(this, isSatisfied);
+		}
 	}
 
+	int getSatisfiedBit() {
+		return satisfiedBit;
+	}
+
+	void setSatisfiedBit(int satisfiedBit) {
+		this.satisfiedBit = satisfiedBit;
+	}
+
+	/**
+	 * <p>
+	 * Returns the transition of the observed element this OnPart listens for.
+	 * </p>
+	 * 
+	 * @return the required transition
+	 */
+	public abstract String getRequiredTransition();
+
 	@ManyToOne
 	protected Sentry sentryRef;
 }
\ No newline at end of file
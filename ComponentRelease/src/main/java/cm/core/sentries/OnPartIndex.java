@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.sentries;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cm.core.CaseElement;
+import cm.core.data.CaseFileItem;
+
+/**
+ * <p>
+ * Buckets the {@link OnPart}s registered with a {@link CaseElement} or
+ * {@link CaseFileItem} by their required transition. A transition then only
+ * notifies the OnParts listening for it and those satisfied by the previous
+ * transition, which have to be reset.
+ * </p>
+ * <p>
+ * The index is not persisted. It is (re)built from the persisted list of
+ * OnParts whenever that list was replaced or changed outside of
+ * {@link #register(List, OnPart)} and {@link #unregister(List, OnPart)}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ * @param <T>
+ *            {@link ElementOnPart} or {@link CaseFileItemOnPart}
+ */
+public class OnPartIndex<T extends OnPart> {
+
+	private final Map<String, List<T>> onPartsByTransition = new HashMap<String, List<T>>();
+	private final Set<T> indexed = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+	private List<T> indexedList;
+	private String lastTransition;
+
+	/**
+	 * <p>
+	 * Adds an OnPart to the list of registered OnParts unless it is already
+	 * registered.
+	 * </p>
+	 * 
+	 * @param onParts
+	 *            persisted list of registered OnParts
+	 * @param onPart
+	 *            OnPart to register, its required transition must be set
+	 * @return <code>true</code> if the OnPart was added
+	 */
+	public boolean register(List<T> onParts, T onPart) {
+		ensureIndexed(onParts);
+		if (!this.indexed.add(onPart)) {
+			return false;
+		}
+		onParts.add(onPart);
+		bucket(onPart.getRequiredTransition()).add(onPart);
+		return true;
+	}
+
+	public void unregister(List<T> onParts, T onPart) {
+		ensureIndexed(onParts);
+		if (this.indexed.remove(onPart)) {
+			onParts.remove(onPart);
+			List<T> bucket = this.onPartsByTransition.get(onPart.getRequiredTransition());
+			if (bucket != null) {
+				bucket.remove(onPart);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the OnParts listening for the given transition.
+	 * </p>
+	 * 
+	 * @param onParts
+	 *            persisted list of registered OnParts
+	 * @param transition
+	 *            the transition taken
+	 * @return OnParts requiring the transition
+	 */
+	public List<T> getOnParts(List<T> onParts, String transition) {
+		ensureIndexed(onParts);
+		List<T> bucket = this.onPartsByTransition.get(transition);
+		if (bucket == null) {
+			return Collections.emptyList();
+		}
+		return bucket;
+	}
+
+	/**
+	 * <p>
+	 * Returns the OnParts satisfied by the previous transition, which are no
+	 * longer satisfied after the given transition, and remembers the given
+	 * transition as the previous one. If the previous transition is not known,
+	 * e.g. after loading, all satisfied OnParts not listening for the given
+	 * transition are returned.
+	 * </p>
+	 * 
+	 * @param onParts
+	 *            persisted list of registered OnParts
+	 * @param transition
+	 *            the transition taken
+	 * @return OnParts to reset
+	 */
+	public List<T> getOnPartsToReset(List<T> onParts, String transition) {
+		ensureIndexed(onParts);
+		String previous = this.lastTransition;
+		this.lastTransition = transition;
+		if (previous == null) {
+			List<T> satisfied = new ArrayList<T>();
+			for (T o : onParts) {
+				if (o.isSatisfied() && !transition.equals(o.getRequiredTransition())) {
+					satisfied.add(o);
+				}
+			}
+			return satisfied;
+		} else if (previous.equals(transition)) {
+			return Collections.emptyList();
+		}
+		return getOnParts(onParts, previous);
+	}
+
+	private List<T> bucket(String transition) {
+		List<T> bucket = this.onPartsByTransition.get(transition);
+		if (bucket == null) {
+			bucket = new ArrayList<T>(2);
+			this.onPartsByTransition.put(transition, bucket);
+		}
+		return bucket;
+	}
+
+	private void ensureIndexed(List<T> onParts) {
+		if (onParts == this.indexedList && onParts.size() == this.indexed.size()) {
+			return;
+		}
+		this.onPartsByTransition.clear();
+		this.indexed.clear();
+		for (T o : onParts) {
+			if (this.indexed.add(o)) {
+				bucket(o.getRequiredTransition()).add(o);
+			}
+		}
+		this.indexedList = onParts;
+	}
+
+}
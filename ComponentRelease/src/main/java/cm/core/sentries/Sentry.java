@@ -32,11 +32,13 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+
 import cm.core.CaseModel;
 import cm.core.CaseElement;
 import cm.core.Milestone;
 import cm.core.Stage;
-import cm.core.StageStates;
 import cm.core.data.CaseFileItem;
 import cm.core.interfaces.ICriteriaObserver;
 import cm.core.services.TaskService;
@@ -63,19 +65,32 @@ import cm.core.tasks.TaskStates;
 @DiscriminatorColumn(name = "sentry_type")
 public abstract class Sentry implements ICriteriaObserver {
 
+	public static final int MAX_ON_PARTS = Long.SIZE;
+
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
 	private long id;
 	private String cmId;
 	private String name;
 	private boolean isSatisfied;
+	private long onPartBits; // one bit per OnPart
+	private long satisfiedOnParts; // bits of satisfied OnParts
 	@ManyToOne
 	private CaseElement elementRef; // element this sentry is attached to
 	@OneToMany(mappedBy = "sentryRef", cascade = CascadeType.ALL)
+	@BatchFetch(BatchFetchType.IN)
 	private List<OnPart> onParts;
 	@OneToOne(mappedBy = "sentryRef", cascade = CascadeType.ALL)
 	private IfPart ifPart;
 
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
 	public String getCmId() {
 		return cmId;
 	}
@@ -101,6 +116,38 @@ public abstract class Sentry implements ICriteriaObserver {
 		this.isSatisfied = isSatisfied;
 	}
 
+	/**
+	 * @return the satisfied flag of the last criteria check, without checking
+	 *         the criteria again
+	 */
+	public boolean hasBeenSatisfied() {
+		return this.isSatisfied;
+	}
+
+	/**
+	 * @return one bit per OnPart of this Sentry
+	 */
+	public long getOnPartBits() {
+		return this.onPartBits;
+	}
+
+	/**
+	 * @return the bits of the satisfied OnParts
+	 */
+	public long getSatisfiedOnParts() {
+		return this.satisfiedOnParts;
+	}
+
+	/**
+	 * Restores the bits of the satisfied OnParts of a recovered Sentry.
+	 * 
+	 * @param satisfiedOnParts
+	 *            bits as returned by {@link #getSatisfiedOnParts()}
+	 */
+	public void setSatisfiedOnParts(long satisfiedOnParts) {
+		this.satisfiedOnParts = satisfiedOnParts & this.onPartBits;
+	}
+
 	public CaseElement getElementRef() {
 		return this.elementRef;
 	}
@@ -117,15 +164,30 @@ public abstract class Sentry implements ICriteriaObserver {
 		this.onParts = onParts;
 	}
 
+	/**
+	 * <p>
+	 * Adds an OnPart and assigns it a bit in the bitset of satisfied OnParts.
+	 * </p>
+	 * 
+	 * @param onPart
+	 *            OnPart to add
+	 * @throws IllegalStateException
+	 *             if the Sentry already has {@value #MAX_ON_PARTS} OnParts
+	 */
 	public void addOnPart(OnPart onPart) {
 		if (this.onParts == null) {
 			this.onParts = new ArrayList<OnPart>();
-			this.onParts.add(onPart);
-		} else {
-			if (!this.onParts.contains(onPart)) {
-				this.onParts.add(onPart);
-			}
+		} else if (this.onParts.contains(onPart)) {
+			return;
 		}
+		if (this.onParts.size() >= MAX_ON_PARTS) {
+			throw new IllegalStateException("A Sentry supports at most " + MAX_ON_PARTS + " OnParts.");
+		}
+		int bit = Long.numberOfTrailingZeros(~this.onPartBits);
+		onPart.setSatisfiedBit(bit);
+		this.onPartBits |= 1L << bit;
+		this.satisfiedOnParts &= ~(1L << bit);
+		this.onParts.add(onPart);
 	}
 
 	public void addOnParts(OnPart... onparts) {
@@ -139,10 +201,44 @@ public abstract class Sentry implements ICriteriaObserver {
 			int idx = this.onParts.indexOf(onPart);
 			if (idx > -1) {
 				this.onParts.remove(idx);
+				int bit = onPart.getSatisfiedBit();
+				if (bit >= 0) {
+					this.onPartBits &= ~(1L << bit);
+					this.satisfiedOnParts &= ~(1L << bit);
+				}
 			}
 		}
 	}
 
+	boolean isOnPartSatisfied(OnPart onPart) {
+		int bit = onPart.getSatisfiedBit();
+		return bit >= 0 && (this.satisfiedOnParts & (1L << bit)) != 0;
+	}
+
+	void setOnPartSatisfied(OnPart onPart, boolean satisfied) {
+		int bit = onPart.getSatisfiedBit();
+		if (bit < 0) {
+			return;
+		}
+		if (satisfied) {
+			this.satisfiedOnParts |= 1L << bit;
+		} else {
+			this.satisfiedOnParts &= ~(1L << bit);
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns <code>true</code> if all OnParts are satisfied or the Sentry has
+	 * none.
+	 * </p>
+	 * 
+	 * @return
+	 */
+	public boolean areOnPartsSatisfied() {
+		return (this.satisfiedOnParts & this.onPartBits) == this.onPartBits;
+	}
+
 	public IfPart getIfPart() {
 		return ifPart;
 	}
@@ -154,32 +250,14 @@ public abstract class Sentry implements ICriteriaObserver {
 	/**
 	 * Evaluates OnParts and IfPart whether they are satisfied or not. If satisfied,
 	 * actions are performed depending on the Sentry being an EntrySentry or
-	 * ExitSentry.
+	 * ExitSentry. The IfPart is only evaluated once all OnParts are satisfied.
 	 */
 	public void checkCriteria() {
-		boolean onPartsPassed = false;
-		boolean ifPartPassed = false;
-
-		if (this.ifPart == null) {
-			ifPartPassed = true;
-		} else if (this.ifPart != null) {
-			if (this.ifPart.isSatisfied()) {
-				ifPartPassed = true;
-			}
-		}
-
-		if (this.onParts == null) {
-			onPartsPassed = true;
-		} else if (this.onParts != null) {
-			for (OnPart op : this.onParts) {
-				if (op.isSatisfied()) {
-					onPartsPassed = true;
-				} else if (!op.isSatisfied()) {
-					onPartsPassed = false;
-				}
-			}
+		if (!areOnPartsSatisfied()) {
+			return;
 		}
-		if (onPartsPassed && ifPartPassed) {
+		boolean ifPartPassed = this.ifPart == null || this.ifPart.isSatisfied();
+		if (ifPartPassed) {
 			this.setSatisfied(true);
 
 			if (this instanceof EntrySentry) {
@@ -204,7 +282,7 @@ public abstract class Sentry implements ICriteriaObserver {
 	 */
 	private void performExitSentryAction() {
 		CaseElement e = this.getElementRef();
-		if (e.getState().equals(TaskStates.ACTIVE.toString())) {
+		if (e.getTaskState() == TaskStates.ACTIVE) {
 			if (e instanceof CaseModel) {
 				CaseModel cm = (CaseModel) e;
 				cm.getContextState().terminate();
@@ -233,8 +311,8 @@ public abstract class Sentry implements ICriteriaObserver {
 	private void performEntrySentryAction() {
 		CaseElement refElement = this.getElementRef();
 		Stage parentStage = (Stage) refElement.getParentStage();
-		String elementState = refElement.getState();
-		if (elementState.equals(TaskStates.AVAILABLE.toString())) {
+		TaskStates elementState = refElement.getTaskState();
+		if (elementState == TaskStates.AVAILABLE) {
 			if (refElement instanceof Milestone) {
 				Milestone m = (Milestone) refElement;
 				m.getContextState().occur();
@@ -253,8 +331,8 @@ public abstract class Sentry implements ICriteriaObserver {
 					t.getContextState().start();
 				}
 			}
-		} else if (!elementState.equals(TaskStates.AVAILABLE.toString())
-				&& !elementState.equals(TaskStates.INITIAL.toString())) {
+		} else if (elementState != TaskStates.AVAILABLE
+				&& elementState != TaskStates.INITIAL) {
 			if (refElement instanceof Task) {
 				Task t = (Task) refElement;
 				if (t.isRepeatable()) {
@@ -268,8 +346,8 @@ public abstract class Sentry implements ICriteriaObserver {
 		// transition a parent Stage which is still in state INITIAL via transition
 		// create
 		if (parentStage != null) {
-			String parentState = parentStage.getState();
-			if (parentState.equals(StageStates.INITIAL.toString())) {
+			TaskStates parentState = parentStage.getTaskState();
+			if (parentState == TaskStates.INITIAL) {
 				parentStage.getContextState().create();
 			}
 		}
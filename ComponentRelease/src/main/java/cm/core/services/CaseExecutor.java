@@ -0,0 +1,244 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+
+/**
+ * <p>
+ * Serializes commands acting on the same root {@link CaseModel}. Each case is
+ * mapped to one of a fixed number of fair locks by its persistence id, so
+ * transitions, claims and sentry evaluations of one case never interleave while
+ * commands for different cases run in parallel (unless their ids share a
+ * stripe).
+ * </p>
+ * <p>
+ * The lock is released when the command returns, commands are expected to run
+ * in a transaction of their own that has completed by then, so a second command
+ * for the same case reads the committed result of the first one. Locks are
+ * reentrant, a command may call other locked commands of the same case. The
+ * cases a thread runs commands for are tracked per case, not per stripe, see
+ * {@link #isHeldByCurrentThread(long)}.
+ * </p>
+ * <p>
+ * Acquisitions, contended acquisitions and the time spent waiting are
+ * recorded, see {@link #getStatistics()}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class CaseExecutor {
+
+	/**
+	 * Number of lock stripes, can be set via system property
+	 * <code>cm.core.services.lockStripes</code>.
+	 */
+	public static final int STRIPES = Math.max(1, Integer.getInteger("cm.core.services.lockStripes", 64));
+
+	/**
+	 * Maximum time in milliseconds a command waits for its case, can be set via
+	 * system property <code>cm.core.services.lockTimeoutMillis</code>.
+	 */
+	public static final long LOCK_TIMEOUT_MILLIS = Long.getLong("cm.core.services.lockTimeoutMillis", 30000L);
+
+	private static final CaseExecutor INSTANCE = new CaseExecutor(STRIPES);
+
+	private final ReentrantLock[] locks;
+
+	private final ThreadLocal<Set<Long>> owned = ThreadLocal.withInitial(HashSet::new);
+
+	private final AtomicLong acquisitions = new AtomicLong();
+	private final AtomicLong contended = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	CaseExecutor(int stripes) {
+		this.locks = new ReentrantLock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.locks[i] = new ReentrantLock(true);
+		}
+	}
+
+	public static CaseExecutor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * <p>
+	 * Returns the id of the root {@link CaseModel} of the given element, used as
+	 * key for {@link #execute(long, Supplier)}.
+	 * </p>
+	 * 
+	 * @param element
+	 *            an element of a case or the case itself
+	 * @return the persistence id of the root case
+	 */
+	public static long caseIdOf(CaseElement element) {
+		if (element instanceof CaseModel && element.getRootCase() == null) {
+			return element.getId();
+		}
+		CaseModel root = element.getRootCase() != null ? element.getRootCase() : element.getCaseRef();
+		if (root == null && element.getParentStage() != null) {
+			root = element.getParentStage().getRootCase();
+		}
+		return root != null ? root.getId() : element.getId();
+	}
+
+	/**
+	 * <p>
+	 * Runs a command while holding the lock of the given case, releasing it when
+	 * the command returns.
+	 * </p>
+	 * 
+	 * @param caseId
+	 *            persistence id of the root case
+	 * @param command
+	 *            the command to run
+	 * @return the result of the command
+	 * @throws IllegalStateException
+	 *             if the lock could not be acquired within
+	 *             {@link #LOCK_TIMEOUT_MILLIS}
+	 */
+	public <T> T execute(long caseId, Supplier<T> command) {
+		final ReentrantLock lock = lockFor(caseId);
+		acquire(lock, caseId);
+		Set<Long> cases = owned.get();
+		boolean outermost = cases.add(caseId);
+		try {
+			return command.get();
+		} finally {
+			if (outermost) {
+				cases.remove(caseId);
+			}
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param caseId
+	 *            persistence id of the root case
+	 * @return true if the current thread runs a command of this case, other
+	 *         cases sharing its lock stripe do not count
+	 */
+	public boolean isHeldByCurrentThread(long caseId) {
+		return owned.get().contains(caseId);
+	}
+
+	/**
+	 * @return true if the current thread runs a command of any case
+	 */
+	public boolean holdsAnyCase() {
+		return !owned.get().isEmpty();
+	}
+
+	public Statistics getStatistics() {
+		Statistics statistics = new Statistics();
+		statistics.acquisitions = acquisitions.get();
+		statistics.contended = contended.get();
+		statistics.timeouts = timeouts.get();
+		statistics.totalWaitNanos = totalWaitNanos.get();
+		statistics.maxWaitNanos = maxWaitNanos.get();
+		int queued = 0;
+		for (ReentrantLock lock : locks) {
+			queued += lock.getQueueLength();
+		}
+		statistics.queued = queued;
+		return statistics;
+	}
+
+	private ReentrantLock lockFor(long caseId) {
+		int hash = (int) (caseId ^ (caseId >>> 32));
+		hash ^= (hash >>> 16);
+		return locks[(hash & 0x7fffffff) % locks.length];
+	}
+
+	private void acquire(ReentrantLock lock, long caseId) {
+		acquisitions.incrementAndGet();
+		if (lock.tryLock()) {
+			return;
+		}
+		contended.incrementAndGet();
+		long start = System.nanoTime();
+		boolean acquired = false;
+		try {
+			acquired = lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		long waited = System.nanoTime() - start;
+		totalWaitNanos.addAndGet(waited);
+		maxWaitNanos.accumulateAndGet(waited, Math::max);
+		if (!acquired) {
+			timeouts.incrementAndGet();
+			throw new IllegalStateException("Case " + caseId + " could not be locked within " + LOCK_TIMEOUT_MILLIS
+					+ " ms");
+		}
+	}
+
+	/**
+	 * Snapshot of the lock metrics of a {@link CaseExecutor}.
+	 */
+	public static final class Statistics {
+		private long acquisitions;
+		private long contended;
+		private long timeouts;
+		private long totalWaitNanos;
+		private long maxWaitNanos;
+		private int queued;
+
+		public long getAcquisitions() {
+			return acquisitions;
+		}
+
+		public long getContended() {
+			return contended;
+		}
+
+		public long getTimeouts() {
+			return timeouts;
+		}
+
+		public long getTotalWaitNanos() {
+			return totalWaitNanos;
+		}
+
+		public long getMaxWaitNanos() {
+			return maxWaitNanos;
+		}
+
+		public int getQueued() {
+			return queued;
+		}
+
+		@Override
+		public String toString() {
+			return "acquisitions=" + acquisitions + ", contended=" + contended + ", timeouts=" + timeouts
+					+ ", totalWaitNanos=" + totalWaitNanos + ", maxWaitNanos=" + maxWaitNanos + ", queued=" + queued;
+		}
+	}
+
+}
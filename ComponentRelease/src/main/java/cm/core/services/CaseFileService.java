@@ -82,6 +82,14 @@ public interface CaseFileService {
 	
 	public ServiceMessage saveAttachment(CaseFileItem cfi, CaseFileItemAttachment attachment);
 	
+	/**
+	 * Adds a copy of an attachment to a case file item. The copy shares the
+	 * contents of the attachment instead of duplicating them; an item already
+	 * holding the attachment or one with the same name and contents is left
+	 * unchanged.
+	 */
+	public ServiceMessage copyAttachment(CaseFileItem cfi, CaseFileItemAttachment attachment);
+	
 	public ServiceMessage deleteAttachment(CaseFileItem cfi, CaseFileItemAttachment attachment);
 
 	public ServiceMessage transitionCaseFileItem(CaseFileItem cfi, CaseFileItemTransition transition);
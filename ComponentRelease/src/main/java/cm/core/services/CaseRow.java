@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import java.util.Date;
+
+import cm.core.CaseModel;
+
+/**
+ * <p>
+ * Read-only row of a case listing, selected with a projection query so no
+ * {@link CaseModel} is loaded into the persistence context. To act on the
+ * case, pass {@link #toReference()} to the {@link CaseService}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class CaseRow {
+
+	private final long id;
+	private final String cmId;
+	private final String name;
+	private final String state;
+	private final Date createdOn;
+	private final long subCaseCount;
+
+	public CaseRow(long id, String cmId, String name, String state, Date createdOn, long subCaseCount) {
+		this.id = id;
+		this.cmId = cmId;
+		this.name = name;
+		this.state = state;
+		this.createdOn = createdOn != null ? new Date(createdOn.getTime()) : null;
+		this.subCaseCount = subCaseCount;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getCmId() {
+		return cmId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public Date getCreatedOn() {
+		return createdOn != null ? new Date(createdOn.getTime()) : null;
+	}
+
+	/**
+	 * @return the number of CaseTasks of the case with a sub-case
+	 */
+	public long getSubCaseCount() {
+		return subCaseCount;
+	}
+
+	/**
+	 * @return a copy of this row with the given state, e.g. for a pushed change
+	 */
+	public CaseRow withState(String state) {
+		return new CaseRow(id, cmId, name, state, createdOn, subCaseCount);
+	}
+
+	/**
+	 * @return a detached CaseModel carrying only the persistence id of the case
+	 */
+	public CaseModel toReference() {
+		CaseModel reference = new CaseModel();
+		reference.setId(id);
+		return reference;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CaseRow && ((CaseRow) obj).id == id;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(id);
+	}
+
+	@Override
+	public String toString() {
+		return "CaseRow [id=" + id + ", cmId=" + cmId + ", state=" + state + "]";
+	}
+
+}
@@ -17,6 +17,7 @@
 package cm.core.services;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 import cm.core.CaseModel;
 import cm.core.CaseWorker;
@@ -40,6 +41,16 @@ public interface CaseService {
 
 	public void persistCase(CaseModel cm);
 
+	/**
+	 * Instantiates and persists a case in one transaction, so the transitions
+	 * of its creation are journaled and published once it is committed.
+	 * 
+	 * @param instantiation
+	 *            creates the case, e.g. a method of the CaseFactory
+	 * @return the persisted case
+	 */
+	public CaseModel startCase(Supplier<CaseModel> instantiation);
+
 	public CaseModel getCaseById(CaseModel cm);
 
 	public List<CaseModel> getAllCases();
@@ -48,6 +59,53 @@ public interface CaseService {
 	
 	public List<CaseModel> getSecondaryCases(CaseModel cm);
 
+	/**
+	 * @return rows of all cases, ordered by id, without loading the cases
+	 */
+	public List<CaseRow> getCaseRows();
+
+	/**
+	 * @param state
+	 *            state of the cases to list, or "all"
+	 * @return rows of the primary cases, ordered by id, without loading the cases
+	 */
+	public List<CaseRow> getPrimaryCaseRows(String state);
+
+	/**
+	 * Reads one page of primary case rows, e.g. for a lazy grid.
+	 * 
+	 * @param state
+	 *            state of the cases to list, or "all"
+	 * @param filter
+	 *            text the name or cmId of the cases contain, ignoring case, may
+	 *            be null
+	 * @param offset
+	 *            index of the first row
+	 * @param limit
+	 *            maximum number of rows, {@link Integer#MAX_VALUE} for all
+	 * @param orders
+	 *            sort orders by <code>id</code>, <code>cmId</code>,
+	 *            <code>name</code>, <code>state</code> or
+	 *            <code>createdOn</code>, then by id
+	 * @return the rows, without loading the cases
+	 */
+	public List<CaseRow> getPrimaryCaseRows(String state, String filter, int offset, int limit,
+			List<RowOrder> orders);
+
+	/**
+	 * @return the number of rows {@link #getPrimaryCaseRows(String, String, int, int, List)}
+	 *         pages through
+	 */
+	public int countPrimaryCaseRows(String state, String filter);
+
+	/**
+	 * @param caseId
+	 *            persistence id of a case
+	 * @return rows of the sub-cases of the case's CaseTasks, ordered by id,
+	 *         without loading the cases
+	 */
+	public List<CaseRow> getSecondaryCaseRows(long caseId);
+
 	public void deleteCase(CaseModel cm);
 
 	/**
@@ -60,8 +118,10 @@ public interface CaseService {
 	 *            a CaseWorker object as a reference (its persistence id is enough)
 	 * @param transition
 	 *            the transition to perform
+	 * @return a message stating the result, with {@link ServiceMessage#isConflict()}
+	 *         set if the case was changed concurrently
 	 */
-	public void transitionCase(CaseModel cm, CaseWorker cw, CaseInstanceTransition transition);
+	public ServiceMessage transitionCase(CaseModel cm, CaseWorker cw, CaseInstanceTransition transition);
 
 	public List<CaseElement> getElementsInCase(CaseModel cm);
 
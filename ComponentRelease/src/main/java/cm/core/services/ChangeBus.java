@@ -0,0 +1,259 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * <p>
+ * In-process bus of {@link ChangeEvent}s, e.g. to push changes of worklists
+ * to the user interfaces instead of having them reload their lists.
+ * </p>
+ * <p>
+ * Events published inside a {@link Batch}, i.e. a case command, are kept until
+ * the transaction of the command commits, so rolled back or retried commands
+ * publish nothing. Each {@link Subscription} collects the events passing its
+ * filter and receives them together at most once per
+ * {@link #DELIVERY_INTERVAL_MILLIS}, on a thread of the bus. Listeners must not
+ * block, e.g. a Vaadin UI hands the events over with <code>UI.access</code>.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class ChangeBus {
+
+	/**
+	 * Time in milliseconds events are collected per subscription before they are
+	 * delivered, can be set via system property
+	 * <code>cm.core.changes.intervalMillis</code>.
+	 */
+	public static final long DELIVERY_INTERVAL_MILLIS = Math.max(10L,
+			Long.getLong("cm.core.changes.intervalMillis", 250L));
+
+	private static final Logger LOGGER = Logger.getLogger(ChangeBus.class.getName());
+
+	private static final ChangeBus INSTANCE = new ChangeBus();
+
+	private static final ThreadLocal<Batch> CURRENT = new ThreadLocal<>();
+
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+	private ScheduledExecutorService scheduler;
+
+	private ChangeBus() {
+
+	}
+
+	public static ChangeBus getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * @param filter
+	 *            selects the events the subscriber is interested in
+	 * @param listener
+	 *            receives the selected events in the order they were published
+	 * @return the subscription, to be closed when the subscriber goes away
+	 */
+	public Subscription subscribe(Predicate<ChangeEvent> filter, Consumer<List<ChangeEvent>> listener) {
+		Subscription subscription = new Subscription(filter, listener);
+		subscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Publishes an event. Inside a {@link Batch} it is kept until the batch is
+	 * committed.
+	 * 
+	 * @param event
+	 *            the event, null is ignored
+	 */
+	public void publish(ChangeEvent event) {
+		if (event == null) {
+			return;
+		}
+		Batch batch = CURRENT.get();
+		if (batch != null) {
+			batch.events.add(event);
+		} else {
+			dispatch(Collections.singletonList(event));
+		}
+	}
+
+	/**
+	 * Publishes an event once the current transaction commits, outside a
+	 * {@link Batch} and a transaction right away.
+	 */
+	public void publishAfterCommit(TransactionSynchronizationRegistry registry, ChangeEvent event) {
+		if (event == null || CURRENT.get() != null || registry == null || registry.getTransactionKey() == null) {
+			publish(event);
+			return;
+		}
+		registry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					dispatch(Collections.singletonList(event));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Starts collecting the events of the current thread for a command. Must be
+	 * closed by the thread that opened it.
+	 */
+	public Batch openBatch() {
+		Batch batch = new Batch(CURRENT.get());
+		CURRENT.set(batch);
+		return batch;
+	}
+
+	private void dispatch(List<ChangeEvent> events) {
+		for (Subscription subscription : subscriptions) {
+			subscription.offer(events);
+		}
+	}
+
+	private synchronized ScheduledExecutorService scheduler() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "cm-change-bus");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return scheduler;
+	}
+
+	public int getSubscriptionCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Events of one command, published when its transaction commits.
+	 */
+	public static final class Batch implements AutoCloseable {
+		private final Batch previous;
+		private final List<ChangeEvent> events = new ArrayList<>();
+
+		private Batch(Batch previous) {
+			this.previous = previous;
+		}
+
+		/**
+		 * Publishes the collected events.
+		 */
+		public void commit() {
+			if (!events.isEmpty()) {
+				INSTANCE.dispatch(new ArrayList<>(events));
+				events.clear();
+			}
+		}
+
+		/**
+		 * Stops collecting, later events of the thread go to the enclosing batch
+		 * or are published right away.
+		 */
+		@Override
+		public void close() {
+			if (previous != null) {
+				CURRENT.set(previous);
+			} else {
+				CURRENT.remove();
+			}
+		}
+	}
+
+	/**
+	 * Registration of a listener, collects its events until they are delivered.
+	 */
+	public final class Subscription implements AutoCloseable {
+		private final Predicate<ChangeEvent> filter;
+		private final Consumer<List<ChangeEvent>> listener;
+		private final Queue<ChangeEvent> pending = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+		private volatile boolean closed;
+
+		private Subscription(Predicate<ChangeEvent> filter, Consumer<List<ChangeEvent>> listener) {
+			this.filter = filter;
+			this.listener = listener;
+		}
+
+		private void offer(List<ChangeEvent> events) {
+			boolean added = false;
+			for (ChangeEvent event : events) {
+				if (!closed && filter.test(event)) {
+					pending.add(event);
+					added = true;
+				}
+			}
+			if (added && scheduled.compareAndSet(false, true)) {
+				scheduler().schedule(this::deliver, DELIVERY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		private void deliver() {
+			scheduled.set(false);
+			List<ChangeEvent> events = new ArrayList<>();
+			for (ChangeEvent event = pending.poll(); event != null; event = pending.poll()) {
+				events.add(event);
+			}
+			if (events.isEmpty() || closed) {
+				return;
+			}
+			try {
+				listener.accept(events);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Could not deliver " + events.size() + " change events", e);
+			}
+		}
+
+		/**
+		 * Stops the delivery, pending events are dropped.
+		 */
+		@Override
+		public void close() {
+			closed = true;
+			subscriptions.remove(this);
+			pending.clear();
+		}
+	}
+
+}
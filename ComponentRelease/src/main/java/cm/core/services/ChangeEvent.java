@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.tasks.HumanTask;
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Lightweight notification of a change visible in the case and task lists,
+ * published on the {@link ChangeBus}. It carries ids and the new state only,
+ * listeners read whatever else they need themselves.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class ChangeEvent {
+
+	public enum Kind {
+		CLAIMED, UNCLAIMED, TASK_STATE_CHANGED, CASE_STATE_CHANGED, CASE_STARTED, CASE_DELETED
+	}
+
+	private final Kind kind;
+	private final long caseId;
+	private final long elementId;
+	private final String state;
+	private final String role;
+	private final String worker;
+
+	private ChangeEvent(Kind kind, long caseId, long elementId, String state, String role, String worker) {
+		this.kind = kind;
+		this.caseId = caseId;
+		this.elementId = elementId;
+		this.state = state;
+		this.role = role;
+		this.worker = worker;
+	}
+
+	/**
+	 * @param worker
+	 *            user name of the new claimant
+	 */
+	public static ChangeEvent claimed(Task task, String worker) {
+		return new ChangeEvent(Kind.CLAIMED, CaseExecutor.caseIdOf(task), task.getId(), task.getState(), roleOf(task),
+				worker);
+	}
+
+	/**
+	 * @param worker
+	 *            user name of the former claimant
+	 */
+	public static ChangeEvent unclaimed(Task task, String worker) {
+		return new ChangeEvent(Kind.UNCLAIMED, CaseExecutor.caseIdOf(task), task.getId(), task.getState(),
+				roleOf(task), worker);
+	}
+
+	/**
+	 * @return an event for HumanTasks and cases, null for other elements and for
+	 *         elements not persisted yet
+	 */
+	public static ChangeEvent stateChanged(CaseElement element, String state) {
+		if (element.getId() == 0) {
+			return null;
+		}
+		if (element instanceof HumanTask) {
+			HumanTask task = (HumanTask) element;
+			return new ChangeEvent(Kind.TASK_STATE_CHANGED, CaseExecutor.caseIdOf(task), task.getId(), state,
+					roleOf(task), task.getClaimant() != null ? task.getClaimant().getUser() : null);
+		}
+		if (element instanceof CaseModel) {
+			return new ChangeEvent(Kind.CASE_STATE_CHANGED, element.getId(), element.getId(), state, null, null);
+		}
+		return null;
+	}
+
+	public static ChangeEvent caseStarted(CaseModel cm) {
+		return new ChangeEvent(Kind.CASE_STARTED, cm.getId(), cm.getId(), cm.getState(), null, null);
+	}
+
+	public static ChangeEvent caseDeleted(CaseModel cm) {
+		return new ChangeEvent(Kind.CASE_DELETED, cm.getId(), cm.getId(), cm.getState(), null, null);
+	}
+
+	private static String roleOf(Task task) {
+		return task.getCaseRole() != null ? task.getCaseRole().getRoleName() : null;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return persistence id of the root case of the element
+	 */
+	public long getCaseId() {
+		return caseId;
+	}
+
+	/**
+	 * @return persistence id of the task or case that changed
+	 */
+	public long getElementId() {
+		return elementId;
+	}
+
+	/**
+	 * @return state of the element after the change
+	 */
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * @return name of the CaseRole of a task, null if it has none or for cases
+	 */
+	public String getRole() {
+		return role;
+	}
+
+	/**
+	 * @return user name of the claimant of a task, null if it is not claimed or
+	 *         for cases
+	 */
+	public String getWorker() {
+		return worker;
+	}
+
+	public boolean isTaskEvent() {
+		return kind == Kind.CLAIMED || kind == Kind.UNCLAIMED || kind == Kind.TASK_STATE_CHANGED;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " case " + caseId + " element " + elementId + " -> " + state
+				+ (worker != null ? " by " + worker : "");
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import java.util.List;
+
+import cm.core.tasks.ProcessTask;
+import cm.core.tasks.ProcessTaskExecution;
+import cm.core.tasks.ProcessTaskExecutionStates;
+import cm.core.tasks.ProcessTaskImplementation;
+
+/**
+ * <p>
+ * Provides interfaces to execute {@link ProcessTask}s asynchronously. Starting
+ * an asynchronous ProcessTask persists a pending {@link ProcessTaskExecution}.
+ * Once the starting transaction has committed, the execution is handed to a
+ * bounded pool of managed threads which runs its
+ * {@link ProcessTaskImplementation} outside of a transaction. Completion,
+ * failure or a callback then complete or fault the ProcessTask in a new,
+ * short transaction.
+ * </p>
+ * <p>
+ * Implementations use an EntityManager and PersistenceContext.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public interface ProcessTaskExecutionService {
+
+	/**
+	 * Persists a pending execution of the given ProcessTask and submits it after
+	 * the current transaction has committed.
+	 * 
+	 * @param pt
+	 *            the ProcessTask which has been started
+	 * @return a ServiceMessage
+	 */
+	public ServiceMessage dispatch(ProcessTask pt);
+
+	/**
+	 * Runs the {@link ProcessTaskImplementation} of a pending execution. Called
+	 * by the worker threads.
+	 * 
+	 * @param executionId
+	 *            persistence id of the execution
+	 */
+	public void execute(long executionId);
+
+	/**
+	 * Completes the ProcessTask of an execution which has not finished yet.
+	 * 
+	 * @param executionId
+	 *            persistence id of the execution
+	 * @return a ServiceMessage, with conflict set if the execution has already
+	 *         finished
+	 */
+	public ServiceMessage complete(long executionId);
+
+	/**
+	 * Faults the ProcessTask of an execution which has not finished yet.
+	 * 
+	 * @param executionId
+	 *            persistence id of the execution
+	 * @param failure
+	 *            description of the failure
+	 * @return a ServiceMessage, with conflict set if the execution has already
+	 *         finished
+	 */
+	public ServiceMessage fault(long executionId, String failure);
+
+	/**
+	 * Executes the callback of the ProcessTask's implementation and completes the
+	 * execution waiting for it, in one command of the case.
+	 * 
+	 * @param processTaskId
+	 *            persistence id of the ProcessTask
+	 * @return a ServiceMessage
+	 */
+	public ServiceMessage callBack(long processTaskId);
+
+	/**
+	 * Submits all executions which are still PENDING, e.g. after a restart.
+	 * 
+	 * @return the number of submitted executions
+	 */
+	public int resubmitPending();
+
+	/**
+	 * Sets executions left RUNNING by a stop of the application back to PENDING
+	 * and submits all PENDING executions. Called once on startup.
+	 * 
+	 * @return the number of submitted executions
+	 */
+	public int resumeAfterRestart();
+
+	public List<ProcessTaskExecution> getExecutionsByState(ProcessTaskExecutionStates state);
+
+}
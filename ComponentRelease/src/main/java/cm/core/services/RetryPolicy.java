@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.persistence.OptimisticLockException;
+
+/**
+ * <p>
+ * Retries a command that failed because of an optimistic locking conflict,
+ * i.e. because an entity it changed was modified concurrently (see the
+ * <code>@Version</code> fields of the core entities). Before every retry the
+ * policy waits for an exponentially growing, randomized delay bounded by
+ * {@link #MAX_DELAY_MILLIS}. After {@link #MAX_ATTEMPTS} attempts the last
+ * conflict is rethrown. Other exceptions are never retried.
+ * </p>
+ * <p>
+ * Attempts, conflicts, retries and exhausted commands are counted, see
+ * {@link #getStatistics()}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class RetryPolicy {
+
+	/**
+	 * Maximum number of attempts per command, can be set via system property
+	 * <code>cm.core.services.retry.maxAttempts</code>.
+	 */
+	public static final int MAX_ATTEMPTS = Math.max(1, Integer.getInteger("cm.core.services.retry.maxAttempts", 4));
+
+	/**
+	 * Delay in milliseconds before the first retry, can be set via system
+	 * property <code>cm.core.services.retry.baseDelayMillis</code>.
+	 */
+	public static final long BASE_DELAY_MILLIS = Long.getLong("cm.core.services.retry.baseDelayMillis", 10L);
+
+	/**
+	 * Upper bound of the delay in milliseconds, can be set via system property
+	 * <code>cm.core.services.retry.maxDelayMillis</code>.
+	 */
+	public static final long MAX_DELAY_MILLIS = Long.getLong("cm.core.services.retry.maxDelayMillis", 200L);
+
+	private static final RetryPolicy INSTANCE = new RetryPolicy();
+
+	private final AtomicLong attempts = new AtomicLong();
+	private final AtomicLong conflicts = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong exhausted = new AtomicLong();
+
+	private RetryPolicy() {
+
+	}
+
+	public static RetryPolicy getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * <p>
+	 * Runs a command and retries it as long as it fails with an optimistic
+	 * locking conflict and attempts are left.
+	 * </p>
+	 * 
+	 * @param command
+	 *            the command, each call must run in its own transaction
+	 * @param onConflict
+	 *            called with the conflict before each retry, may be null
+	 * @return the result of the first successful attempt
+	 */
+	public <T> T execute(Supplier<T> command, Consumer<OptimisticLockException> onConflict) {
+		int attempt = 0;
+		while (true) {
+			attempt++;
+			attempts.incrementAndGet();
+			try {
+				return command.get();
+			} catch (RuntimeException e) {
+				OptimisticLockException conflict = conflictOf(e);
+				if (conflict == null) {
+					throw e;
+				}
+				conflicts.incrementAndGet();
+				if (attempt >= MAX_ATTEMPTS) {
+					exhausted.incrementAndGet();
+					throw e;
+				}
+				if (onConflict != null) {
+					onConflict.accept(conflict);
+				}
+				retries.incrementAndGet();
+				backOff(attempt);
+			}
+		}
+	}
+
+	/**
+	 * @param e
+	 *            an exception thrown by a command
+	 * @return the {@link OptimisticLockException} causing the exception, or null
+	 *         if it was not caused by a conflict
+	 */
+	public static OptimisticLockException conflictOf(Throwable e) {
+		Throwable current = e;
+		while (current != null) {
+			if (current instanceof OptimisticLockException) {
+				return (OptimisticLockException) current;
+			}
+			if (current.getCause() == current) {
+				break;
+			}
+			current = current.getCause();
+		}
+		return null;
+	}
+
+	public Statistics getStatistics() {
+		Statistics statistics = new Statistics();
+		statistics.attempts = attempts.get();
+		statistics.conflicts = conflicts.get();
+		statistics.retries = retries.get();
+		statistics.exhausted = exhausted.get();
+		return statistics;
+	}
+
+	private void backOff(int attempt) {
+		long delay = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+		if (delay <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextLong(delay / 2, delay + 1));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting to retry", e);
+		}
+	}
+
+	/**
+	 * Snapshot of the counters of the {@link RetryPolicy}.
+	 */
+	public static final class Statistics {
+		private long attempts;
+		private long conflicts;
+		private long retries;
+		private long exhausted;
+
+		public long getAttempts() {
+			return attempts;
+		}
+
+		public long getConflicts() {
+			return conflicts;
+		}
+
+		public long getRetries() {
+			return retries;
+		}
+
+		public long getExhausted() {
+			return exhausted;
+		}
+
+		@Override
+		public String toString() {
+			return "attempts=" + attempts + ", conflicts=" + conflicts + ", retries=" + retries + ", exhausted="
+					+ exhausted;
+		}
+	}
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+/**
+ * <p>
+ * Sort order of a paged listing of {@link CaseRow}s or {@link TaskRow}s, by the
+ * name of a row property, e.g. <code>name</code> or <code>createdOn</code>.
+ * Properties a listing cannot sort by are ignored.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class RowOrder {
+
+	private final String property;
+	private final boolean ascending;
+
+	public RowOrder(String property, boolean ascending) {
+		this.property = property;
+		this.ascending = ascending;
+	}
+
+	public String getProperty() {
+		return property;
+	}
+
+	public boolean isAscending() {
+		return ascending;
+	}
+
+}
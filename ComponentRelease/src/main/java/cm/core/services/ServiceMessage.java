@@ -24,12 +24,21 @@ public class ServiceMessage {
 
 	private String message;
 	private boolean success;
+	private boolean conflict;
 	
 	public ServiceMessage(String message, boolean success) {
 		this.message = message;
 		this.success = success;
 	}
 
+	/**
+	 * @param conflict	true if the command was not executed because the affected elements were changed concurrently
+	 */
+	public ServiceMessage(String message, boolean success, boolean conflict) {
+		this(message, success);
+		this.conflict = conflict;
+	}
+
 	public String getMessage() {
 		return message;
 	}
@@ -45,5 +54,13 @@ public class ServiceMessage {
 	public void setSuccess(boolean success) {
 		this.success = success;
 	}
+
+	public boolean isConflict() {
+		return conflict;
+	}
+
+	public void setConflict(boolean conflict) {
+		this.conflict = conflict;
+	}
 	
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import cm.core.tasks.HumanTask;
+
+/**
+ * <p>
+ * Read-only row of a task listing, selected with a projection query so no
+ * {@link HumanTask} is loaded into the persistence context. To act on the
+ * task, pass {@link #toReference()} to the {@link TaskService}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class TaskRow {
+
+	private final long id;
+	private final String cmId;
+	private final String name;
+	private final String state;
+	private final long caseId;
+	private final String caseName;
+	private final String role;
+	private final String claimant;
+
+	/**
+	 * @param role
+	 *            name of the CaseRole of the task, may be null
+	 * @param claimant
+	 *            user name of the claimant, may be null
+	 */
+	public TaskRow(long id, String cmId, String name, String state, long caseId, String caseName, String role,
+			String claimant) {
+		this.id = id;
+		this.cmId = cmId;
+		this.name = name;
+		this.state = state;
+		this.caseId = caseId;
+		this.caseName = caseName;
+		this.role = role;
+		this.claimant = claimant;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getCmId() {
+		return cmId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	/**
+	 * @return persistence id of the root case of the task
+	 */
+	public long getCaseId() {
+		return caseId;
+	}
+
+	public String getCaseName() {
+		return caseName;
+	}
+
+	public String getRole() {
+		return role;
+	}
+
+	public String getClaimant() {
+		return claimant;
+	}
+
+	/**
+	 * @return a copy of this row with the given state, e.g. for a pushed change
+	 */
+	public TaskRow withState(String state) {
+		return new TaskRow(id, cmId, name, state, caseId, caseName, role, claimant);
+	}
+
+	/**
+	 * @return a detached HumanTask carrying the persistence id and the state of
+	 *         the task as listed
+	 */
+	public HumanTask toReference() {
+		HumanTask reference = new HumanTask();
+		reference.setId(id);
+		reference.setCmId(cmId);
+		reference.setName(name);
+		reference.setStateWithoutTransition(state);
+		return reference;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof TaskRow && ((TaskRow) obj).id == id;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(id);
+	}
+
+	@Override
+	public String toString() {
+		return "TaskRow [id=" + id + ", cmId=" + cmId + ", state=" + state + "]";
+	}
+
+}
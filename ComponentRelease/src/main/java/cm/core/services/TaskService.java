@@ -53,6 +53,56 @@ public interface TaskService {
 
 	public List<HumanTask> getAllClaimedTasksByCaseWorker(CaseWorker cw);
 
+	/**
+	 * @return rows of the HumanTasks the case worker may claim, ordered by id,
+	 *         without loading the tasks
+	 */
+	public List<TaskRow> getClaimableTaskRowsByRole(CaseWorker cw);
+
+	/**
+	 * Reads one page of the rows of claimable HumanTasks, e.g. for a lazy grid.
+	 * 
+	 * @param filter
+	 *            text the name of the tasks or of their case contain, ignoring
+	 *            case, may be null
+	 * @param offset
+	 *            index of the first row
+	 * @param limit
+	 *            maximum number of rows, {@link Integer#MAX_VALUE} for all
+	 * @param orders
+	 *            sort orders by <code>id</code>, <code>cmId</code>,
+	 *            <code>name</code>, <code>state</code>, <code>caseName</code>,
+	 *            <code>role</code> or <code>claimant</code>, then by id
+	 * @return the rows, without loading the tasks
+	 */
+	public List<TaskRow> getClaimableTaskRowsByRole(CaseWorker cw, String filter, int offset, int limit,
+			List<RowOrder> orders);
+
+	public int countClaimableTaskRowsByRole(CaseWorker cw, String filter);
+
+	/**
+	 * @return rows of the HumanTasks claimed by the case worker, ordered by id,
+	 *         without loading the tasks
+	 */
+	public List<TaskRow> getClaimedTaskRowsByCaseWorker(CaseWorker cw);
+
+	/**
+	 * Reads one page of the rows of HumanTasks claimed by the case worker, see
+	 * {@link #getClaimableTaskRowsByRole(CaseWorker, String, int, int, List)}.
+	 */
+	public List<TaskRow> getClaimedTaskRowsByCaseWorker(CaseWorker cw, String filter, int offset, int limit,
+			List<RowOrder> orders);
+
+	public int countClaimedTaskRowsByCaseWorker(CaseWorker cw, String filter);
+
+	/**
+	 * @param id
+	 *            persistence id of a HumanTask
+	 * @return the task, e.g. for the row selected in a task listing, or
+	 *         <code>null</code> if it does not exist
+	 */
+	public HumanTask findHumanTaskById(long id);
+
 	public ProcessTask findProcessTaskById(long id);
 
 	/*
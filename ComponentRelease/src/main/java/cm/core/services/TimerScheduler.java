@@ -0,0 +1,340 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cm.core.listeners.TimerEventListener;
+import cm.core.utils.TimingWheel;
+
+/**
+ * <p>
+ * Holds the near-term due times of {@link TimerEventListener}s in a
+ * hierarchical {@link TimingWheel}. Due times are persisted with the
+ * TimerEventListeners; only timers due before {@link #getLoadedUntil()} are
+ * held in memory; later ones are loaded in bulk when the window moves on.
+ * Timers already due when they are scheduled, e.g. timers missed during a
+ * restart, are handed out with the next call of {@link #advance(long)}.
+ * </p>
+ * <p>
+ * Rescheduling or cancelling a timer marks its entry in the wheel as cancelled
+ * instead of searching it. Timers whose firing failed are put back with a
+ * delay doubling per failed attempt, see {@link #retry(DueTimer, long)}. Lag
+ * between due time and firing is recorded, see {@link #getStatistics()}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class TimerScheduler {
+
+	/**
+	 * Duration of one tick in milliseconds, can be set via system property
+	 * <code>cm.core.timers.tickMillis</code>.
+	 */
+	public static final long TICK_MILLIS = Math.max(1L, Long.getLong("cm.core.timers.tickMillis", 100L));
+
+	/**
+	 * Number of slots per level of the wheel, can be set via system property
+	 * <code>cm.core.timers.wheelSize</code>.
+	 */
+	public static final int WHEEL_SIZE = Math.max(2, Integer.getInteger("cm.core.timers.wheelSize", 64));
+
+	/**
+	 * Number of levels of the wheel, can be set via system property
+	 * <code>cm.core.timers.levels</code>.
+	 */
+	public static final int LEVELS = Math.max(1, Integer.getInteger("cm.core.timers.levels", 3));
+
+	/**
+	 * Upper bound in milliseconds of the delay before a timer whose firing
+	 * failed is fired again, can be set via system property
+	 * <code>cm.core.timers.maxRetryDelayMillis</code>.
+	 */
+	public static final long MAX_RETRY_DELAY_MILLIS = Math.max(TICK_MILLIS,
+			Long.getLong("cm.core.timers.maxRetryDelayMillis", 60000L));
+
+	private static final TimerScheduler INSTANCE = new TimerScheduler();
+
+	private TimingWheel<DueTimer> wheel;
+	private final Map<Long, DueTimer> scheduled = new HashMap<Long, DueTimer>();
+	private final List<DueTimer> overdue = new ArrayList<DueTimer>();
+	private long loadedUntil = Long.MIN_VALUE;
+
+	private long fired;
+	private long retried;
+	private long caughtUp;
+	private long ticks;
+	private long totalLagMillis;
+	private long maxLagMillis;
+	private long lastTickMillis;
+	private long maxTickDelayMillis;
+
+	private TimerScheduler() {
+		reset(System.currentTimeMillis());
+	}
+
+	public static TimerScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Removes all timers and restarts the wheel at the given time, e.g. before
+	 * pending timers are reloaded.
+	 * 
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 */
+	public synchronized void reset(long nowMillis) {
+		this.wheel = new TimingWheel<DueTimer>(TICK_MILLIS, WHEEL_SIZE, LEVELS, nowMillis);
+		this.scheduled.clear();
+		this.overdue.clear();
+		this.loadedUntil = Long.MIN_VALUE;
+		this.lastTickMillis = nowMillis;
+	}
+
+	/**
+	 * <p>
+	 * Schedules or reschedules a timer. Timers due after
+	 * {@link #getLoadedUntil()} are not held in memory.
+	 * </p>
+	 * 
+	 * @param timerId
+	 *            persistence id of the TimerEventListener
+	 * @param caseId
+	 *            persistence id of its root case
+	 * @param dueMillis
+	 *            the due time in milliseconds
+	 */
+	public synchronized void schedule(long timerId, long caseId, long dueMillis) {
+		DueTimer existing = scheduled.get(timerId);
+		if (existing != null) {
+			// a reload must not cut short the delay of a failed timer
+			if (existing.dueMillis == dueMillis || existing.attempts > 0 && dueMillis <= existing.dueMillis) {
+				return;
+			}
+			existing.cancelled = true;
+			scheduled.remove(timerId);
+		}
+		if (dueMillis > loadedUntil) {
+			return;
+		}
+		add(new DueTimer(timerId, caseId, dueMillis, 0));
+	}
+
+	/**
+	 * Schedules a timer handed out by {@link #advance(long)} again because
+	 * firing it failed. The delay starts at two ticks and doubles with every
+	 * failed attempt up to {@link #MAX_RETRY_DELAY_MILLIS}. Does nothing if the
+	 * timer has been scheduled again meanwhile.
+	 * 
+	 * @param timer
+	 *            the timer that could not be fired
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @return the time of the next attempt in milliseconds, -1 if the timer is
+	 *         not retried
+	 */
+	public synchronized long retry(DueTimer timer, long nowMillis) {
+		if (timer.cancelled || scheduled.containsKey(timer.timerId)) {
+			return -1;
+		}
+		int attempts = timer.attempts + 1;
+		long delay = TICK_MILLIS << Math.min(attempts, 30);
+		long retryMillis = nowMillis + Math.min(delay, MAX_RETRY_DELAY_MILLIS);
+		add(new DueTimer(timer.timerId, timer.caseId, retryMillis, attempts));
+		retried++;
+		return retryMillis;
+	}
+
+	private void add(DueTimer timer) {
+		scheduled.put(timer.timerId, timer);
+		if (!wheel.add(timer, timer.dueMillis)) {
+			overdue.add(timer);
+		}
+	}
+
+	/**
+	 * @param timerId
+	 *            persistence id of the TimerEventListener not to fire
+	 */
+	public synchronized void cancel(long timerId) {
+		DueTimer existing = scheduled.remove(timerId);
+		if (existing != null) {
+			existing.cancelled = true;
+		}
+	}
+
+	/**
+	 * Advances the wheel to the given time.
+	 * 
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @return the timers which have become due, overdue ones first
+	 */
+	public synchronized List<DueTimer> advance(long nowMillis) {
+		List<DueTimer> due = new ArrayList<DueTimer>();
+		for (DueTimer timer : overdue) {
+			if (!timer.cancelled) {
+				due.add(timer);
+				caughtUp++;
+			}
+		}
+		overdue.clear();
+		wheel.advanceTo(nowMillis, timer -> {
+			if (!timer.cancelled) {
+				due.add(timer);
+			}
+		});
+		for (DueTimer timer : due) {
+			scheduled.remove(timer.timerId);
+			long lag = Math.max(0, nowMillis - timer.dueMillis);
+			totalLagMillis += lag;
+			maxLagMillis = Math.max(maxLagMillis, lag);
+		}
+		fired += due.size();
+		ticks++;
+		maxTickDelayMillis = Math.max(maxTickDelayMillis, nowMillis - lastTickMillis - TICK_MILLIS);
+		lastTickMillis = nowMillis;
+		return due;
+	}
+
+	/**
+	 * @return timers due up to this time in milliseconds are held in memory
+	 */
+	public synchronized long getLoadedUntil() {
+		return loadedUntil;
+	}
+
+	/**
+	 * Extends the window of timers held in memory. Timers due before the given
+	 * time must be scheduled by the caller afterwards.
+	 * 
+	 * @param untilMillis
+	 *            the new end of the window, at most the horizon of the wheel
+	 */
+	public synchronized void setLoadedUntil(long untilMillis) {
+		this.loadedUntil = Math.min(untilMillis, wheel.getCurrentMillis() + wheel.getHorizonMillis());
+	}
+
+	public synchronized Statistics getStatistics() {
+		Statistics statistics = new Statistics();
+		statistics.scheduled = scheduled.size();
+		statistics.fired = fired;
+		statistics.retried = retried;
+		statistics.caughtUp = caughtUp;
+		statistics.ticks = ticks;
+		statistics.averageLagMillis = fired > 0 ? totalLagMillis / fired : 0;
+		statistics.maxLagMillis = maxLagMillis;
+		statistics.maxTickDelayMillis = maxTickDelayMillis;
+		return statistics;
+	}
+
+	/**
+	 * A timer held by the {@link TimerScheduler}.
+	 */
+	public static final class DueTimer {
+		private final long timerId;
+		private final long caseId;
+		private final long dueMillis;
+		private final int attempts;
+		private volatile boolean cancelled;
+
+		private DueTimer(long timerId, long caseId, long dueMillis, int attempts) {
+			this.timerId = timerId;
+			this.caseId = caseId;
+			this.dueMillis = dueMillis;
+			this.attempts = attempts;
+		}
+
+		public long getTimerId() {
+			return timerId;
+		}
+
+		public long getCaseId() {
+			return caseId;
+		}
+
+		public long getDueMillis() {
+			return dueMillis;
+		}
+
+		/**
+		 * @return the number of failed attempts to fire the timer
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+	}
+
+	/**
+	 * Snapshot of the metrics of the {@link TimerScheduler}.
+	 */
+	public static final class Statistics {
+		private int scheduled;
+		private long fired;
+		private long retried;
+		private long caughtUp;
+		private long ticks;
+		private long averageLagMillis;
+		private long maxLagMillis;
+		private long maxTickDelayMillis;
+
+		public int getScheduled() {
+			return scheduled;
+		}
+
+		public long getFired() {
+			return fired;
+		}
+
+		public long getRetried() {
+			return retried;
+		}
+
+		public long getCaughtUp() {
+			return caughtUp;
+		}
+
+		public long getTicks() {
+			return ticks;
+		}
+
+		public long getAverageLagMillis() {
+			return averageLagMillis;
+		}
+
+		public long getMaxLagMillis() {
+			return maxLagMillis;
+		}
+
+		public long getMaxTickDelayMillis() {
+			return maxTickDelayMillis;
+		}
+
+		@Override
+		public String toString() {
+			return "scheduled=" + scheduled + ", fired=" + fired + ", retried=" + retried + ", caughtUp=" + caughtUp + ", ticks=" + ticks
+					+ ", averageLagMillis=" + averageLagMillis + ", maxLagMillis=" + maxLagMillis
+					+ ", maxTickDelayMillis=" + maxTickDelayMillis;
+		}
+	}
+
+}
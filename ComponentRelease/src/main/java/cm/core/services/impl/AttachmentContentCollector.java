@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import cm.core.blob.BlobStore;
+import cm.core.blob.BlobStores;
+import cm.core.data.CaseFileItemAttachment;
+import cm.core.utils.PersistenceSettings;
+
+/**
+ * <p>
+ * Deletes the blobs of attachment contents no attachment refers to any more.
+ * Attachments with the same contents share one blob, the references of a blob
+ * are the {@link CaseFileItemAttachment}s with its key. A blob without
+ * references is deleted once it has not been written for the grace period,
+ * which keeps the contents of uploads whose attachments are not saved yet.
+ * Runs periodically, and for the blobs of removed attachments once the removal
+ * is committed.
+ * </p>
+ * <p>
+ * Controlled via system properties
+ * <code>cm.core.blobs.gcIntervalMinutes</code> (default 60, 0 to collect only
+ * the blobs of removed attachments) and
+ * <code>cm.core.blobs.gcGraceMinutes</code> (default 60).
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class AttachmentContentCollector {
+
+	public static final long INTERVAL_MINUTES = Long.getLong("cm.core.blobs.gcIntervalMinutes", 60L);
+
+	public static final long GRACE_MILLIS = TimeUnit.MINUTES
+			.toMillis(Math.max(0L, Long.getLong("cm.core.blobs.gcGraceMinutes", 60L)));
+
+	private static final int BATCH_SIZE = 500;
+
+	private static final Logger LOGGER = Logger.getLogger(AttachmentContentCollector.class.getName());
+
+	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
+	private EntityManager em;
+
+	@Resource
+	private ManagedScheduledExecutorService executor;
+
+	private ScheduledFuture<?> sweeper;
+
+	@PostConstruct
+	void start() {
+		if (INTERVAL_MINUTES > 0 && BlobStores.getDefault() != null) {
+			sweeper = executor.scheduleWithFixedDelay(this::sweep, INTERVAL_MINUTES, INTERVAL_MINUTES,
+					TimeUnit.MINUTES);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		if (sweeper != null) {
+			sweeper.cancel(false);
+		}
+	}
+
+	/**
+	 * Collects the given blobs in the background, e.g. of attachments whose
+	 * removal has been committed. Blobs that are still referenced or were
+	 * written recently are kept.
+	 */
+	public void collectLater(Collection<String> keys) {
+		if (keys.isEmpty() || BlobStores.getDefault() == null) {
+			return;
+		}
+		final List<String> pending = new ArrayList<>(keys);
+		executor.execute(() -> {
+			try {
+				collect(pending);
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Could not collect blobs " + pending, e);
+			}
+		});
+	}
+
+	/**
+	 * Collects all blobs of the store without references.
+	 * 
+	 * @return the number of deleted blobs
+	 */
+	public int collect() {
+		BlobStore store = BlobStores.getDefault();
+		if (store == null) {
+			return 0;
+		}
+		int deleted = 0;
+		try (Stream<String> keys = store.keys()) {
+			List<String> batch = new ArrayList<>(BATCH_SIZE);
+			for (Iterator<String> it = keys.iterator(); it.hasNext();) {
+				batch.add(it.next());
+				if (batch.size() == BATCH_SIZE || !it.hasNext()) {
+					deleted += collect(store, batch);
+					batch.clear();
+				}
+			}
+		} catch (IOException | UncheckedIOException e) {
+			LOGGER.log(Level.WARNING, "Could not list the blob store", e);
+		}
+		return deleted;
+	}
+
+	/**
+	 * Collects the given blobs if they have no references.
+	 * 
+	 * @return the number of deleted blobs
+	 */
+	public int collect(List<String> keys) {
+		BlobStore store = BlobStores.getDefault();
+		return store != null && !keys.isEmpty() ? collect(store, keys) : 0;
+	}
+
+	private int collect(BlobStore store, List<String> keys) {
+		Set<String> referenced = new HashSet<>(
+				em.createNamedQuery("CaseFileItemAttachment.findReferencedBlobKeys", String.class)
+						.setParameter("keys", keys).getResultList());
+		int deleted = 0;
+		for (String key : keys) {
+			if (referenced.contains(key)) {
+				continue;
+			}
+			try {
+				if (store.deleteIfIdle(key, GRACE_MILLIS)) {
+					deleted++;
+				}
+			} catch (IOException | RuntimeException e) {
+				LOGGER.log(Level.WARNING, "Could not delete blob " + key, e);
+			}
+		}
+		return deleted;
+	}
+
+	private void sweep() {
+		try {
+			int deleted = collect();
+			if (deleted > 0) {
+				LOGGER.info("Deleted " + deleted + " unreferenced blobs");
+			}
+		} catch (RuntimeException e) {
+			// an exception would cancel all further sweeps
+			LOGGER.log(Level.WARNING, "Blob collection failed", e);
+		}
+	}
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.CaseWorker;
+import cm.core.TransitionListeners;
+import cm.core.data.CaseFileItem;
+import cm.core.interfaces.ITransitionListener;
+import cm.core.journal.TransitionJournal;
+import cm.core.repository.CaseRepository;
+import cm.core.services.CaseExecutor;
+import cm.core.services.ChangeBus;
+import cm.core.services.ChangeEvent;
+import cm.core.services.RetryPolicy;
+import cm.core.services.ServiceMessage;
+import cm.core.utils.PersistenceSettings;
+
+/**
+ * <p>
+ * Runs commands of the services that change a case. A command holds the lock
+ * of its case (see {@link CaseExecutor}) and runs in a transaction of its own,
+ * which is flushed before it commits so optimistic locking conflicts surface
+ * inside the command. Conflicting commands are retried according to the
+ * {@link RetryPolicy}. If all attempts conflict, a {@link ServiceMessage} with
+ * {@link ServiceMessage#isConflict()} set is returned instead of a silent
+ * no-op.
+ * </p>
+ * <p>
+ * The transitions of a command are reported by the domain through the
+ * {@link TransitionListeners}. Once the command is flushed, when new cases have
+ * their ids, the runner records them in the {@link TransitionJournal} under the
+ * root case of each element and publishes the changes on the {@link ChangeBus}.
+ * Transitions of cases that are not persisted are dropped. The cases changed
+ * by a committed command are evicted from the cache of the
+ * {@link CaseRepositoryService}.
+ * </p>
+ * <p>
+ * A command started while the current thread already runs a command of the
+ * same case, e.g. a case file item transition caused by a task transition, joins
+ * the running command and its transaction. Its conflicts are handled by the
+ * outermost command.
+ * </p>
+ * <p>
+ * A command of another case started while the current thread runs a command,
+ * e.g. of the parent case when a sub-case completes, is deferred: it runs
+ * after the current command committed and released its lock, and is dropped
+ * if the current command rolls back. Thus no command commits changes its
+ * enclosing command rolls back, and no thread waits for the lock of a second
+ * case while holding one. Deferred commands report failures to the log only,
+ * their caller gets a message that the command was deferred.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Stateless
+public class CaseCommandRunner {
+
+	private static final Logger LOGGER = Logger.getLogger(CaseCommandRunner.class.getName());
+
+	/**
+	 * Commands of other cases deferred by the command run by the current
+	 * thread.
+	 */
+	private static final ThreadLocal<Deferred> DEFERRED = new ThreadLocal<>();
+
+	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
+	private EntityManager em;
+
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+
+	@Resource
+	private SessionContext context;
+
+	@Inject
+	private CaseRepositoryService repositories;
+
+	/**
+	 * @param caseId
+	 *            persistence id of the root case the command acts on
+	 * @param command
+	 *            the command, reads the entities it changes itself
+	 * @return the message of the command or a conflict message
+	 */
+	public ServiceMessage run(long caseId, Supplier<ServiceMessage> command) {
+		return run(caseId, null, command);
+	}
+
+	/**
+	 * @param caseId
+	 *            persistence id of the root case the command acts on
+	 * @param worker
+	 *            user name of the case worker issuing the command, recorded in
+	 *            the {@link TransitionJournal}, may be null
+	 * @param command
+	 *            the command, reads the entities it changes itself
+	 * @return the message of the command, a conflict message, or a message
+	 *         that the command was deferred if the current thread runs a
+	 *         command of another case
+	 */
+	public ServiceMessage run(long caseId, String worker, Supplier<ServiceMessage> command) {
+		CaseExecutor executor = CaseExecutor.getInstance();
+		if (executor.isHeldByCurrentThread(caseId)) {
+			return command.get();
+		}
+		final CaseCommandRunner self = context.getBusinessObject(CaseCommandRunner.class);
+		Deferred enclosing = DEFERRED.get();
+		if (enclosing != null && executor.holdsAnyCase()) {
+			enclosing.commands.add(() -> self.run(caseId, worker, command));
+			return new ServiceMessage("The command on case " + caseId
+					+ " is deferred until the current command has completed.", true);
+		}
+		Deferred deferred = new Deferred();
+		DEFERRED.set(deferred);
+		ServiceMessage result;
+		try {
+			// each attempt takes the lock and commits its own transaction, the
+			// lock is released before the policy backs off
+			result = RetryPolicy.getInstance().execute(() -> {
+				deferred.commands.clear();
+				return executor.execute(caseId, () -> self.runInNewTransaction(caseId, worker, command));
+			}, this::evict);
+		} catch (RuntimeException e) {
+			if (RetryPolicy.conflictOf(e) == null) {
+				throw e;
+			}
+			return new ServiceMessage("The case was changed concurrently, please reload and try again.", false, true);
+		} finally {
+			if (enclosing != null) {
+				DEFERRED.set(enclosing);
+			} else {
+				DEFERRED.remove();
+			}
+		}
+		if (deferred.committed) {
+			deferred.runAll();
+		}
+		return result;
+	}
+
+	/**
+	 * @param cw
+	 *            the case worker issuing a command, may be null
+	 * @return the user name to record for the command
+	 */
+	static String workerOf(CaseWorker cw) {
+		return cw != null ? cw.getUser() : null;
+	}
+
+	/**
+	 * Runs the command in a transaction of its own. The transitions it makes
+	 * are appended to the {@link TransitionJournal} and its changes are
+	 * published on the {@link ChangeBus} once the transaction has committed.
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public ServiceMessage runInNewTransaction(long caseId, String worker, Supplier<ServiceMessage> command) {
+		return recorded(caseId, worker, command);
+	}
+
+	/**
+	 * Runs a command in the current transaction, e.g. one instantiating and
+	 * persisting a new case, which has no id to lock yet. Its transitions are
+	 * journaled and published like those of a case command once the transaction
+	 * commits. Inside a command it joins the command.
+	 * 
+	 * @return the result of the command
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	public <T> T runInCurrentTransaction(Supplier<T> command) {
+		if (TransitionListeners.current() instanceof CommandTransitions) {
+			return command.get();
+		}
+		return recorded(0, null, command);
+	}
+
+	private <T> T recorded(long caseId, String worker, Supplier<T> command) {
+		CommandTransitions transitions = new CommandTransitions(caseId);
+		ITransitionListener previous = TransitionListeners.register(transitions);
+		try (TransitionJournal.Batch batch = TransitionJournal.getInstance().openBatch(worker);
+				ChangeBus.Batch changes = ChangeBus.getInstance().openBatch()) {
+			T result = command.get();
+			// new cases and elements get their ids on flush
+			em.flush();
+			transitions.journal();
+			Set<Long> changed = transitions.getCaseIds();
+			if (caseId != 0) {
+				changed.add(caseId);
+			}
+			CaseRepository cases = repositories.getRepository();
+			Deferred deferred = DEFERRED.get();
+			registry.registerInterposedSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {
+
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					if (status == Status.STATUS_COMMITTED) {
+						if (deferred != null) {
+							deferred.committed = true;
+						}
+						batch.commit();
+						changes.commit();
+						for (long id : changed) {
+							cases.evictCase(id);
+						}
+					}
+				}
+			});
+			return result;
+		} finally {
+			TransitionListeners.restore(previous);
+		}
+	}
+
+	/**
+	 * Evicts the conflicting entity from the shared cache, so the retry reads
+	 * its current version. Other entities of its class stay cached.
+	 */
+	private void evict(OptimisticLockException conflict) {
+		Object entity = conflict.getEntity();
+		if (entity == null) {
+			return;
+		}
+		EntityManagerFactory emf = em.getEntityManagerFactory();
+		Object id = emf.getPersistenceUnitUtil().getIdentifier(entity);
+		if (id != null) {
+			emf.getCache().evict(entity.getClass(), id);
+		}
+	}
+
+	/**
+	 * Collects the transitions of a command until it is flushed.
+	 */
+	private static final class CommandTransitions implements ITransitionListener {
+		private final long caseId;
+		private final List<Transition> transitions = new ArrayList<>();
+		private final Set<Long> caseIds = new HashSet<>();
+
+		private CommandTransitions(long caseId) {
+			this.caseId = caseId;
+		}
+
+		@Override
+		public void elementTransitioned(CaseElement element, String fromState, String toState, String transition) {
+			transitions.add(new Transition(element, null, element.getCmId(), fromState, toState, transition));
+		}
+
+		@Override
+		public void caseFileItemTransitioned(CaseModel cm, CaseFileItem item, String fromState, String toState,
+				String transition) {
+			transitions.add(new Transition(null, cm, item.getCmId(), fromState, toState, transition));
+		}
+
+		/**
+		 * Records the collected transitions with the ids of their cases and
+		 * publishes the changes, both kept in the batches of the command.
+		 */
+		private void journal() {
+			for (Transition t : transitions) {
+				long id;
+				if (t.element != null) {
+					id = CaseExecutor.caseIdOf(t.element);
+				} else {
+					// items loaded without their case belong to the case of the command
+					id = t.cm != null ? CaseExecutor.caseIdOf(t.cm) : caseId;
+				}
+				// items are not replayed, so their records need no version
+				caseIds.add(id);
+				TransitionJournal.getInstance().record(id, t.cmId, t.fromState, t.toState, t.transition,
+						t.element != null ? t.element::getVersion : () -> -1L);
+				if (t.element != null) {
+					ChangeBus.getInstance().publish(ChangeEvent.stateChanged(t.element, t.toState));
+				}
+			}
+			transitions.clear();
+		}
+
+		/**
+		 * @return the ids of the cases of the journaled transitions
+		 */
+		private Set<Long> getCaseIds() {
+			return caseIds;
+		}
+	}
+
+	/**
+	 * Commands of other cases waiting for the command that deferred them to
+	 * commit.
+	 */
+	private static final class Deferred {
+		private final List<Supplier<ServiceMessage>> commands = new ArrayList<>();
+		private volatile boolean committed;
+
+		private void runAll() {
+			for (Supplier<ServiceMessage> command : commands) {
+				try {
+					ServiceMessage message = command.get();
+					if (message != null && !message.isSuccess()) {
+						LOGGER.warning("Deferred command failed: " + message.getMessage());
+					}
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.WARNING, "Deferred command failed", e);
+				}
+			}
+		}
+	}
+
+	private static final class Transition {
+		private final CaseElement element;
+		private final CaseModel cm;
+		private final String cmId;
+		private final String fromState;
+		private final String toState;
+		private final String transition;
+
+		private Transition(CaseElement element, CaseModel cm, String cmId, String fromState, String toState,
+				String transition) {
+			this.element = element;
+			this.cm = cm;
+			this.cmId = cmId;
+			this.fromState = fromState;
+			this.toState = toState;
+			this.transition = transition;
+		}
+	}
+
+}
@@ -16,27 +16,38 @@
  */
 package cm.core.services.impl;
 
-import java.util.HashSet;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Objects;
+import java.util.function.Supplier;
 
+import javax.annotation.Resource;
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import cm.core.CaseModel;
+import cm.core.blob.AttachmentContents;
 import cm.core.data.CaseFile;
 import cm.core.data.CaseFileItem;
 import cm.core.data.CaseFileItemAttachment;
 import cm.core.data.CaseFileItemStates;
 import cm.core.data.SimpleProperty;
+import cm.core.journal.TransitionJournal;
+import cm.core.journal.TransitionRecord;
 import cm.core.services.CaseFileService;
 import cm.core.services.ServiceMessage;
 import cm.core.services.commands.casefileitem.CaseFileItemTransitionCommand;
 import cm.core.services.commands.casefileitem.CaseFileItemTransitionCommandFactory;
 import cm.core.services.commands.casefileitem.CaseFileItemTransitionController;
 import cm.core.states.CaseFileItemTransition;
+import cm.core.utils.FetchPlans;
 import cm.core.utils.PersistenceSettings;
 
 @Stateless
@@ -45,6 +56,15 @@ public class CaseFileServiceImpl implements CaseFileService {
 	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
 	EntityManager em;
 
+	@Inject
+	private CaseCommandRunner runner;
+
+	@Inject
+	private AttachmentContentCollector collector;
+
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+
 	private CaseFileServiceImpl() {
 
 	}
@@ -55,7 +75,7 @@ public class CaseFileServiceImpl implements CaseFileService {
 				CaseFile.class);
 		long caseId = cm.getId();
 		query.setParameter("caseId", caseId);
-		CaseFile caseFile = query.getSingleResult();
+		CaseFile caseFile = FetchPlans.apply(em, query, FetchPlans.CASE_FILE_VIEW).getSingleResult();
 		return caseFile;
 	}
 
@@ -95,66 +115,124 @@ public class CaseFileServiceImpl implements CaseFileService {
 
 	@Override
 	public ServiceMessage updateCaseFileItem(CaseFileItem cfi) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		CaseFileItem found = null;
-		List<CaseFileItem> items = query.getResultList();
-		if (items.size() > 0) {
-			found = items.get(0);
-			em.merge(cfi);
-			if(found.getState().equals(CaseFileItemStates.INITIAL.toString())) {
-				found.getContextState().create();
-			}					
-			transitionCaseFileItem(cfi, CaseFileItemTransition.update);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
 		}
-		return null;
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			CaseFileItem current = currentItem(cfi.getId(), caseId);
+			em.merge(cfi);
+			if (current.getCaseFileItemState() == CaseFileItemStates.INITIAL) {
+				current.getContextState().create();
+			}
+			return transitionCaseFileItem(cfi, CaseFileItemTransition.update);
+		});
 	}
 
 	@Override
 	public ServiceMessage replaceCaseFileItem(CaseFileItem cfi) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		List<CaseFileItem> items = query.getResultList();
-		if (items.size() > 0) {
-			CaseFileItem found = items.get(0);
-			em.merge(cfi);
-			transitionCaseFileItem(cfi, CaseFileItemTransition.replace);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
 		}
-		return null;
+		return inCase(found, () -> {
+			em.merge(cfi);
+			return transitionCaseFileItem(cfi, CaseFileItemTransition.replace);
+		});
 	}
 
 	@Override
 	public ServiceMessage deleteCaseFileItem(CaseFileItem cfi) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		List<CaseFileItem> items = query.getResultList();
-		if (items.size() > 0) {
-			CaseFileItem found = items.get(0);
-			transitionCaseFileItem(found, CaseFileItemTransition.delete);
-			em.remove(found);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
 		}
-		return null;
+		return inCase(found, () -> {
+			CaseFileItem current = getCaseFileItem(cfi.getId());
+			ServiceMessage message = transitionCaseFileItem(current, CaseFileItemTransition.delete);
+			em.remove(current);
+			return message;
+		});
 	}
 
 	@Override
 	public ServiceMessage transitionCaseFileItem(CaseFileItem cfi, CaseFileItemTransition transition) {
-		// CaseFileItem item = em.find(CaseFileItem.class, cfi.getId());
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		List<CaseFileItem> items = query.getResultList();
-		if (items.size() > 0) {
-			CaseFileItem item = items.get(0);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
+		}
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			CaseFileItem current = currentItem(cfi.getId(), caseId);
 			CaseFileItemTransitionController cfitc = new CaseFileItemTransitionController();
-			CaseFileItemTransitionCommand command = CaseFileItemTransitionCommandFactory.getCommand(transition, item);
+			CaseFileItemTransitionCommand command = CaseFileItemTransitionCommandFactory.getCommand(transition,
+					current);
 			cfitc.saveCommand(command);
 			cfitc.executeCommand();
-			em.merge(item);
+			em.merge(current);
+			return new ServiceMessage("CaseFileItem " + current.getName() + ": " + transition + " executed.", true);
+		});
+	}
+
+	/**
+	 * Runs a command changing the given item, serialized with all other commands
+	 * of its case and retried on optimistic locking conflicts.
+	 */
+	private ServiceMessage inCase(CaseFileItem item, Supplier<ServiceMessage> command) {
+		return inCase(item, findCaseId(item), command);
+	}
+
+	/**
+	 * Runs a command like {@link #inCase(CaseFileItem, Supplier)} for an item
+	 * whose case has been looked up with {@link #findCaseId(CaseFileItem)}. An
+	 * item without case is locked by its own id.
+	 */
+	private ServiceMessage inCase(CaseFileItem item, long caseId, Supplier<ServiceMessage> command) {
+		return runner.run(caseId != 0 ? caseId : item.getId(), command);
+	}
+
+	/**
+	 * Loads an item in a running command and attaches its case, so its
+	 * transitions are journaled for that case.
+	 */
+	private CaseFileItem currentItem(long itemId, long caseId) {
+		CaseFileItem item = getCaseFileItem(itemId);
+		CaseModel cm = caseId != 0 ? em.find(CaseModel.class, caseId) : null;
+		if (item != null && cm != null) {
+			item.attachCase(cm);
 		}
-		return null;
+		return item;
+	}
+
+	/**
+	 * Returns the id of the case whose {@link CaseFile} contains the given item
+	 * or one of its parent items, 0 if no such case exists.
+	 */
+	private long findCaseId(CaseFileItem item) {
+		long itemId = item.getId();
+		for (int depth = 0; depth < 32; depth++) {
+			TypedQuery<Long> query = em.createQuery(
+					"SELECT cf.caseRef.id FROM CaseFile cf JOIN cf.caseFileItems cfi WHERE cfi.id = :id", Long.class);
+			query.setParameter("id", itemId);
+			List<Long> ids = query.getResultList();
+			if (ids.size() > 0) {
+				return ids.get(0);
+			}
+			TypedQuery<Long> parentQuery = em.createQuery(
+					"SELECT p.id FROM CaseFileItem p JOIN p.children c WHERE c.id = :id", Long.class);
+			parentQuery.setParameter("id", itemId);
+			List<Long> parentIds = parentQuery.getResultList();
+			if (parentIds.isEmpty()) {
+				break;
+			}
+			itemId = parentIds.get(0);
+		}
+		return 0;
+	}
+
+	private ServiceMessage notFound(long id) {
+		return new ServiceMessage("CaseFileItem " + id + " does not exist.", false);
 	}
 
 	@Override
@@ -171,87 +249,144 @@ public class CaseFileServiceImpl implements CaseFileService {
 
 	@Override
 	public ServiceMessage addProperty(CaseFileItem cfi, SimpleProperty property) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		List<CaseFileItem> items = query.getResultList();
-		if (items.size() > 0) {
-			CaseFileItem item = items.get(0);
-			List<SimpleProperty> itemProperties = item.getProperties();
-			Set<String> existingNames = new HashSet<String>();
-			for (SimpleProperty p : itemProperties) {
-				existingNames.add(p.getName());
-			}
-			if (existingNames.add(property.getName())) {
-				item.addProperty(property);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
+		}
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			CaseFileItem item = getCaseFileItem(cfi.getId());
+			if (item.getProperty(property.getName()) != null) {
+				return new ServiceMessage("Property " + property.getName() + " already exists.", false, true);
 			}
+			item.addProperty(property);
 			em.merge(item);
-		}
-		return null;
+			journalPropertyChanged(caseId, item, property.getName());
+			return new ServiceMessage("Property " + property.getName() + " added.", true);
+		});
 	}
 
 	@Override
 	public ServiceMessage updatePropertyByName(CaseFileItem cfi, SimpleProperty property) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		List<CaseFileItem> items = query.getResultList();
-		if (items.size() > 0) {
-			CaseFileItem item = items.get(0);
-			List<SimpleProperty> itemProperties = item.getProperties();
-			for (SimpleProperty p : itemProperties) {
-				if (p.getName().equals(property.getName())) {
-					p.setValue(property.getValue());
-				}
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
+		}
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			CaseFileItem item = getCaseFileItem(cfi.getId());
+			SimpleProperty current = item.getProperty(property.getName());
+			if (current == null) {
+				return new ServiceMessage("Property " + property.getName() + " does not exist.", false);
 			}
+			// a version of 0 means the caller did not read the property before
+			if (property.getVersion() != 0 && property.getVersion() != current.getVersion()) {
+				return new ServiceMessage("Property " + property.getName() + " was changed concurrently.", false,
+						true);
+			}
+			current.setValue(property.getValue());
 			em.merge(item);
-		}
-		return null;
+			journalProperty(caseId, item, current);
+			return new ServiceMessage("Property " + property.getName() + " updated.", true);
+		});
 	}
 
 	@Override
 	public ServiceMessage updateProperty(SimpleProperty property) {
-		TypedQuery<SimpleProperty> query = em.createQuery("SELECT p FROM SimpleProperty p WHERE p.id = :id",
-				SimpleProperty.class);
-		query.setParameter("id", property.getId());
-		SimpleProperty prop = query.getSingleResult();
-		if (prop != null) {
-			prop.setValue(property.getValue());
-			em.merge(prop);
+		CaseFileItem found = itemOf(property);
+		if (found == null) {
+			return propertyNotFound(property);
 		}
-		return null;
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			SimpleProperty current = getPropertyById(property.getId());
+			if (current == null) {
+				return propertyNotFound(property);
+			}
+			// a version of 0 means the caller did not read the property before
+			if (property.getVersion() != 0 && property.getVersion() != current.getVersion()) {
+				return new ServiceMessage("Property " + current.getName() + " was changed concurrently.", false,
+						true);
+			}
+			current.setValue(property.getValue());
+			em.merge(current);
+			journalProperty(caseId, found, current);
+			return new ServiceMessage("Property " + current.getName() + " updated.", true);
+		});
 	}
 
 	@Override
 	public ServiceMessage deleteProperty(SimpleProperty property) {
-		TypedQuery<SimpleProperty> query = em.createQuery("SELECT p FROM SimpleProperty p WHERE p.id = :id",
-				SimpleProperty.class);
+		CaseFileItem found = itemOf(property);
+		if (found == null) {
+			return propertyNotFound(property);
+		}
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			CaseFileItem item = getCaseFileItem(found.getId());
+			SimpleProperty current = getPropertyById(property.getId());
+			if (current == null) {
+				return propertyNotFound(property);
+			}
+			item.removeProperty(current);
+			em.merge(item);
+			em.remove(current);
+			journalPropertyChanged(caseId, item, current.getName());
+			return new ServiceMessage("Property " + current.getName() + " deleted.", true);
+		});
+	}
+
+	/**
+	 * Returns the item containing the given property, or null if the property
+	 * does not exist.
+	 */
+	private CaseFileItem itemOf(SimpleProperty property) {
+		TypedQuery<CaseFileItem> query = em.createQuery(
+				"SELECT cfi FROM CaseFileItem cfi JOIN cfi.properties p WHERE p.id = :id", CaseFileItem.class);
 		query.setParameter("id", property.getId());
-		SimpleProperty prop = query.getSingleResult();
-		em.remove(prop);
-		return null;
+		List<CaseFileItem> items = query.getResultList();
+		return items.isEmpty() ? null : items.get(0);
+	}
+
+	private ServiceMessage propertyNotFound(SimpleProperty property) {
+		return new ServiceMessage("Property " + property.getId() + " does not exist.", false);
+	}
+
+	/**
+	 * Journals the new value of a property so that recovered cases see it.
+	 * Values too long for the journal are recorded as change only.
+	 */
+	private static void journalProperty(long caseId, CaseFileItem item, SimpleProperty property) {
+		if (!TransitionRecord.fits(property.getValue())) {
+			journalPropertyChanged(caseId, item, property.getName());
+			return;
+		}
+		TransitionJournal.getInstance().record(caseId, item.getCmId(), property.getName(), property.getValue(),
+				TransitionJournal.PROPERTY, property::getVersion);
+	}
+
+	/**
+	 * Journals a change of a property that recovery cannot replay.
+	 */
+	private static void journalPropertyChanged(long caseId, CaseFileItem item, String name) {
+		TransitionJournal.getInstance().record(caseId, item.getCmId(), name, null,
+				TransitionJournal.PROPERTY_CHANGED, () -> -1L);
 	}
 
 	@Override
 	public ServiceMessage deleteProperty(CaseFileItem cfi, SimpleProperty property) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :id",
-				CaseFileItem.class);
-		query.setParameter("id", cfi.getId());
-		CaseFileItem item = query.getSingleResult();
-		List<SimpleProperty> itemProperties = item.getProperties();
-
-		int indexOfProperty = -1;
-		for (int i = 0; i < itemProperties.size() + 1; i++) {
-			if (itemProperties.get(i).getName().equals(property.getName())) {
-				indexOfProperty = i;
-				break;
-			}
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
 		}
-		if (indexOfProperty > -1) {
-			itemProperties.remove(indexOfProperty);
-		}
-		em.merge(item);
-		return null;
+		long caseId = findCaseId(found);
+		return inCase(found, caseId, () -> {
+			CaseFileItem item = getCaseFileItem(cfi.getId());
+			item.removeProperty(property);
+			em.merge(item);
+			journalPropertyChanged(caseId, item, property.getName());
+			return new ServiceMessage("Property " + property.getName() + " deleted.", true);
+		});
 	}
 
 	@Override
@@ -269,27 +404,100 @@ public class CaseFileServiceImpl implements CaseFileService {
 
 	@Override
 	public ServiceMessage saveAttachment(CaseFileItem cfi, CaseFileItemAttachment attachment) {
-		CaseFileItem item = this.getCaseFileItem(cfi.getId());
-		item.addAttachment(attachment);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
+		}
+		return inCase(found, () -> {
+			CaseFileItem item = getCaseFileItem(cfi.getId());
+			item.addAttachment(attachment);
+			em.merge(item);
+			return new ServiceMessage("Attachment " + attachment.getName() + " saved.", true);
+		});
+	}
+
+	@Override
+	public ServiceMessage copyAttachment(CaseFileItem cfi, CaseFileItemAttachment attachment) {
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
+		}
+		return inCase(found, () -> copyAttachment(getCaseFileItem(cfi.getId()), attachment.getId()));
+	}
+
+	private ServiceMessage copyAttachment(CaseFileItem item, long attachmentId) {
+		CaseFileItemAttachment source = em.find(CaseFileItemAttachment.class, attachmentId);
+		if (source == null) {
+			return new ServiceMessage("Attachment " + attachmentId + " does not exist.", false);
+		}
+		if (item.getAttachments() != null) {
+			for (CaseFileItemAttachment existing : item.getAttachments()) {
+				if (existing.getId() == source.getId()) {
+					return new ServiceMessage("Attachment " + source.getName() + " already attached.", true);
+				}
+			}
+		}
+		CaseFileItemAttachment copy;
+		try {
+			copy = AttachmentContents.copy(source);
+		} catch (IOException e) {
+			return new ServiceMessage("Attachment " + source.getName() + " could not be copied: " + e.getMessage(),
+					false);
+		}
+		if (item.getAttachments() != null && copy.getChecksum() != null) {
+			for (CaseFileItemAttachment existing : item.getAttachments()) {
+				if (copy.getChecksum().equals(existing.getChecksum()) && Objects.equals(copy.getName(), existing.getName())) {
+					return new ServiceMessage("Attachment " + source.getName() + " already attached.", true);
+				}
+			}
+		}
+		item.addAttachment(copy);
 		em.merge(item);
-		return null;
+		return new ServiceMessage("Attachment " + source.getName() + " copied.", true);
 	}
 
 	@Override
 	public ServiceMessage deleteAttachment(CaseFileItem cfi, CaseFileItemAttachment attachment) {
-		TypedQuery<CaseFileItem> query = em.createQuery("SELECT cfi FROM CaseFileItem cfi WHERE cfi.id = :cfiId", CaseFileItem.class);
-		query.setParameter("cfiId", cfi.getId());
-		CaseFileItem fetchedItem = query.getSingleResult();
-		fetchedItem.removeAttachment(attachment);
-		em.merge(fetchedItem);
-		TypedQuery<CaseFileItemAttachment> queryAtt = em.createQuery(
-				"SELECT cfiA FROM CaseFileItemAttachment cfiA WHERE cfiA.id = :attId", CaseFileItemAttachment.class);
-		queryAtt.setParameter("attId", attachment.getId());
-		CaseFileItemAttachment fetchedAttachment = queryAtt.getSingleResult();
-		if (fetchedAttachment != null) {
-			em.remove(fetchedAttachment);
+		CaseFileItem found = getCaseFileItem(cfi.getId());
+		if (found == null) {
+			return notFound(cfi.getId());
 		}
-		return null;
+		return inCase(found, () -> {
+			CaseFileItem item = getCaseFileItem(cfi.getId());
+			CaseFileItemAttachment current = getAttachmentById(attachment.getId());
+			if (current == null || item.getAttachments() == null || !item.getAttachments().contains(current)) {
+				return new ServiceMessage("Attachment " + attachment.getId() + " does not exist.", false);
+			}
+			item.removeAttachment(current);
+			em.merge(item);
+			em.remove(current);
+			collectContentsAfterCommit(current);
+			return new ServiceMessage("Attachment " + current.getName() + " deleted.", true);
+		});
+	}
+
+	/**
+	 * Collects the blob of a removed attachment once the removal is committed,
+	 * so a rolled back removal keeps its contents. The blob is kept while other
+	 * attachments share it.
+	 */
+	private void collectContentsAfterCommit(CaseFileItemAttachment attachment) {
+		if (attachment.getBlobKey() == null) {
+			return;
+		}
+		registry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					collector.collectLater(Collections.singletonList(attachment.getBlobKey()));
+				}
+			}
+		});
 	}
 
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import cm.core.repository.CaseRepository;
+import cm.core.repository.CaseRepositoryImpl;
+import cm.core.utils.PersistenceSettings;
+
+/**
+ * <p>
+ * Holds the {@link CaseRepository} of the application, which caches loaded
+ * cases for the read paths of the services. The repository uses the
+ * RESOURCE_LOCAL unit {@link PersistenceSettings#persistenceContextUnitLocalName}
+ * provided by the container. Services changing a case evict it once their
+ * transaction committed, see {@link #evictAfterCommit(TransactionSynchronizationRegistry, long)}.
+ * </p>
+ * <p>
+ * Snapshots of the cached cases are taken every
+ * <code>cm.core.repository.snapshotIntervalSeconds</code> (default 0, no
+ * periodic snapshots).
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Singleton
+@Startup
+@DependsOn("TransitionJournalService")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CaseRepositoryService {
+
+	public static final long SNAPSHOT_INTERVAL_SECONDS = Long.getLong("cm.core.repository.snapshotIntervalSeconds",
+			0L);
+
+	@PersistenceUnit(unitName = PersistenceSettings.persistenceContextUnitLocalName)
+	private EntityManagerFactory emf;
+
+	@Resource
+	private ManagedScheduledExecutorService executor;
+
+	private CaseRepositoryImpl repository;
+
+	private ScheduledFuture<?> snapshots;
+
+	@PostConstruct
+	void start() {
+		repository = new CaseRepositoryImpl(emf);
+		if (SNAPSHOT_INTERVAL_SECONDS > 0) {
+			snapshots = executor.scheduleWithFixedDelay(repository::snapshotCachedCases, SNAPSHOT_INTERVAL_SECONDS,
+					SNAPSHOT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		if (snapshots != null) {
+			snapshots.cancel(false);
+		}
+		repository.getCache().clear();
+	}
+
+	public CaseRepository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Evicts the case from the cache of the repository once the current
+	 * transaction has committed.
+	 * 
+	 * @param registry
+	 *            registry of the current transaction
+	 * @param caseId
+	 *            persistence id of the root case
+	 */
+	public void evictAfterCommit(TransactionSynchronizationRegistry registry, long caseId) {
+		final CaseRepository cases = repository;
+		registry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					cases.evictCase(caseId);
+				}
+			}
+		});
+	}
+
+}
@@ -17,12 +17,20 @@
 package cm.core.services.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
+import javax.annotation.Resource;
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -33,28 +41,73 @@ import cm.core.CaseStates;
 import cm.core.CaseWorker;
 import cm.core.CaseElement;
 import cm.core.Stage;
+import cm.core.services.CaseExecutor;
+import cm.core.services.CaseRow;
 import cm.core.services.CaseService;
+import cm.core.services.ChangeBus;
+import cm.core.services.ChangeEvent;
+import cm.core.services.RowOrder;
+import cm.core.services.ServiceMessage;
 import cm.core.services.commands.casemodel.CaseModelTransitionCommand;
 import cm.core.services.commands.casemodel.CaseModelTransitionCommandFactory;
 import cm.core.services.commands.casemodel.CaseModelTransitionController;
 import cm.core.states.CaseInstanceTransition;
 import cm.core.tasks.CaseTask;
 import cm.core.tasks.Task;
+import cm.core.utils.FetchPlans;
 import cm.core.utils.PersistenceSettings;
 
 @Stateless
 public class CaseServiceImpl implements CaseService {
 
+	private static final Map<String, String> CASE_ROW_PATHS = new HashMap<>();
+
+	static {
+		CASE_ROW_PATHS.put("id", "c.id");
+		CASE_ROW_PATHS.put("cmId", "c.cmId");
+		CASE_ROW_PATHS.put("name", "c.name");
+		CASE_ROW_PATHS.put("state", "c.state");
+		CASE_ROW_PATHS.put("createdOn", "c.createdOn");
+	}
+
+	/**
+	 * Sub-case counts are queried for the ids of the rows up to this number of
+	 * rows, for all cases above.
+	 */
+	private static final int SUB_CASE_COUNT_IDS = 1000;
+
 	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
 	private EntityManager em;
 
+	@Inject
+	private CaseCommandRunner runner;
+
+	@Inject
+	private CaseRepositoryService repositories;
+
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+
 	public CaseServiceImpl() {
 
 	}
 
 	@Override
 	public void persistCase(CaseModel cm) {
+		runner.runInCurrentTransaction(() -> persist(cm));
+	}
+
+	@Override
+	public CaseModel startCase(Supplier<CaseModel> instantiation) {
+		return runner.runInCurrentTransaction(() -> persist(instantiation.get()));
+	}
+
+	private CaseModel persist(CaseModel cm) {
 		em.persist(cm);
+		// the id of the case is assigned on flush
+		em.flush();
+		ChangeBus.getInstance().publish(ChangeEvent.caseStarted(cm));
+		return cm;
 	}
 
 	@Override
@@ -107,6 +160,95 @@ public class CaseServiceImpl implements CaseService {
 		return null;
 	}
 
+	@Override
+	public List<CaseRow> getCaseRows() {
+		return toCaseRows(em.createNamedQuery("CaseModel.findAllShort", Object[].class));
+	}
+
+	@Override
+	public List<CaseRow> getPrimaryCaseRows(String state) {
+		return getPrimaryCaseRows(state, null, 0, Integer.MAX_VALUE, Collections.<RowOrder>emptyList());
+	}
+
+	@Override
+	public List<CaseRow> getPrimaryCaseRows(String state, String filter, int offset, int limit,
+			List<RowOrder> orders) {
+		String pattern = RowQueries.containsPattern(filter);
+		TypedQuery<Object[]> query = em.createQuery("SELECT c.id, c.cmId, c.name, c.state, c.createdOn FROM CaseModel c"
+				+ primaryCaseCondition(state, pattern) + RowQueries.orderBy(orders, CASE_ROW_PATHS, "c.id"),
+				Object[].class);
+		bindPrimaryCaseCondition(query, state, pattern);
+		return toCaseRows(RowQueries.window(query, offset, limit));
+	}
+
+	@Override
+	public int countPrimaryCaseRows(String state, String filter) {
+		String pattern = RowQueries.containsPattern(filter);
+		TypedQuery<Long> query = em.createQuery("SELECT COUNT(c) FROM CaseModel c" + primaryCaseCondition(state, pattern),
+				Long.class);
+		bindPrimaryCaseCondition(query, state, pattern);
+		return RowQueries.toCount(query.getSingleResult());
+	}
+
+	private static String primaryCaseCondition(String state, String pattern) {
+		StringBuilder condition = new StringBuilder(" WHERE c.caseTaskRef IS NULL");
+		if (state != null && !state.equals("all")) {
+			condition.append(" AND c.state = :state");
+		}
+		if (pattern != null) {
+			condition.append(" AND (LOWER(c.name) LIKE :pattern").append(RowQueries.ESCAPE)
+					.append(" OR LOWER(c.cmId) LIKE :pattern").append(RowQueries.ESCAPE).append(")");
+		}
+		return condition.toString();
+	}
+
+	private static void bindPrimaryCaseCondition(TypedQuery<?> query, String state, String pattern) {
+		if (state != null && !state.equals("all")) {
+			query.setParameter("state", state);
+		}
+		if (pattern != null) {
+			query.setParameter("pattern", pattern);
+		}
+	}
+
+	@Override
+	public List<CaseRow> getSecondaryCaseRows(long caseId) {
+		return toCaseRows(
+				em.createNamedQuery("CaseModel.findSecondaryShort", Object[].class).setParameter("caseId", caseId));
+	}
+
+	/**
+	 * Reads the rows of the query and their sub-case counts, two queries
+	 * regardless of the number of rows.
+	 */
+	private List<CaseRow> toCaseRows(TypedQuery<Object[]> query) {
+		List<Object[]> found = query.getResultList();
+		List<CaseRow> rows = new ArrayList<>(found.size());
+		if (found.isEmpty()) {
+			return rows;
+		}
+		TypedQuery<Object[]> countQuery;
+		if (found.size() <= SUB_CASE_COUNT_IDS) {
+			List<Long> ids = new ArrayList<>(found.size());
+			for (Object[] row : found) {
+				ids.add((Long) row[0]);
+			}
+			countQuery = em.createNamedQuery("CaseModel.countSubCasesOf", Object[].class).setParameter("caseIds", ids);
+		} else {
+			countQuery = em.createNamedQuery("CaseModel.countSubCases", Object[].class);
+		}
+		Map<Long, Long> subCaseCounts = new HashMap<>();
+		for (Object[] count : countQuery.getResultList()) {
+			subCaseCounts.put((Long) count[0], (Long) count[1]);
+		}
+		for (Object[] row : found) {
+			Long id = (Long) row[0];
+			rows.add(new CaseRow(id, (String) row[1], (String) row[2], (String) row[3], (Date) row[4],
+					subCaseCounts.getOrDefault(id, 0L)));
+		}
+		return rows;
+	}
+
 	private StringBuilder builder = new StringBuilder();
 	private String nl = "\n";
 	@Override
@@ -118,6 +260,8 @@ public class CaseServiceImpl implements CaseService {
 		query.setParameter("caseId", cm.getId());
 		CaseModel fetchedCase = query.getSingleResult();
 		em.refresh(fetchedCase);
+		ChangeBus.getInstance().publishAfterCommit(registry, ChangeEvent.caseDeleted(fetchedCase));
+		repositories.evictAfterCommit(registry, fetchedCase.getId());
 		em.remove(fetchedCase);
 //		if (fetchedCase != null) {
 //
@@ -161,25 +305,29 @@ public class CaseServiceImpl implements CaseService {
 
 
 	@Override
-	public void transitionCase(CaseModel cm, CaseWorker cw, CaseInstanceTransition transition) {
-		if (cw.isAdmin()) {
-			CaseModel cmInEm = em.find(CaseModel.class, cm.getId());
+	public ServiceMessage transitionCase(CaseModel cm, CaseWorker cw, CaseInstanceTransition transition) {
+		if (!cw.isAdmin()) {
+			return new ServiceMessage("Only administrators may transition cases.", false);
+		}
+		CaseModel cmInEm = em.find(CaseModel.class, cm.getId());
+		if (cmInEm == null) {
+			return new ServiceMessage("Case " + cm.getId() + " does not exist.", false);
+		}
+		return runner.run(CaseExecutor.caseIdOf(cmInEm), CaseCommandRunner.workerOf(cw), () -> {
+			CaseModel current = em.find(CaseModel.class, cm.getId(), FetchPlans.hints(em, FetchPlans.FULL_CASE));
 			CaseModelTransitionController cmttctrl = new CaseModelTransitionController();
-			CaseModelTransitionCommand command = CaseModelTransitionCommandFactory.getCommand(transition, cmInEm);
+			CaseModelTransitionCommand command = CaseModelTransitionCommandFactory.getCommand(transition, current);
 			cmttctrl.saveCommand(command);
 			cmttctrl.executeCommand();
-			em.merge(cmInEm);
-		} else {
-			// TODO notify via message that user is not admin
-		}
+			em.merge(current);
+			return new ServiceMessage("Case " + current.getName() + ": " + transition + " executed.", true);
+		});
 	}
 
 	@Override
 	public CaseModel getCaseById(CaseModel cm) {
-		TypedQuery<CaseModel> query = em.createQuery("SELECT c FROM CaseModel c WHERE c.id = :caseId", CaseModel.class);
-		query.setParameter("caseId", cm.getId());
-		CaseModel fetchedCase = query.getSingleResult();
-		return fetchedCase;
+		// cached by the repository until a command changing the case commits
+		return repositories.getRepository().getCaseById(cm.getId());
 	}
 
 	@Override
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import cm.core.CaseModel;
+import cm.core.repository.CaseWarmUp;
+import cm.core.utils.PersistenceSettings;
+
+/**
+ * <p>
+ * Optional warm-up phase after deployment. Selects the ids of all ACTIVE
+ * primary and secondary cases and loads each case with its whole graph in a
+ * transaction of its own, so the first requests find them in the shared cache
+ * of the persistence provider instead of loading them cold. Runs in the
+ * background with a bounded number of parallel loads, deployment is not
+ * delayed; progress and the final {@link CaseWarmUp.Report} are logged.
+ * </p>
+ * <p>
+ * Controlled via system properties <code>cm.core.warmup.enabled</code>
+ * (default false), <code>cm.core.warmup.parallelism</code> (default the
+ * number of processors, at most 4) and
+ * <code>cm.core.warmup.budgetSeconds</code> (default 60, 0 for no limit).
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Singleton
+@Startup
+@DependsOn("TransitionJournalService")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class CaseWarmUpService {
+
+	public static final boolean ENABLED = Boolean.getBoolean("cm.core.warmup.enabled");
+
+	public static final int PARALLELISM = Math.max(1, Integer.getInteger("cm.core.warmup.parallelism",
+			Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+	public static final long BUDGET_SECONDS = Long.getLong("cm.core.warmup.budgetSeconds", 60L);
+
+	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
+	private EntityManager em;
+
+	@Resource
+	private ManagedExecutorService executor;
+
+	@Resource
+	private ManagedScheduledExecutorService scheduler;
+
+	@Resource
+	private SessionContext context;
+
+	private volatile CaseWarmUp.Report report;
+
+	@PostConstruct
+	void start() {
+		if (ENABLED) {
+			final CaseWarmUpService self = context.getBusinessObject(CaseWarmUpService.class);
+			// the loads run on the executor, the warm-up waiting for them must not take one of its threads
+			scheduler.execute(self::warmUp);
+		}
+	}
+
+	/**
+	 * Loads all ACTIVE cases, see {@link CaseWarmUp}.
+	 * 
+	 * @return counts and timing of the warm-up
+	 */
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public CaseWarmUp.Report warmUp() {
+		List<Long> ids = CaseWarmUp.findActiveCaseIds(em);
+		final CaseWarmUpService self = context.getBusinessObject(CaseWarmUpService.class);
+		CaseWarmUp.Report result = new CaseWarmUp(executor, PARALLELISM, BUDGET_SECONDS, TimeUnit.SECONDS).run(ids,
+				self::load);
+		this.report = result;
+		return result;
+	}
+
+	/**
+	 * Loads the case with its whole graph.
+	 * 
+	 * @return the case, or <code>null</code> if it does not exist
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public CaseModel load(long caseId) {
+		CaseModel cm = em.find(CaseModel.class, caseId);
+		if (cm != null) {
+			CaseWarmUp.initialize(cm);
+		}
+		return cm;
+	}
+
+	/**
+	 * @return the result of the last warm-up, <code>null</code> if none has
+	 *         finished yet
+	 */
+	public CaseWarmUp.Report getReport() {
+		return report;
+	}
+
+}
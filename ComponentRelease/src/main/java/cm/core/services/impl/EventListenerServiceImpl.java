@@ -19,6 +19,7 @@ package cm.core.services.impl;
 import java.util.List;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
@@ -27,6 +28,7 @@ import cm.core.CaseModel;
 import cm.core.CaseWorker;
 import cm.core.listeners.EventListener;
 import cm.core.listeners.EventMilestoneStates;
+import cm.core.services.CaseExecutor;
 import cm.core.services.EventListenerService;
 import cm.core.services.ServiceMessage;
 import cm.core.states.EventMilestoneTransitions;
@@ -38,6 +40,9 @@ public class EventListenerServiceImpl implements EventListenerService {
 	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
 	private EntityManager em;
 
+	@Inject
+	private CaseCommandRunner runner;
+
 	@Override
 	public List<EventListener> getAllEventListeners(CaseModel cm) {
 		TypedQuery<EventListener> query = em
@@ -69,8 +74,11 @@ public class EventListenerServiceImpl implements EventListenerService {
 		query.setParameter("elId", elId);
 		List<EventListener> listeners = query.getResultList();
 		EventListener fetchedEl = listeners.get(0);
-		fetchedEl.getContextState().occur();
-		return null;
+		return runner.run(CaseExecutor.caseIdOf(fetchedEl), CaseCommandRunner.workerOf(cw), () -> {
+			EventListener current = em.find(EventListener.class, elId);
+			current.getContextState().occur();
+			return new ServiceMessage("EventListener " + current.getName() + " occurred.", true);
+		});
 	}
 
 	@Override
@@ -82,6 +90,15 @@ public class EventListenerServiceImpl implements EventListenerService {
 		query.setParameter("elId", elId);
 		List<EventListener> listeners = query.getResultList();
 		EventListener fetchedEl = listeners.get(0);
+		return runner.run(CaseExecutor.caseIdOf(fetchedEl), CaseCommandRunner.workerOf(cw), () -> {
+			EventListener current = em.find(EventListener.class, elId);
+			transition(current, transition);
+			em.merge(current);
+			return new ServiceMessage("EventListener " + current.getName() + ": " + transition + " executed.", true);
+		});
+	}
+
+	private void transition(EventListener fetchedEl, EventMilestoneTransitions transition) {
 		// refactor into transition commands, see cm.core.services.commands packages
 		switch (transition) {
 		case occur:
@@ -97,8 +114,6 @@ public class EventListenerServiceImpl implements EventListenerService {
 		default:
 
 		}
-		em.merge(fetchedEl);
-		return null;
 	}
 
 }
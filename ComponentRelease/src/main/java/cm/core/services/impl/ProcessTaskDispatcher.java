@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
+
+/**
+ * <p>
+ * Hands process task executions to an executor while bounding the number of
+ * executions running at the same time. Executions beyond the bound wait in a
+ * queue and are submitted whenever a running execution finishes. An execution
+ * already waiting or running is not submitted twice.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+final class ProcessTaskDispatcher {
+
+	/**
+	 * Maximum number of executions running at the same time, can be set via
+	 * system property <code>cm.core.tasks.processTask.maxConcurrent</code>.
+	 */
+	static final int MAX_CONCURRENT = Math.max(1, Integer.getInteger("cm.core.tasks.processTask.maxConcurrent", 8));
+
+	private static final Queue<Long> ready = new ConcurrentLinkedQueue<Long>();
+	private static final Set<Long> submitted = ConcurrentHashMap.newKeySet();
+	private static final Semaphore permits = new Semaphore(MAX_CONCURRENT);
+
+	private ProcessTaskDispatcher() {
+
+	}
+
+	static void submit(long executionId, ExecutorService executor, LongConsumer work) {
+		if (submitted.add(executionId)) {
+			ready.add(executionId);
+		}
+		drain(executor, work);
+	}
+
+	static int getWaiting() {
+		return ready.size();
+	}
+
+	static int getRunning() {
+		return MAX_CONCURRENT - permits.availablePermits();
+	}
+
+	private static void drain(ExecutorService executor, LongConsumer work) {
+		while (!ready.isEmpty() && permits.tryAcquire()) {
+			final Long executionId = ready.poll();
+			if (executionId == null) {
+				permits.release();
+				return;
+			}
+			try {
+				executor.submit(() -> {
+					try {
+						work.accept(executionId);
+					} finally {
+						submitted.remove(executionId);
+						permits.release();
+						drain(executor, work);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// retried when the next execution finishes or is submitted
+				ready.add(executionId);
+				permits.release();
+				return;
+			}
+		}
+	}
+
+}
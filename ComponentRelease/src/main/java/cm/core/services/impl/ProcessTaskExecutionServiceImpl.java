@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import cm.core.services.CaseExecutor;
+import cm.core.services.ProcessTaskExecutionService;
+import cm.core.services.ServiceMessage;
+import cm.core.tasks.ProcessTask;
+import cm.core.tasks.ProcessTaskExecution;
+import cm.core.tasks.ProcessTaskExecutionStates;
+import cm.core.tasks.ProcessTaskImplementation;
+import cm.core.tasks.TaskStates;
+import cm.core.utils.PersistenceSettings;
+import cm.core.utils.ProcessTaskImplementationFactory;
+
+@Stateless
+public class ProcessTaskExecutionServiceImpl implements ProcessTaskExecutionService {
+
+	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
+	private EntityManager em;
+
+	@Resource
+	private ManagedExecutorService executor;
+
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+
+	@Resource
+	private SessionContext context;
+
+	@Inject
+	private CaseCommandRunner runner;
+
+	@Override
+	public ServiceMessage dispatch(ProcessTask pt) {
+		final ProcessTaskExecution execution = new ProcessTaskExecution(pt);
+		em.persist(execution);
+		final ProcessTaskExecutionService self = context.getBusinessObject(ProcessTaskExecutionService.class);
+		// the id is assigned and the worker can read the record once the transaction has committed
+		registry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) {
+					submit(execution.getId(), self);
+				}
+			}
+		});
+		return new ServiceMessage("Execution of ProcessTask " + pt.getName() + " dispatched.", true);
+	}
+
+	@Override
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public void execute(long executionId) {
+		ProcessTaskExecution found = em.find(ProcessTaskExecution.class, executionId);
+		if (found == null) {
+			return;
+		}
+		long caseId = CaseExecutor.caseIdOf(found.getProcessTask());
+		ServiceMessage started = runner.run(caseId, () -> {
+			ProcessTaskExecution execution = em.find(ProcessTaskExecution.class, executionId);
+			return new ServiceMessage("", execution.start());
+		});
+		if (!started.isSuccess()) {
+			return;
+		}
+		ProcessTaskImplementation pi = ProcessTaskImplementationFactory
+				.getProcessImplementation(found.getProcessTask());
+		try {
+			pi.startProcess();
+		} catch (RuntimeException e) {
+			fault(executionId, e.toString());
+			return;
+		}
+		if (pi.isCompletedByCallBack()) {
+			runner.run(caseId, () -> {
+				ProcessTaskExecution execution = em.find(ProcessTaskExecution.class, executionId);
+				execution.setState(ProcessTaskExecutionStates.AWAITING_CALLBACK.toString());
+				return new ServiceMessage("Awaiting callback.", true);
+			});
+		} else {
+			complete(executionId);
+		}
+	}
+
+	@Override
+	public ServiceMessage complete(long executionId) {
+		return finish(executionId, ProcessTaskExecutionStates.COMPLETED, null);
+	}
+
+	@Override
+	public ServiceMessage fault(long executionId, String failure) {
+		return finish(executionId, ProcessTaskExecutionStates.FAULTED, failure);
+	}
+
+	/**
+	 * Runs the callback and completes the ProcessTask in one command of its case,
+	 * so the changes of the callback are committed together with the completion.
+	 * If the callback fails, its changes are rolled back and the execution is
+	 * faulted in a command of its own.
+	 */
+	@Override
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public ServiceMessage callBack(long processTaskId) {
+		TypedQuery<ProcessTaskExecution> query = em.createQuery(
+				"SELECT e FROM ProcessTaskExecution e WHERE e.processTask.id = :ptId AND e.state = :state ORDER BY e.id DESC",
+				ProcessTaskExecution.class);
+		query.setParameter("ptId", processTaskId);
+		query.setParameter("state", ProcessTaskExecutionStates.AWAITING_CALLBACK.toString());
+		List<ProcessTaskExecution> executions = query.getResultList();
+		if (executions.isEmpty()) {
+			return new ServiceMessage("ProcessTask " + processTaskId + " is not awaiting a callback.", false, true);
+		}
+		final long executionId = executions.get(0).getId();
+		try {
+			return runner.run(CaseExecutor.caseIdOf(executions.get(0).getProcessTask()), () -> {
+				ProcessTaskExecution execution = em.find(ProcessTaskExecution.class, executionId);
+				if (execution.getExecutionState() != ProcessTaskExecutionStates.AWAITING_CALLBACK) {
+					return new ServiceMessage("ProcessTask " + processTaskId + " is not awaiting a callback.", false,
+							true);
+				}
+				execution.getProcessTask().executeCallBack();
+				return finishInCase(execution, ProcessTaskExecutionStates.COMPLETED, null);
+			});
+		} catch (RuntimeException e) {
+			return fault(executionId, e.toString());
+		}
+	}
+
+	/**
+	 * Executions are started at least once: an execution left RUNNING was
+	 * interrupted before it finished, its implementation is started again. Only
+	 * one application instance may process the executions.
+	 */
+	@Override
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public int resumeAfterRestart() {
+		for (ProcessTaskExecution running : getExecutionsByState(ProcessTaskExecutionStates.RUNNING)) {
+			final long executionId = running.getId();
+			runner.run(CaseExecutor.caseIdOf(running.getProcessTask()), () -> {
+				ProcessTaskExecution execution = em.find(ProcessTaskExecution.class, executionId);
+				return new ServiceMessage("Execution " + executionId + " reset.", execution.reset());
+			});
+		}
+		return resubmitPending();
+	}
+
+	@Override
+	public int resubmitPending() {
+		List<ProcessTaskExecution> pending = getExecutionsByState(ProcessTaskExecutionStates.PENDING);
+		ProcessTaskExecutionService self = context.getBusinessObject(ProcessTaskExecutionService.class);
+		for (ProcessTaskExecution execution : pending) {
+			submit(execution.getId(), self);
+		}
+		return pending.size();
+	}
+
+	@Override
+	public List<ProcessTaskExecution> getExecutionsByState(ProcessTaskExecutionStates state) {
+		TypedQuery<ProcessTaskExecution> query = em.createQuery(
+				"SELECT e FROM ProcessTaskExecution e WHERE e.state = :state ORDER BY e.id", ProcessTaskExecution.class);
+		query.setParameter("state", state.toString());
+		return query.getResultList();
+	}
+
+	/**
+	 * Completes or faults the ProcessTask of an execution and records the final
+	 * state, serialized with the other commands of the case.
+	 */
+	private ServiceMessage finish(long executionId, ProcessTaskExecutionStates finalState, String failure) {
+		ProcessTaskExecution found = em.find(ProcessTaskExecution.class, executionId);
+		if (found == null) {
+			return new ServiceMessage("Execution " + executionId + " does not exist.", false);
+		}
+		return runner.run(CaseExecutor.caseIdOf(found.getProcessTask()),
+				() -> finishInCase(em.find(ProcessTaskExecution.class, executionId), finalState, failure));
+	}
+
+	/**
+	 * Transitions the ProcessTask and records the final state, to be called from
+	 * a command of its case.
+	 */
+	private ServiceMessage finishInCase(ProcessTaskExecution execution, ProcessTaskExecutionStates finalState,
+			String failure) {
+		if (execution.isFinished()) {
+			return new ServiceMessage("Execution " + execution.getId() + " has already finished.", false, true);
+		}
+		ProcessTask pt = execution.getProcessTask();
+		if (pt.getTaskState() == TaskStates.ACTIVE) {
+			if (finalState == ProcessTaskExecutionStates.COMPLETED) {
+				pt.getContextState().complete();
+			} else {
+				pt.getContextState().fault();
+			}
+		}
+		execution.finish(finalState, failure);
+		return new ServiceMessage("ProcessTask " + pt.getName() + " " + finalState.toString().toLowerCase() + ".",
+				true);
+	}
+
+	private void submit(long executionId, ProcessTaskExecutionService self) {
+		ProcessTaskDispatcher.submit(executionId, executor, self::execute);
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+
+import cm.core.services.ProcessTaskExecutionService;
+import cm.core.tasks.ProcessTaskExecution;
+
+/**
+ * <p>
+ * Resumes the {@link ProcessTaskExecution}s interrupted by a stop of the
+ * application, see {@link ProcessTaskExecutionService#resumeAfterRestart()}.
+ * Runs in the background once after deployment, deployment is not delayed.
+ * </p>
+ * <p>
+ * Controlled via system property
+ * <code>cm.core.tasks.processTask.resumeOnStartup</code> (default true).
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Singleton
+@Startup
+@DependsOn("TransitionJournalService")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ProcessTaskResumeService {
+
+	public static final boolean ENABLED = Boolean
+			.parseBoolean(System.getProperty("cm.core.tasks.processTask.resumeOnStartup", "true"));
+
+	private static final Logger LOGGER = Logger.getLogger(ProcessTaskResumeService.class.getName());
+
+	@Resource
+	private ManagedScheduledExecutorService scheduler;
+
+	@Inject
+	private ProcessTaskExecutionService executionService;
+
+	@PostConstruct
+	void start() {
+		if (ENABLED) {
+			scheduler.execute(this::resume);
+		}
+	}
+
+	private void resume() {
+		try {
+			int submitted = executionService.resumeAfterRestart();
+			if (submitted > 0) {
+				LOGGER.info("Resumed " + submitted + " process task executions");
+			}
+		} catch (RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Could not resume process task executions", e);
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.persistence.TypedQuery;
+
+import cm.core.services.RowOrder;
+
+/**
+ * Builds the parts of the paged row queries of the services that depend on
+ * the caller. Sort properties are mapped to paths by a fixed table, so no
+ * input reaches the query text.
+ * 
+ * @author André Zensen
+ *
+ */
+final class RowQueries {
+
+	/**
+	 * Condition to append to a LIKE comparison with a pattern from
+	 * {@link #containsPattern(String)}.
+	 */
+	static final String ESCAPE = " ESCAPE '\\'";
+
+	private RowQueries() {
+
+	}
+
+	/**
+	 * @param orders
+	 *            requested sort orders, may be null
+	 * @param paths
+	 *            path in the query by row property
+	 * @param idPath
+	 *            path of the id, appended as last order so pages are stable
+	 * @return the ORDER BY clause
+	 */
+	static String orderBy(List<RowOrder> orders, Map<String, String> paths, String idPath) {
+		StringBuilder clause = new StringBuilder(" ORDER BY ");
+		boolean byId = false;
+		if (orders != null) {
+			for (RowOrder order : orders) {
+				String path = paths.get(order.getProperty());
+				if (path != null) {
+					clause.append(path).append(order.isAscending() ? " ASC, " : " DESC, ");
+					byId |= path.equals(idPath);
+				}
+			}
+		}
+		if (byId) {
+			return clause.substring(0, clause.length() - 2);
+		}
+		return clause.append(idPath).toString();
+	}
+
+	/**
+	 * @return a lower case LIKE pattern matching values containing the filter,
+	 *         <code>null</code> for an empty filter
+	 */
+	static String containsPattern(String filter) {
+		if (filter == null || filter.trim().isEmpty()) {
+			return null;
+		}
+		String escaped = filter.trim().toLowerCase(Locale.ROOT).replace("\\", "\\\\").replace("%", "\\%")
+				.replace("_", "\\_");
+		return "%" + escaped + "%";
+	}
+
+	/**
+	 * Restricts the query to the window, a limit of {@link Integer#MAX_VALUE}
+	 * means all rows from the offset.
+	 */
+	static <T> TypedQuery<T> window(TypedQuery<T> query, int offset, int limit) {
+		query.setFirstResult(offset);
+		if (limit < Integer.MAX_VALUE) {
+			query.setMaxResults(limit);
+		}
+		return query;
+	}
+
+	static int toCount(Long count) {
+		return count == null ? 0 : (int) Math.min(Integer.MAX_VALUE, count);
+	}
+
+}
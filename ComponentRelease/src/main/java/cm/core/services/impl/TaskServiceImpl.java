@@ -16,18 +16,29 @@
  */
 package cm.core.services.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.ejb.Stateless;
+import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 
 import cm.core.CaseModel;
 import cm.core.CaseWorker;
+import cm.core.journal.TransitionJournal;
 import cm.core.sentries.ExitSentry;
 import cm.core.sentries.Sentry;
+import cm.core.services.CaseExecutor;
+import cm.core.services.ChangeBus;
+import cm.core.services.ChangeEvent;
+import cm.core.services.RowOrder;
 import cm.core.services.ServiceMessage;
+import cm.core.services.TaskRow;
 import cm.core.services.TaskService;
 import cm.core.services.commands.stagetask.StageTaskTransitionCommandFactory;
 import cm.core.services.commands.stagetask.StageTaskTransitionController;
@@ -38,14 +49,34 @@ import cm.core.tasks.HumanTask;
 import cm.core.tasks.ProcessTask;
 import cm.core.tasks.Task;
 import cm.core.tasks.TaskStates;
+import cm.core.utils.FetchPlans;
 import cm.core.utils.PersistenceSettings;
 
 @Stateless
 public class TaskServiceImpl implements TaskService {
 
+	private static final String TASK_ROW_FROM = " FROM HumanTask t JOIN t.rootCase c LEFT JOIN t.caseRole r LEFT JOIN t.claimant w";
+	private static final String CLAIMABLE = " WHERE w IS NULL AND (t.state = :active OR t.state = :enabled) AND (r.roleName IN :caseRole OR r IS NULL)";
+	private static final String CLAIMED = " WHERE w.id = :claimantId";
+
+	private static final Map<String, String> TASK_ROW_PATHS = new HashMap<>();
+
+	static {
+		TASK_ROW_PATHS.put("id", "t.id");
+		TASK_ROW_PATHS.put("cmId", "t.cmId");
+		TASK_ROW_PATHS.put("name", "t.name");
+		TASK_ROW_PATHS.put("state", "t.state");
+		TASK_ROW_PATHS.put("caseName", "c.name");
+		TASK_ROW_PATHS.put("role", "r.roleName");
+		TASK_ROW_PATHS.put("claimant", "w.user");
+	}
+
 	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
 	private EntityManager em;
 
+	@Inject
+	private CaseCommandRunner runner;
+
 	public TaskServiceImpl() {
 
 	}
@@ -53,7 +84,7 @@ public class TaskServiceImpl implements TaskService {
 	@Override
 	public List<HumanTask> getAllTasks() {
 		TypedQuery<HumanTask> query = em.createQuery("SELECT t FROM HumanTask t", HumanTask.class);
-		List<HumanTask> tasks = query.getResultList();
+		List<HumanTask> tasks = FetchPlans.apply(em, query, FetchPlans.WORKLIST_ROW).getResultList();
 		return tasks;
 	}
 
@@ -64,7 +95,7 @@ public class TaskServiceImpl implements TaskService {
 		long caseId = cm.getId();
 		query.setParameter("caseId", caseId);
 
-		List<HumanTask> tasks = query.getResultList();
+		List<HumanTask> tasks = FetchPlans.apply(em, query, FetchPlans.WORKLIST_ROW).getResultList();
 		return tasks;
 	}
 
@@ -75,7 +106,7 @@ public class TaskServiceImpl implements TaskService {
 				HumanTask.class);
 		query.setParameter("active", TaskStates.ACTIVE.toString());
 		query.setParameter("enabled", TaskStates.ENABLED.toString());
-		List<HumanTask> tasks = query.getResultList();
+		List<HumanTask> tasks = FetchPlans.apply(em, query, FetchPlans.WORKLIST_ROW).getResultList();
 		return tasks;
 	}
 
@@ -87,7 +118,7 @@ public class TaskServiceImpl implements TaskService {
 		query.setParameter("active", TaskStates.ACTIVE.toString());
 		query.setParameter("enabled", TaskStates.ENABLED.toString());
 		query.setParameter("caseRole", cw.getCaseRolesAsString());
-		List<HumanTask> tasks = query.getResultList();
+		List<HumanTask> tasks = FetchPlans.apply(em, query, FetchPlans.WORKLIST_ROW).getResultList();
 		return tasks;
 	}
 
@@ -158,47 +189,68 @@ public class TaskServiceImpl implements TaskService {
 	@Override
 	public ServiceMessage claimTask(Task t, CaseWorker cw) {
 		Task taskInEm = em.find(t.getClass(), t.getId());
-		if (taskInEm != null) {
-			if (taskInEm.getClaimant() == null) {
-				taskInEm.setClaimant(cw);
-				em.merge(taskInEm);
-			}
-		} else {
-			// TODO return error message
+		if (taskInEm == null) {
+			return new ServiceMessage("Task " + t.getId() + " does not exist.", false);
 		}
-		return null;
+		return runner.run(CaseExecutor.caseIdOf(taskInEm), CaseCommandRunner.workerOf(cw), () -> {
+			Task current = em.find(t.getClass(), t.getId());
+			if (current.getClaimant() != null) {
+				return new ServiceMessage("Task " + current.getName() + " has already been claimed.", false, true);
+			}
+			current.setClaimant(cw);
+			em.merge(current);
+			TransitionJournal.getInstance().record(CaseExecutor.caseIdOf(current), current.getCmId(),
+					current.getState(), current.getState(), TransitionJournal.CLAIM, current::getVersion);
+			ChangeBus.getInstance().publish(ChangeEvent.claimed(current, cw.getUser()));
+			return new ServiceMessage("Task " + current.getName() + " claimed.", true);
+		});
 	}
 
 	@Override
 	public ServiceMessage unclaimTask(Task t, CaseWorker cw) {
 		Task taskInEm = em.find(t.getClass(), t.getId());
-		if (taskInEm != null) {
-			if (taskInEm.getClaimant().getId() == cw.getId() || cw.isAdmin()) {
-				taskInEm.setClaimant(null);
-				em.merge(taskInEm);
-			}
-		} else {
-			// TODO return error message
+		if (taskInEm == null) {
+			return new ServiceMessage("Task " + t.getId() + " does not exist.", false);
 		}
-		return null;
+		return runner.run(CaseExecutor.caseIdOf(taskInEm), CaseCommandRunner.workerOf(cw), () -> {
+			Task current = em.find(t.getClass(), t.getId());
+			if (current.getClaimant() == null) {
+				return new ServiceMessage("Task " + current.getName() + " is not claimed.", false, true);
+			}
+			if (current.getClaimant().getId() != cw.getId() && !cw.isAdmin()) {
+				return new ServiceMessage("Task " + current.getName() + " is claimed by another case worker.", false);
+			}
+			String claimant = current.getClaimant().getUser();
+			current.setClaimant(null);
+			em.merge(current);
+			TransitionJournal.getInstance().record(CaseExecutor.caseIdOf(current), current.getCmId(),
+					current.getState(), current.getState(), TransitionJournal.UNCLAIM, current::getVersion);
+			ChangeBus.getInstance().publish(ChangeEvent.unclaimed(current, claimant));
+			return new ServiceMessage("Task " + current.getName() + " unclaimed.", true);
+		});
 	}
 
 	@Override
 	public ServiceMessage transitionTask(Task t, CaseWorker cw, StageTaskTransitions transition) {
 		Task taskInEm = em.find(t.getClass(), t.getId());
-		if (t.getState().equals(taskInEm.getState())) {
+		if (taskInEm == null) {
+			return new ServiceMessage("Task " + t.getId() + " does not exist.", false);
+		}
+		return runner.run(CaseExecutor.caseIdOf(taskInEm), CaseCommandRunner.workerOf(cw), () -> {
+			Task current = em.find(t.getClass(), t.getId(),
+					FetchPlans.hints(em, FetchPlans.executionOf(t.getClass())));
+			if (!t.getState().equals(current.getState())) {
+				return new ServiceMessage("Task " + current.getName() + " changed its state to " + current.getState()
+						+ ", " + transition + " was not executed.", false, true);
+			}
 			StageTaskTransitionController sttctrl = new StageTaskTransitionController();
-			TaskTransitionCommand sttcomm = StageTaskTransitionCommandFactory.getCommand(transition, taskInEm);
+			TaskTransitionCommand sttcomm = StageTaskTransitionCommandFactory.getCommand(transition, current);
 			sttctrl.saveCommand(sttcomm);
 			sttctrl.executeCommand();
 
-			em.merge(taskInEm);
-		} else {
-			// notify of changed state
-		}
-
-		// TODO return message
-		return null;
+			em.merge(current);
+			return new ServiceMessage("Task " + current.getName() + ": " + transition + " executed.", true);
+		});
 	}
 
 	@Override
@@ -208,16 +260,111 @@ public class TaskServiceImpl implements TaskService {
 		query.setParameter("claimaintId", cw.getId());
 //		query.setParameter("available", TaskStates.AVAILABLE.toString());
 //		query.setParameter("enabled", TaskStates.ENABLED.toString());
-		List<HumanTask> tasks = query.getResultList();
+		List<HumanTask> tasks = FetchPlans.apply(em, query, FetchPlans.WORKLIST_ROW).getResultList();
 		return tasks;
 	}
 
+	@Override
+	public List<TaskRow> getClaimableTaskRowsByRole(CaseWorker cw) {
+		return getClaimableTaskRowsByRole(cw, null, 0, Integer.MAX_VALUE, Collections.<RowOrder>emptyList());
+	}
+
+	@Override
+	public List<TaskRow> getClaimableTaskRowsByRole(CaseWorker cw, String filter, int offset, int limit,
+			List<RowOrder> orders) {
+		return findTaskRows(CLAIMABLE, claimableParameters(cw), filter, offset, limit, orders);
+	}
+
+	@Override
+	public int countClaimableTaskRowsByRole(CaseWorker cw, String filter) {
+		return countTaskRows(CLAIMABLE, claimableParameters(cw), filter);
+	}
+
+	@Override
+	public List<TaskRow> getClaimedTaskRowsByCaseWorker(CaseWorker cw) {
+		return getClaimedTaskRowsByCaseWorker(cw, null, 0, Integer.MAX_VALUE, Collections.<RowOrder>emptyList());
+	}
+
+	@Override
+	public List<TaskRow> getClaimedTaskRowsByCaseWorker(CaseWorker cw, String filter, int offset, int limit,
+			List<RowOrder> orders) {
+		return findTaskRows(CLAIMED, claimedParameters(cw), filter, offset, limit, orders);
+	}
+
+	@Override
+	public int countClaimedTaskRowsByCaseWorker(CaseWorker cw, String filter) {
+		return countTaskRows(CLAIMED, claimedParameters(cw), filter);
+	}
+
+	private static Map<String, Object> claimableParameters(CaseWorker cw) {
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("active", TaskStates.ACTIVE.toString());
+		parameters.put("enabled", TaskStates.ENABLED.toString());
+		parameters.put("caseRole", cw.getCaseRolesAsString());
+		return parameters;
+	}
+
+	private static Map<String, Object> claimedParameters(CaseWorker cw) {
+		return Collections.<String, Object>singletonMap("claimantId", cw.getId());
+	}
+
+	private List<TaskRow> findTaskRows(String condition, Map<String, Object> parameters, String filter, int offset,
+			int limit, List<RowOrder> orders) {
+		String pattern = RowQueries.containsPattern(filter);
+		TypedQuery<Object[]> query = em.createQuery(
+				"SELECT t.id, t.cmId, t.name, t.state, c.id, c.name, r.roleName, w.user" + TASK_ROW_FROM + condition
+						+ taskFilter(pattern) + RowQueries.orderBy(orders, TASK_ROW_PATHS, "t.id"),
+				Object[].class);
+		bindTaskQuery(query, parameters, pattern);
+		return toTaskRows(RowQueries.window(query, offset, limit).getResultList());
+	}
+
+	private int countTaskRows(String condition, Map<String, Object> parameters, String filter) {
+		String pattern = RowQueries.containsPattern(filter);
+		TypedQuery<Long> query = em.createQuery("SELECT COUNT(t)" + TASK_ROW_FROM + condition + taskFilter(pattern),
+				Long.class);
+		bindTaskQuery(query, parameters, pattern);
+		return RowQueries.toCount(query.getSingleResult());
+	}
+
+	private static String taskFilter(String pattern) {
+		if (pattern == null) {
+			return "";
+		}
+		return " AND (LOWER(t.name) LIKE :pattern" + RowQueries.ESCAPE + " OR LOWER(c.name) LIKE :pattern"
+				+ RowQueries.ESCAPE + ")";
+	}
+
+	private static void bindTaskQuery(TypedQuery<?> query, Map<String, Object> parameters, String pattern) {
+		for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+			query.setParameter(parameter.getKey(), parameter.getValue());
+		}
+		if (pattern != null) {
+			query.setParameter("pattern", pattern);
+		}
+	}
+
+	private static List<TaskRow> toTaskRows(List<Object[]> found) {
+		List<TaskRow> rows = new ArrayList<>(found.size());
+		for (Object[] row : found) {
+			rows.add(new TaskRow((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (Long) row[4],
+					(String) row[5], (String) row[6], (String) row[7]));
+		}
+		return rows;
+	}
+
+	@Override
+	public HumanTask findHumanTaskById(long id) {
+		return em.find(HumanTask.class, id, FetchPlans.hints(em, FetchPlans.executionOf(HumanTask.class)));
+	}
+
 	@Override
 	public ProcessTask findProcessTaskById(long id) {
 		TypedQuery<ProcessTask> query = em.createQuery("SELECT pt FROM ProcessTask pt WHERE pt.id= :givenId",
 				ProcessTask.class);
 		query.setParameter("givenId", id);
-		List<ProcessTask> tasks = query.getResultList();
+		List<ProcessTask> tasks = FetchPlans
+				.apply(em, query, FetchPlans.executionOf(ProcessTask.class)).getResultList();
 		ProcessTask foundPt = tasks.get(0);
 		return foundPt;
 	}
@@ -0,0 +1,191 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+
+import cm.core.listeners.EventMilestoneStates;
+import cm.core.listeners.TimerEventListener;
+import cm.core.services.ServiceMessage;
+import cm.core.services.TimerScheduler;
+import cm.core.services.TimerScheduler.DueTimer;
+import cm.core.utils.PersistenceSettings;
+
+/**
+ * <p>
+ * Drives the {@link TimerScheduler}. On startup all pending
+ * {@link TimerEventListener}s due within the window are loaded with one query;
+ * timers missed while the application was down are fired with the first tick.
+ * Every tick the wheel is advanced and the due timers are grouped by case.
+ * Each group is fired in one transaction of the {@link CaseCommandRunner}
+ * using the normal <code>occur</code> transition. Groups that fail or conflict
+ * are put back into the scheduler and fired again after a growing delay, see
+ * {@link TimerScheduler#retry(DueTimer, long)}. The window is reloaded when
+ * half of it has passed.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Singleton
+@Startup
+@DependsOn("TransitionJournalService")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TimerEventScheduler {
+
+	/**
+	 * Length in milliseconds of the window of timers held in memory, can be set
+	 * via system property <code>cm.core.timers.windowMillis</code>.
+	 */
+	public static final long WINDOW_MILLIS = Math.max(TimerScheduler.TICK_MILLIS * 2,
+			Long.getLong("cm.core.timers.windowMillis", 600000L));
+
+	private static final Logger LOGGER = Logger.getLogger(TimerEventScheduler.class.getName());
+
+	@PersistenceContext(unitName = PersistenceSettings.persistenceContextUnitName)
+	private EntityManager em;
+
+	@Resource
+	private ManagedScheduledExecutorService executor;
+
+	@Inject
+	private CaseCommandRunner runner;
+
+	private ScheduledFuture<?> ticker;
+	private volatile long nextReload;
+
+	@PostConstruct
+	void start() {
+		long now = System.currentTimeMillis();
+		TimerScheduler.getInstance().reset(now);
+		reload(now);
+		ticker = executor.scheduleAtFixedRate(this::tick, TimerScheduler.TICK_MILLIS, TimerScheduler.TICK_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	void stop() {
+		if (ticker != null) {
+			ticker.cancel(false);
+		}
+	}
+
+	public TimerScheduler.Statistics getStatistics() {
+		return TimerScheduler.getInstance().getStatistics();
+	}
+
+	private void tick() {
+		try {
+			long now = System.currentTimeMillis();
+			if (now >= nextReload) {
+				reload(now);
+			}
+			List<DueTimer> due = TimerScheduler.getInstance().advance(now);
+			if (!due.isEmpty()) {
+				fire(due, now);
+			}
+		} catch (RuntimeException e) {
+			// an exception would cancel all further ticks
+			LOGGER.log(Level.WARNING, "Timer tick failed", e);
+		}
+	}
+
+	/**
+	 * Loads all pending timers due before the end of the new window, including
+	 * overdue ones.
+	 */
+	private void reload(long now) {
+		TimerScheduler scheduler = TimerScheduler.getInstance();
+		scheduler.setLoadedUntil(now + WINDOW_MILLIS);
+		long until = scheduler.getLoadedUntil();
+		TypedQuery<Object[]> query = em.createQuery(
+				"SELECT t.id, t.rootCase.id, t.dueDate FROM TimerEventListener t WHERE t.state = :state AND t.dueDate <= :until",
+				Object[].class);
+		query.setParameter("state", EventMilestoneStates.AVAILABLE.toString());
+		query.setParameter("until", new Date(until));
+		for (Object[] row : query.getResultList()) {
+			scheduler.schedule((Long) row[0], (Long) row[1], ((Date) row[2]).getTime());
+		}
+		nextReload = now + WINDOW_MILLIS / 2;
+	}
+
+	private void fire(List<DueTimer> due, long now) {
+		Map<Long, List<DueTimer>> byCase = new LinkedHashMap<Long, List<DueTimer>>();
+		for (DueTimer timer : due) {
+			byCase.computeIfAbsent(timer.getCaseId(), id -> new ArrayList<DueTimer>()).add(timer);
+		}
+		for (Map.Entry<Long, List<DueTimer>> group : byCase.entrySet()) {
+			List<DueTimer> timers = group.getValue();
+			try {
+				ServiceMessage message = runner.run(group.getKey(), () -> {
+					int occurred = 0;
+					for (DueTimer dueTimer : timers) {
+						TimerEventListener timer = em.find(TimerEventListener.class, dueTimer.getTimerId());
+						if (timer != null && timer.isDue(now)) {
+							timer.getContextState().occur();
+							occurred++;
+						}
+					}
+					return new ServiceMessage(occurred + " timers occurred.", true);
+				});
+				if (!message.isSuccess()) {
+					retry(timers, now, message.getMessage(), null);
+				}
+			} catch (RuntimeException e) {
+				retry(timers, now, e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Puts timers that could not be fired back into the scheduler, they are
+	 * still pending in the database.
+	 */
+	private void retry(List<DueTimer> timers, long now, String reason, RuntimeException e) {
+		List<Long> timerIds = new ArrayList<Long>();
+		long next = -1;
+		for (DueTimer timer : timers) {
+			timerIds.add(timer.getTimerId());
+			next = Math.max(next, TimerScheduler.getInstance().retry(timer, now));
+		}
+		String retrying = next >= 0 ? ", retrying in " + (next - now) + " ms" : "";
+		LOGGER.log(Level.WARNING, "Firing timers " + timerIds + " failed: " + reason + retrying, e);
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.services.impl;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+
+import cm.core.journal.CaseSnapshotStore;
+import cm.core.journal.TransitionJournal;
+
+/**
+ * <p>
+ * Runs the writer of the {@link TransitionJournal} on a managed thread while
+ * the application is deployed. On undeployment the queued records are written
+ * before the journal is closed. Periodically deletes the journal segments
+ * whose records are all covered by the snapshots of the cases.
+ * </p>
+ * <p>
+ * Does nothing unless the journal is enabled, see {@link TransitionJournal}.
+ * Pruning is controlled via the system property
+ * <code>cm.core.journal.pruneIntervalMinutes</code> (default 60, 0 to keep
+ * all segments).
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class TransitionJournalService {
+
+	public static final long PRUNE_INTERVAL_MINUTES = Long.getLong("cm.core.journal.pruneIntervalMinutes", 60L);
+
+	private static final Logger LOGGER = Logger.getLogger(TransitionJournalService.class.getName());
+
+	@Resource
+	private ManagedThreadFactory threadFactory;
+
+	@Resource
+	private ManagedScheduledExecutorService executor;
+
+	private ScheduledFuture<?> pruner;
+
+	@PostConstruct
+	void start() {
+		TransitionJournal journal = TransitionJournal.getInstance();
+		if (!journal.isConfigured()) {
+			return;
+		}
+		try {
+			journal.start(threadFactory);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Could not open transition journal in " + journal.getDirectory()
+					+ ", journaling is disabled", e);
+			return;
+		}
+		if (PRUNE_INTERVAL_MINUTES > 0) {
+			pruner = executor.scheduleWithFixedDelay(this::prune, PRUNE_INTERVAL_MINUTES, PRUNE_INTERVAL_MINUTES,
+					TimeUnit.MINUTES);
+		}
+	}
+
+	@PreDestroy
+	void stop() {
+		if (pruner != null) {
+			pruner.cancel(false);
+		}
+		TransitionJournal.getInstance().close();
+	}
+
+	private void prune() {
+		TransitionJournal journal = TransitionJournal.getInstance();
+		try {
+			// cases without a snapshot are loaded from the database
+			long sequence = Math.min(CaseSnapshotStore.getInstance().getOldestSequence(), journal.getLastSequence());
+			int deleted = journal.prune(sequence);
+			if (deleted > 0) {
+				LOGGER.info("Deleted " + deleted + " transition journal segments up to sequence " + sequence);
+			}
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Could not prune transition journal", e);
+		}
+	}
+
+}
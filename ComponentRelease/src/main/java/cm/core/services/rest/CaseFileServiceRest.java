@@ -21,12 +21,15 @@ import java.util.List;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
 import org.apache.cxf.jaxrs.ext.multipart.Attachment;
@@ -73,17 +76,17 @@ public interface CaseFileServiceRest {
 	@POST
 	@Path("/{cfiId}/properties/{propName}")
 	@Consumes(MediaType.APPLICATION_JSON)
-	public void updateCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name,
+	public Response updateCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name,
 			SimpleProperty property);
 
 	@DELETE
 	@Path("/{cfiId}/properties/{propName}")
-	public void deleteCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name);
+	public Response deleteCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name);
 
 	@PUT
 	@Path("/{cfiId}/properties/")
 	@Consumes(MediaType.APPLICATION_JSON)
-	public void addCaseFileItemProperty(@PathParam("cfiId") long cfiId, SimpleProperty property);
+	public Response addCaseFileItemProperty(@PathParam("cfiId") long cfiId, SimpleProperty property);
 	
 	// requires more JPA tuning; for example @DELETE does not remove intermediate mapping table for FK constraints
 	// the parent CaseFileItem parent entity does not remove its reference 
@@ -113,7 +116,8 @@ public interface CaseFileServiceRest {
 
 	@GET
 	@Path("/{cfiId}/attachments/{attId}")
-	public Response getCaseFileItemAttachment(@PathParam("attId") long fileId);
+	public Response getCaseFileItemAttachment(@PathParam("attId") long fileId, @HeaderParam("Range") String range,
+			@HeaderParam("If-Range") String ifRange, @Context Request request);
 
 	@DELETE
 	@Path("/{cfiId}/attachments/{attId}")
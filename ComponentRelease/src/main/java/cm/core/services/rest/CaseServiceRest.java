@@ -32,6 +32,7 @@ import javax.ws.rs.core.MediaType;
 import cm.core.CaseModel;
 import cm.core.CaseElement;
 import cm.core.data.CaseFileItem;
+import cm.core.services.CaseRow;
 import cm.core.services.CaseService;
 import cm.core.services.impl.CaseServiceImpl;
 import cm.core.tasks.Task;
@@ -55,17 +56,17 @@ public interface CaseServiceRest {
 	@GET
 	@Path("/all")
 	@Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllCases();
+	public List<CaseRow> getAllCases();
 
 	@GET
 	@Path("/")
 	@Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllPrimaryCases(@DefaultValue("ACTIVE") @QueryParam("state") String state);
+	public List<CaseRow> getAllPrimaryCases(@DefaultValue("ACTIVE") @QueryParam("state") String state);
 
 	@GET
 	@Path("/{id}/subcases")
 	@Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllSecondaryCases(@PathParam("id") long id);
+	public List<CaseRow> getAllSecondaryCases(@PathParam("id") long id);
 
 	@GET
 	@Path("/{id}")
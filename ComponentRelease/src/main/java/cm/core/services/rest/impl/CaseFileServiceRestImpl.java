@@ -16,38 +16,50 @@
  */
 package cm.core.services.rest.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import javax.activation.DataHandler;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.cxf.jaxrs.ext.multipart.Attachment;
 import org.apache.cxf.jaxrs.ext.multipart.Multipart;
 
+import cm.core.blob.AttachmentContents;
+import cm.core.blob.ByteRange;
 import cm.core.data.CaseFileItem;
 import cm.core.data.CaseFileItemAttachment;
 import cm.core.data.SimpleProperty;
 import cm.core.services.CaseFileService;
+import cm.core.services.ServiceMessage;
 import cm.core.services.rest.CaseFileServiceRest;
 
 @Path("/rest/data")
 public class CaseFileServiceRestImpl implements CaseFileServiceRest {
 
+	private static final Logger LOGGER = Logger.getLogger(CaseFileServiceRestImpl.class.getName());
+
 	@Inject
 	private CaseFileService cfService;
 
@@ -77,43 +89,34 @@ public class CaseFileServiceRestImpl implements CaseFileServiceRest {
 	public SimpleProperty getCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name) {
 
 		CaseFileItem cfi_single = cfService.getCaseFileItem(cfiId);
-		SimpleProperty property = null;
-		for (SimpleProperty prop : cfi_single.getProperties()) {
-			if (prop.getName().equals(name)) {
-				property = prop;
-			}
-		}
-		return property;
+		return cfi_single.getProperty(name);
 	}
 
 	@Override
 	@POST
 	@Path("/{cfiId}/properties/{propName}")
 	@Consumes(MediaType.APPLICATION_JSON)
-	public void updateCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name,
+	public Response updateCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name,
 			SimpleProperty property) {
 
 		CaseFileItem cfi_single = cfService.getCaseFileItem(cfiId);
-		cfService.updatePropertyByName(cfi_single, property);
+		if (cfi_single == null) {
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		return toResponse(cfService.updatePropertyByName(cfi_single, property));
 	}
 
 	@Override
 	@PUT
 	@Path("/{cfiId}/properties/")
 	@Consumes(MediaType.APPLICATION_JSON)
-	public void addCaseFileItemProperty(@PathParam("cfiId") long cfiId, SimpleProperty property) {
+	public Response addCaseFileItemProperty(@PathParam("cfiId") long cfiId, SimpleProperty property) {
 
 		CaseFileItem cfi_single = cfService.getCaseFileItem(cfiId);
-		String sentName = property.getName();
-		boolean exists = false;
-		for (SimpleProperty prop : cfi_single.getProperties()) {
-			if (prop.getName().equals(sentName)) {
-				exists = true;
-			}
-		}
-		if (!exists) {
-			cfService.addProperty(cfi_single, property);
+		if (cfi_single == null) {
+			return Response.status(Response.Status.NOT_FOUND).build();
 		}
+		return toResponse(cfService.addProperty(cfi_single, property));
 	}
 	
 //	@Override
@@ -146,12 +149,24 @@ public class CaseFileServiceRestImpl implements CaseFileServiceRest {
 	@Override
 	@DELETE
 	@Path("/{cfiId}/properties/{propName}")
-	public void deleteCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name) {
+	public Response deleteCaseFileItemPropertyByName(@PathParam("cfiId") long cfiId, @PathParam("propName") String name) {
 		CaseFileItem shallowCfi = new CaseFileItem();
 		shallowCfi.setId(cfiId);
 		SimpleProperty shallowProp = new SimpleProperty();
 		shallowProp.setName(name);
-		cfService.deleteProperty(shallowCfi, shallowProp);
+		return toResponse(cfService.deleteProperty(shallowCfi, shallowProp));
+	}
+
+	/**
+	 * Maps the result of a command to 204 No Content on success, 409 Conflict if
+	 * the case file item was changed concurrently and 400 Bad Request otherwise.
+	 */
+	private Response toResponse(ServiceMessage message) {
+		if (message == null || message.isSuccess()) {
+			return Response.noContent().build();
+		}
+		Response.Status status = message.isConflict() ? Response.Status.CONFLICT : Response.Status.BAD_REQUEST;
+		return Response.status(status).entity(message.getMessage()).type(MediaType.TEXT_PLAIN).build();
 	}
 
 	@Override
@@ -171,6 +186,9 @@ public class CaseFileServiceRestImpl implements CaseFileServiceRest {
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
 	public void addCaseFileItemAttachment(@Multipart("file") Attachment att, @PathParam("cfiId") long cfiId) {
 		Attachment attachment = att;
+		if (attachment == null || attachment.getContentDisposition() == null) {
+			throw new WebApplicationException("The request contains no file.", Response.Status.BAD_REQUEST);
+		}
 		String fileName = attachment.getContentDisposition().getFilename();
 		String mimeType = attachment.getContentType().toString();
 
@@ -178,37 +196,69 @@ public class CaseFileServiceRestImpl implements CaseFileServiceRest {
 		cfiA.setName(fileName);
 		cfiA.setType(mimeType);
 
-		byte[] data = null;
-		DataHandler dataHandler = null;
-		InputStream inputStream = null;
-		dataHandler = attachment.getDataHandler();
-		try {
-
-			if (null != fileName && !"".equalsIgnoreCase(fileName)) {
-				// write & upload file to database
-				inputStream = dataHandler.getInputStream();
-				data = getData(inputStream);
-				cfiA.setData(data);
-				cfiA.setSize((data.length / 1048576));
-				inputStream.close();
-				CaseFileItem cfi = new CaseFileItem();
-				cfi.setId(cfiId);
-				uploadFileToDatabase(cfi, cfiA);
+		if (null != fileName && !"".equalsIgnoreCase(fileName)) {
+			InputStream upload;
+			try {
+				upload = attachment.getDataHandler().getInputStream();
+			} catch (IOException ioex) {
+				throw new WebApplicationException("The uploaded file cannot be read.", ioex,
+						Response.Status.BAD_REQUEST);
 			}
-		} catch (IOException ioex) {
-			ioex.printStackTrace();
-		} finally {
-			// release resources, if any
+			// stream the file into the blob store, then save the attachment
+			try (InputStream inputStream = upload) {
+				AttachmentContents.store(cfiA, inputStream);
+			} catch (IOException ioex) {
+				LOGGER.log(Level.WARNING, "Could not store " + fileName + " for case file item " + cfiId, ioex);
+				throw new WebApplicationException("The uploaded file could not be stored.", ioex,
+						Response.Status.INTERNAL_SERVER_ERROR);
+			}
+			CaseFileItem cfi = new CaseFileItem();
+			cfi.setId(cfiId);
+			uploadFileToDatabase(cfi, cfiA);
 		}
 	}
 
 	@Override
 	@GET
 	@Path("/{cfiId}/attachments/{attId}")
-	public Response getCaseFileItemAttachment(@PathParam("attId") long fileId) {
+	public Response getCaseFileItemAttachment(@PathParam("attId") long fileId, @HeaderParam("Range") String range,
+			@HeaderParam("If-Range") String ifRange, @Context Request request) {
 		CaseFileItemAttachment attachment = cfService.getAttachmentById(fileId);
-		ResponseBuilder response = Response.ok((Object) attachment.getData(), attachment.getType());
+		if (attachment == null || (attachment.getBlobKey() == null && attachment.getData() == null)) {
+			return Response.status(Response.Status.NOT_FOUND).build();
+		}
+		EntityTag tag = attachment.getChecksum() != null ? new EntityTag(attachment.getChecksum()) : null;
+		if (tag != null) {
+			// answers If-None-Match with 304 Not Modified
+			ResponseBuilder notModified = request.evaluatePreconditions(tag);
+			if (notModified != null) {
+				return notModified.build();
+			}
+		}
+		long length = AttachmentContents.length(attachment);
+		// a range is only served for the current contents, otherwise the whole
+		// contents are sent
+		boolean current = ifRange == null || (tag != null && ifRange.equals(tag.toString()));
+		ByteRange byteRange = current ? ByteRange.parse(range, length) : null;
+		if (byteRange != null && !byteRange.isSatisfiable()) {
+			return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+					.header("Content-Range", byteRange.toContentRange(length)).build();
+		}
+		long offset = byteRange != null ? byteRange.getFirst() : 0;
+		long count = byteRange != null ? byteRange.getLength() : length;
+		// the contents are written straight from the blob store to the client
+		StreamingOutput body = output -> AttachmentContents.transferTo(attachment, offset, count, output);
+		ResponseBuilder response = byteRange != null
+				? Response.status(Response.Status.PARTIAL_CONTENT).header("Content-Range",
+						byteRange.toContentRange(length))
+				: Response.ok();
+		response.entity(body).type(attachment.getType());
 		response.header("Content-Disposition", "attachment; filename=" + attachment.getName());
+		response.header(HttpHeaders.CONTENT_LENGTH, count);
+		response.header("Accept-Ranges", "bytes");
+		if (tag != null) {
+			response.tag(tag);
+		}
 		return response.build();
 	}
 
@@ -225,28 +275,6 @@ public class CaseFileServiceRestImpl implements CaseFileServiceRest {
 
 	// Helper methods to process attachment data
 	
-	private byte[] getData(InputStream inputStream) {
-		int tenMB = 100 * 1024 * 1024;
-		ByteArrayOutputStream outputStream = null;
-		byte[] bytes = new byte[tenMB];
-		try {
-			outputStream = new ByteArrayOutputStream();
-			int read = 0;
-
-			while ((read = inputStream.read(bytes)) != -1) {
-				outputStream.write(bytes, 0, read);
-			}
-			outputStream.flush();
-			bytes = outputStream.toByteArray();
-			outputStream.close();
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-		} finally {
-			// release resource, if any
-		}
-		return bytes;
-	}
-
 	private void uploadFileToDatabase(CaseFileItem cfi, CaseFileItemAttachment cfiattachment) {
 		cfService.saveAttachment(cfi, cfiattachment);
 	}
@@ -34,6 +34,7 @@ import cm.core.CaseModel;
 import cm.core.CaseElement;
 import cm.core.data.CaseFileItem;
 import cm.core.services.CaseFileService;
+import cm.core.services.CaseRow;
 import cm.core.services.CaseService;
 import cm.core.services.impl.CaseServiceImpl;
 import cm.core.services.rest.CaseServiceRest;
@@ -65,8 +66,8 @@ public class CaseServiceRestImpl implements CaseServiceRest {
 	@GET
 	@Path("/all")
 	@Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllCases() {
-		List<CaseModel> caseList = cService.getAllCases();
+	public List<CaseRow> getAllCases() {
+		List<CaseRow> caseList = cService.getCaseRows();
 		return caseList;
 	}
 	
@@ -74,8 +75,8 @@ public class CaseServiceRestImpl implements CaseServiceRest {
     @GET
     @Path("/")
     @Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllPrimaryCases(@DefaultValue("ACTIVE") @QueryParam("state") String state) {
-		List<CaseModel> caseList = cService.getPrimaryCases(state);
+	public List<CaseRow> getAllPrimaryCases(@DefaultValue("ACTIVE") @QueryParam("state") String state) {
+		List<CaseRow> caseList = cService.getPrimaryCaseRows(state);
 		return caseList;
 	}
     
@@ -83,10 +84,8 @@ public class CaseServiceRestImpl implements CaseServiceRest {
     @GET
     @Path("/{id}/subcases")
     @Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllSecondaryCases(@PathParam("id") long id) {
-		CaseModel shallowCase = new CaseModel();
-		shallowCase.setId(id);
-		List<CaseModel> caseList = cService.getSecondaryCases(shallowCase);
+	public List<CaseRow> getAllSecondaryCases(@PathParam("id") long id) {
+		List<CaseRow> caseList = cService.getSecondaryCaseRows(id);
 		return caseList;
 	}
 
@@ -117,8 +116,7 @@ public class CaseServiceRestImpl implements CaseServiceRest {
 	public void startCase(String caseName) {
 		List<String> instantiableBlueprintNames = CaseFactory.getInstantiableCaseModelNames();
 		if (instantiableBlueprintNames.contains(caseName)) {
-			CaseModel cm = CaseFactory.getCaseModelByName(caseName);
-			cService.persistCase(cm);
+			cService.startCase(() -> CaseFactory.getCaseModelByName(caseName));
 		}
 
 	}
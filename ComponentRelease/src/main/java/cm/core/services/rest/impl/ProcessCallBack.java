@@ -13,8 +13,9 @@ import javax.ws.rs.core.MediaType;
 import cm.core.CaseModel;
 import cm.core.CaseElement;
 import cm.core.services.CaseService;
+import cm.core.services.ProcessTaskExecutionService;
+import cm.core.services.ServiceMessage;
 import cm.core.services.TaskService;
-import cm.core.tasks.ProcessTask;
 import cm.core.tasks.Task;
 
 @Path("/process")
@@ -25,15 +26,16 @@ public class ProcessCallBack {
 	
 	@Inject
 	CaseService cService;
+
+	@Inject
+	ProcessTaskExecutionService executionService;
 	
     @Path("/callback/{id}")
     @GET
     @Produces(MediaType.TEXT_PLAIN)
     public String callBack(@PathParam("id") long id) {
-    	String response = "Callback executed on ProcessTask ";
-    	ProcessTask pTask = tService.findProcessTaskById(id);
-    	pTask.executeCallBack();
-    	return response;
+    	ServiceMessage result = executionService.callBack(id);
+    	return result.getMessage();
     }
     
     @GET
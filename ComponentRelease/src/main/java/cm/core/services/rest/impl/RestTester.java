@@ -16,6 +16,7 @@ import javax.ws.rs.core.MediaType;
 import cm.core.CaseModel;
 import cm.core.data.CaseFileItem;
 import cm.core.services.CaseFileService;
+import cm.core.services.CaseRow;
 import cm.core.services.CaseService;
 import cm.core.utils.CaseFactory;
 import cm.core.utils.PersistenceSettings;
@@ -84,24 +85,8 @@ public class RestTester {
 	@GET
 	@Path("/list")
 	@Produces(MediaType.APPLICATION_JSON)
-	public List<CaseModel> getAllCases() {
-		
-		List<CaseModel> cases = new ArrayList<>();
-//		TypedQuery<CaseModel> query = em.createQuery("SELECT c FROM CaseModel c", CaseModel.class);
-//		List<CaseModel> found = query.getResultList();
-//		List<CaseModel> found = em.createNamedQuery("CaseModel.findAll", CaseModel.class).setFirstResult(first).setMaxResults(max).getResultList();
-		List<CaseModel> found = em.createNamedQuery("CaseModel.findAll", CaseModel.class).getResultList();
-		for(CaseModel model : found) {
-			CaseModel modelToAdd = new CaseModel();
-			modelToAdd.setId(model.getId());
-			modelToAdd.setCmId(model.getCmId());
-			modelToAdd.setName(model.getName());
-			modelToAdd.setStateWithoutTransition(model.getState());
-			
-			cases.add(modelToAdd);
-		}
-		return cases;
-//		return found;
+	public List<CaseRow> getAllCases() {
+		return cService.getCaseRows();
 	}
 	
 //	public void persistCase(CaseModel cm) {
@@ -30,59 +30,60 @@ import cm.core.data.CaseFileItemStates;
  * 
  * @author André Zensen
  */
-public class CaseFileItemAvailable extends CaseFileItemState implements ICaseFileItemState {
+public class CaseFileItemAvailable extends CaseFileItemState {
 
-	public CaseFileItemAvailable(CaseFileItem item) {
-		super(item);
+	public static final CaseFileItemAvailable INSTANCE = new CaseFileItemAvailable();
+
+	private CaseFileItemAvailable() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseFileItem item) {
 		// not possible
 
 	}
 
 	@Override
-	public void update() {
+	public void update(CaseFileItem item) {
 		String transition = "update";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 
 	}
 
 	@Override
-	public void replace() {
+	public void replace(CaseFileItem item) {
 		String transition = "replace";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 	}
 
 	@Override
-	public void addChild() {
+	public void addChild(CaseFileItem item) {
 		String transition = "addChild";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 	}
 
 	@Override
-	public void removeChild() {
+	public void removeChild(CaseFileItem item) {
 		String transition = "removeChild";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 	}
 
 	@Override
-	public void addReference() {
+	public void addReference(CaseFileItem item) {
 		String transition = "addReference";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 	}
 
 	@Override
-	public void removeReference() {
+	public void removeReference(CaseFileItem item) {
 		String transition = "removeReference";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 	}
 
 	@Override
-	public void delete() {
+	public void delete(CaseFileItem item) {
 		String transition = "delete";
-		getItem().setState(CaseFileItemStates.DISCARDED.toString(), transition);
+		item.setState(CaseFileItemStates.DISCARDED.toString(), transition);
 	}
 
 }
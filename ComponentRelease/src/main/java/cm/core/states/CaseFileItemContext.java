@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.states;
+
+import cm.core.data.CaseFileItem;
+
+/**
+ * <p>
+ * Context of the adapted state pattern for {@link CaseFileItem}s. Each element
+ * holds one instance, which delegates every transition to the shared {@link
+ * CaseFileItemState} of the element's current state.
+ * </p>
+ * <p>
+ * See CMMN 1.1 specification sections 6.4 and 8.3 for more information.
+ * </p>
+ * 
+ * @author André Zensen
+ */
+public class CaseFileItemContext implements ICaseFileItemState {
+
+	private final CaseFileItem item;
+
+	public CaseFileItemContext(CaseFileItem item) {
+		this.item = item;
+	}
+
+	public CaseFileItem getItem() {
+		return item;
+	}
+
+	private CaseFileItemState current() {
+		return CaseFileItemState.forState(item.getCaseFileItemState());
+	}
+
+	@Override
+	public void create() {
+		current().create(item);
+	}
+
+	@Override
+	public void update() {
+		current().update(item);
+	}
+
+	@Override
+	public void replace() {
+		current().replace(item);
+	}
+
+	@Override
+	public void addChild() {
+		current().addChild(item);
+	}
+
+	@Override
+	public void removeChild() {
+		current().removeChild(item);
+	}
+
+	@Override
+	public void addReference() {
+		current().addReference(item);
+	}
+
+	@Override
+	public void removeReference() {
+		current().removeReference(item);
+	}
+
+	@Override
+	public void delete() {
+		current().delete(item);
+	}
+
+}
@@ -29,56 +29,57 @@ import cm.core.data.CaseFileItem;
  * 
  * @author André Zensen
  */
-public class CaseFileItemDiscarded extends CaseFileItemState implements ICaseFileItemState {
+public class CaseFileItemDiscarded extends CaseFileItemState {
 
-	public CaseFileItemDiscarded(CaseFileItem item) {
-		super(item);
+	public static final CaseFileItemDiscarded INSTANCE = new CaseFileItemDiscarded();
+
+	private CaseFileItemDiscarded() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void update() {
+	public void update(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void replace() {
+	public void replace(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void addChild() {
+	public void addChild(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void removeChild() {
+	public void removeChild(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void addReference() {
+	public void addReference(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void removeReference() {
+	public void removeReference(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void delete() {
+	public void delete(CaseFileItem item) {
 		// nothing
 
 	}
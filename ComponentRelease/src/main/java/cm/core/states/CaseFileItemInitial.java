@@ -19,7 +19,7 @@ package cm.core.states;
 import cm.core.data.CaseFileItem;
 import cm.core.data.CaseFileItemStates;
 
-public class CaseFileItemInitial extends CaseFileItemState implements ICaseFileItemState {
+public class CaseFileItemInitial extends CaseFileItemState {
 	/**
 	 * <p>
 	 * Represents newly introduced state INITIAL of {@link CaseFileItem}s. Used in
@@ -31,55 +31,56 @@ public class CaseFileItemInitial extends CaseFileItemState implements ICaseFileI
 	 * 
 	 * @author André Zensen
 	 */
-	public CaseFileItemInitial(CaseFileItem item) {
-		super(item);
+	public static final CaseFileItemInitial INSTANCE = new CaseFileItemInitial();
+
+	private CaseFileItemInitial() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseFileItem item) {
 		String transition = "create";
-		getItem().setState(CaseFileItemStates.AVAILABLE.toString(), transition);
+		item.setState(CaseFileItemStates.AVAILABLE.toString(), transition);
 
 	}
 
 	@Override
-	public void update() {
+	public void update(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void replace() {
+	public void replace(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void addChild() {
+	public void addChild(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void removeChild() {
+	public void removeChild(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void addReference() {
+	public void addReference(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void removeReference() {
+	public void removeReference(CaseFileItem item) {
 		// nothing
 
 	}
 
 	@Override
-	public void delete() {
+	public void delete(CaseFileItem item) {
 		// nothing
 
 	}
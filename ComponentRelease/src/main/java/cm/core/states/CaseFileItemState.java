@@ -17,6 +17,7 @@
 package cm.core.states;
 
 import cm.core.data.CaseFileItem;
+import cm.core.data.CaseFileItemStates;
 
 /**
  * <p>
@@ -25,6 +26,11 @@ import cm.core.data.CaseFileItem;
  * transitions.
  * </p>
  * <p>
+ * Specializations are stateless and shared by all items, the item to
+ * transition is passed as parameter. Use
+ * {@link #forState(CaseFileItemStates)} to obtain the instance for a state.
+ * </p>
+ * <p>
  * See CMMN 1.1 specification sections 6.4 and 8.3 for more information.
  * </p>
  * 
@@ -32,18 +38,42 @@ import cm.core.data.CaseFileItem;
  */
 public abstract class CaseFileItemState {
 
-	private CaseFileItem item;
-
-	public CaseFileItemState(CaseFileItem item) {
-		this.item = item;
+	/**
+	 * <p>
+	 * Returns the shared state instance for the given state.
+	 * </p>
+	 * 
+	 * @param state
+	 *            current state of a {@link CaseFileItem}
+	 * @return shared state instance
+	 */
+	public static CaseFileItemState forState(CaseFileItemStates state) {
+		switch (state) {
+		case INITIAL:
+			return CaseFileItemInitial.INSTANCE;
+		case AVAILABLE:
+			return CaseFileItemAvailable.INSTANCE;
+		case DISCARDED:
+			return CaseFileItemDiscarded.INSTANCE;
+		default:
+			throw new IllegalStateException("No state for " + state);
+		}
 	}
 
-	public CaseFileItem getItem() {
-		return item;
-	}
+	public abstract void create(CaseFileItem item);
+
+	public abstract void update(CaseFileItem item);
+
+	public abstract void replace(CaseFileItem item);
+
+	public abstract void addChild(CaseFileItem item);
+
+	public abstract void removeChild(CaseFileItem item);
+
+	public abstract void addReference(CaseFileItem item);
+
+	public abstract void removeReference(CaseFileItem item);
 
-	public void setItem(CaseFileItem item) {
-		this.item = item;
-	};
+	public abstract void delete(CaseFileItem item);
 
 }
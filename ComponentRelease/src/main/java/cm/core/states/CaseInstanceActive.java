@@ -17,13 +17,7 @@
 package cm.core.states;
 
 import cm.core.CaseStates;
-import cm.core.CaseElement;
-import cm.core.Milestone;
-import cm.core.Stage;
 import cm.core.CaseModel;
-import cm.core.listeners.EventListener;
-import cm.core.tasks.Task;
-import cm.core.tasks.TaskStates;
 
 /**
  * <p>
@@ -36,53 +30,36 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class CaseInstanceActive extends CaseInstanceState implements ICaseInstanceState {
+public class CaseInstanceActive extends CaseInstanceState {
 
-	public CaseInstanceActive(CaseModel element) {
-		super(element);
+	public static final CaseInstanceActive INSTANCE = new CaseInstanceActive();
+
+	private CaseInstanceActive() {
 	}
 
 	// TODO Throw error / Message for logger for states not applicable
 	@Override
-	public void create() {
+	public void create(CaseModel element) {
 
 		// not possible
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseModel element) {
 		/*
 		 * Required milestone, stage and task instances are CLOSED, TERMINATED,
 		 * COMPLETED, DISABLED, FAILED AND no ACTIVE stage or task instances
 		 */
 		String transition = "complete";
 
-		boolean canComplete = true;
-		for (CaseElement child : ((CaseModel) getElement()).getChildElements()) {
-			String childState = child.getState();
-			if (child instanceof EventListener) {
-				// ignore
-			} else {
-				if (childState.equals(TaskStates.ACTIVE.toString())) {
-					canComplete = false;
-					break;
-				} else if (!(childState.equals(CaseStates.CLOSED.toString())
-						|| childState.equals(TaskStates.TERMINATED.toString())
-						|| childState.equals(TaskStates.COMPLETED.toString())
-						|| childState.equals(TaskStates.DISABLED.toString())
-						|| childState.equals(TaskStates.FAILED.toString())) && elementRequired(child)) {
-					canComplete = false;
-					break;
-				}
-			}
-		}
+		boolean canComplete = !element.hasActiveChildren() && !element.hasIncompleteRequiredChildren();
 
 		if (canComplete) {
 			// getElement().propagateStateToChildren(CaseState.COMPLETED.toString(),
 			// getElement());
-			getElement().setState(CaseStates.COMPLETED.toString(), transition);
-			if (getElement().getCaseTaskRef() != null) {
-				getElement().getCaseTaskRef().getContextState().complete();
+			element.setState(CaseStates.COMPLETED.toString(), transition);
+			if (element.getCaseTaskRef() != null) {
+				element.getCaseTaskRef().getContextState().complete();
 			}
 		} else {
 			// TODO Throw error / Message for logger
@@ -90,22 +67,11 @@ public class CaseInstanceActive extends CaseInstanceState implements ICaseInstan
 
 	}
 
-	private boolean elementRequired(CaseElement e) {
-		if (e instanceof Stage) {
-			return ((Stage) e).isRequired();
-		} else if (e instanceof Task) {
-			return ((Task) e).isRequired();
-		} else if (e instanceof Milestone) {
-			return ((Milestone) e).isRequired();
-		}
-		return false;
-	}
-
 	@Override
-	public void terminate() {
+	public void terminate(CaseModel element) {
 		String transition = "terminate";
-		getElement().setState(CaseStates.TERMINATED.toString(), transition);
-		getElement().propagateSuspend();
+		element.setState(CaseStates.TERMINATED.toString(), transition);
+		element.propagateSuspend();
 		// TODO unscharf in Spezifikation
 		/*
 		 * was genau durchschlagen soll an die untergeordneten Elemente re-activate ist
@@ -113,33 +79,33 @@ public class CaseInstanceActive extends CaseInstanceState implements ICaseInstan
 		 * daher wird suspended gewählt und bei reactivate aus Zustand terminated parent
 		 * resume ausgelöst
 		 */
-		if (getElement().getCaseTaskRef() != null) {
-			getElement().getCaseTaskRef().getContextState().complete();
+		if (element.getCaseTaskRef() != null) {
+			element.getCaseTaskRef().getContextState().complete();
 		}
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseModel element) {
 		String transition = "fault";
-		getElement().setState(CaseStates.FAILED.toString(), transition);
+		element.setState(CaseStates.FAILED.toString(), transition);
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseModel element) {
 		String transition = "suspend";
-		getElement().setState(CaseStates.SUSPENDED.toString(), transition);
-		getElement().propagateSuspend();
+		element.setState(CaseStates.SUSPENDED.toString(), transition);
+		element.propagateSuspend();
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseModel element) {
 
 		// not possible
 	}
 
 	@Override
-	public void close() {
+	public void close(CaseModel element) {
 
 		// not possible
 	}
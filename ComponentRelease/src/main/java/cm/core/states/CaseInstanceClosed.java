@@ -29,39 +29,40 @@ import cm.core.CaseModel;
  * 
  * @author André Zensen
  */
-public class CaseInstanceClosed extends CaseInstanceState implements ICaseInstanceState {
+public class CaseInstanceClosed extends CaseInstanceState {
 
-	public CaseInstanceClosed(CaseModel element) {
-		super(element);
+	public static final CaseInstanceClosed INSTANCE = new CaseInstanceClosed();
+
+	private CaseInstanceClosed() {
 	}
 
 	// TODO Throw error / Message for logger for methods not applicable
 	@Override
-	public void create() {
+	public void create(CaseModel element) {
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseModel element) {
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseModel element) {
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseModel element) {
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseModel element) {
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseModel element) {
 	}
 
 	@Override
-	public void close() {
+	public void close(CaseModel element) {
 	}
 
 }
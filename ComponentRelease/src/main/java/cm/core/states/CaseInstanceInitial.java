@@ -30,52 +30,53 @@ import cm.core.CaseStates;
  * 
  * @author André Zensen
  */
-public class CaseInstanceInitial extends CaseInstanceState implements ICaseInstanceState {
+public class CaseInstanceInitial extends CaseInstanceState {
 
-	public CaseInstanceInitial(CaseModel element) {
-		super(element);
+	public static final CaseInstanceInitial INSTANCE = new CaseInstanceInitial();
+
+	private CaseInstanceInitial() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseModel element) {
 		String transition = "create";
-		CaseModel cm = getElement();
+		CaseModel cm = element;
 		cm.setState(CaseStates.ACTIVE.toString(), transition);
 		cm.propagateActivate();
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseModel element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseModel element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseModel element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseModel element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseModel element) {
 		// nothing
 
 	}
 
 	@Override
-	public void close() {
+	public void close(CaseModel element) {
 		// nothing
 
 	}
@@ -17,6 +17,8 @@
 package cm.core.states;
 
 import cm.core.CaseModel;
+import cm.core.CaseStates;
+
 /**
  * <p>
  * Base class for states of {@link CaseModel}s. Used in the context of an
@@ -24,6 +26,11 @@ import cm.core.CaseModel;
  * transitions.
  * </p>
  * <p>
+ * Specializations are stateless and shared by all cases, the case to
+ * transition is passed as parameter. Use {@link #forState(CaseStates)} to
+ * obtain the instance for a state.
+ * </p>
+ * <p>
  * See CMMN 1.1 specification sections 6.2, 6.3 and 8.2 for more information.
  * </p>
  * 
@@ -31,17 +38,48 @@ import cm.core.CaseModel;
  */
 public abstract class CaseInstanceState {
 
-	private CaseModel element;
+	/**
+	 * <p>
+	 * Returns the shared state instance for the given state.
+	 * </p>
+	 * 
+	 * @param state
+	 *            current state of a {@link CaseModel}
+	 * @return shared state instance
+	 */
+	public static CaseInstanceState forState(CaseStates state) {
+		switch (state) {
+		case INITIAL:
+			return CaseInstanceInitial.INSTANCE;
+		case ACTIVE:
+			return CaseInstanceActive.INSTANCE;
+		case SUSPENDED:
+			return CaseInstanceSuspended.INSTANCE;
+		case COMPLETED:
+			return CaseInstanceCompleted.INSTANCE;
+		case TERMINATED:
+			return CaseInstanceTerminated.INSTANCE;
+		case FAILED:
+			return CaseInstanceFailed.INSTANCE;
+		case CLOSED:
+			return CaseInstanceClosed.INSTANCE;
+		default:
+			throw new IllegalStateException("No state for " + state);
+		}
+	}
 
-	public CaseInstanceState(CaseModel element) {
-		this.element = element;
-	};
+	public abstract void create(CaseModel element);
 
-	public CaseModel getElement() {
-		return element;
-	}
+	public abstract void complete(CaseModel element);
+
+	public abstract void terminate(CaseModel element);
+
+	public abstract void fault(CaseModel element);
+
+	public abstract void suspend(CaseModel element);
+
+	public abstract void reActivate(CaseModel element);
+
+	public abstract void close(CaseModel element);
 
-	public void setElement(CaseModel element) {
-		this.element = element;
-	}	
 }
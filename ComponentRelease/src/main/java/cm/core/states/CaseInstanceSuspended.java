@@ -29,60 +29,61 @@ import cm.core.CaseStates;
  * 
  * @author André Zensen
  */
-public class CaseInstanceSuspended extends CaseInstanceState implements ICaseInstanceState {
+public class CaseInstanceSuspended extends CaseInstanceState {
 
-	public CaseInstanceSuspended(CaseModel element) {
-		super(element);
+	public static final CaseInstanceSuspended INSTANCE = new CaseInstanceSuspended();
+
+	private CaseInstanceSuspended() {
 	}
 
 	// TODO Throw error / Message for logger for methods not applicable
 	@Override
-	public void create() {
+	public void create(CaseModel element) {
 		
 		// not possible
 
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseModel element) {
 		
 		// not possible
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseModel element) {
 		
 		// not possible
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseModel element) {
 		
 		// not possible
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseModel element) {
 		
 		// not possible
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseModel element) {
 		String transition = "reActivate";
-		CaseModel cm = getElement();
+		CaseModel cm = element;
 		cm.setState(CaseStates.ACTIVE.toString(), transition);
 		cm.propagateReactivate();
 	}
 
 	@Override
-	public void close() {
+	public void close(CaseModel element) {
 		String transition = "close";
-		getElement().setState(CaseStates.CLOSED.toString(), transition);
+		element.setState(CaseStates.CLOSED.toString(), transition);
 
 	}
 
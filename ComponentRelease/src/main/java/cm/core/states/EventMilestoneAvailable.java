@@ -32,49 +32,50 @@ import cm.core.listeners.EventListener;
  * 
  * @author André Zensen
  */
-public class EventMilestoneAvailable extends EventMilestoneState implements IEventMilestoneState {
+public class EventMilestoneAvailable extends EventMilestoneState {
 
-	public EventMilestoneAvailable(CaseElement element) {
-		super(element);
+	public static final EventMilestoneAvailable INSTANCE = new EventMilestoneAvailable();
+
+	private EventMilestoneAvailable() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		String transition = "suspend";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.SUSPENDED.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.SUSPENDED.toString(), transition);
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		String transition = "terminate";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
 
 	}
 
 	@Override
-	public void occur() {
+	public void occur(CaseElement element) {
 		String transition = "occur";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.COMPLETED.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.COMPLETED.toString(), transition);
 
 	}
 
 	@Override
-	public void parentTerminate() {
+	public void parentTerminate(CaseElement element) {
 		String transition = "parentTerminate";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
 
 	}
 
@@ -32,43 +32,44 @@ import cm.core.listeners.EventListener;
  * 
  * @author André Zensen
  */
-public class EventMilestoneCompleted extends EventMilestoneState implements IEventMilestoneState {
+public class EventMilestoneCompleted extends EventMilestoneState {
 
-	public EventMilestoneCompleted(CaseElement element) {
-		super(element);
+	public static final EventMilestoneCompleted INSTANCE = new EventMilestoneCompleted();
+
+	private EventMilestoneCompleted() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 	}
 
 	@Override
-	public void occur() {
+	public void occur(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentTerminate() {
+	public void parentTerminate(CaseElement element) {
 		// nothing
 	}
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.states;
+
+import cm.core.CaseElement;
+import cm.core.Milestone;
+import cm.core.listeners.EventListener;
+import cm.core.listeners.EventMilestoneStates;
+
+/**
+ * <p>
+ * Context of the adapted state pattern for {@link EventListener}s and {@link
+ * Milestone}s. Each element holds one instance, which delegates every
+ * transition to the shared {@link EventMilestoneState} of the element's current
+ * state.
+ * </p>
+ * <p>
+ * See CMMN 1.1 specification sections 6.9, 6.10 and 8.4.3 for more information.
+ * </p>
+ * 
+ * @author André Zensen
+ */
+public class EventMilestoneContext implements IEventMilestoneState {
+
+	private final CaseElement element;
+
+	public EventMilestoneContext(CaseElement element) {
+		this.element = element;
+	}
+
+	public CaseElement getElement() {
+		return element;
+	}
+
+	private EventMilestoneState current() {
+		return EventMilestoneState.forState(element.getStateAs(EventMilestoneStates.class));
+	}
+
+	@Override
+	public void create() {
+		current().create(element);
+	}
+
+	@Override
+	public void resume() {
+		current().resume(element);
+	}
+
+	@Override
+	public void suspend() {
+		current().suspend(element);
+	}
+
+	@Override
+	public void terminate() {
+		current().terminate(element);
+	}
+
+	@Override
+	public void occur() {
+		current().occur(element);
+	}
+
+	@Override
+	public void parentTerminate() {
+		current().parentTerminate(element);
+	}
+
+}
@@ -33,44 +33,45 @@ import cm.core.listeners.EventMilestoneStates;
  * 
  * @author André Zensen
  */
-public class EventMilestoneInitial extends EventMilestoneState implements IEventMilestoneState {
+public class EventMilestoneInitial extends EventMilestoneState {
 
-	public EventMilestoneInitial(CaseElement element) {
-		super(element);
+	public static final EventMilestoneInitial INSTANCE = new EventMilestoneInitial();
+
+	private EventMilestoneInitial() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		String transition = "create";
-		getElement().setState(EventMilestoneStates.AVAILABLE.toString(), transition);
+		element.setState(EventMilestoneStates.AVAILABLE.toString(), transition);
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void occur() {
+	public void occur(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentTerminate() {
+	public void parentTerminate(CaseElement element) {
 		// nothing
 
 	}
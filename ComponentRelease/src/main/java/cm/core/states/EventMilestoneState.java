@@ -19,6 +19,7 @@ package cm.core.states;
 import cm.core.CaseElement;
 import cm.core.Milestone;
 import cm.core.listeners.EventListener;
+import cm.core.listeners.EventMilestoneStates;
 
 /**
  * <p>
@@ -27,23 +28,54 @@ import cm.core.listeners.EventListener;
  * permissible transitions.
  * </p>
  * <p>
+ * Specializations are stateless and shared by all elements, the element to
+ * transition is passed as parameter. Use
+ * {@link #forState(EventMilestoneStates)} to obtain the instance for a state.
+ * </p>
+ * <p>
  * See CMMN 1.1 specification sections 6.9, 6.10 and 8.4.3 for more information.
  * </p>
  * 
  * @author André Zensen
  */
 public abstract class EventMilestoneState {
-	private CaseElement element;
-
-	public EventMilestoneState(CaseElement element) {
-		this.element = element;
-	};
 
-	public CaseElement getElement() {
-		return element;
+	/**
+	 * <p>
+	 * Returns the shared state instance for the given state.
+	 * </p>
+	 * 
+	 * @param state
+	 *            current state of an {@link EventListener} or {@link Milestone}
+	 * @return shared state instance
+	 */
+	public static EventMilestoneState forState(EventMilestoneStates state) {
+		switch (state) {
+		case INITIAL:
+			return EventMilestoneInitial.INSTANCE;
+		case AVAILABLE:
+			return EventMilestoneAvailable.INSTANCE;
+		case SUSPENDED:
+			return EventMilestoneSuspended.INSTANCE;
+		case COMPLETED:
+			return EventMilestoneCompleted.INSTANCE;
+		case TERMINATED:
+			return EventMilestoneTerminated.INSTANCE;
+		default:
+			throw new IllegalStateException("No state for " + state);
+		}
 	}
 
-	public void setElement(CaseElement element) {
-		this.element = element;
-	}
+	public abstract void create(CaseElement element);
+
+	public abstract void resume(CaseElement element);
+
+	public abstract void suspend(CaseElement element);
+
+	public abstract void terminate(CaseElement element);
+
+	public abstract void occur(CaseElement element);
+
+	public abstract void parentTerminate(CaseElement element);
+
 }
@@ -32,47 +32,48 @@ import cm.core.listeners.EventListener;
  * 
  * @author André Zensen
  */
-public class EventMilestoneSuspended extends EventMilestoneState implements IEventMilestoneState {
+public class EventMilestoneSuspended extends EventMilestoneState {
 
-	public EventMilestoneSuspended(CaseElement element) {
-		super(element);
+	public static final EventMilestoneSuspended INSTANCE = new EventMilestoneSuspended();
+
+	private EventMilestoneSuspended() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		String transition = "resume";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.AVAILABLE.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.AVAILABLE.toString(), transition);
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		String transition = "terminate";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
 	}
 
 	@Override
-	public void occur() {
+	public void occur(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentTerminate() {
+	public void parentTerminate(CaseElement element) {
 		String transition = "parentTerminate";
-		getElement().setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
+		element.setState(cm.core.listeners.EventMilestoneStates.TERMINATED.toString(), transition);
 	}
 
 }
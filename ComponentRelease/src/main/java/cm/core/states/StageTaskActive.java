@@ -35,72 +35,73 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class StageTaskActive extends StageTaskState implements IStageTaskState {
+public class StageTaskActive extends StageTaskState {
 
-	public StageTaskActive(CaseElement element) {
-		super(element);
+	public static final StageTaskActive INSTANCE = new StageTaskActive();
+
+	private StageTaskActive() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		String transition = "fault";
-		getElement().setState(TaskStates.FAILED.toString(), transition);
+		element.setState(TaskStates.FAILED.toString(), transition);
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		String transition = "suspend";
-		String currentState = getElement().getState();
-		CaseElement e = getElement();
+		String currentState = element.getState();
+		CaseElement e = element;
 		e.setStateBeforeSuspend(currentState);
 		e.setState(TaskStates.SUSPENDED.toString(), transition);
 		e.setSuspended(true);
@@ -139,28 +140,28 @@ public class StageTaskActive extends StageTaskState implements IStageTaskState {
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		String transition = "complete";
-		CaseElement elem = getElement();
+		CaseElement elem = element;
 		elem.setState(TaskStates.COMPLETED.toString(), transition);
 
 		// for repetition evaluate expression via rule
 		if (elem instanceof Stage) {
-			Stage element = (Stage) elem;
-			boolean elementIsRepeatable = element.isRepetition();
+			Stage stage = (Stage) elem;
+			boolean elementIsRepeatable = stage.isRepetition();
 			if (elementIsRepeatable) {
-				int currRep = element.getCurrentRepetition();
-				int maxRep = element.getMaxRepetitions();
+				int currRep = stage.getCurrentRepetition();
+				int maxRep = stage.getMaxRepetitions();
 				if (currRep < maxRep) {
-					element.setState(StageStates.INITIAL.toString(), StageTaskTransitions.create.toString());
-					element.getContextState().create();
-					element.setCurrentRepetition(currRep + 1);
+					stage.setState(StageStates.INITIAL.toString(), StageTaskTransitions.create.toString());
+					stage.getContextState().create();
+					stage.setCurrentRepetition(currRep + 1);
 				}
 				// TODO implement stage behaviour
 			}
 		} else if (elem instanceof Task) {
-			Task element = (Task) elem;
-			boolean elementIsRepeatable = element.isRepeatable();
+			Task task = (Task) elem;
+			boolean elementIsRepeatable = task.isRepeatable();
 			if (elementIsRepeatable) {
 				// TODO clone instance
 				System.out.println("New instance would be created here.");
@@ -170,23 +171,23 @@ public class StageTaskActive extends StageTaskState implements IStageTaskState {
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		String transition = "terminate";
-		getElement().setState(TaskStates.TERMINATED.toString(), transition);
+		element.setState(TaskStates.TERMINATED.toString(), transition);
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		String transition = "exit";
-		getElement().setState(TaskStates.TERMINATED.toString(), transition);
+		element.setState(TaskStates.TERMINATED.toString(), transition);
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		String transition = "parentSuspend";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setStateBeforeSuspend(e.getState());
 		e.setState(TaskStates.SUSPENDED.toString(), transition);
 		e.setSuspended(true);
@@ -203,9 +204,9 @@ public class StageTaskActive extends StageTaskState implements IStageTaskState {
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		String transition = "parentResume";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(e.getStateBeforeSuspend(), transition);
 		e.setSuspended(false);
 
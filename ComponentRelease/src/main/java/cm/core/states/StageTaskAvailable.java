@@ -33,21 +33,22 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class StageTaskAvailable extends StageTaskState implements IStageTaskState {
+public class StageTaskAvailable extends StageTaskState {
 
-	public StageTaskAvailable(CaseElement element) {
-		super(element);
+	public static final StageTaskAvailable INSTANCE = new StageTaskAvailable();
+
+	private StageTaskAvailable() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		String transition = "start";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(TaskStates.ACTIVE.toString(), transition);
 		if (e instanceof Stage) {
 			((Stage) e).propagateParentActivate();
@@ -60,78 +61,78 @@ public class StageTaskAvailable extends StageTaskState implements IStageTaskStat
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		String transition = "enable";
 
-		getElement().setState(TaskStates.ENABLED.toString(), transition);
+		element.setState(TaskStates.ENABLED.toString(), transition);
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		String transition = "exit";
-		getElement().setState(TaskStates.TERMINATED.toString(), transition);
+		element.setState(TaskStates.TERMINATED.toString(), transition);
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		String transition = "parentSuspend";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setStateBeforeSuspend(e.getState());
 		e.setState(TaskStates.SUSPENDED.toString(), transition);
 		e.setSuspended(true);
@@ -146,9 +147,9 @@ public class StageTaskAvailable extends StageTaskState implements IStageTaskStat
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		String transition = "parentResume";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(e.getStateBeforeSuspend(), transition);
 		e.setSuspended(false);
 		if (e instanceof Stage) {
@@ -31,98 +31,99 @@ import cm.core.tasks.Task;
  * 
  * @author André Zensen
  */
-public class StageTaskCompleted extends StageTaskState implements IStageTaskState {
+public class StageTaskCompleted extends StageTaskState {
 
-	public StageTaskCompleted(CaseElement element) {
-		super(element);
+	public static final StageTaskCompleted INSTANCE = new StageTaskCompleted();
+
+	private StageTaskCompleted() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		// nothing
 
 	}
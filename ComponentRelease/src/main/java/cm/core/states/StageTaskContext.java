@@ -0,0 +1,126 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.states;
+
+import cm.core.CaseElement;
+import cm.core.Stage;
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Context of the adapted state pattern for {@link Stage}s and {@link Task}s.
+ * Each element holds one instance, which delegates every transition to the
+ * shared {@link StageTaskState} of the element's current state.
+ * </p>
+ * <p>
+ * See CMMN 1.1 specification sections 6.5, 6.8 and 8.4.2 for more information.
+ * </p>
+ * 
+ * @author André Zensen
+ */
+public class StageTaskContext implements IStageTaskState {
+
+	private final CaseElement element;
+
+	public StageTaskContext(CaseElement element) {
+		this.element = element;
+	}
+
+	public CaseElement getElement() {
+		return element;
+	}
+
+	private StageTaskState current() {
+		return StageTaskState.forState(element.getTaskState());
+	}
+
+	@Override
+	public void create() {
+		current().create(element);
+	}
+
+	@Override
+	public void start() {
+		current().start(element);
+	}
+
+	@Override
+	public void enable() {
+		current().enable(element);
+	}
+
+	@Override
+	public void manualStart() {
+		current().manualStart(element);
+	}
+
+	@Override
+	public void reEnable() {
+		current().reEnable(element);
+	}
+
+	@Override
+	public void disable() {
+		current().disable(element);
+	}
+
+	@Override
+	public void resume() {
+		current().resume(element);
+	}
+
+	@Override
+	public void fault() {
+		current().fault(element);
+	}
+
+	@Override
+	public void reActivate() {
+		current().reActivate(element);
+	}
+
+	@Override
+	public void suspend() {
+		current().suspend(element);
+	}
+
+	@Override
+	public void complete() {
+		current().complete(element);
+	}
+
+	@Override
+	public void terminate() {
+		current().terminate(element);
+	}
+
+	@Override
+	public void exit() {
+		current().exit(element);
+	}
+
+	@Override
+	public void parentSuspend() {
+		current().parentSuspend(element);
+	}
+
+	@Override
+	public void parentResume() {
+		current().parentResume(element);
+	}
+
+}
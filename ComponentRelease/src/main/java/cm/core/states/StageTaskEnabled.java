@@ -34,35 +34,36 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class StageTaskEnabled extends StageTaskState implements IStageTaskState {
+public class StageTaskEnabled extends StageTaskState {
 
-	public StageTaskEnabled(CaseElement element) {
-		super(element);
+	public static final StageTaskEnabled INSTANCE = new StageTaskEnabled();
+
+	private StageTaskEnabled() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		String transition = "manualStart";
-		CaseElement e = getElement();
-		getElement().setState(TaskStates.ACTIVE.toString(), transition);
+		CaseElement e = element;
+		element.setState(TaskStates.ACTIVE.toString(), transition);
 		if (e instanceof Stage) {
 			((Stage) e).propagateParentActivate();
 		} else if (e instanceof ProcessTask) {
@@ -73,40 +74,40 @@ public class StageTaskEnabled extends StageTaskState implements IStageTaskState
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		String transition = "disable";
-		getElement().setState(TaskStates.DISABLED.toString(), transition);
+		element.setState(TaskStates.DISABLED.toString(), transition);
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		String transition = "suspend";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setStateBeforeSuspend(e.getState());
 		e.setState(TaskStates.SUSPENDED.toString(), transition);
 		e.setSuspended(true);
@@ -122,28 +123,28 @@ public class StageTaskEnabled extends StageTaskState implements IStageTaskState
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		String transition = "exit";
-		getElement().setState(TaskStates.TERMINATED.toString(), transition);
+		element.setState(TaskStates.TERMINATED.toString(), transition);
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		String transition = "parentSuspend";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setStateBeforeSuspend(e.getState());
 		e.setState(TaskStates.SUSPENDED.toString(), transition);
 		e.setSuspended(true);
@@ -158,9 +159,9 @@ public class StageTaskEnabled extends StageTaskState implements IStageTaskState
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		String transition = "parentResume";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(e.getStateBeforeSuspend(), transition);
 		e.setSuspended(false);
 		if (e instanceof Stage) {
@@ -32,100 +32,101 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class StageTaskFailed extends StageTaskState implements IStageTaskState {
+public class StageTaskFailed extends StageTaskState {
 
-	public StageTaskFailed(CaseElement element) {
-		super(element);
+	public static final StageTaskFailed INSTANCE = new StageTaskFailed();
+
+	private StageTaskFailed() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		String transition = "reActivate";
-		getElement().setState(TaskStates.ACTIVE.toString(), transition);
+		element.setState(TaskStates.ACTIVE.toString(), transition);
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		String transition = "exit";
-		getElement().setState(TaskStates.TERMINATED.toString(), transition);
+		element.setState(TaskStates.TERMINATED.toString(), transition);
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		// nothing
 
 	}
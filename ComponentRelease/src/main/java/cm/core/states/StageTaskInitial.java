@@ -36,16 +36,17 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class StageTaskInitial extends StageTaskState implements IStageTaskState {
+public class StageTaskInitial extends StageTaskState {
 
-	public StageTaskInitial(CaseElement element) {
-		super(element);
+	public static final StageTaskInitial INSTANCE = new StageTaskInitial();
+
+	private StageTaskInitial() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		String transition = "create";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(TaskStates.AVAILABLE.toString(), transition);
 		
 		if (e.isEntrySentrySatisfied()) {
@@ -86,85 +87,85 @@ public class StageTaskInitial extends StageTaskState implements IStageTaskState
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		// nothing
 
 	}
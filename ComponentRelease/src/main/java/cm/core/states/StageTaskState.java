@@ -19,6 +19,7 @@ package cm.core.states;
 import cm.core.CaseElement;
 import cm.core.Stage;
 import cm.core.tasks.Task;
+import cm.core.tasks.TaskStates;
 
 /**
  * <p>
@@ -27,6 +28,11 @@ import cm.core.tasks.Task;
  * permissible transitions.
  * </p>
  * <p>
+ * Specializations are stateless and shared by all elements, the element to
+ * transition is passed as parameter. Use {@link #forState(TaskStates)} to
+ * obtain the instance for a state.
+ * </p>
+ * <p>
  * See CMMN 1.1 specification sections 6.5, 6.8 and 8.4.2 for more information.
  * </p>
  * 
@@ -34,18 +40,70 @@ import cm.core.tasks.Task;
  */
 public abstract class StageTaskState {
 
-	private CaseElement element;
+	/**
+	 * <p>
+	 * Returns the shared state instance for the given state. {@link Stage}s use
+	 * the same constants, as {@link cm.core.StageStates} mirrors
+	 * {@link TaskStates}.
+	 * </p>
+	 * 
+	 * @param state
+	 *            current state of a {@link Stage} or {@link Task}
+	 * @return shared state instance
+	 */
+	public static StageTaskState forState(TaskStates state) {
+		switch (state) {
+		case INITIAL:
+			return StageTaskInitial.INSTANCE;
+		case AVAILABLE:
+			return StageTaskAvailable.INSTANCE;
+		case ENABLED:
+			return StageTaskEnabled.INSTANCE;
+		case DISABLED:
+			return StageTaskDisabled.INSTANCE;
+		case ACTIVE:
+			return StageTaskActive.INSTANCE;
+		case FAILED:
+			return StageTaskFailed.INSTANCE;
+		case SUSPENDED:
+			return StageTaskSuspended.INSTANCE;
+		case COMPLETED:
+			return StageTaskCompleted.INSTANCE;
+		case TERMINATED:
+			return StageTaskTerminated.INSTANCE;
+		default:
+			throw new IllegalStateException("No state for " + state);
+		}
+	}
 
-	public StageTaskState(CaseElement element) {
-		this.element = element;
-	};
+	public abstract void create(CaseElement element);
 
-	public CaseElement getElement() {
-		return element;
-	}
+	public abstract void start(CaseElement element);
 
-	public void setElement(CaseElement element) {
-		this.element = element;
-	}
+	public abstract void enable(CaseElement element);
+
+	public abstract void manualStart(CaseElement element);
+
+	public abstract void reEnable(CaseElement element);
+
+	public abstract void disable(CaseElement element);
+
+	public abstract void resume(CaseElement element);
+
+	public abstract void fault(CaseElement element);
+
+	public abstract void reActivate(CaseElement element);
+
+	public abstract void suspend(CaseElement element);
+
+	public abstract void complete(CaseElement element);
+
+	public abstract void terminate(CaseElement element);
+
+	public abstract void exit(CaseElement element);
+
+	public abstract void parentSuspend(CaseElement element);
+
+	public abstract void parentResume(CaseElement element);
 
 }
@@ -33,52 +33,53 @@ import cm.core.tasks.TaskStates;
  * 
  * @author André Zensen
  */
-public class StageTaskSuspended extends StageTaskState implements IStageTaskState {
+public class StageTaskSuspended extends StageTaskState {
 
-	public StageTaskSuspended(CaseElement element) {
-		super(element);
+	public static final StageTaskSuspended INSTANCE = new StageTaskSuspended();
+
+	private StageTaskSuspended() {
 	}
 
 	@Override
-	public void create() {
+	public void create(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void start() {
+	public void start(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void enable() {
+	public void enable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void manualStart() {
+	public void manualStart(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reEnable() {
+	public void reEnable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void disable() {
+	public void disable(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void resume() {
+	public void resume(CaseElement element) {
 		String transition = "resume";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(e.getStateBeforeSuspend(), transition);
 
 		if (e instanceof Stage) {
@@ -92,52 +93,52 @@ public class StageTaskSuspended extends StageTaskState implements IStageTaskStat
 	}
 
 	@Override
-	public void fault() {
+	public void fault(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void reActivate() {
+	public void reActivate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void suspend() {
+	public void suspend(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void complete() {
+	public void complete(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void terminate() {
+	public void terminate(CaseElement element) {
 		// nothing
 
 	}
 
 	@Override
-	public void exit() {
+	public void exit(CaseElement element) {
 		String transition = "exit";
-		getElement().setState(TaskStates.TERMINATED.toString(), transition);
+		element.setState(TaskStates.TERMINATED.toString(), transition);
 		// TODO distribute message
 
 	}
 
 	@Override
-	public void parentSuspend() {
+	public void parentSuspend(CaseElement element) {
 		// nothing
 	}
 
 	@Override
-	public void parentResume() {
+	public void parentResume(CaseElement element) {
 		String transition = "parentResume";
-		CaseElement e = getElement();
+		CaseElement e = element;
 		e.setState(e.getStateBeforeSuspend(), transition);
 		e.setSuspended(false);
 
@@ -19,6 +19,9 @@ package cm.core.tasks;
 import javax.persistence.CascadeType;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToOne;
 import javax.persistence.Transient;
 
@@ -46,6 +49,12 @@ import cm.core.utils.CaseTaskImplementationFactory;
  */
 @Entity
 @DiscriminatorValue("case_task")
+@NamedEntityGraph(name = "CaseTask.execution", attributeNodes = {
+		@NamedAttributeNode("claimant"), @NamedAttributeNode("caseRole"), @NamedAttributeNode("parentStage"),
+		@NamedAttributeNode("rootCase"), @NamedAttributeNode("requiredRule"), @NamedAttributeNode("repetitionRule"),
+		@NamedAttributeNode("manualActivationRule"), @NamedAttributeNode(value = "sentryRef", subgraph = "sentry"),
+		@NamedAttributeNode("elementObservers"), @NamedAttributeNode("subCaseRef") }, subgraphs = @NamedSubgraph(name = "sentry", attributeNodes = {
+				@NamedAttributeNode("onParts"), @NamedAttributeNode("ifPart") }))
 public class CaseTask extends Task {
 	@JohnzonIgnore
 	@Transient
@@ -18,6 +18,9 @@ package cm.core.tasks;
 
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 
 /**
  * Not yet implemented. Could perhaps be implemented like CaseTask/ProcessTask.
@@ -27,6 +30,12 @@ import javax.persistence.Entity;
  */
 @Entity
 @DiscriminatorValue("decision_task")
+@NamedEntityGraph(name = "DecisionTask.execution", attributeNodes = {
+		@NamedAttributeNode("claimant"), @NamedAttributeNode("caseRole"), @NamedAttributeNode("parentStage"),
+		@NamedAttributeNode("rootCase"), @NamedAttributeNode("requiredRule"), @NamedAttributeNode("repetitionRule"),
+		@NamedAttributeNode("manualActivationRule"), @NamedAttributeNode(value = "sentryRef", subgraph = "sentry"),
+		@NamedAttributeNode("elementObservers") }, subgraphs = @NamedSubgraph(name = "sentry", attributeNodes = {
+				@NamedAttributeNode("onParts"), @NamedAttributeNode("ifPart") }))
 public class DecisionTask extends Task {
 
 	public DecisionTask() {
@@ -18,6 +18,10 @@ package cm.core.tasks;
 
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedSubgraph;
 
 import cm.core.CaseModel;
 import cm.core.Stage;
@@ -37,6 +41,17 @@ import cm.core.Stage;
  */
 @Entity
 @DiscriminatorValue("human_task")
+@NamedEntityGraphs({
+		@NamedEntityGraph(name = "HumanTask.worklistRow", attributeNodes = { @NamedAttributeNode("claimant"),
+				@NamedAttributeNode("caseRole"), @NamedAttributeNode("parentStage"),
+				@NamedAttributeNode("rootCase") }),
+		@NamedEntityGraph(name = "HumanTask.execution", attributeNodes = {
+				@NamedAttributeNode("claimant"), @NamedAttributeNode("caseRole"), @NamedAttributeNode("parentStage"),
+				@NamedAttributeNode("rootCase"), @NamedAttributeNode("requiredRule"),
+				@NamedAttributeNode("repetitionRule"), @NamedAttributeNode("manualActivationRule"),
+				@NamedAttributeNode(value = "sentryRef", subgraph = "sentry"),
+				@NamedAttributeNode("elementObservers") }, subgraphs = @NamedSubgraph(name = "sentry", attributeNodes = {
+						@NamedAttributeNode("onParts"), @NamedAttributeNode("ifPart") })) })
 public class HumanTask extends Task {
 
 	public HumanTask() {
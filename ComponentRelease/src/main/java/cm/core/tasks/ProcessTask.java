@@ -16,14 +16,19 @@
  */
 package cm.core.tasks;
 
+import javax.enterprise.inject.spi.CDI;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.Transient;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
 
 import cm.core.CaseModel;
 import cm.core.Stage;
+import cm.core.services.ProcessTaskExecutionService;
 import cm.core.utils.ProcessTaskImplementationFactory;
 
 /**
@@ -42,6 +47,12 @@ import cm.core.utils.ProcessTaskImplementationFactory;
  */
 @Entity
 @DiscriminatorValue("process_task")
+@NamedEntityGraph(name = "ProcessTask.execution", attributeNodes = {
+		@NamedAttributeNode("claimant"), @NamedAttributeNode("caseRole"), @NamedAttributeNode("parentStage"),
+		@NamedAttributeNode("rootCase"), @NamedAttributeNode("requiredRule"), @NamedAttributeNode("repetitionRule"),
+		@NamedAttributeNode("manualActivationRule"), @NamedAttributeNode(value = "sentryRef", subgraph = "sentry"),
+		@NamedAttributeNode("elementObservers") }, subgraphs = @NamedSubgraph(name = "sentry", attributeNodes = {
+				@NamedAttributeNode("onParts"), @NamedAttributeNode("ifPart") }))
 public class ProcessTask extends Task {
 	@JohnzonIgnore
 	@Transient
@@ -124,11 +135,17 @@ public class ProcessTask extends Task {
 	/**
 	 * First gets the {@link ProcessTaskImplementation} from the
 	 * {@link ProcessTaskImplementationFactory}, then starts the process via method
-	 * startProcess().
+	 * startProcess(). Asynchronous implementations are handed to the
+	 * {@link ProcessTaskExecutionService} instead, which starts them after the
+	 * current transaction has committed.
 	 */
 	public void startProcess() {
 		pi = getProcessImplementation(this);
-		pi.startProcess();
+		if (pi.isAsynchronous()) {
+			CDI.current().select(ProcessTaskExecutionService.class).get().dispatch(this);
+		} else {
+			pi.startProcess();
+		}
 	}
 
 	public void executeCallBack() {
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.tasks;
+
+import java.util.Date;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.Version;
+
+import org.apache.johnzon.mapper.JohnzonIgnore;
+
+/**
+ * <p>
+ * Persistent record of an asynchronous execution of a {@link ProcessTask}. It
+ * is created in the transaction starting the ProcessTask and updated by the
+ * worker running the {@link ProcessTaskImplementation}, so executions survive
+ * restarts. PENDING executions are resubmitted on startup, RUNNING ones are
+ * reset to PENDING first.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+@Entity
+public class ProcessTaskExecution {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private long id;
+	@Version
+	private long version;
+	@JohnzonIgnore
+	@ManyToOne
+	private ProcessTask processTask;
+	private String state;
+	private String failure;
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date createdOn;
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date startedOn;
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date finishedOn;
+
+	public ProcessTaskExecution() {
+
+	}
+
+	/**
+	 * Constructs a new PENDING execution of the given ProcessTask.
+	 * 
+	 * @param processTask
+	 *            the ProcessTask to execute
+	 */
+	public ProcessTaskExecution(ProcessTask processTask) {
+		this.processTask = processTask;
+		this.state = ProcessTaskExecutionStates.PENDING.toString();
+		this.createdOn = new Date();
+	}
+
+	/**
+	 * Sets the state to RUNNING if the execution is PENDING.
+	 * 
+	 * @return true if the execution has been started by this call
+	 */
+	public boolean start() {
+		if (getExecutionState() != ProcessTaskExecutionStates.PENDING) {
+			return false;
+		}
+		this.state = ProcessTaskExecutionStates.RUNNING.toString();
+		this.startedOn = new Date();
+		return true;
+	}
+
+	/**
+	 * Sets the state back to PENDING if the execution is RUNNING, e.g. after the
+	 * application stopped while it ran.
+	 * 
+	 * @return true if the execution has been reset by this call
+	 */
+	public boolean reset() {
+		if (getExecutionState() != ProcessTaskExecutionStates.RUNNING) {
+			return false;
+		}
+		this.state = ProcessTaskExecutionStates.PENDING.toString();
+		this.startedOn = null;
+		return true;
+	}
+
+	/**
+	 * Sets the final state of the execution.
+	 * 
+	 * @param finalState
+	 *            COMPLETED or FAULTED
+	 * @param failure
+	 *            description of the failure, null if completed
+	 */
+	public void finish(ProcessTaskExecutionStates finalState, String failure) {
+		this.state = finalState.toString();
+		this.failure = failure;
+		this.finishedOn = new Date();
+	}
+
+	public boolean isFinished() {
+		ProcessTaskExecutionStates current = getExecutionState();
+		return current == ProcessTaskExecutionStates.COMPLETED || current == ProcessTaskExecutionStates.FAULTED;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public void setId(long id) {
+		this.id = id;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public void setVersion(long version) {
+		this.version = version;
+	}
+
+	@JohnzonIgnore
+	public ProcessTask getProcessTask() {
+		return processTask;
+	}
+
+	public void setProcessTask(ProcessTask processTask) {
+		this.processTask = processTask;
+	}
+
+	public long getProcessTaskId() {
+		return processTask != null ? processTask.getId() : 0;
+	}
+
+	public String getState() {
+		return state;
+	}
+
+	public void setState(String state) {
+		this.state = state;
+	}
+
+	@JohnzonIgnore
+	public ProcessTaskExecutionStates getExecutionState() {
+		return ProcessTaskExecutionStates.valueOf(state);
+	}
+
+	public String getFailure() {
+		return failure;
+	}
+
+	public void setFailure(String failure) {
+		this.failure = failure;
+	}
+
+	public Date getCreatedOn() {
+		return createdOn;
+	}
+
+	public void setCreatedOn(Date createdOn) {
+		this.createdOn = createdOn;
+	}
+
+	public Date getStartedOn() {
+		return startedOn;
+	}
+
+	public void setStartedOn(Date startedOn) {
+		this.startedOn = startedOn;
+	}
+
+	public Date getFinishedOn() {
+		return finishedOn;
+	}
+
+	public void setFinishedOn(Date finishedOn) {
+		this.finishedOn = finishedOn;
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.tasks;
+
+/**
+ * <p>
+ * States of a {@link ProcessTaskExecution}. An execution is PENDING until a
+ * worker picks it up, RUNNING while its {@link ProcessTaskImplementation} is
+ * started, AWAITING_CALLBACK if the implementation is completed by a callback
+ * and COMPLETED or FAULTED once the {@link ProcessTask} has been transitioned
+ * accordingly.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public enum ProcessTaskExecutionStates {
+	PENDING,
+	RUNNING,
+	AWAITING_CALLBACK,
+	COMPLETED,
+	FAULTED;
+}
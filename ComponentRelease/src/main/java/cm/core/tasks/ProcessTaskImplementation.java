@@ -45,4 +45,29 @@ public abstract class ProcessTaskImplementation {
 
 	public abstract void executeCallBack();
 
+	/**
+	 * <p>
+	 * Returns true if {@link #startProcess()} is to be run asynchronously by the
+	 * ProcessTaskExecutionService instead of inside the transition starting the
+	 * ProcessTask. Asynchronous implementations run outside of a transaction and
+	 * must not transition their ProcessTask, it is completed once
+	 * {@link #startProcess()} returns (or after the callback, see
+	 * {@link #isCompletedByCallBack()}) and faulted if it throws.
+	 * </p>
+	 * 
+	 * @return false by default
+	 */
+	public boolean isAsynchronous() {
+		return false;
+	}
+
+	/**
+	 * @return true if an asynchronous ProcessTask is completed by a call of
+	 *         {@link #executeCallBack()}, e.g. via REST, instead of the return of
+	 *         {@link #startProcess()}; false by default
+	 */
+	public boolean isCompletedByCallBack() {
+		return false;
+	}
+
 }
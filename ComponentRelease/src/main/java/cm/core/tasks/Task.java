@@ -23,27 +23,20 @@ import javax.persistence.MappedSuperclass;
 import javax.persistence.Transient;
 
 import org.apache.johnzon.mapper.JohnzonIgnore;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 
 import cm.core.CaseModel;
 import cm.core.CaseRole;
 import cm.core.CaseWorker;
 import cm.core.CaseElement;
 import cm.core.Stage;
-import cm.core.StageStates;
 import cm.core.rules.ManualActivationRule;
 import cm.core.rules.RepetitionRule;
 import cm.core.rules.RequiredRule;
 import cm.core.rules.Rule;
 import cm.core.states.IStageTaskState;
-import cm.core.states.StageTaskActive;
-import cm.core.states.StageTaskAvailable;
-import cm.core.states.StageTaskCompleted;
-import cm.core.states.StageTaskDisabled;
-import cm.core.states.StageTaskEnabled;
-import cm.core.states.StageTaskFailed;
-import cm.core.states.StageTaskInitial;
-import cm.core.states.StageTaskSuspended;
-import cm.core.states.StageTaskTerminated;
+import cm.core.states.StageTaskContext;
 import cm.core.utils.RuleExpressionFactory;
 
 /**
@@ -81,6 +74,7 @@ public abstract class Task extends CaseElement implements Cloneable {
 	@JohnzonIgnore
 	@ManyToOne(cascade = CascadeType.MERGE)
 	// @JoinColumn(name="CLAIMANT_ID")
+	@BatchFetch(BatchFetchType.IN)
 	private CaseWorker claimant;
 
 	private String description;
@@ -88,10 +82,11 @@ public abstract class Task extends CaseElement implements Cloneable {
 	private boolean blocking;
 	@JohnzonIgnore
 	@ManyToOne
+	@BatchFetch(BatchFetchType.IN)
 	private CaseRole caseRole;
 	@JohnzonIgnore
 	@Transient
-	private IStageTaskState contextState;
+	private StageTaskContext contextState;
 
 	public RequiredRule getRequiredRule() {
 		return requiredRule;
@@ -205,6 +200,7 @@ public abstract class Task extends CaseElement implements Cloneable {
 
 	public void setCaseRole(CaseRole caseRole) {
 		this.caseRole = caseRole;
+		fireElementChanged();
 	}
 
 	public Task() {
@@ -288,6 +284,7 @@ public abstract class Task extends CaseElement implements Cloneable {
 
 	public void setClaimant(CaseWorker claimant) {
 		this.claimant = claimant;
+		fireElementChanged();
 	}
 
 	public String getDescription() {
@@ -328,30 +325,10 @@ public abstract class Task extends CaseElement implements Cloneable {
 		return contextState;
 	}
 
-	public void setContextState(IStageTaskState contextState) {
-		this.contextState = contextState;
-	}
-
 	@Override
 	public void loadContextState() {
-		if (state.equals(StageStates.INITIAL.toString())) {
-			setContextState(new StageTaskInitial(this));
-		} else if (state.equals(StageStates.AVAILABLE.toString())) {
-			setContextState(new StageTaskAvailable(this));
-		} else if (state.equals(StageStates.ENABLED.toString())) {
-			setContextState(new StageTaskEnabled(this));
-		} else if (state.equals(StageStates.DISABLED.toString())) {
-			setContextState(new StageTaskDisabled(this));
-		} else if (state.equals(StageStates.ACTIVE.toString())) {
-			setContextState(new StageTaskActive(this));
-		} else if (state.equals(StageStates.FAILED.toString())) {
-			setContextState(new StageTaskFailed(this));
-		} else if (state.equals(StageStates.SUSPENDED.toString())) {
-			setContextState(new StageTaskSuspended(this));
-		} else if (state.equals(StageStates.COMPLETED.toString())) {
-			setContextState(new StageTaskCompleted(this));
-		} else if (state.equals(StageStates.TERMINATED.toString())) {
-			setContextState(new StageTaskTerminated(this));
+		if (this.contextState == null || this.contextState.getElement() != this) {
+			this.contextState = new StageTaskContext(this);
 		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,554 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.Milestone;
+import cm.core.Stage;
+import cm.core.data.CaseFileItem;
+import cm.core.data.CaseFileItemPropertyType;
+import cm.core.data.MultiplicityEnum;
+import cm.core.data.SimpleProperty;
+import cm.core.listeners.EventListener;
+import cm.core.rules.ManualActivationRule;
+import cm.core.rules.RepetitionRule;
+import cm.core.rules.RequiredRule;
+import cm.core.sentries.CaseFileItemOnPart;
+import cm.core.sentries.ElementOnPart;
+import cm.core.sentries.EntrySentry;
+import cm.core.sentries.ExitSentry;
+import cm.core.sentries.IfPart;
+import cm.core.sentries.Sentry;
+import cm.core.tasks.CaseTask;
+import cm.core.tasks.HumanTask;
+import cm.core.tasks.ProcessTask;
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Compiled and immutable blueprint of a {@link CaseModel}. Holds the case file
+ * items with their properties, the element topology, rules and the wiring of
+ * Sentries with their OnParts and IfParts as plain definitions. References by
+ * cmId are checked once when the definition is built, so definitions can be
+ * kept and shared by all instantiations, see {@link CaseFactory}.
+ * </p>
+ * <p>
+ * {@link #instantiate(String)} creates the persistable runtime graph in one
+ * pass in the order the definitions were added: case file items, elements,
+ * Sentries, then the CaseModel is created. Rule and IfPart implementations are
+ * bound by name at runtime through {@link RuleExpressionFactory} and
+ * {@link IfPartImplementationFactory}.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class CaseDefinition {
+
+	/**
+	 * Types of elements a CaseDefinition can contain.
+	 */
+	public enum ElementType {
+		STAGE, HUMAN_TASK, PROCESS_TASK, CASE_TASK, MILESTONE, EVENT_LISTENER
+	}
+
+	private enum RuleType {
+		REQUIRED, REPETITION, MANUAL_ACTIVATION
+	}
+
+	private final String cmId;
+	private final String name;
+	private final boolean autoComplete;
+	private final List<CaseFileItemDefinition> caseFileItems;
+	private final List<ElementDefinition> elements;
+	private final List<SentryDefinition> sentries;
+
+	private CaseDefinition(Builder builder) {
+		this.cmId = builder.cmId;
+		this.name = builder.name;
+		this.autoComplete = builder.autoComplete;
+		this.caseFileItems = Collections.unmodifiableList(new ArrayList<>(builder.caseFileItems));
+		this.elements = Collections.unmodifiableList(new ArrayList<>(builder.elements));
+		List<SentryDefinition> compiledSentries = new ArrayList<>();
+		for (SentryDefinition.Builder sentry : builder.sentries) {
+			compiledSentries.add(sentry.build());
+		}
+		this.sentries = Collections.unmodifiableList(compiledSentries);
+	}
+
+	public String getCmId() {
+		return cmId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * <p>
+	 * Creates a new {@link CaseModel} instance of this definition and calls its
+	 * create transition.
+	 * </p>
+	 * 
+	 * @param nameSuffix
+	 *            appended to cmId and name of the CaseModel, or <code>null</code>
+	 * @return the new CaseModel
+	 */
+	public CaseModel instantiate(String nameSuffix) {
+		return build(nameSuffix, true);
+	}
+
+	/**
+	 * <p>
+	 * Creates the runtime graph of this definition without calling any create
+	 * transition, so no element or case file item has a state yet. Used to
+	 * recover a case whose states are restored from a snapshot.
+	 * </p>
+	 * 
+	 * @param nameSuffix
+	 *            appended to cmId and name of the CaseModel, or <code>null</code>
+	 * @return the new CaseModel
+	 */
+	public CaseModel assemble(String nameSuffix) {
+		return build(nameSuffix, false);
+	}
+
+	private CaseModel build(String nameSuffix, boolean create) {
+		String suffix = nameSuffix == null ? "" : nameSuffix;
+		CaseModel model = new CaseModel(this.cmId + suffix, this.name + suffix);
+		model.setAutoComplete(this.autoComplete);
+
+		Map<String, CaseFileItem> items = new HashMap<>();
+		for (CaseFileItemDefinition definition : this.caseFileItems) {
+			CaseFileItem item = new CaseFileItem(definition.cmId, definition.multiplicity.toString(), definition.name);
+			model.getCaseFile().addCaseFileItem(item);
+			for (PropertyDefinition property : definition.properties) {
+				SimpleProperty prop = new SimpleProperty(property.name, property.value);
+				prop.setType(property.type);
+				item.addProperty(prop);
+			}
+			if (create && definition.created) {
+				item.getContextState().create();
+			}
+			items.put(definition.cmId, item);
+		}
+
+		Map<String, CaseElement> elements = new HashMap<>();
+		for (ElementDefinition definition : this.elements) {
+			Stage parent = definition.parentCmId == null ? null : (Stage) elements.get(definition.parentCmId);
+			CaseElement element = definition.create(model, parent);
+			for (RuleDefinition rule : definition.rules) {
+				rule.apply(element, items.get(rule.contextCmId));
+			}
+			elements.put(definition.cmId, element);
+		}
+
+		for (SentryDefinition definition : this.sentries) {
+			CaseElement target = definition.targetCmId == null ? model : elements.get(definition.targetCmId);
+			Sentry sentry = definition.entry ? new EntrySentry(definition.cmId, definition.name, target)
+					: new ExitSentry(definition.cmId, definition.name, target);
+			for (OnPartDefinition onPart : definition.onParts) {
+				if (onPart.caseFileItem) {
+					new CaseFileItemOnPart(sentry, items.get(onPart.sourceCmId), onPart.transition);
+				} else {
+					new ElementOnPart(sentry, elements.get(onPart.sourceCmId), onPart.transition);
+				}
+			}
+			if (definition.ifPartCmId != null) {
+				new IfPart(definition.ifPartCmId, sentry, items.get(definition.ifPartContextCmId));
+			}
+		}
+
+		if (create) {
+			model.getContextState().create();
+		}
+		return model;
+	}
+
+	private static final class CaseFileItemDefinition {
+		private final String cmId;
+		private final MultiplicityEnum multiplicity;
+		private final String name;
+		private final boolean created;
+		private final List<PropertyDefinition> properties = new ArrayList<>();
+
+		private CaseFileItemDefinition(String cmId, MultiplicityEnum multiplicity, String name, boolean created) {
+			this.cmId = cmId;
+			this.multiplicity = multiplicity;
+			this.name = name;
+			this.created = created;
+		}
+	}
+
+	private static final class PropertyDefinition {
+		private final String name;
+		private final CaseFileItemPropertyType type;
+		private final String value;
+
+		private PropertyDefinition(String name, CaseFileItemPropertyType type, String value) {
+			this.name = name;
+			this.type = type;
+			this.value = value;
+		}
+	}
+
+	private static final class ElementDefinition {
+		private final ElementType type;
+		private final String cmId;
+		private final String name;
+		private final String parentCmId;
+		private boolean autoComplete;
+		private final List<RuleDefinition> rules = new ArrayList<>();
+
+		private ElementDefinition(ElementType type, String cmId, String name, String parentCmId) {
+			this.type = type;
+			this.cmId = cmId;
+			this.name = name;
+			this.parentCmId = parentCmId;
+		}
+
+		private CaseElement create(CaseModel model, Stage parent) {
+			switch (this.type) {
+			case STAGE:
+				Stage stage = parent == null ? new Stage(cmId, name, model) : new Stage(cmId, name, parent);
+				stage.setAutoComplete(this.autoComplete);
+				return stage;
+			case HUMAN_TASK:
+				return parent == null ? new HumanTask(cmId, name, model) : new HumanTask(cmId, name, parent);
+			case PROCESS_TASK:
+				return parent == null ? new ProcessTask(cmId, name, model) : new ProcessTask(cmId, name, parent);
+			case CASE_TASK:
+				return parent == null ? new CaseTask(cmId, name, model) : new CaseTask(cmId, name, parent);
+			case MILESTONE:
+				return parent == null ? new Milestone(cmId, name, model) : new Milestone(cmId, name, parent);
+			case EVENT_LISTENER:
+				return parent == null ? new EventListener(cmId, name, model) : new EventListener(cmId, name, parent);
+			default:
+				throw new IllegalStateException("Unknown element type " + this.type);
+			}
+		}
+	}
+
+	private static final class RuleDefinition {
+		private final RuleType type;
+		private final String name;
+		private final String contextCmId;
+
+		private RuleDefinition(RuleType type, String name, String contextCmId) {
+			this.type = type;
+			this.name = name;
+			this.contextCmId = contextCmId;
+		}
+
+		private void apply(CaseElement element, CaseFileItem context) {
+			switch (this.type) {
+			case REQUIRED:
+				RequiredRule required = new RequiredRule(this.name, context);
+				if (element instanceof Task) {
+					((Task) element).setRequiredRule(required);
+				} else {
+					((Milestone) element).setRequiredRule(required);
+				}
+				break;
+			case REPETITION:
+				RepetitionRule repetition = new RepetitionRule(this.name, context);
+				if (element instanceof Task) {
+					((Task) element).setRepetitionRule(repetition);
+				} else {
+					((Milestone) element).setRepetitionRule(repetition);
+				}
+				break;
+			case MANUAL_ACTIVATION:
+				ManualActivationRule manual = new ManualActivationRule(this.name, context);
+				if (element instanceof Task) {
+					((Task) element).setManualActivationRule(manual);
+				} else {
+					((Stage) element).setManualActivationRule(manual);
+				}
+				break;
+			}
+		}
+	}
+
+	private static final class OnPartDefinition {
+		private final boolean caseFileItem;
+		private final String sourceCmId;
+		private final String transition;
+
+		private OnPartDefinition(boolean caseFileItem, String sourceCmId, String transition) {
+			this.caseFileItem = caseFileItem;
+			this.sourceCmId = sourceCmId;
+			this.transition = transition;
+		}
+	}
+
+	private static final class SentryDefinition {
+		private final boolean entry;
+		private final String cmId;
+		private final String name;
+		private final String targetCmId;
+		private final List<OnPartDefinition> onParts;
+		private final String ifPartCmId;
+		private final String ifPartContextCmId;
+
+		private SentryDefinition(Builder builder) {
+			this.entry = builder.entry;
+			this.cmId = builder.cmId;
+			this.name = builder.name;
+			this.targetCmId = builder.targetCmId;
+			this.onParts = Collections.unmodifiableList(new ArrayList<>(builder.onParts));
+			this.ifPartCmId = builder.ifPartCmId;
+			this.ifPartContextCmId = builder.ifPartContextCmId;
+		}
+
+		private static final class Builder {
+			private final boolean entry;
+			private final String cmId;
+			private final String name;
+			private final String targetCmId;
+			private final List<OnPartDefinition> onParts = new ArrayList<>();
+			private String ifPartCmId;
+			private String ifPartContextCmId;
+
+			private Builder(boolean entry, String cmId, String name, String targetCmId) {
+				this.entry = entry;
+				this.cmId = cmId;
+				this.name = name;
+				this.targetCmId = targetCmId;
+			}
+
+			private SentryDefinition build() {
+				return new SentryDefinition(this);
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Collects the definitions of a blueprint. Elements, case file items and
+	 * Sentries are referenced by their cmIds and have to be added before they are
+	 * referenced. OnParts and IfParts are added to the Sentry added last. Invalid
+	 * references throw an {@link IllegalArgumentException}.
+	 * </p>
+	 */
+	public static final class Builder {
+		private final String cmId;
+		private final String name;
+		private boolean autoComplete;
+		private final List<CaseFileItemDefinition> caseFileItems = new ArrayList<>();
+		private final Map<String, CaseFileItemDefinition> caseFileItemsById = new HashMap<>();
+		private final List<ElementDefinition> elements = new ArrayList<>();
+		private final Map<String, ElementDefinition> elementsById = new HashMap<>();
+		private final List<SentryDefinition.Builder> sentries = new ArrayList<>();
+		private boolean built;
+
+		/**
+		 * @param cmId
+		 *            the cmId of the CaseModel
+		 * @param name
+		 *            the human-readable name of the CaseModel
+		 */
+		public Builder(String cmId, String name) {
+			this.cmId = cmId;
+			this.name = name;
+		}
+
+		public Builder autoComplete(boolean autoComplete) {
+			checkOpen();
+			this.autoComplete = autoComplete;
+			return this;
+		}
+
+		/**
+		 * @param created
+		 *            <code>true</code> if the create transition of the CaseFileItem
+		 *            is called when instantiated
+		 */
+		public Builder caseFileItem(String cmId, MultiplicityEnum multiplicity, String name, boolean created) {
+			checkOpen();
+			if (this.caseFileItemsById.containsKey(cmId)) {
+				throw new IllegalArgumentException("Duplicate CaseFileItem " + cmId);
+			}
+			CaseFileItemDefinition definition = new CaseFileItemDefinition(cmId, multiplicity, name, created);
+			this.caseFileItems.add(definition);
+			this.caseFileItemsById.put(cmId, definition);
+			return this;
+		}
+
+		public Builder property(String caseFileItemCmId, String name, String value) {
+			return property(caseFileItemCmId, name, null, value);
+		}
+
+		public Builder property(String caseFileItemCmId, String name, boolean value) {
+			return property(caseFileItemCmId, name, CaseFileItemPropertyType.bool, Boolean.toString(value));
+		}
+
+		private Builder property(String caseFileItemCmId, String name, CaseFileItemPropertyType type, String value) {
+			requireCaseFileItem(caseFileItemCmId).properties.add(new PropertyDefinition(name, type, value));
+			return this;
+		}
+
+		/**
+		 * @param parentCmId
+		 *            cmId of the parent Stage, or <code>null</code> if the element
+		 *            is added to the CaseModel directly
+		 */
+		public Builder element(ElementType type, String cmId, String name, String parentCmId) {
+			checkOpen();
+			if (this.elementsById.containsKey(cmId)) {
+				throw new IllegalArgumentException("Duplicate element " + cmId);
+			}
+			if (parentCmId != null && requireElement(parentCmId).type != ElementType.STAGE) {
+				throw new IllegalArgumentException("Parent " + parentCmId + " of " + cmId + " is not a Stage");
+			}
+			ElementDefinition definition = new ElementDefinition(type, cmId, name, parentCmId);
+			this.elements.add(definition);
+			this.elementsById.put(cmId, definition);
+			return this;
+		}
+
+		public Builder stage(String cmId, String name, String parentCmId, boolean autoComplete) {
+			element(ElementType.STAGE, cmId, name, parentCmId);
+			this.elementsById.get(cmId).autoComplete = autoComplete;
+			return this;
+		}
+
+		public Builder requiredRule(String elementCmId, String ruleName, String contextCmId) {
+			return rule(elementCmId, RuleType.REQUIRED, ruleName, contextCmId, ElementType.STAGE);
+		}
+
+		public Builder repetitionRule(String elementCmId, String ruleName, String contextCmId) {
+			return rule(elementCmId, RuleType.REPETITION, ruleName, contextCmId, ElementType.STAGE);
+		}
+
+		public Builder manualActivationRule(String elementCmId, String ruleName, String contextCmId) {
+			return rule(elementCmId, RuleType.MANUAL_ACTIVATION, ruleName, contextCmId, ElementType.MILESTONE);
+		}
+
+		private Builder rule(String elementCmId, RuleType type, String ruleName, String contextCmId,
+				ElementType unsupported) {
+			ElementDefinition element = requireElement(elementCmId);
+			if (element.type == unsupported || element.type == ElementType.EVENT_LISTENER) {
+				throw new IllegalArgumentException(type + " rule is not supported by " + elementCmId);
+			}
+			requireCaseFileItem(contextCmId);
+			element.rules.add(new RuleDefinition(type, ruleName, contextCmId));
+			return this;
+		}
+
+		/**
+		 * @param targetCmId
+		 *            cmId of the element the Sentry is attached to
+		 */
+		public Builder entrySentry(String cmId, String name, String targetCmId) {
+			ElementType type = requireElement(targetCmId).type;
+			if (type == ElementType.EVENT_LISTENER) {
+				throw new IllegalArgumentException("EventListeners cannot have EntrySentries.");
+			}
+			this.sentries.add(new SentryDefinition.Builder(true, cmId, name, targetCmId));
+			return this;
+		}
+
+		/**
+		 * @param targetCmId
+		 *            cmId of the element the Sentry is attached to, or
+		 *            <code>null</code> for the CaseModel
+		 */
+		public Builder exitSentry(String cmId, String name, String targetCmId) {
+			checkOpen();
+			if (targetCmId != null) {
+				ElementType type = requireElement(targetCmId).type;
+				if (type == ElementType.MILESTONE || type == ElementType.EVENT_LISTENER) {
+					throw new IllegalArgumentException("Milestones/EventListeners cannot have ExitSentries.");
+				}
+			}
+			this.sentries.add(new SentryDefinition.Builder(false, cmId, name, targetCmId));
+			return this;
+		}
+
+		public Builder onElement(String sourceCmId, Enum<?> transition) {
+			requireElement(sourceCmId);
+			lastSentry().onParts.add(new OnPartDefinition(false, sourceCmId, transition.toString()));
+			return this;
+		}
+
+		public Builder onCaseFileItem(String sourceCmId, Enum<?> transition) {
+			requireCaseFileItem(sourceCmId);
+			lastSentry().onParts.add(new OnPartDefinition(true, sourceCmId, transition.toString()));
+			return this;
+		}
+
+		public Builder ifPart(String cmId, String contextCmId) {
+			requireCaseFileItem(contextCmId);
+			SentryDefinition.Builder sentry = lastSentry();
+			sentry.ifPartCmId = cmId;
+			sentry.ifPartContextCmId = contextCmId;
+			return this;
+		}
+
+		/**
+		 * Builds the CaseDefinition. The Builder cannot be changed afterwards, so
+		 * the definitions shared with the CaseDefinition stay unchanged.
+		 * 
+		 * @return the compiled CaseDefinition
+		 */
+		public CaseDefinition build() {
+			checkOpen();
+			this.built = true;
+			return new CaseDefinition(this);
+		}
+
+		private void checkOpen() {
+			if (this.built) {
+				throw new IllegalStateException("CaseDefinition " + this.cmId + " is already built.");
+			}
+		}
+
+		private ElementDefinition requireElement(String cmId) {
+			checkOpen();
+			ElementDefinition definition = this.elementsById.get(cmId);
+			if (definition == null) {
+				throw new IllegalArgumentException("Unknown element " + cmId);
+			}
+			return definition;
+		}
+
+		private CaseFileItemDefinition requireCaseFileItem(String cmId) {
+			checkOpen();
+			CaseFileItemDefinition definition = this.caseFileItemsById.get(cmId);
+			if (definition == null) {
+				throw new IllegalArgumentException("Unknown CaseFileItem " + cmId);
+			}
+			return definition;
+		}
+
+		private SentryDefinition.Builder lastSentry() {
+			if (this.sentries.isEmpty()) {
+				throw new IllegalArgumentException("No Sentry added yet.");
+			}
+			return this.sentries.get(this.sentries.size() - 1);
+		}
+	}
+
+}
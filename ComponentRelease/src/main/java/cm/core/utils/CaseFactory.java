@@ -21,25 +21,11 @@ import java.util.List;
 
 import cm.core.CaseModel;
 import cm.core.CaseRole;
-import cm.core.Milestone;
-import cm.core.Stage;
-import cm.core.data.CaseFileItem;
 import cm.core.data.MultiplicityEnum;
-import cm.core.data.SimpleProperty;
-import cm.core.listeners.EventListener;
-import cm.core.rules.RepetitionRule;
-import cm.core.rules.RequiredRule;
-import cm.core.sentries.CaseFileItemOnPart;
-import cm.core.sentries.ElementOnPart;
-import cm.core.sentries.EntrySentry;
-import cm.core.sentries.ExitSentry;
-import cm.core.sentries.IfPart;
 import cm.core.states.CaseFileItemTransition;
 import cm.core.states.EventMilestoneTransitions;
 import cm.core.states.StageTaskTransitions;
-import cm.core.tasks.CaseTask;
-import cm.core.tasks.HumanTask;
-import cm.core.tasks.ProcessTask;
+import cm.core.utils.CaseDefinition.ElementType;
 
 /**
  * <p>Central factory class with methods providing {@link CaseModel} blueprints to
@@ -86,6 +72,27 @@ public class CaseFactory {
 		return null;
 	}
 
+	/**
+	 * <p>
+	 * Returns the definition a case was instantiated from, identified by the
+	 * cmId of the definition the cmId of the case starts with.
+	 * </p>
+	 * 
+	 * @param caseCmId
+	 *            cmId of a CaseModel
+	 * @return the definition or <code>null</code> if none matches
+	 */
+	public static CaseDefinition getDefinitionOf(String caseCmId) {
+		CaseDefinition found = null;
+		for (CaseDefinition definition : new CaseDefinition[] { COMPONENT_RELEASE, CREATE_TECHNICAL_SPECIFICATIONS }) {
+			if (caseCmId != null && caseCmId.startsWith(definition.getCmId())
+					&& (found == null || definition.getCmId().length() > found.getCmId().length())) {
+				found = definition;
+			}
+		}
+		return found;
+	}
+
 	public static List<CaseRole> getRolesUsed() {
 		ArrayList<CaseRole> caseRoles = new ArrayList<>();
 		for (CaseRoles role : CaseRoles.values()) {
@@ -95,89 +102,74 @@ public class CaseFactory {
 		return caseRoles;
 	}
 
+	private static final CaseDefinition COMPONENT_RELEASE = new CaseDefinition.Builder(
+			CaseModelNames.Component_Release.toString(), "Component Release")
+			.autoComplete(true)
+			.caseFileItem("specifications", MultiplicityEnum.OneOrMore, "Specifications", false)
+			.stage("createTechSpecs", "Create Technical Specifications", null, true)
+			.element(ElementType.CASE_TASK, "createSpecs", "Create Specifications", "createTechSpecs")
+			.element(ElementType.MILESTONE, "specificationsCreated", "Specifications Created", null)
+			.element(ElementType.EVENT_LISTENER, "cancel", "Cancel", null)
+			.exitSentry("exitCase", "exitCase", null)
+			.onElement("cancel", EventMilestoneTransitions.occur)
+			.entrySentry("enterMsSpecsCreated", "entryMilestone", "specificationsCreated")
+			.onCaseFileItem("specifications", CaseFileItemTransition.create)
+			.build();
+
+	private static final CaseDefinition CREATE_TECHNICAL_SPECIFICATIONS = new CaseDefinition.Builder(
+			SubCaseModelNames.Create_Technical_Specifications.toString(),
+			SubCaseModelNames.Create_Technical_Specifications.toString().replace("_", " "))
+			.autoComplete(true)
+			.caseFileItem("specifications", MultiplicityEnum.OneOrMore, "Specifications", true)
+			.property("specifications", "dataProvided", false)
+			.property("specifications", "dataApproved", false)
+			.property("specifications", "revisionNeeded", false)
+			.property("specifications", "noteForRevision", "")
+			.element(ElementType.HUMAN_TASK, "assemble", "Assemble Specifications", null)
+			.element(ElementType.HUMAN_TASK, "review", "Review Specifications", null)
+			.repetitionRule("review", "repeatReview", "specifications")
+			.element(ElementType.HUMAN_TASK, "revise", "Revise Specifications", null)
+			.repetitionRule("revise", "repeatRevise", "specifications")
+			.element(ElementType.PROCESS_TASK, "provideData", "Provide parent case with data", null)
+			.requiredRule("provideData", "reqProvideData", "specifications")
+			.entrySentry("enterReviewSpecifications", "enterReviewSpecifications", "review")
+			.onElement("assemble", StageTaskTransitions.complete)
+			.entrySentry("enterReviewSpecificationsFromRevise", "enterReviewSpecificationsFromRevise", "review")
+			.onElement("revise", StageTaskTransitions.complete)
+			.entrySentry("enterReviewSpecificationsFromCaseFile", "enterReviewSpecificationsFromCaseFile", "review")
+			.onCaseFileItem("specifications", CaseFileItemTransition.update)
+			.entrySentry("enterReviseSpecifications", "enterReviseSpecifications", "revise")
+			.onElement("review", StageTaskTransitions.complete)
+			.ifPart("ifRevision", "specifications")
+			.entrySentry("enterProvideData", "enterProvideData", "provideData")
+			.onCaseFileItem("specifications", CaseFileItemTransition.update)
+			.ifPart("ifApproved", "specifications")
+			.build();
+
+	/**
+	 * <p>
+	 * Returns a new instance of the Component Release case. The blueprint is
+	 * compiled once to a shared {@link CaseDefinition}.
+	 * </p>
+	 * 
+	 * @return a new CaseModel, created but not yet persisted
+	 */
 	public static CaseModel getComponentReleaseCaseModel() {
-		CaseModel model = new CaseModel("Component_Release", "Component Release");
-		model.setAutoComplete(true);
-		CaseFileItem specifications = new CaseFileItem("specifications", MultiplicityEnum.OneOrMore.toString(),
-				"Specifications");
-		model.getCaseFile().addCaseFileItem(specifications);
-
-		Stage createTechnicalSpecifications = new Stage("createTechSpecs", "Create Technical Specifications", model);
-		createTechnicalSpecifications.setAutoComplete(true);
-		CaseTask createSpecifications = new CaseTask("createSpecs", "Create Specifications",
-				createTechnicalSpecifications);
-		
-		Milestone specificationsCreated = new Milestone("specificationsCreated", "Specifications Created", model);
-		EventListener cancel = new EventListener("cancel", "Cancel", model);
-
-		ExitSentry exitCase = new ExitSentry("exitCase", "exitCase", model);
-		ElementOnPart cancelCase = new ElementOnPart(exitCase, cancel, EventMilestoneTransitions.occur.toString());
-
-		EntrySentry entryMsSpecsCreated = new EntrySentry("enterMsSpecsCreated", "entryMilestone",
-				specificationsCreated);
-		CaseFileItemOnPart fileItemOnPart = new CaseFileItemOnPart(entryMsSpecsCreated, specifications,
-				CaseFileItemTransition.create.toString());
-		model.getContextState().create();
-
-		return model;
+		return COMPONENT_RELEASE.instantiate(null);
 	}
 
+	/**
+	 * <p>
+	 * Returns a new instance of the Create Technical Specifications sub-case. The
+	 * blueprint is compiled once to a shared {@link CaseDefinition}.
+	 * </p>
+	 * 
+	 * @param parentCaseName
+	 *            appended to cmId and name of the sub-case
+	 * @return a new CaseModel, created but not yet persisted
+	 */
 	public static CaseModel getCreateTechnicalSpecificationsCaseModel(String parentCaseName) {
-		CaseModel model = new CaseModel(
-				SubCaseModelNames.Create_Technical_Specifications.toString() + " - " + parentCaseName,
-				SubCaseModelNames.Create_Technical_Specifications.toString().replace("_", " ") + " - " + parentCaseName);
-		model.setAutoComplete(true);
-
-		CaseFileItem specifications = new CaseFileItem("specifications", MultiplicityEnum.OneOrMore.toString(),
-				"Specifications");
-		model.getCaseFile().addCaseFileItem(specifications);
-		SimpleProperty dataProvided = new SimpleProperty("dataProvided", Boolean.toString(false));
-		specifications.addProperty(dataProvided);
-		SimpleProperty dataApproved = new SimpleProperty("dataApproved", Boolean.toString(false));
-		SimpleProperty noteForRevision = new SimpleProperty("noteForRevision", "");
-		SimpleProperty revisionNeeded = new SimpleProperty("revisionNeeded", Boolean.toString(false));
-		specifications.addProperty(dataApproved, revisionNeeded, noteForRevision);
-		specifications.getContextState().create();
-
-		HumanTask assembleSpecifications = new HumanTask("assemble", "Assemble Specifications", model);
-		
-		HumanTask reviewSpecifications = new HumanTask("review", "Review Specifications", model);
-		reviewSpecifications.setRepetitionRule(new RepetitionRule("repeatReview", specifications));
-
-		HumanTask reviseSpecifications = new HumanTask("revise", "Revise Specifications", model);
-		reviseSpecifications.setRepetitionRule(new RepetitionRule("repeatRevise", specifications));
-
-		ProcessTask provideData = new ProcessTask("provideData", "Provide parent case with data", model);
-		provideData.setRequiredRule(new RequiredRule("reqProvideData", specifications));
-
-		EntrySentry enterReviewSpecificationsFromAssemble = new EntrySentry("enterReviewSpecifications",
-				"enterReviewSpecifications", reviewSpecifications);
-		ElementOnPart ht_reviewSpecifications = new ElementOnPart(enterReviewSpecificationsFromAssemble,
-				assembleSpecifications, StageTaskTransitions.complete.toString());
-
-		EntrySentry enterReviewSpecificationsFromRevise = new EntrySentry("enterReviewSpecificationsFromRevise",
-				"enterReviewSpecificationsFromRevise", reviewSpecifications);
-		ElementOnPart ht_reviewSpecifications2 = new ElementOnPart(enterReviewSpecificationsFromRevise,
-				reviseSpecifications, StageTaskTransitions.complete.toString());
-
-		EntrySentry enterReviewSpecificationsFromCaseFile = new EntrySentry("enterReviewSpecificationsFromCaseFile",
-				"enterReviewSpecificationsFromCaseFile", reviewSpecifications);
-		CaseFileItemOnPart ht_reviewSpecifications3 = new CaseFileItemOnPart(enterReviewSpecificationsFromCaseFile,
-				specifications, CaseFileItemTransition.update.toString());
-
-		EntrySentry enterReviseSpecifications = new EntrySentry("enterReviseSpecifications",
-				"enterReviseSpecifications", reviseSpecifications);
-		ElementOnPart ht_reviseSpecifications = new ElementOnPart(enterReviseSpecifications, reviewSpecifications,
-				StageTaskTransitions.complete.toString());
-		IfPart ifRevision = new IfPart("ifRevision", enterReviseSpecifications, specifications);
-
-		EntrySentry enterProvideData = new EntrySentry("enterProvideData", "enterProvideData", provideData);
-		CaseFileItemOnPart cfi_specifications = new CaseFileItemOnPart(enterProvideData, specifications,
-				CaseFileItemTransition.update.toString());
-		IfPart ifApproved = new IfPart("ifApproved", enterProvideData, specifications);
-
-		model.getContextState().create();
-		return model;
+		return CREATE_TECHNICAL_SPECIFICATIONS.instantiate(" - " + parentCaseName);
 	}
 
 }
@@ -0,0 +1,866 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.CaseRole;
+import cm.core.CaseWorker;
+import cm.core.Milestone;
+import cm.core.Stage;
+import cm.core.data.CaseFile;
+import cm.core.data.CaseFileItem;
+import cm.core.data.CaseFileItemAttachment;
+import cm.core.data.CaseFileItemPropertyType;
+import cm.core.data.SimpleProperty;
+import cm.core.listeners.EventListener;
+import cm.core.listeners.TimerEventListener;
+import cm.core.rules.ManualActivationRule;
+import cm.core.rules.RepetitionRule;
+import cm.core.rules.RequiredRule;
+import cm.core.rules.Rule;
+import cm.core.sentries.CaseFileItemOnPart;
+import cm.core.sentries.ElementOnPart;
+import cm.core.sentries.EntrySentry;
+import cm.core.sentries.ExitSentry;
+import cm.core.sentries.IfPart;
+import cm.core.sentries.OnPart;
+import cm.core.sentries.Sentry;
+import cm.core.tasks.CaseTask;
+import cm.core.tasks.HumanTask;
+import cm.core.tasks.ProcessTask;
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Versioned binary format for {@link CaseModel} graphs, e.g. for cache warm-up
+ * files, transfer between nodes and snapshots. Covers the elements with their
+ * rules, Sentries with OnParts and IfParts, the case file with its items,
+ * properties and attachment metadata, and sub-cases of CaseTasks. Case workers
+ * and roles are written as references with their identifying fields only,
+ * passwords, task lists and attachment contents are not written.
+ * </p>
+ * <p>
+ * Strings such as cmIds, names and states are written once and then referenced
+ * by their index in a string table. Ids, versions and counts are written as
+ * varints. Every object gets an index when it is written, so the cyclic links
+ * to parents, cases and root cases are written as back-references. The graph
+ * is written in the order it is rebuilt: the case, its case file, the elements
+ * depth-first and finally the Sentries, which refer to elements and case file
+ * items. Decoding uses the regular constructors, so all observers, child
+ * lists and OnPart bits are wired as for a newly built case; states are
+ * restored without transitions.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class CaseModelCodec {
+
+	/**
+	 * Version of the format written, increased with every incompatible change.
+	 */
+	public static final int FORMAT_VERSION = 3;
+
+	private static final int MAGIC = 0x434D4742;
+
+	private static final int STAGE = 1;
+	private static final int HUMAN_TASK = 2;
+	private static final int PROCESS_TASK = 3;
+	private static final int CASE_TASK = 4;
+	private static final int MILESTONE = 5;
+	private static final int EVENT_LISTENER = 6;
+	private static final int TIMER_EVENT_LISTENER = 7;
+
+	private static final int ENTRY_SENTRY = 1;
+	private static final int EXIT_SENTRY = 2;
+
+	private static final int ELEMENT_ON_PART = 1;
+	private static final int CASE_FILE_ITEM_ON_PART = 2;
+
+	private CaseModelCodec() {
+
+	}
+
+	/**
+	 * @param cm
+	 *            the case to encode
+	 * @return the encoded graph
+	 */
+	public static byte[] encode(CaseModel cm) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		try {
+			encode(cm, bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @param cm
+	 *            the case to encode
+	 * @param out
+	 *            receives the encoded graph, is flushed but not closed
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void encode(CaseModel cm, OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		new Encoder(data).writeVarLong(FORMAT_VERSION).writeCase(cm);
+		data.flush();
+	}
+
+	/**
+	 * @param bytes
+	 *            an encoded graph
+	 * @return the decoded case
+	 * @throws IOException
+	 *             if the bytes are no graph of a supported version
+	 */
+	public static CaseModel decode(byte[] bytes) throws IOException {
+		return decode(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * @param in
+	 *            an encoded graph, is not closed
+	 * @return the decoded case
+	 * @throws IOException
+	 *             if reading fails or the stream is no graph of a supported
+	 *             version
+	 */
+	public static CaseModel decode(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC) {
+			throw new IOException("Not an encoded CaseModel");
+		}
+		Decoder decoder = new Decoder(data);
+		long version = decoder.readVarLong();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Unsupported CaseModel format version " + version);
+		}
+		try {
+			return decoder.readCase();
+		} catch (RuntimeException e) {
+			throw new IOException("Invalid encoded CaseModel", e);
+		}
+	}
+
+	private static int kindOf(CaseElement e) {
+		if (e instanceof Stage) {
+			return STAGE;
+		} else if (e instanceof HumanTask) {
+			return HUMAN_TASK;
+		} else if (e instanceof ProcessTask) {
+			return PROCESS_TASK;
+		} else if (e instanceof CaseTask) {
+			return CASE_TASK;
+		} else if (e instanceof Milestone) {
+			return MILESTONE;
+		} else if (e instanceof TimerEventListener) {
+			return TIMER_EVENT_LISTENER;
+		} else if (e instanceof EventListener) {
+			return EVENT_LISTENER;
+		}
+		throw new IllegalArgumentException("Cannot encode element " + e.getCmId() + " of " + e.getClass());
+	}
+
+	private static final class Encoder {
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<>();
+		private final Map<Object, Integer> objects = new IdentityHashMap<>();
+		private final Map<OnPart, Object> onPartSources = new IdentityHashMap<>();
+
+		private Encoder(DataOutputStream out) {
+			this.out = out;
+		}
+
+		private Encoder writeVarLong(long value) throws IOException {
+			while ((value & ~0x7FL) != 0) {
+				out.writeByte((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			out.writeByte((int) value);
+			return this;
+		}
+
+		private void writeDate(Date date) throws IOException {
+			out.writeBoolean(date != null);
+			if (date != null) {
+				long time = date.getTime();
+				writeVarLong((time << 1) ^ (time >> 63));
+			}
+		}
+
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarLong(0);
+				return;
+			}
+			Integer index = strings.get(value);
+			if (index != null) {
+				writeVarLong(index + 2);
+				return;
+			}
+			strings.put(value, strings.size());
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(1);
+			writeVarLong(bytes.length);
+			out.write(bytes);
+		}
+
+		private void register(Object object) {
+			objects.put(object, objects.size());
+		}
+
+		/**
+		 * Writes a reference to an object written before, objects outside the
+		 * graph are written as null.
+		 */
+		private void writeRef(Object object) throws IOException {
+			Integer index = object != null ? objects.get(object) : null;
+			writeVarLong(index != null ? index + 1 : 0);
+		}
+
+		/**
+		 * Writes null or a reference to an object written before.
+		 * 
+		 * @return <code>true</code> if the object has to be written and registered
+		 *         by the caller
+		 */
+		private boolean writeShared(Object object) throws IOException {
+			if (object == null) {
+				writeVarLong(0);
+				return false;
+			}
+			Integer index = objects.get(object);
+			if (index != null) {
+				writeVarLong(index + 2);
+				return false;
+			}
+			writeVarLong(1);
+			return true;
+		}
+
+		private void writeCase(CaseModel cm) throws IOException {
+			register(cm);
+			writeElement(cm);
+			writeDate(cm.getCreatedOn());
+			out.writeBoolean(cm.isAutoComplete());
+			writeRef(cm.getCaseTaskRef());
+			List<CaseRole> roles = cm.getCaseRoles();
+			writeVarLong(roles != null ? roles.size() : 0);
+			if (roles != null) {
+				for (CaseRole role : roles) {
+					writeRole(role);
+				}
+			}
+			writeWorkers(cm.getCaseWorkers());
+			writeWorkers(cm.getCaseAdmins());
+
+			CaseFile caseFile = cm.getCaseFile();
+			out.writeBoolean(caseFile != null);
+			if (caseFile != null) {
+				register(caseFile);
+				writeVarLong(caseFile.getId());
+				writeString(caseFile.getCmId());
+				writeItems(caseFile.getCaseFileItems());
+			}
+
+			List<CaseElement> elements = new ArrayList<>();
+			elements.add(cm);
+			addSources(cm);
+			writeChildren(cm.getChildElements(), elements);
+			for (CaseElement e : elements) {
+				writeSentries(e);
+			}
+		}
+
+		private void writeElement(CaseElement e) throws IOException {
+			writeVarLong(e.getId());
+			writeVarLong(e.getVersion());
+			writeString(e.getCmId());
+			writeString(e.getName());
+			writeString(e.getState());
+			writeString(e.getStateBeforeSuspend());
+			out.writeBoolean(e.isSuspended());
+		}
+
+		private void addSources(CaseElement e) {
+			if (e.getElementObservers() != null) {
+				for (ElementOnPart onPart : e.getElementObservers()) {
+					onPartSources.put(onPart, e);
+				}
+			}
+		}
+
+		private void writeItems(List<CaseFileItem> items) throws IOException {
+			writeVarLong(items != null ? items.size() : 0);
+			if (items == null) {
+				return;
+			}
+			for (CaseFileItem item : items) {
+				register(item);
+				if (item.getObservers() != null) {
+					for (CaseFileItemOnPart onPart : item.getObservers()) {
+						onPartSources.put(onPart, item);
+					}
+				}
+				writeVarLong(item.getId());
+				writeVarLong(item.getVersion());
+				writeString(item.getCmId());
+				writeString(item.getMultiplicity());
+				writeString(item.getName());
+				writeString(item.getState());
+				List<SimpleProperty> properties = item.getProperties();
+				writeVarLong(properties != null ? properties.size() : 0);
+				if (properties != null) {
+					for (SimpleProperty property : properties) {
+						writeVarLong(property.getId());
+						writeVarLong(property.getVersion());
+						writeString(property.getName());
+						writeString(property.getType() != null ? property.getType().name() : null);
+						writeString(property.getValue());
+					}
+				}
+				List<CaseFileItemAttachment> attachments = item.getAttachments();
+				writeVarLong(attachments != null ? attachments.size() : 0);
+				if (attachments != null) {
+					for (CaseFileItemAttachment attachment : attachments) {
+						writeVarLong(attachment.getId());
+						writeString(attachment.getName());
+						writeString(attachment.getType());
+						out.writeDouble(attachment.getSize());
+						writeString(attachment.getPath());
+						writeDate(attachment.getCreatedOn());
+						writeString(attachment.getCreatedBy());
+						writeString(attachment.getBlobKey());
+						writeString(attachment.getChecksum());
+						writeVarLong(attachment.getContentLength());
+					}
+				}
+				writeItems(item.getChildren());
+			}
+		}
+
+		private void writeChildren(List<CaseElement> children, List<CaseElement> elements) throws IOException {
+			writeVarLong(children != null ? children.size() : 0);
+			if (children == null) {
+				return;
+			}
+			for (CaseElement e : children) {
+				int kind = kindOf(e);
+				out.writeByte(kind);
+				register(e);
+				elements.add(e);
+				addSources(e);
+				writeElement(e);
+				writeRef(e.getRootCase());
+				switch (kind) {
+				case STAGE:
+					Stage stage = (Stage) e;
+					out.writeBoolean(stage.isRepetition());
+					writeVarLong(stage.getMaxRepetitions());
+					writeVarLong(stage.getCurrentRepetition());
+					out.writeBoolean(stage.isAutoComplete());
+					writeRule(stage.getRequiredRule());
+					writeRule(stage.getManualActivationRule());
+					writeChildren(stage.getChildElements(), elements);
+					break;
+				case HUMAN_TASK:
+				case PROCESS_TASK:
+				case CASE_TASK:
+					Task task = (Task) e;
+					writeString(task.getDescription());
+					out.writeBoolean(task.isBlocking());
+					writeWorker(task.getClaimant());
+					writeRole(task.getCaseRole());
+					writeRule(task.getRequiredRule());
+					writeRule(task.getRepetitionRule());
+					writeRule(task.getManualActivationRule());
+					if (kind == CASE_TASK) {
+						CaseModel subCase = ((CaseTask) task).getSubCaseRef();
+						if (writeShared(subCase)) {
+							writeCase(subCase);
+						}
+					}
+					break;
+				case MILESTONE:
+					Milestone milestone = (Milestone) e;
+					writeRule(milestone.getRequiredRule());
+					writeRule(milestone.getRepetitionRule());
+					break;
+				case TIMER_EVENT_LISTENER:
+					writeDate(((TimerEventListener) e).getDueDate());
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		private void writeRule(Rule rule) throws IOException {
+			if (writeShared(rule)) {
+				register(rule);
+				writeVarLong(rule.getId());
+				writeString(rule.getName());
+				writeRef(rule.getContextRef());
+			}
+		}
+
+		private void writeRole(CaseRole role) throws IOException {
+			if (writeShared(role)) {
+				register(role);
+				writeString(role.getRoleName());
+			}
+		}
+
+		private void writeWorker(CaseWorker cw) throws IOException {
+			if (writeShared(cw)) {
+				register(cw);
+				writeVarLong(cw.getId());
+				writeString(cw.getUser());
+				writeString(cw.getFirstname());
+				writeString(cw.getLastname());
+				out.writeBoolean(cw.isAdmin());
+			}
+		}
+
+		private void writeWorkers(List<CaseWorker> workers) throws IOException {
+			writeVarLong(workers != null ? workers.size() : 0);
+			if (workers != null) {
+				for (CaseWorker cw : workers) {
+					writeWorker(cw);
+				}
+			}
+		}
+
+		private void writeSentries(CaseElement e) throws IOException {
+			List<Sentry> sentries = e.getSentryRef();
+			writeVarLong(sentries != null ? sentries.size() : 0);
+			if (sentries == null) {
+				return;
+			}
+			for (Sentry sentry : sentries) {
+				out.writeByte(sentry instanceof EntrySentry ? ENTRY_SENTRY : EXIT_SENTRY);
+				register(sentry);
+				writeVarLong(sentry.getId());
+				writeString(sentry.getCmId());
+				writeString(sentry.getName());
+				out.writeBoolean(sentry.hasBeenSatisfied());
+				List<OnPart> onParts = sentry.getOnParts();
+				writeVarLong(onParts != null ? onParts.size() : 0);
+				if (onParts != null) {
+					for (OnPart onPart : onParts) {
+						Object source = onPartSources.get(onPart);
+						if (source == null || !objects.containsKey(source)) {
+							throw new IllegalArgumentException(
+									"OnPart of Sentry " + sentry.getCmId() + " observes nothing in the graph");
+						}
+						out.writeByte(onPart instanceof ElementOnPart ? ELEMENT_ON_PART : CASE_FILE_ITEM_ON_PART);
+						register(onPart);
+						writeVarLong(onPart.getId());
+						writeRef(source);
+						writeString(onPart.getRequiredTransition());
+						out.writeBoolean(onPart.isSatisfied());
+					}
+				}
+				IfPart ifPart = sentry.getIfPart();
+				out.writeBoolean(ifPart != null);
+				if (ifPart != null) {
+					register(ifPart);
+					writeVarLong(ifPart.getId());
+					writeString(ifPart.getCmId());
+					writeRef(ifPart.getCaseFileItemRef());
+				}
+			}
+		}
+	}
+
+	private static final class Decoder {
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<>();
+		private final List<Object> objects = new ArrayList<>();
+
+		private Decoder(DataInputStream in) {
+			this.in = in;
+		}
+
+		private long readVarLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < Long.SIZE; shift += 7) {
+				int b = in.readUnsignedByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+
+		private int readCount() throws IOException {
+			long count = readVarLong();
+			if (count > Integer.MAX_VALUE) {
+				throw new IOException("Malformed count " + count);
+			}
+			return (int) count;
+		}
+
+		private Date readDate() throws IOException {
+			if (!in.readBoolean()) {
+				return null;
+			}
+			long zigzag = readVarLong();
+			return new Date((zigzag >>> 1) ^ -(zigzag & 1));
+		}
+
+		private String readString() throws IOException {
+			int tag = readCount();
+			if (tag == 0) {
+				return null;
+			} else if (tag > 1) {
+				return strings.get(tag - 2);
+			}
+			byte[] bytes = new byte[readCount()];
+			in.readFully(bytes);
+			String value = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(value);
+			return value;
+		}
+
+		private <T> T register(T object) {
+			objects.add(object);
+			return object;
+		}
+
+		private Object readRef() throws IOException {
+			int index = readCount();
+			return index == 0 ? null : objects.get(index - 1);
+		}
+
+		/**
+		 * @return 0 for null, 1 if the object follows, otherwise the index of the
+		 *         object written before plus 2
+		 */
+		private int readSharedTag() throws IOException {
+			return readCount();
+		}
+
+		private CaseModel readCase() throws IOException {
+			ElementFields fields = new ElementFields(this);
+			CaseModel cm = register(new CaseModel(fields.cmId, fields.name));
+			fields.apply(cm);
+			cm.setCreatedOn(readDate());
+			cm.setAutoComplete(in.readBoolean());
+			cm.setCaseTaskRef((CaseTask) readRef());
+			int roleCount = readCount();
+			List<CaseRole> roles = new ArrayList<>(roleCount);
+			for (int i = 0; i < roleCount; i++) {
+				roles.add(readRole());
+			}
+			cm.setCaseRoles(roleCount > 0 ? roles : null);
+			cm.setCaseWorkers(readWorkers());
+			cm.setCaseAdmins(readWorkers());
+
+			if (in.readBoolean()) {
+				CaseFile caseFile = register(cm.getCaseFile());
+				caseFile.setId(readVarLong());
+				caseFile.setCmId(readString());
+				readItems(caseFile, null);
+			} else {
+				cm.setCaseFile(null);
+			}
+
+			List<CaseElement> elements = new ArrayList<>();
+			elements.add(cm);
+			readChildren(cm, null, elements);
+			for (CaseElement e : elements) {
+				readSentries(e);
+			}
+			return cm;
+		}
+
+		private void readItems(CaseFile caseFile, CaseFileItem parent) throws IOException {
+			int count = readCount();
+			for (int i = 0; i < count; i++) {
+				long id = readVarLong();
+				long version = readVarLong();
+				String cmId = readString();
+				String multiplicity = readString();
+				String name = readString();
+				CaseFileItem item = register(new CaseFileItem(cmId, multiplicity, name));
+				if (parent == null) {
+					caseFile.addCaseFileItem(item);
+				} else {
+					parent.addChild(item);
+				}
+				item.setId(id);
+				item.setVersion(version);
+				item.setState(readString());
+				int properties = readCount();
+				for (int p = 0; p < properties; p++) {
+					long propertyId = readVarLong();
+					long propertyVersion = readVarLong();
+					SimpleProperty property = new SimpleProperty(readString(), (String) null);
+					String type = readString();
+					property.setType(type != null ? CaseFileItemPropertyType.valueOf(type) : null);
+					property.setValue(readString());
+					property.setId(propertyId);
+					property.setVersion(propertyVersion);
+					item.addProperty(property);
+				}
+				int attachmentCount = readCount();
+				if (attachmentCount > 0) {
+					List<CaseFileItemAttachment> attachments = new ArrayList<>(attachmentCount);
+					for (int a = 0; a < attachmentCount; a++) {
+						long attachmentId = readVarLong();
+						CaseFileItemAttachment attachment = new CaseFileItemAttachment(readString(), readString(),
+								in.readDouble(), readString(), readDate(), readString());
+						attachment.setId(attachmentId);
+						attachment.setBlobKey(readString());
+						attachment.setChecksum(readString());
+						attachment.setContentLength(readVarLong());
+						attachments.add(attachment);
+					}
+					item.setAttachments(attachments);
+				}
+				readItems(caseFile, item);
+			}
+		}
+
+		private void readChildren(CaseModel cm, Stage parent, List<CaseElement> elements) throws IOException {
+			int count = readCount();
+			for (int i = 0; i < count; i++) {
+				int kind = in.readUnsignedByte();
+				ElementFields fields = new ElementFields(this);
+				CaseElement e = register(create(kind, fields, cm, parent));
+				elements.add(e);
+				fields.apply(e);
+				e.setRootCase((CaseModel) readRef());
+				switch (kind) {
+				case STAGE:
+					Stage stage = (Stage) e;
+					stage.setRepetition(in.readBoolean());
+					stage.setMaxRepetitions(readCount());
+					stage.setCurrentRepetition(readCount());
+					stage.setAutoComplete(in.readBoolean());
+					stage.setRequiredRule(readRule(RequiredRule.class));
+					stage.setManualActivationRule(readRule(ManualActivationRule.class));
+					readChildren(cm, stage, elements);
+					break;
+				case HUMAN_TASK:
+				case PROCESS_TASK:
+				case CASE_TASK:
+					Task task = (Task) e;
+					task.setDescription(readString());
+					task.setBlocking(in.readBoolean());
+					task.setClaimant(readWorker());
+					task.setCaseRole(readRole());
+					task.setRequiredRule(readRule(RequiredRule.class));
+					task.setRepetitionRule(readRule(RepetitionRule.class));
+					task.setManualActivationRule(readRule(ManualActivationRule.class));
+					if (kind == CASE_TASK) {
+						int tag = readSharedTag();
+						((CaseTask) task).setSubCaseRef(
+								tag == 1 ? readCase() : tag == 0 ? null : (CaseModel) objects.get(tag - 2));
+					}
+					break;
+				case MILESTONE:
+					Milestone milestone = (Milestone) e;
+					milestone.setRequiredRule(readRule(RequiredRule.class));
+					milestone.setRepetitionRule(readRule(RepetitionRule.class));
+					break;
+				case TIMER_EVENT_LISTENER:
+					((TimerEventListener) e).setDueDate(readDate());
+					break;
+				default:
+					break;
+				}
+			}
+		}
+
+		private static CaseElement create(int kind, ElementFields fields, CaseModel cm, Stage parent)
+				throws IOException {
+			String cmId = fields.cmId;
+			String name = fields.name;
+			switch (kind) {
+			case STAGE:
+				return parent == null ? new Stage(cmId, name, cm) : new Stage(cmId, name, parent);
+			case HUMAN_TASK:
+				return parent == null ? new HumanTask(cmId, name, cm) : new HumanTask(cmId, name, parent);
+			case PROCESS_TASK:
+				return parent == null ? new ProcessTask(cmId, name, cm) : new ProcessTask(cmId, name, parent);
+			case CASE_TASK:
+				return parent == null ? new CaseTask(cmId, name, cm) : new CaseTask(cmId, name, parent);
+			case MILESTONE:
+				return parent == null ? new Milestone(cmId, name, cm) : new Milestone(cmId, name, parent);
+			case EVENT_LISTENER:
+				return parent == null ? new EventListener(cmId, name, cm) : new EventListener(cmId, name, parent);
+			case TIMER_EVENT_LISTENER:
+				return parent == null ? new TimerEventListener(cmId, name, cm, null)
+						: new TimerEventListener(cmId, name, parent, null);
+			default:
+				throw new IOException("Unknown element kind " + kind);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private <R extends Rule> R readRule(Class<R> type) throws IOException {
+			int tag = readSharedTag();
+			if (tag != 1) {
+				return tag == 0 ? null : type.cast(objects.get(tag - 2));
+			}
+			Rule rule;
+			if (type == RequiredRule.class) {
+				rule = new RequiredRule();
+			} else if (type == RepetitionRule.class) {
+				rule = new RepetitionRule();
+			} else {
+				rule = new ManualActivationRule();
+			}
+			register(rule);
+			rule.setId(readVarLong());
+			rule.setName(readString());
+			rule.setContextRef((CaseFileItem) readRef());
+			return (R) rule;
+		}
+
+		private CaseRole readRole() throws IOException {
+			int tag = readSharedTag();
+			if (tag != 1) {
+				return tag == 0 ? null : (CaseRole) objects.get(tag - 2);
+			}
+			CaseRole role = register(new CaseRole());
+			role.setRoleName(readString());
+			return role;
+		}
+
+		private CaseWorker readWorker() throws IOException {
+			int tag = readSharedTag();
+			if (tag != 1) {
+				return tag == 0 ? null : (CaseWorker) objects.get(tag - 2);
+			}
+			CaseWorker cw = register(new CaseWorker());
+			cw.setId(readVarLong());
+			cw.setUser(readString());
+			cw.setFirstname(readString());
+			cw.setLastname(readString());
+			cw.setAdmin(in.readBoolean());
+			return cw;
+		}
+
+		private List<CaseWorker> readWorkers() throws IOException {
+			int count = readCount();
+			if (count == 0) {
+				return null;
+			}
+			List<CaseWorker> workers = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				workers.add(readWorker());
+			}
+			return workers;
+		}
+
+		private void readSentries(CaseElement e) throws IOException {
+			int count = readCount();
+			for (int i = 0; i < count; i++) {
+				int kind = in.readUnsignedByte();
+				long id = readVarLong();
+				String cmId = readString();
+				String name = readString();
+				Sentry sentry = kind == ENTRY_SENTRY ? new EntrySentry(cmId, name, e) : new ExitSentry(cmId, name, e);
+				register(sentry);
+				sentry.setId(id);
+				boolean satisfied = in.readBoolean();
+				int onParts = readCount();
+				for (int o = 0; o < onParts; o++) {
+					int onPartKind = in.readUnsignedByte();
+					int index = objects.size();
+					objects.add(null);
+					long onPartId = readVarLong();
+					Object source = readRef();
+					String transition = readString();
+					OnPart onPart = onPartKind == ELEMENT_ON_PART
+							? new ElementOnPart(sentry, (CaseElement) source, transition)
+							: new CaseFileItemOnPart(sentry, (CaseFileItem) source, transition);
+					objects.set(index, onPart);
+					onPart.setId(onPartId);
+					onPart.setSatisfied(in.readBoolean());
+				}
+				if (in.readBoolean()) {
+					int index = objects.size();
+					objects.add(null);
+					long ifPartId = readVarLong();
+					IfPart ifPart = new IfPart(readString(), sentry, (CaseFileItem) readRef());
+					objects.set(index, ifPart);
+					ifPart.setId(ifPartId);
+				}
+				sentry.setSatisfied(satisfied);
+			}
+		}
+	}
+
+	/**
+	 * Fields common to all elements, read before the element is constructed.
+	 */
+	private static final class ElementFields {
+		private final long id;
+		private final long version;
+		private final String cmId;
+		private final String name;
+		private final String state;
+		private final String stateBeforeSuspend;
+		private final boolean suspended;
+
+		private ElementFields(Decoder decoder) throws IOException {
+			this.id = decoder.readVarLong();
+			this.version = decoder.readVarLong();
+			this.cmId = decoder.readString();
+			this.name = decoder.readString();
+			this.state = decoder.readString();
+			this.stateBeforeSuspend = decoder.readString();
+			this.suspended = decoder.in.readBoolean();
+		}
+
+		private void apply(CaseElement e) {
+			e.setId(this.id);
+			e.setVersion(this.version);
+			e.restoreState(this.state, this.stateBeforeSuspend, this.suspended);
+		}
+	}
+
+}
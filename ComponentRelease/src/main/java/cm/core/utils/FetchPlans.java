@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.utils;
+
+import java.util.Collections;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import cm.core.tasks.Task;
+
+/**
+ * <p>
+ * Names of the entity graphs used as fetch plans by the services, one per use
+ * case. A graph is applied as load graph: the relations it names are loaded
+ * with the query, all other relations keep their default fetch type. Relations
+ * loaded lazily are batch fetched for all entities of a query (see the
+ * <code>@BatchFetch</code> annotations of the entities), so rendering a list
+ * issues a constant number of queries instead of one per row.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+public final class FetchPlans {
+
+	public static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+
+	/**
+	 * Whole case with elements, Sentries, observers and case file.
+	 */
+	public static final String FULL_CASE = "CaseModel.full";
+
+	/**
+	 * Case file with its items, their properties, attachments and children.
+	 */
+	public static final String CASE_FILE_VIEW = "CaseFile.view";
+
+	/**
+	 * HumanTask as shown in a worklist: claimant, role, stage and case.
+	 */
+	public static final String WORKLIST_ROW = "HumanTask.worklistRow";
+
+	private static final String EXECUTION = ".execution";
+
+	private FetchPlans() {
+
+	}
+
+	/**
+	 * @param type
+	 *            HumanTask, ProcessTask, CaseTask or DecisionTask
+	 * @return the name of the graph to transition a Task of the type: a worklist
+	 *         row plus rules, Sentries and observers
+	 */
+	public static String executionOf(Class<? extends Task> type) {
+		return type.getSimpleName() + EXECUTION;
+	}
+
+	/**
+	 * @return the query with the graph set as load graph
+	 */
+	public static <T> TypedQuery<T> apply(EntityManager em, TypedQuery<T> query, String graph) {
+		return query.setHint(LOAD_GRAPH, em.getEntityGraph(graph));
+	}
+
+	/**
+	 * @return properties for {@link EntityManager#find(Class, Object, Map)}
+	 *         setting the graph as load graph, no properties if the graph is
+	 *         not defined, e.g. for a Task type without execution graph
+	 */
+	public static Map<String, Object> hints(EntityManager em, String graph) {
+		try {
+			return Collections.<String, Object>singletonMap(LOAD_GRAPH, em.getEntityGraph(graph));
+		} catch (IllegalArgumentException e) {
+			return Collections.emptyMap();
+		}
+	}
+
+}
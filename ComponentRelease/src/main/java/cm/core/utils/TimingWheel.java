@@ -0,0 +1,196 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.utils;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ * Hierarchical timing wheel holding items until a due time. Level 0 has
+ * <code>wheelSize</code> slots of one tick each, every higher level has
+ * <code>wheelSize</code> slots spanning a full rotation of the level below.
+ * Adding an item and advancing by one tick take constant time regardless of
+ * the number of items held. Items of a higher level are moved down a level
+ * when the lower level completes a rotation.
+ * </p>
+ * <p>
+ * Items are due at the first tick at or after their due time. Items due further
+ * ahead than <code>tickMillis * wheelSize^levels</code> are not accepted.
+ * Instances are not thread-safe.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ * @param <T>
+ *            the type of the items
+ */
+public class TimingWheel<T> {
+
+	private final long tickMillis;
+	private final int wheelSize;
+	private final long[] spans;
+	private final ArrayDeque<Timeout<T>>[][] buckets;
+	private long currentTick;
+	private int size;
+
+	/**
+	 * @param tickMillis
+	 *            duration of one tick in milliseconds
+	 * @param wheelSize
+	 *            number of slots per level
+	 * @param levels
+	 *            number of levels
+	 * @param startMillis
+	 *            current time in milliseconds
+	 */
+	@SuppressWarnings("unchecked")
+	public TimingWheel(long tickMillis, int wheelSize, int levels, long startMillis) {
+		if (tickMillis <= 0 || wheelSize < 2 || levels < 1) {
+			throw new IllegalArgumentException("Invalid timing wheel dimensions");
+		}
+		this.tickMillis = tickMillis;
+		this.wheelSize = wheelSize;
+		this.spans = new long[levels + 1];
+		this.spans[0] = 1;
+		for (int level = 1; level <= levels; level++) {
+			this.spans[level] = Math.multiplyExact(this.spans[level - 1], wheelSize);
+		}
+		this.buckets = new ArrayDeque[levels][wheelSize];
+		for (int level = 0; level < levels; level++) {
+			for (int slot = 0; slot < wheelSize; slot++) {
+				this.buckets[level][slot] = new ArrayDeque<Timeout<T>>();
+			}
+		}
+		this.currentTick = startMillis / tickMillis;
+	}
+
+	/**
+	 * Adds an item.
+	 * 
+	 * @param item
+	 *            the item
+	 * @param dueMillis
+	 *            the due time in milliseconds
+	 * @return false if the item is already due or beyond the horizon and has not
+	 *         been added
+	 */
+	public boolean add(T item, long dueMillis) {
+		long dueTick = (dueMillis + tickMillis - 1) / tickMillis;
+		if (dueTick <= currentTick || dueTick - currentTick >= spans[spans.length - 1]) {
+			return false;
+		}
+		place(new Timeout<T>(item, dueTick));
+		size++;
+		return true;
+	}
+
+	/**
+	 * Advances the wheel tick by tick up to the given time and hands every item
+	 * becoming due to the consumer.
+	 * 
+	 * @param nowMillis
+	 *            the current time in milliseconds
+	 * @param expired
+	 *            receives the due items in order of their ticks
+	 * @return the number of ticks advanced
+	 */
+	public long advanceTo(long nowMillis, Consumer<T> expired) {
+		long targetTick = nowMillis / tickMillis;
+		long advanced = 0;
+		while (currentTick < targetTick) {
+			currentTick++;
+			advanced++;
+			for (int level = buckets.length - 1; level > 0; level--) {
+				if (currentTick % spans[level] == 0) {
+					cascade(level, expired);
+				}
+			}
+			drain(buckets[0][(int) (currentTick % wheelSize)], expired);
+		}
+		return advanced;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	/**
+	 * @return the time in milliseconds items can be due ahead of the current tick
+	 */
+	public long getHorizonMillis() {
+		return (spans[spans.length - 1] - 1) * tickMillis;
+	}
+
+	public long getCurrentMillis() {
+		return currentTick * tickMillis;
+	}
+
+	private void place(Timeout<T> timeout) {
+		long delta = timeout.dueTick - currentTick;
+		for (int level = 0; level < buckets.length; level++) {
+			if (delta < spans[level + 1]) {
+				int slot = (int) ((timeout.dueTick / spans[level]) % wheelSize);
+				buckets[level][slot].add(timeout);
+				return;
+			}
+		}
+		throw new IllegalStateException("Timeout beyond horizon");
+	}
+
+	private void cascade(int level, Consumer<T> expired) {
+		ArrayDeque<Timeout<T>> bucket = buckets[level][(int) ((currentTick / spans[level]) % wheelSize)];
+		int count = bucket.size();
+		for (int i = 0; i < count; i++) {
+			Timeout<T> timeout = bucket.poll();
+			if (timeout.dueTick <= currentTick) {
+				size--;
+				expired.accept(timeout.item);
+			} else {
+				place(timeout);
+			}
+		}
+	}
+
+	private void drain(ArrayDeque<Timeout<T>> bucket, Consumer<T> expired) {
+		int count = bucket.size();
+		for (int i = 0; i < count; i++) {
+			Timeout<T> timeout = bucket.poll();
+			if (timeout.dueTick <= currentTick) {
+				size--;
+				expired.accept(timeout.item);
+			} else {
+				bucket.add(timeout);
+			}
+		}
+	}
+
+	private static final class Timeout<T> {
+		private final T item;
+		private final long dueTick;
+
+		private Timeout(T item, long dueTick) {
+			this.item = item;
+			this.dueTick = dueTick;
+		}
+	}
+
+}
@@ -18,8 +18,10 @@ package cm.core.utils.views;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
@@ -28,10 +30,13 @@ import com.vaadin.cdi.internal.Conventions;
 import com.vaadin.cdi.views.CaseWorkerInfo;
 import com.vaadin.cdi.views.HeaderLayout;
 import com.vaadin.cdi.views.NavigationEvent;
+import com.vaadin.data.provider.CallbackDataProvider;
+import com.vaadin.data.provider.ConfigurableFilterDataProvider;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener.ViewChangeEvent;
 import com.vaadin.server.FileResource;
 import com.vaadin.server.VaadinService;
+import com.vaadin.shared.ui.ValueChangeMode;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
 import com.vaadin.ui.Button.ClickListener;
@@ -41,13 +46,19 @@ import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Image;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Layout;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.VerticalLayout;
 
 import cm.core.CaseModel;
 import cm.core.CaseStates;
 import cm.core.CaseWorker;
+import cm.core.services.CaseRow;
 import cm.core.services.CaseService;
 import cm.core.services.CaseWorkerService;
+import cm.core.services.ChangeBus;
+import cm.core.services.ChangeEvent;
 import cm.core.services.TaskService;
 import cm.core.utils.CaseFactory;
 
@@ -72,15 +83,17 @@ public class CaseListView extends CustomComponent implements View {
 	@Inject
 	private CaseService caseService;
 
-	private CaseModel selectedPrimaryCase;
-	private CaseModel selectedSecondaryCase;
+	private CaseRow selectedPrimaryCase;
+	private CaseRow selectedSecondaryCase;
 
 	@Inject
 	private javax.enterprise.event.Event<NavigationEvent> navigationEvent;
 
-	private Grid<CaseModel> gridPrimaryCases = new Grid<>();
-	private Grid<CaseModel> gridSecondaryCases = new Grid<>();
-	private Button btnRefreshCases;
+	private Grid<CaseRow> gridPrimaryCases = new Grid<>();
+	private ConfigurableFilterDataProvider<CaseRow, Void, String> primaryCases;
+	private final Map<Long, CaseRow> loadedPrimaryCases = new HashMap<>();
+	private ChangeBus.Subscription changes;
+	private Grid<CaseRow> gridSecondaryCases = new Grid<>();
 	private Button btnStartCase;
 	private Button btnDeleteCase;
 
@@ -90,6 +103,68 @@ public class CaseListView extends CustomComponent implements View {
 		Layout layout = buildTaskListLayout();
 		setCompositionRoot(layout);
 		updatePrimaryCases();
+		subscribeToChanges();
+	}
+
+	/**
+	 * Keeps the case lists current with the cases started, deleted or changed
+	 * by any case worker, pushed in batches by the {@link ChangeBus}.
+	 */
+	private void subscribeToChanges() {
+		UI ui = UI.getCurrent();
+		changes = ChangeBus.getInstance().subscribe(e -> !e.isTaskEvent(), events -> {
+			try {
+				ui.access(() -> applyChanges(events));
+			} catch (UIDetachedException e) {
+				changes.close();
+			}
+		});
+		addDetachListener(e -> changes.close());
+	}
+
+	/**
+	 * Updates listed primary cases whose state changed in place and reloads the
+	 * visible window if cases were started or deleted or a sub-case changed.
+	 */
+	private void applyChanges(List<ChangeEvent> events) {
+		if (gridPrimaryCases == null) {
+			return;
+		}
+		boolean reload = false;
+		boolean selectionDeleted = false;
+		for (ChangeEvent e : events) {
+			switch (e.getKind()) {
+			case CASE_STARTED:
+				reload = true;
+				break;
+			case CASE_DELETED:
+				reload = true;
+				selectionDeleted |= selectedPrimaryCase != null && selectedPrimaryCase.getId() == e.getCaseId();
+				break;
+			case CASE_STATE_CHANGED:
+				CaseRow listed = loadedPrimaryCases.get(e.getCaseId());
+				if (listed != null) {
+					CaseRow changed = listed.withState(e.getState());
+					loadedPrimaryCases.put(changed.getId(), changed);
+					primaryCases.refreshItem(changed);
+				} else {
+					// a sub-case, its count or the secondary list may change
+					reload = true;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		if (selectionDeleted) {
+			updatePrimaryCases();
+		} else if (reload) {
+			loadedPrimaryCases.clear();
+			primaryCases.refreshAll();
+			if (selectedPrimaryCase != null) {
+				updateSecondaryCases();
+			}
+		}
 	}
 
 	private Layout buildTaskListLayout() {
@@ -156,11 +231,19 @@ public class CaseListView extends CustomComponent implements View {
 
 		setupCaseLists();
 
-		btnRefreshCases = generateRefreshButton();
+		TextField filter = new TextField();
+		filter.setPlaceholder("Filter by name");
+		filter.setValueChangeMode(ValueChangeMode.LAZY);
+		filter.addValueChangeListener(e -> {
+			loadedPrimaryCases.clear();
+			primaryCases.setFilter(e.getValue());
+		});
+		layout.addComponent(filter);
+
 		btnStartCase = generateStartCaseButton();
 		btnDeleteCase = generateDeleteButton();
 
-		HorizontalLayout btnLayout = new HorizontalLayout(btnDeleteCase, btnRefreshCases, btnStartCase);
+		HorizontalLayout btnLayout = new HorizontalLayout(btnDeleteCase, btnStartCase);
 
 		layout.addComponents(gridPrimaryCases);
 		gridPrimaryCases.setSizeFull();
@@ -200,33 +283,23 @@ public class CaseListView extends CustomComponent implements View {
 		return start;
 	}
 
-	private Button generateRefreshButton() {
-		Button refresh = new Button("Refresh");
-		refresh.addClickListener(e -> {
-			this.updatePrimaryCases();
-		});
-		return refresh;
-	}
-
 	private void startNewCase(CaseWorker cw) {
-		CaseModel cm = CaseFactory.getComponentReleaseCaseModel();
-		caseService.persistCase(cm);
-//		cm = caseService.getCaseById(cm);
-		this.updatePrimaryCases();
+		caseService.startCase(CaseFactory::getComponentReleaseCaseModel);
+		// the new case is pushed by the ChangeBus
 	}
 
 	private void updatePrimaryCases() {
-		Collection<CaseModel> items = this.caseService.getPrimaryCases("all");
-		this.gridPrimaryCases.setItems(items);
+		this.loadedPrimaryCases.clear();
+		this.primaryCases.refreshAll();
 		this.gridPrimaryCases.deselectAll();
 		this.selectedPrimaryCase = null;
 		this.selectedSecondaryCase = null;
-		List<CaseModel> emptyList = new ArrayList<>();
+		List<CaseRow> emptyList = new ArrayList<>();
 		this.gridSecondaryCases.setItems(emptyList);
 	}
 
 	private void updateSecondaryCases() {
-		Collection<CaseModel> items = this.caseService.getSecondaryCases(selectedPrimaryCase);
+		List<CaseRow> items = this.caseService.getSecondaryCaseRows(selectedPrimaryCase.getId());
 		if (items != null) {
 			if (items.size() > 0) {
 				this.gridSecondaryCases.setItems(items);
@@ -237,8 +310,20 @@ public class CaseListView extends CustomComponent implements View {
 	}
 
 	private void setupCaseLists() {
-		gridPrimaryCases.addColumn(CaseModel::getName).setCaption("Name").setExpandRatio(1);
-		gridPrimaryCases.addColumn(CaseModel::getState).setCaption("State").setExpandRatio(1);
+		// only the visible window of the primary cases is read, sorted and filtered
+		// by the database
+		primaryCases = new CallbackDataProvider<CaseRow, String>(
+				query -> remember(caseService.getPrimaryCaseRows("all", query.getFilter().orElse(null),
+						query.getOffset(), query.getLimit(), RowSortOrders.of(query))),
+				query -> caseService.countPrimaryCaseRows("all", query.getFilter().orElse(null)), CaseRow::getId)
+						.withConfigurableFilter();
+		gridPrimaryCases.setDataProvider(primaryCases);
+		gridPrimaryCases.addColumn(CaseRow::getName).setCaption("Name").setSortProperty("name").setExpandRatio(1);
+		gridPrimaryCases.addColumn(CaseRow::getState).setCaption("State").setSortProperty("state").setExpandRatio(1);
+		gridPrimaryCases.addColumn(CaseRow::getCreatedOn).setCaption("Created").setSortProperty("createdOn")
+				.setExpandRatio(1);
+		gridPrimaryCases.addColumn(CaseRow::getSubCaseCount).setCaption("Sub-Cases").setSortable(false)
+				.setExpandRatio(1);
 		gridPrimaryCases.asSingleSelect().addValueChangeListener(event -> {
 			if (event.getValue() == null) {
 				selectedPrimaryCase = null;
@@ -250,8 +335,8 @@ public class CaseListView extends CustomComponent implements View {
 			}
 		});
 
-		gridSecondaryCases.addColumn(CaseModel::getName).setCaption("Name").setExpandRatio(1);
-		gridSecondaryCases.addColumn(CaseModel::getState).setCaption("State").setExpandRatio(1);
+		gridSecondaryCases.addColumn(CaseRow::getName).setCaption("Name").setExpandRatio(1);
+		gridSecondaryCases.addColumn(CaseRow::getState).setCaption("State").setExpandRatio(1);
 		gridSecondaryCases.asSingleSelect().addValueChangeListener(event -> {
 			if (event.getValue() == null) {
 				selectedSecondaryCase = null;
@@ -263,11 +348,24 @@ public class CaseListView extends CustomComponent implements View {
 
 	}
 
+	/**
+	 * Keeps the fetched primary cases, so pushed state changes can be applied
+	 * to them.
+	 */
+	private Stream<CaseRow> remember(List<CaseRow> rows) {
+		for (CaseRow row : rows) {
+			loadedPrimaryCases.put(row.getId(), row);
+		}
+		return rows.stream();
+	}
+
 	private Button generateDeleteButton() {
 		Button delete = new Button("Delete Case");
 		delete.addClickListener(e -> {
-			CaseModel selected = selectedPrimaryCase;
-			selected = caseService.getCaseById(selected);
+			CaseModel selected = null;
+			if (selectedPrimaryCase != null) {
+				selected = caseService.getCaseById(selectedPrimaryCase.toReference());
+			}
 			if (selected != null) {
 				caseService.deleteCase(selected);
 				updatePrimaryCases();
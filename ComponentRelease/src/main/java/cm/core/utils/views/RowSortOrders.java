@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2018-2019 André Zensen, University of Applied Sciences Bielefeld
+ * and various authors (see https://www.fh-bielefeld.de/wug/forschung/ag-pm)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package cm.core.utils.views;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.vaadin.data.provider.Query;
+import com.vaadin.data.provider.QuerySortOrder;
+import com.vaadin.shared.data.sort.SortDirection;
+
+import cm.core.services.RowOrder;
+
+/**
+ * <p>
+ * Translates the sort orders of a {@link Query} of a lazy grid into
+ * {@link RowOrder}s of the services. The sorted properties are the sort
+ * properties set on the grid columns.
+ * </p>
+ * 
+ * @author André Zensen
+ *
+ */
+final class RowSortOrders {
+
+	private RowSortOrders() {
+
+	}
+
+	static List<RowOrder> of(Query<?, ?> query) {
+		return query.getSortOrders().stream().map(RowSortOrders::toRowOrder).collect(Collectors.toList());
+	}
+
+	private static RowOrder toRowOrder(QuerySortOrder order) {
+		return new RowOrder(order.getSorted(), order.getDirection() == SortDirection.ASCENDING);
+	}
+
+}
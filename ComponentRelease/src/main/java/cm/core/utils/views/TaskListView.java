@@ -17,7 +17,12 @@
 package cm.core.utils.views;
 
 import java.io.File;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
@@ -26,10 +31,13 @@ import com.vaadin.cdi.internal.Conventions;
 import com.vaadin.cdi.views.CaseWorkerInfo;
 import com.vaadin.cdi.views.NavigationEvent;
 import com.vaadin.cdi.views.TaskInfo;
+import com.vaadin.data.provider.CallbackDataProvider;
+import com.vaadin.data.provider.ConfigurableFilterDataProvider;
 import com.vaadin.navigator.View;
 import com.vaadin.navigator.ViewChangeListener.ViewChangeEvent;
 import com.vaadin.server.FileResource;
 import com.vaadin.server.VaadinService;
+import com.vaadin.shared.ui.ValueChangeMode;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
 import com.vaadin.ui.Button.ClickListener;
@@ -39,14 +47,20 @@ import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Image;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Layout;
+import com.vaadin.ui.Notification;
+import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.VerticalLayout;
 
 import cm.core.CaseWorker;
 import cm.core.services.CaseWorkerService;
+import cm.core.services.ChangeBus;
+import cm.core.services.ChangeEvent;
+import cm.core.services.ServiceMessage;
+import cm.core.services.TaskRow;
 import cm.core.services.TaskService;
 import cm.core.states.StageTaskTransitions;
-import cm.core.tasks.CaseTask;
-import cm.core.tasks.HumanTask;
 import cm.core.tasks.Task;
 import cm.core.tasks.TaskStates;
 
@@ -74,8 +88,13 @@ public class TaskListView extends CustomComponent implements View {
 	@Inject
 	private javax.enterprise.event.Event<NavigationEvent> navigationEvent;
 
-	private Grid<HumanTask> gridMyTasks = new Grid<>();
-	private Grid<HumanTask> gridClaimable = new Grid<>();
+	private Grid<TaskRow> gridMyTasks = new Grid<>();
+	private Grid<TaskRow> gridClaimable = new Grid<>();
+	private ConfigurableFilterDataProvider<TaskRow, Void, String> myTasks;
+	private ConfigurableFilterDataProvider<TaskRow, Void, String> claimable;
+	private final Map<Long, TaskRow> loadedMyTasks = new HashMap<>();
+	private final Map<Long, TaskRow> loadedClaimable = new HashMap<>();
+	private ChangeBus.Subscription changes;
 
 	@Override
 	public void enter(ViewChangeEvent event) {
@@ -84,6 +103,78 @@ public class TaskListView extends CustomComponent implements View {
 		Layout layout = buildTaskListLayout();
 		setCompositionRoot(layout);
 		updateBothGrids();
+		subscribeToChanges();
+	}
+
+	/**
+	 * Keeps both grids current with the changes of the tasks of the case
+	 * worker's roles and of the tasks claimed by the case worker, pushed in
+	 * batches by the {@link ChangeBus}.
+	 */
+	private void subscribeToChanges() {
+		CaseWorker cw = caseWorkerInfo.getUser();
+		Set<String> roles = new HashSet<>(cw.getCaseRolesAsString());
+		String user = cw.getUser();
+		UI ui = UI.getCurrent();
+		changes = ChangeBus.getInstance().subscribe(
+				e -> e.isTaskEvent() && (e.getRole() == null || roles.contains(e.getRole()) || user.equals(e.getWorker())),
+				events -> {
+					try {
+						ui.access(() -> applyChanges(events));
+					} catch (UIDetachedException e) {
+						changes.close();
+					}
+				});
+		addDetachListener(e -> changes.close());
+	}
+
+	/**
+	 * Updates listed rows whose state changed in place and reloads the visible
+	 * window of a grid only if rows enter or leave it.
+	 */
+	private void applyChanges(List<ChangeEvent> events) {
+		if (caseWorkerInfo == null || caseWorkerInfo.getUser() == null) {
+			return;
+		}
+		String user = caseWorkerInfo.getUser().getUser();
+		boolean reloadMyTasks = false;
+		boolean reloadClaimable = false;
+		for (ChangeEvent e : events) {
+			switch (e.getKind()) {
+			case CLAIMED:
+			case UNCLAIMED:
+				reloadMyTasks |= user.equals(e.getWorker());
+				reloadClaimable = true;
+				break;
+			case TASK_STATE_CHANGED:
+				TaskRow mine = loadedMyTasks.get(e.getElementId());
+				if (mine != null) {
+					TaskRow changed = mine.withState(e.getState());
+					loadedMyTasks.put(changed.getId(), changed);
+					myTasks.refreshItem(changed);
+				}
+				boolean claimableState = TaskStates.ACTIVE.toString().equals(e.getState())
+						|| TaskStates.ENABLED.toString().equals(e.getState());
+				TaskRow listed = loadedClaimable.get(e.getElementId());
+				if (listed != null && claimableState) {
+					TaskRow changed = listed.withState(e.getState());
+					loadedClaimable.put(changed.getId(), changed);
+					claimable.refreshItem(changed);
+				} else if (listed != null || (claimableState && e.getWorker() == null)) {
+					reloadClaimable = true;
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		if (reloadMyTasks) {
+			clearSelectedTask();
+			updateMyTasks();
+		}
+		if (reloadClaimable) {
+			updateClaimable();
+		}
 	}
 
 	private Layout buildTaskListLayout() {
@@ -127,11 +218,6 @@ public class TaskListView extends CustomComponent implements View {
 		// updateBothGrids();
 		// });
 
-		Button btnRefreshClaimable = new Button("Refresh");
-		btnRefreshClaimable.addClickListener(e -> {
-			updateBothGrids();
-		});
-
 		Label myTaskList = new Label("My Tasks");
 		layout.addComponent(myTaskList);
 
@@ -141,7 +227,15 @@ public class TaskListView extends CustomComponent implements View {
 
 		Label claimableTaskList = new Label("Claimable Tasks");
 		layout.addComponent(claimableTaskList);
-		layout.addComponents(gridClaimable, btnRefreshClaimable);
+		TextField claimableFilter = new TextField();
+		claimableFilter.setPlaceholder("Filter by task or case");
+		claimableFilter.setValueChangeMode(ValueChangeMode.LAZY);
+		claimableFilter.addValueChangeListener(e -> {
+			loadedClaimable.clear();
+			claimable.setFilter(e.getValue());
+		});
+		layout.addComponent(claimableFilter);
+		layout.addComponents(gridClaimable);
 		gridClaimable.setSizeFull();
 		gridClaimable.setHeightByRows(4);
 
@@ -160,8 +254,21 @@ public class TaskListView extends CustomComponent implements View {
 	}
 
 	private void setupClaimable() {
-		gridClaimable.addColumn(Task::getName).setCaption("Name").setExpandRatio(1);
-		gridClaimable.addColumn(Task::getState).setCaption("State").setExpandRatio(1);
+		// only the visible window of the tasks is read, sorted and filtered by the
+		// database
+		claimable = new CallbackDataProvider<TaskRow, String>(
+				query -> remember(loadedClaimable,
+						taskService.getClaimableTaskRowsByRole(caseWorkerInfo.getUser(), query.getFilter().orElse(null),
+								query.getOffset(), query.getLimit(), RowSortOrders.of(query))),
+				query -> taskService.countClaimableTaskRowsByRole(caseWorkerInfo.getUser(),
+						query.getFilter().orElse(null)),
+				TaskRow::getId).withConfigurableFilter();
+		gridClaimable.setDataProvider(claimable);
+		gridClaimable.addColumn(TaskRow::getName).setCaption("Name").setSortProperty("name").setExpandRatio(1);
+		gridClaimable.addColumn(TaskRow::getState).setCaption("State").setSortProperty("state").setExpandRatio(1);
+		gridClaimable.addColumn(TaskRow::getCaseName).setCaption("Case").setSortProperty("caseName")
+				.setExpandRatio(1);
+		gridClaimable.addColumn(TaskRow::getRole).setCaption("Role").setSortProperty("role").setExpandRatio(1);
 		gridClaimable.addComponentColumn(this::buildClaimButton).setExpandRatio(1);
 
 		gridClaimable.setSizeFull();
@@ -169,14 +276,23 @@ public class TaskListView extends CustomComponent implements View {
 
 	private void updateClaimable() {
 		// Collection<HumanTask> items = this.taskService.getAllClaimableTasks();
-		Collection<HumanTask> items = this.taskService.getAllClaimableTasksByRole(this.caseWorkerInfo.getUser());
-		this.gridClaimable.setItems(items);
+		this.loadedClaimable.clear();
+		this.claimable.refreshAll();
 
 	}
 
 	private void setupMyTasks() {
-		gridMyTasks.addColumn(Task::getName).setCaption("Name").setExpandRatio(1);
-		gridMyTasks.addColumn(Task::getState).setCaption("State").setExpandRatio(1);
+		myTasks = new CallbackDataProvider<TaskRow, String>(
+				query -> remember(loadedMyTasks,
+						taskService.getClaimedTaskRowsByCaseWorker(caseWorkerInfo.getUser(), query.getFilter().orElse(null),
+								query.getOffset(), query.getLimit(), RowSortOrders.of(query))),
+				query -> taskService.countClaimedTaskRowsByCaseWorker(caseWorkerInfo.getUser(),
+						query.getFilter().orElse(null)),
+				TaskRow::getId).withConfigurableFilter();
+		gridMyTasks.setDataProvider(myTasks);
+		gridMyTasks.addColumn(TaskRow::getName).setCaption("Name").setSortProperty("name").setExpandRatio(1);
+		gridMyTasks.addColumn(TaskRow::getState).setCaption("State").setSortProperty("state").setExpandRatio(1);
+		gridMyTasks.addColumn(TaskRow::getCaseName).setCaption("Case").setSortProperty("caseName").setExpandRatio(1);
 		gridMyTasks.addComponentColumn(this::buildStartButton).setExpandRatio(1);
 		gridMyTasks.addComponentColumn(this::buildUnclaimButton).setExpandRatio(1);
 
@@ -184,7 +300,8 @@ public class TaskListView extends CustomComponent implements View {
 			if (event.getValue() == null) {
 				taskInfo.setTask(null);
 			} else {
-				taskInfo.setTask(event.getValue());
+				// the selected task is loaded for the task view
+				taskInfo.setTask(taskService.findHumanTaskById(event.getValue().getId()));
 			}
 		});
 
@@ -196,74 +313,53 @@ public class TaskListView extends CustomComponent implements View {
 	}
 
 	private void updateMyTasks() {
-		CaseWorker currentUser = caseWorkerInfo.getUser();
-		Collection<HumanTask> items = this.taskService.getAllClaimedTasksByCaseWorker(currentUser);
-		this.gridMyTasks.setItems(items);
+		this.loadedMyTasks.clear();
+		this.myTasks.refreshAll();
 
 	}
 
-	private Button buildClaimButton(Task t) {
+	private Button buildClaimButton(TaskRow t) {
 		String captionActive = "Claim";
 		String captionEnable = "Activate";
 		Button button = new Button();
 
-		boolean isActive = t.getState().equals(TaskStates.ACTIVE.toString());
-		boolean isEnable = t.getState().equals(TaskStates.ENABLED.toString());
+		boolean isActive = TaskStates.ACTIVE.toString().equals(t.getState());
+		boolean isEnable = TaskStates.ENABLED.toString().equals(t.getState());
 		button.setEnabled(isActive || isEnable);
 
 		if (isActive) {
 			button.setCaption(captionActive);
 			button.addClickListener(e -> {
-				if (t instanceof HumanTask) {
-					HumanTask ht = (HumanTask) t;
-					this.taskService.claimTask(ht, caseWorkerInfo.getUser());
-					updateBothGrids();
-				} else if (t instanceof CaseTask) {
-					CaseTask ct = (CaseTask) t;
-					this.taskService.claimTask(ct, caseWorkerInfo.getUser());
-					updateBothGrids();
-				}
+				showResult(this.taskService.claimTask(t.toReference(), caseWorkerInfo.getUser()));
 			});
 		} else if (isEnable) {
 			button.setCaption(captionEnable);
 			button.addClickListener(e -> {
-				if (t instanceof HumanTask) {
-					HumanTask ht = (HumanTask) t;
-					this.taskService.transitionTask(ht, null, StageTaskTransitions.manualStart);
-					updateBothGrids();
-				} else if (t instanceof CaseTask) {
-					CaseTask ct = (CaseTask) t;
-					this.taskService.transitionTask(ct, null, StageTaskTransitions.enable);
-					updateBothGrids();
-				}
+				showResult(this.taskService.transitionTask(t.toReference(), null, StageTaskTransitions.manualStart));
 			});
 		}
 		return button;
 	}
 
-	private Button buildUnclaimButton(Task t) {
+	private Button buildUnclaimButton(TaskRow t) {
 		String caption = "Unclaim";
 		Button button = new Button(caption);
 
-		boolean isEnabled = t.getState().equals(TaskStates.ACTIVE.toString());
+		boolean isEnabled = TaskStates.ACTIVE.toString().equals(t.getState());
 		button.setEnabled(isEnabled);
 
 		if (isEnabled) {
 			button.addClickListener(e -> {
-				if (t instanceof HumanTask) {
-					HumanTask ht = (HumanTask) t;
-					this.taskService.unclaimTask(ht, caseWorkerInfo.getUser());
-					updateBothGrids();
-				}
+				showResult(this.taskService.unclaimTask(t.toReference(), caseWorkerInfo.getUser()));
 			});
 		}
 		return button;
 	}
 
-	private Button buildStartButton(Task t) {
+	private Button buildStartButton(TaskRow t) {
 		String caption = "Start";
 		Button button = new Button(caption);
-		boolean isEnabled = t.getState().equals(TaskStates.ACTIVE.toString());
+		boolean isEnabled = TaskStates.ACTIVE.toString().equals(t.getState());
 		button.setEnabled(isEnabled);
 		if (isEnabled) {
 			button.addClickListener(e -> {
@@ -286,6 +382,29 @@ public class TaskListView extends CustomComponent implements View {
 	// return startLink;
 	// }
 
+	/**
+	 * Notifies the user if a command was not executed, e.g. because another case
+	 * worker changed the task first, and reloads the stale grids. Changes of
+	 * executed commands arrive through the {@link ChangeBus}.
+	 */
+	private void showResult(ServiceMessage result) {
+		if (result != null && !result.isSuccess()) {
+			Notification.show(result.getMessage(), Notification.Type.WARNING_MESSAGE);
+			updateBothGrids();
+		}
+	}
+
+	/**
+	 * Keeps the fetched rows of a grid, so pushed state changes can be applied
+	 * to them.
+	 */
+	private static Stream<TaskRow> remember(Map<Long, TaskRow> loaded, List<TaskRow> rows) {
+		for (TaskRow row : rows) {
+			loaded.put(row.getId(), row);
+		}
+		return rows.stream();
+	}
+
 	private void updateBothGrids() {
 		clearSelectedTask();
 		this.updateMyTasks();
@@ -33,10 +33,8 @@ public class IfApproved extends IfPartImplementation {
 		CaseFileItem specifications = ip.getCaseFileItemRef();
 		SimpleProperty dataApproved = specifications.getProperty("dataApproved");
 		if (dataApproved != null) {
-			if (dataApproved.getValue() != null) {
-				if (Boolean.parseBoolean(dataApproved.getValue())) {
-					response = true;
-				} 
+			if (dataApproved.getBooleanValue()) {
+				response = true;
 			}
 		}
 		return response;
@@ -17,10 +17,8 @@ public class IfRevision extends IfPartImplementation {
 		CaseFileItem specifications = ip.getCaseFileItemRef();
 		SimpleProperty dataApproved = specifications.getProperty("revisionNeeded");
 		if (dataApproved != null) {
-			if (dataApproved.getValue() != null) {
-				if (Boolean.parseBoolean(dataApproved.getValue())) {
-					response = true;
-				} 
+			if (dataApproved.getBooleanValue()) {
+				response = true;
 			}
 		}
 		return response;
@@ -26,6 +26,13 @@ import cm.core.states.CaseFileItemTransition;
 import cm.core.tasks.ProcessTask;
 import cm.core.tasks.ProcessTaskImplementation;
 
+/**
+ * Copies the attachments of the specifications of a sub-case to the
+ * specifications of its parent case. The copies share the contents of the
+ * attachments, so the copy does not depend on the size of the files. Runs
+ * asynchronously, the ProcessTask is completed by the
+ * ProcessTaskExecutionService once the copy is done.
+ */
 public class ProvideDataProcessImplementation extends ProcessTaskImplementation {
 
 
@@ -44,14 +51,17 @@ public class ProvideDataProcessImplementation extends ProcessTaskImplementation
 		CaseFileItem primaryItem = cfService.getCaseFileItem(shallowCaseModel, "specifications");
 		CaseFileItem secondaryItem = cfService.getCaseFileItem(this.processTask.getRootCase(), "specifications");
 		for(CaseFileItemAttachment att : secondaryItem.getAttachments()) {
-			cfService.saveAttachment(primaryItem, att);
+			cfService.copyAttachment(primaryItem, att);
 		}	
 		cfService.transitionCaseFileItem(primaryItem, CaseFileItemTransition.create);
-		this.processTask.getContextState().complete();
-		// TODO Auto-generated method stub
 		// get the specifications of this CaseModel and transfer it to parent CaseModel via the CaseTask reference of this CaseModel
 	}
 	
+	@Override
+	public boolean isAsynchronous() {
+		return true;
+	}
+
 	@Override
 	public void executeCallBack() {
 		System.out.println("CALLBACK");
@@ -29,8 +29,7 @@ public class RepeatReviewTask extends RuleExpression {
 	@Override
 	public boolean evaluate() {
 		CaseFileItem caseFileItem = this.rule.getContextRef();
-		boolean dataApproved = Boolean.valueOf(caseFileItem
-				.getProperty("dataApproved").getValue());
+		boolean dataApproved = caseFileItem.getProperty("dataApproved").getBooleanValue();
 		if(dataApproved) {
 			return false;
 		} else {
@@ -29,7 +29,7 @@ public class RequiredMilestoneSpecificationsCreated extends RuleExpression {
 	@Override
 	public boolean evaluate() {
 		CaseFileItem caseFileItem = this.rule.getContextRef();
-		if(Boolean.valueOf(caseFileItem.getProperty("milestoneRequired").getValue())) {
+		if(caseFileItem.getProperty("milestoneRequired").getBooleanValue()) {
 			return true;
 		}		
 		return false;
@@ -29,7 +29,7 @@ public class RequiredProvideDataTask extends RuleExpression {
 	@Override
 	public boolean evaluate() {
 		CaseFileItem caseFileItem = this.rule.getContextRef();
-		if(Boolean.valueOf(caseFileItem.getProperty("dataApproved").getValue())) {
+		if(caseFileItem.getProperty("dataApproved").getBooleanValue()) {
 			return true;
 		}		
 		return false;
@@ -37,6 +37,7 @@ import com.vaadin.ui.CustomComponent;
 import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Layout;
+import com.vaadin.ui.Notification;
 import com.vaadin.ui.Upload;
 import com.vaadin.ui.VerticalLayout;
 
@@ -49,6 +50,7 @@ import cm.core.data.CaseFile;
 import cm.core.data.CaseFileItem;
 import cm.core.data.CaseFileItemAttachment;
 import cm.core.services.CaseFileService;
+import cm.core.services.ServiceMessage;
 import cm.core.services.TaskService;
 import cm.core.states.StageTaskTransitions;
 import cm.core.tasks.HumanTask;
@@ -143,6 +145,7 @@ public class AssembleSpecifications extends CustomComponent implements View {
 		// upload configuration
 		attachmentUpload.setButtonCaption("Upload Attachment");
 		attachmentUpload.addSucceededListener(this.attachmentReceiverAndSucceedListener);
+		attachmentUpload.addFailedListener(this.attachmentReceiverAndSucceedListener);
 		attachmentUpload.addFinishedListener(e -> {
 			this.updateAttachmentGrid();
 		});
@@ -162,7 +165,11 @@ public class AssembleSpecifications extends CustomComponent implements View {
 	private Button generateCompleteButton() {
 		Button completeButton = new Button("Complete");
 		completeButton.addClickListener(e -> {
-			taskService.transitionTask(taskInfo.getTask(), caseWorkerInfo.getUser(), StageTaskTransitions.complete);
+			ServiceMessage result = taskService.transitionTask(taskInfo.getTask(), caseWorkerInfo.getUser(),
+					StageTaskTransitions.complete);
+			if (result != null && !result.isSuccess()) {
+				Notification.show(result.getMessage(), Notification.Type.WARNING_MESSAGE);
+			}
 			btnComplete.setEnabled(false);
 		});
 		return completeButton;
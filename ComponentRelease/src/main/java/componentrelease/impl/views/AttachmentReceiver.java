@@ -16,27 +16,33 @@
  */
 package componentrelease.impl.views;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.enterprise.inject.spi.CDI;
 
+import com.vaadin.ui.Upload.FailedEvent;
+import com.vaadin.ui.Upload.FailedListener;
 import com.vaadin.ui.Upload.Receiver;
 import com.vaadin.ui.Upload.SucceededEvent;
 import com.vaadin.ui.Upload.SucceededListener;
 
 import cm.core.CaseModel;
+import cm.core.blob.AttachmentContents;
+import cm.core.blob.BlobOutputStream;
 import cm.core.data.CaseFile;
 import cm.core.data.CaseFileItem;
 import cm.core.data.CaseFileItemAttachment;
 import cm.core.services.CaseFileService;
 import cm.core.tasks.HumanTask;
 
-public class AttachmentReceiver implements Receiver, SucceededListener {
+public class AttachmentReceiver implements Receiver, SucceededListener, FailedListener {
 
-	private ByteArrayOutputStream baos;
+	// the upload is streamed into the blob store, never held in memory as a whole
+	private BlobOutputStream out;
 //	private List<CaseFileItemAttachment> attachmentList = new ArrayList<>();
 	private AttachmentGrid grid;
 	private String filename;
@@ -54,12 +60,20 @@ public class AttachmentReceiver implements Receiver, SucceededListener {
 	public OutputStream receiveUpload(String filename, String mimeType) {
 		this.filename = new String(filename);
 		this.mimeType = new String(mimeType);
-		baos = new ByteArrayOutputStream(100 * 1024 * 1024);
-		return baos;
+		try {
+			out = AttachmentContents.newOutput();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out;
 	}
-	
-	public byte[] getBytes() {
-		return baos.toByteArray();
+
+	@Override
+	public void uploadFailed(FailedEvent event) {
+		if (out != null) {
+			AttachmentContents.discard(out);
+			out = null;
+		}
 	}
 
 	@Override
@@ -67,7 +81,8 @@ public class AttachmentReceiver implements Receiver, SucceededListener {
 		CaseFileItemAttachment attachment = new CaseFileItemAttachment();
 		attachment.setName(filename);
 		attachment.setType(mimeType);
-		attachment.setData(this.baos.toByteArray());
+		AttachmentContents.attach(attachment, this.out);
+		this.out = null;
 
 		// get CaseFileService via CDI-context, since @Inject does not work in a non-managed bean
 		// apparently mechanics for persisting the new subcase work without persisting it via service
@@ -79,6 +94,7 @@ public class AttachmentReceiver implements Receiver, SucceededListener {
 		CaseFile caseFile = cfService.getCaseFile(modelRef);
 		CaseFileItem item = caseFile.getCaseFileItemById("specifications");
 		item.addAttachment(attachment);
+		// contents of an attachment that is not saved are left to the collection of unreferenced blobs
 		cfService.saveAttachment(item, attachment);
 //		cfService.updateCaseFileItem(item);
 	}
@@ -1,14 +1,19 @@
 package componentrelease.impl.views;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import com.vaadin.server.StreamResource.StreamSource;
 
+import cm.core.blob.AttachmentContents;
 import cm.core.data.CaseFileItemAttachment;
 
 public class AttachmentSource implements StreamSource {
 
+	private static final Logger LOGGER = Logger.getLogger(AttachmentSource.class.getName());
+
 	private CaseFileItemAttachment attachment;
 	
 	public AttachmentSource(CaseFileItemAttachment attachment) {
@@ -18,10 +23,12 @@ public class AttachmentSource implements StreamSource {
 	@Override
 	public InputStream getStream() {
         if (this.attachment != null) {
-			// Write to buffer
-			byte[] content = this.attachment.getData();
-			InputStream targetStream = new ByteArrayInputStream(content);
-			return targetStream;
+			// stream the contents from the blob store
+			try {
+				return AttachmentContents.open(this.attachment);
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Could not read attachment " + this.attachment.getName(), e);
+			}
 		}
         return null;
 	}
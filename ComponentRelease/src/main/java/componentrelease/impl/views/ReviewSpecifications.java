@@ -52,6 +52,7 @@ import cm.core.data.CaseFileItem;
 import cm.core.data.CaseFileItemAttachment;
 import cm.core.data.SimpleProperty;
 import cm.core.services.CaseFileService;
+import cm.core.services.ServiceMessage;
 import cm.core.services.TaskService;
 import cm.core.states.CaseFileItemTransition;
 import cm.core.states.StageTaskTransitions;
@@ -150,6 +151,7 @@ public class ReviewSpecifications extends CustomComponent implements View {
 		// upload configuration
 		attachmentUpload.setButtonCaption("Upload Attachment");
 		attachmentUpload.addSucceededListener(this.attachmentReceiverAndSucceedListener);
+		attachmentUpload.addFailedListener(this.attachmentReceiverAndSucceedListener);
 		attachmentUpload.addFinishedListener(e -> {
 			this.updateAttachmentGrid();
 		});
@@ -180,18 +182,28 @@ public class ReviewSpecifications extends CustomComponent implements View {
 			CaseFileItem item = caseFile.getCaseFileItemById("specifications");
 			
 			SimpleProperty prop = item.getProperty("dataApproved");
-			prop.setValue(Boolean.toString(Boolean.TRUE));
-			cfService.updateProperty(prop);
+			prop.setBooleanValue(true);
+			if (!updateProperty(prop)) {
+				return;
+			}
 			
 			prop = item.getProperty("revisionNeeded");
-			prop.setValue(Boolean.toString(Boolean.FALSE));
-			cfService.updateProperty(prop);
+			prop.setBooleanValue(false);
+			if (!updateProperty(prop)) {
+				return;
+			}
 			
 			prop = item.getProperty("dataProvided");
-			prop.setValue(Boolean.toString(Boolean.TRUE));
-			cfService.updateProperty(prop);
+			prop.setBooleanValue(true);
+			if (!updateProperty(prop)) {
+				return;
+			}
 			
-			taskService.transitionTask(taskInfo.getTask(), caseWorkerInfo.getUser(), StageTaskTransitions.complete);
+			ServiceMessage result = taskService.transitionTask(taskInfo.getTask(), caseWorkerInfo.getUser(),
+					StageTaskTransitions.complete);
+			if (result != null && !result.isSuccess()) {
+				Notification.show(result.getMessage(), Notification.Type.WARNING_MESSAGE);
+			}
 			cfService.transitionCaseFileItem(item, CaseFileItemTransition.update);
 			btnApprove.setEnabled(false);
 			btnRevise.setEnabled(false);
@@ -209,16 +221,26 @@ public class ReviewSpecifications extends CustomComponent implements View {
 				CaseFileItem item = caseFile.getCaseFileItemById("specifications");
 				SimpleProperty noteProp = item.getProperty("noteForRevision");				
 				noteProp.setValue(note);
-				cfService.updateProperty(noteProp);
+				if (!updateProperty(noteProp)) {
+					return;
+				}
 				SimpleProperty prop = item.getProperty("dataApproved");
-				prop.setValue(Boolean.toString(Boolean.FALSE));
-				cfService.updateProperty(prop);
+				prop.setBooleanValue(false);
+				if (!updateProperty(prop)) {
+					return;
+				}
 				
 				prop = item.getProperty("revisionNeeded");
-				prop.setValue(Boolean.toString(Boolean.TRUE));
-				cfService.updateProperty(prop);
+				prop.setBooleanValue(true);
+				if (!updateProperty(prop)) {
+					return;
+				}
 				
-				taskService.transitionTask(taskInfo.getTask(), caseWorkerInfo.getUser(), StageTaskTransitions.complete);
+				ServiceMessage result = taskService.transitionTask(taskInfo.getTask(), caseWorkerInfo.getUser(),
+						StageTaskTransitions.complete);
+				if (result != null && !result.isSuccess()) {
+					Notification.show(result.getMessage(), Notification.Type.WARNING_MESSAGE);
+				}
 				btnApprove.setEnabled(false);
 				btnRevise.setEnabled(false);			
 			} else {
@@ -228,6 +250,19 @@ public class ReviewSpecifications extends CustomComponent implements View {
 		return reviseButton;
 	}
 
+	/**
+	 * Saves the property, shows the message of the service if it failed, e.g. on
+	 * a concurrent change.
+	 */
+	private boolean updateProperty(SimpleProperty prop) {
+		ServiceMessage result = cfService.updateProperty(prop);
+		if (result != null && !result.isSuccess()) {
+			Notification.show(result.getMessage(), Notification.Type.WARNING_MESSAGE);
+			return false;
+		}
+		return true;
+	}
+
 	private Button generateTaskListButton() {
 		Button taskListButton = new Button("Task List");
 		taskListButton.addClickListener(e -> {
@@ -0,0 +1,90 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import cm.core.blob.ByteRange;
+
+public class ByteRangeTest {
+
+	@Test
+	public void closedRange() {
+		ByteRange range = ByteRange.parse("bytes=0-499", 1000);
+
+		assertEquals(0, range.getFirst());
+		assertEquals(499, range.getLast());
+		assertEquals(500, range.getLength());
+	}
+
+	@Test
+	public void openRange() {
+		ByteRange range = ByteRange.parse("bytes=500-", 1000);
+
+		assertEquals(500, range.getFirst());
+		assertEquals(999, range.getLast());
+	}
+
+	@Test
+	public void suffixRange() {
+		ByteRange range = ByteRange.parse("bytes=-300", 1000);
+		assertEquals(700, range.getFirst());
+		assertEquals(999, range.getLast());
+
+		ByteRange longer = ByteRange.parse("bytes=-5000", 1000);
+		assertEquals(0, longer.getFirst());
+		assertEquals(999, longer.getLast());
+
+		assertFalse(ByteRange.parse("bytes=-0", 1000).isSatisfiable());
+	}
+
+	@Test
+	public void negativeSuffixIsMalformed() {
+		assertNull(ByteRange.parse("bytes=--5", 1000));
+		assertNull(ByteRange.parse("bytes=-+5", 1000));
+		assertNull(ByteRange.parse("bytes=5--3", 1000));
+	}
+
+	@Test
+	public void endPastLengthIsClamped() {
+		ByteRange range = ByteRange.parse("bytes=900-5000", 1000);
+
+		assertEquals(900, range.getFirst());
+		assertEquals(999, range.getLast());
+		assertEquals(100, range.getLength());
+	}
+
+	@Test
+	public void startPastLengthIsUnsatisfiable() {
+		assertFalse(ByteRange.parse("bytes=1000-", 1000).isSatisfiable());
+		assertFalse(ByteRange.parse("bytes=1000-1999", 1000).isSatisfiable());
+	}
+
+	@Test
+	public void zeroLength() {
+		assertFalse(ByteRange.parse("bytes=0-", 0).isSatisfiable());
+		assertFalse(ByteRange.parse("bytes=-5", 0).isSatisfiable());
+		assertEquals("bytes */0", ByteRange.parse("bytes=0-0", 0).toContentRange(0));
+	}
+
+	@Test
+	public void multipleRangesAndMalformedHeadersSendWholeContents() {
+		assertNull(ByteRange.parse(null, 1000));
+		assertNull(ByteRange.parse("bytes=0-1,5-6", 1000));
+		assertNull(ByteRange.parse("items=0-1", 1000));
+		assertNull(ByteRange.parse("bytes=5", 1000));
+		assertNull(ByteRange.parse("bytes=-", 1000));
+		assertNull(ByteRange.parse("bytes=5-3", 1000));
+		assertNull(ByteRange.parse("bytes=a-b", 1000));
+	}
+
+	@Test
+	public void contentRange() {
+		assertEquals("bytes 500-999/1000", ByteRange.parse("bytes=500-", 1000).toContentRange(1000));
+		assertEquals("bytes 0-0/1000", ByteRange.parse("bytes=0-0", 1000).toContentRange(1000));
+		ByteRange unsatisfiable = ByteRange.parse("bytes=2000-", 1000);
+		assertFalse(unsatisfiable.isSatisfiable());
+		assertEquals("bytes */1000", unsatisfiable.toContentRange(1000));
+	}
+
+}
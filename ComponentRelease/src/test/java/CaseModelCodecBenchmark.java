@@ -0,0 +1,56 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.johnzon.mapper.Mapper;
+import org.apache.johnzon.mapper.MapperBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import cm.core.CaseModel;
+import cm.core.utils.CaseFactory;
+import cm.core.utils.CaseModelCodec;
+
+/**
+ * Times encoding a case to bytes with {@link CaseModelCodec} and as JSON. Off
+ * by default, run with <code>-Dcm.core.benchmarks=true</code>.
+ */
+@EnabledIfSystemProperty(named = "cm.core.benchmarks", matches = "true")
+public class CaseModelCodecBenchmark {
+
+	private static final int ROUNDS = Integer.getInteger("cm.core.benchmarks.rounds", 2000);
+
+	private interface Encoder {
+		byte[] encode(CaseModel cm) throws IOException;
+	}
+
+	@Test
+	public void encode(TestReporter reporter) throws IOException {
+		CaseModel cm = CaseFactory.getComponentReleaseCaseModel();
+		Mapper mapper = new MapperBuilder().build();
+		Encoder binary = CaseModelCodec::encode;
+		Encoder json = c -> mapper.writeObjectAsString(c).getBytes(StandardCharsets.UTF_8);
+
+		time(cm, binary);
+		time(cm, json);
+
+		reporter.publishEntry("CaseModelCodec", time(cm, binary) / 1000 + " us per encode");
+		reporter.publishEntry("JSON", time(cm, json) / 1000 + " us per encode");
+	}
+
+	/**
+	 * @return nanoseconds per encode
+	 */
+	private static long time(CaseModel cm, Encoder encoder) throws IOException {
+		long bytes = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++) {
+			bytes += encoder.encode(cm).length;
+		}
+		long nanos = (System.nanoTime() - start) / ROUNDS;
+		if (bytes == 0) {
+			throw new IllegalStateException("Nothing encoded");
+		}
+		return nanos;
+	}
+}
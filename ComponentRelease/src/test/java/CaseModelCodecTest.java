@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.johnzon.mapper.Mapper;
+import org.apache.johnzon.mapper.MapperBuilder;
+import org.junit.jupiter.api.Test;
+
+import cm.core.CaseElement;
+import cm.core.CaseModel;
+import cm.core.Stage;
+import cm.core.sentries.Sentry;
+import cm.core.tasks.CaseTask;
+import cm.core.utils.CaseFactory;
+import cm.core.utils.CaseModelCodec;
+
+public class CaseModelCodecTest {
+
+	@Test
+	public void roundTrip() throws IOException {
+		CaseModel cm = CaseFactory.getComponentReleaseCaseModel();
+		byte[] encoded = CaseModelCodec.encode(cm);
+
+		CaseModel decoded = CaseModelCodec.decode(encoded);
+
+		assertArrayEquals(encoded, CaseModelCodec.encode(decoded));
+		assertEquals(cm.getCmId(), decoded.getCmId());
+		assertEquals(cm.getState(), decoded.getState());
+		assertEquals(cm.getChildElements().size(), decoded.getChildElements().size());
+		for (int i = 0; i < cm.getChildElements().size(); i++) {
+			CaseElement original = cm.getChildElements().get(i);
+			CaseElement copy = decoded.getChildElements().get(i);
+			assertEquals(original.getClass(), copy.getClass());
+			assertEquals(original.getCmId(), copy.getCmId());
+			assertEquals(original.getState(), copy.getState());
+			assertSame(decoded, copy.getCaseRef());
+			if (copy instanceof Stage) {
+				for (CaseElement child : ((Stage) copy).getChildElements()) {
+					assertSame(copy, child.getParentStage());
+				}
+			}
+			if (copy instanceof CaseTask && ((CaseTask) copy).getSubCaseRef() != null) {
+				assertSame(copy, ((CaseTask) copy).getSubCaseRef().getCaseTaskRef());
+			}
+		}
+		for (Sentry sentry : decoded.getSentryRef()) {
+			assertEquals(sentry.getOnPartBits() != 0, sentry.getOnParts().size() > 0);
+		}
+	}
+
+	@Test
+	public void compareWithJson() throws IOException {
+		CaseModel cm = CaseFactory.getComponentReleaseCaseModel();
+		Mapper mapper = new MapperBuilder().build();
+
+		byte[] binary = CaseModelCodec.encode(cm);
+		byte[] json = mapper.writeObjectAsString(cm).getBytes(StandardCharsets.UTF_8);
+
+		assertTrue(binary.length < json.length);
+	}
+}
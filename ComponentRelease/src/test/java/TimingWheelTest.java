@@ -0,0 +1,94 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import cm.core.utils.TimingWheel;
+
+public class TimingWheelTest {
+
+	@Test
+	public void dueAtFirstTickAtOrAfterDueTime() {
+		TimingWheel<String> wheel = new TimingWheel<String>(100, 8, 2, 0);
+		List<String> expired = new ArrayList<String>();
+
+		assertTrue(wheel.add("a", 250));
+		assertTrue(wheel.add("b", 300));
+		assertEquals(2, wheel.size());
+
+		wheel.advanceTo(299, expired::add);
+		assertTrue(expired.isEmpty());
+		assertEquals(1, wheel.advanceTo(399, expired::add));
+		assertEquals(Arrays.asList("a", "b"), expired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void rejectsDueAndBeyondHorizon() {
+		TimingWheel<String> wheel = new TimingWheel<String>(100, 8, 2, 1000);
+
+		assertEquals(6300, wheel.getHorizonMillis());
+		assertFalse(wheel.add("past", 900));
+		assertFalse(wheel.add("now", 1000));
+		assertTrue(wheel.add("next", 1001));
+		assertTrue(wheel.add("last", 1000 + wheel.getHorizonMillis()));
+		assertFalse(wheel.add("beyond", 1000 + wheel.getHorizonMillis() + 1));
+		assertEquals(2, wheel.size());
+	}
+
+	@Test
+	public void cascadesFromHigherLevels() {
+		TimingWheel<Long> wheel = new TimingWheel<Long>(10, 4, 3, 0);
+		long[] dueTicks = { 1, 3, 4, 5, 15, 16, 17, 35, 48, 63 };
+		for (long dueTick : dueTicks) {
+			assertTrue(wheel.add(dueTick, dueTick * 10));
+		}
+
+		for (long now = 10; now < 640; now += 10) {
+			List<Long> expired = new ArrayList<Long>();
+			wheel.advanceTo(now, expired::add);
+			long tick = now / 10;
+			boolean due = Arrays.stream(dueTicks).anyMatch(dueTick -> dueTick == tick);
+			assertEquals(due ? Arrays.asList(tick) : new ArrayList<Long>(), expired);
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void advancingOverManyTicksKeepsOrder() {
+		TimingWheel<Long> wheel = new TimingWheel<Long>(10, 4, 3, 5);
+		List<Long> expected = new ArrayList<Long>();
+		for (long due = 600; due > 5; due -= 37) {
+			assertTrue(wheel.add(due, due));
+			expected.add(0, due);
+		}
+
+		List<Long> expired = new ArrayList<Long>();
+		wheel.advanceTo(640, expired::add);
+
+		assertEquals(expected, expired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void placesRelativeToCurrentTick() {
+		TimingWheel<String> wheel = new TimingWheel<String>(10, 4, 2, 0);
+		List<String> expired = new ArrayList<String>();
+		wheel.advanceTo(130, expired::add);
+		assertEquals(130, wheel.getCurrentMillis());
+
+		assertTrue(wheel.add("a", 140));
+		assertTrue(wheel.add("b", 280));
+
+		wheel.advanceTo(270, expired::add);
+		assertEquals(Arrays.asList("a"), expired);
+		wheel.advanceTo(280, expired::add);
+		assertEquals(Arrays.asList("a", "b"), expired);
+	}
+
+}